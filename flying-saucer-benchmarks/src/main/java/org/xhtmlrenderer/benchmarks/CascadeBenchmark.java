@@ -0,0 +1,91 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.context.StyleReference;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+/**
+ * Selector matching and cascading of every element of a corpus document
+ * through {@link StyleReference#getCascadedStyle(Element, boolean)}.  The
+ * stylesheets are parsed (and the selectors indexed by the
+ * {@link org.xhtmlrenderer.css.newmatch.Matcher}) during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class CascadeBenchmark {
+    @Param({ Corpus.HAMLET, Corpus.TABLES, Corpus.CATALOG, Corpus.CJK })
+    public String document;
+
+    private StyleReference css;
+    private Element[] elements;
+
+    @Setup
+    public void setUp() {
+        Document doc = Corpus.loadDocument(document);
+
+        ITextRenderer renderer = new ITextRenderer();
+        renderer.setDocument(doc, Corpus.getURL(document).toExternalForm());
+        css = renderer.getSharedContext().getCss();
+
+        List result = new ArrayList();
+        collectElements(doc.getDocumentElement(), result);
+        elements = (Element[])result.toArray(new Element[result.size()]);
+    }
+
+    @Benchmark
+    public void cascade(Blackhole bh) {
+        for (int i = 0; i < elements.length; i++) {
+            bh.consume(css.getCascadedStyle(elements[i], true));
+        }
+    }
+
+    private static void collectElements(Element e, List result) {
+        result.add(e);
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                collectElements((Element)n, result);
+            }
+        }
+    }
+}
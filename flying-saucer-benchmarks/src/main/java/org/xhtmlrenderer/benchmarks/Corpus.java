@@ -0,0 +1,103 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xml.sax.InputSource;
+
+/**
+ * The fixed set of documents the benchmarks run against.  They are checked in
+ * under <code>/corpus</code> so results remain comparable between runs and
+ * revisions:
+ * <ul>
+ * <li><code>hamlet.xhtml</code> - a long run of simple text blocks</li>
+ * <li><code>tables.xhtml</code> - several 250 row tables with a paginated header</li>
+ * <li><code>catalog.xhtml</code> - hundreds of nested left and right floats</li>
+ * <li><code>cjk.xhtml</code> - Japanese text without spaces</li>
+ * </ul>
+ */
+public class Corpus {
+    public static final String HAMLET = "hamlet.xhtml";
+    public static final String TABLES = "tables.xhtml";
+    public static final String CATALOG = "catalog.xhtml";
+    public static final String CJK = "cjk.xhtml";
+
+    /**
+     * The user agent stylesheet which is parsed for every document.
+     */
+    public static final String USER_AGENT_STYLESHEET = "/resources/css/XhtmlNamespaceHandler.css";
+
+    private Corpus() {
+    }
+
+    public static URL getURL(String name) {
+        URL result = Corpus.class.getResource(name.startsWith("/") ? name : "/corpus/" + name);
+        if (result == null) {
+            throw new IllegalArgumentException("No such corpus document: " + name);
+        }
+        return result;
+    }
+
+    public static byte[] readBytes(String name) throws IOException {
+        InputStream in = getURL(name).openStream();
+        try {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int i;
+            while ((i = in.read(buf)) != -1) {
+                result.write(buf, 0, i);
+            }
+            return result.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    public static String readString(String name) throws IOException {
+        try {
+            return new String(readBytes(name), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Document loadDocument(String name) {
+        InputSource source = new InputSource(getURL(name).toExternalForm());
+        return XMLResource.load(source).getDocument();
+    }
+
+    /**
+     * Returns the name of the stylesheet linked from <code>document</code>.
+     */
+    public static String getStylesheet(String document) {
+        if (HAMLET.equals(document)) {
+            return "general.css";
+        } else {
+            return document.substring(0, document.lastIndexOf('.')) + ".css";
+        }
+    }
+}
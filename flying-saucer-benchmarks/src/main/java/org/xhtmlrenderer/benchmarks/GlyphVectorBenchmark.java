@@ -0,0 +1,112 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.simple.Graphics2DRenderer;
+import org.xhtmlrenderer.swing.GlyphVectorCache;
+import org.xhtmlrenderer.swing.Java2DTextRenderer;
+
+/**
+ * Repainting a text-heavy document which has been laid out once, with and
+ * without a {@link GlyphVectorCache} (<code>glyphVectorCacheSize</code> of
+ * zero disables it).  The hit ratio of the cache is printed at the end of
+ * each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class GlyphVectorBenchmark {
+    private static final int WIDTH = 1024;
+
+    @Param({ "300" })
+    public int paragraphs;
+
+    @Param({ "8192", "0" })
+    public int glyphVectorCacheSize;
+
+    private Graphics2DRenderer renderer;
+    private Rectangle size;
+    private GlyphVectorCache cache;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        StringBuffer result = new StringBuffer();
+        result.append("<html><head><style>p { margin: 4px; } em { color: #800; }</style></head><body>");
+        for (int i = 0; i < paragraphs; i++) {
+            result.append("<p>To be, or not to be, that is the question: <em>whether 'tis nobler");
+            result.append("</em> in the mind to suffer the slings and arrows of outrageous fortune, ");
+            result.append("or to take arms against a sea of troubles and by opposing end them.</p>");
+        }
+        result.append("</body></html>");
+        Document doc = XMLResource.load(new StringReader(result.toString())).getDocument();
+
+        renderer = new Graphics2DRenderer();
+        renderer.setDocument(doc, null);
+
+        BufferedImage image = new BufferedImage(WIDTH, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        renderer.layout(g, new Dimension(WIDTH, 1));
+        g.dispose();
+        size = renderer.getMinimumSize();
+
+        cache = new GlyphVectorCache(glyphVectorCacheSize, 128);
+        ((Java2DTextRenderer) renderer.getSharedContext().getTextRenderer()).setGlyphVectorCache(cache);
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        renderer.render(g);
+        g.dispose();
+        return image;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        System.out.println("Glyph vector cache hit ratio with glyphVectorCacheSize=" +
+                glyphVectorCacheSize + ": " + cache.getHitRatio());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.layout.BoxBuilder;
+import org.xhtmlrenderer.layout.Layer;
+import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.pdf.ITextFontContext;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.render.PageBox;
+import org.xhtmlrenderer.render.ViewportBox;
+
+/**
+ * The stages of {@link ITextRenderer#layout()} measured separately: building
+ * the box tree ({@link BoxBuilder#createRootBox(LayoutContext, Document)}),
+ * laying out the root box and splitting the result into pages
+ * ({@link Layer#layoutPages(LayoutContext)}).  Each invocation starts from
+ * a freshly reset {@link SharedContext} and the output of the previous
+ * stages, which is prepared outside of the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class LayoutBenchmark {
+    @Param({ Corpus.HAMLET, Corpus.TABLES, Corpus.CATALOG, Corpus.CJK })
+    public String document;
+
+    private Document doc;
+    private String url;
+    private ITextRenderer renderer;
+
+    private LayoutContext context;
+    private BlockBox root;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        doc = Corpus.loadDocument(document);
+        url = Corpus.getURL(document).toExternalForm();
+        renderer = new ITextRenderer();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation(BenchmarkParams params) {
+        renderer.setDocument(doc, url);
+        context = newLayoutContext(renderer);
+        root = null;
+
+        String benchmark = params.getBenchmark();
+        if (benchmark.endsWith("layoutRoot") || benchmark.endsWith("layoutPages")) {
+            root = createRootBox(context, doc);
+        }
+        if (benchmark.endsWith("layoutPages")) {
+            root.layout(context);
+            Dimension dim = root.getLayer().getPaintingDimension(context);
+            root.getLayer().trimEmptyPages(context, dim.height);
+        }
+    }
+
+    @Benchmark
+    public BlockBox buildBoxes() {
+        BlockBox result = createRootBox(context, doc);
+        ensureChildren(context, result);
+        return result;
+    }
+
+    @Benchmark
+    public BlockBox layoutRoot() {
+        root.layout(context);
+        return root;
+    }
+
+    @Benchmark
+    public BlockBox layoutPages() {
+        root.getLayer().layoutPages(context);
+        return root;
+    }
+
+    /**
+     * Mirrors the layout context set up by {@link ITextRenderer#layout()}.
+     */
+    static LayoutContext newLayoutContext(ITextRenderer renderer) {
+        SharedContext sharedContext = renderer.getSharedContext();
+        LayoutContext result = sharedContext.newLayoutContextInstance();
+        result.setFontContext(new ITextFontContext());
+        sharedContext.getTextRenderer().setup(result.getFontContext());
+        return result;
+    }
+
+    static BlockBox createRootBox(LayoutContext c, Document doc) {
+        BlockBox result = BoxBuilder.createRootBox(c, doc);
+        PageBox first = Layer.createPageBox(c, "first");
+        result.setContainingBlock(new ViewportBox(
+                new Rectangle(0, 0, first.getContentWidth(c), first.getContentHeight(c))));
+        return result;
+    }
+
+    private static void ensureChildren(LayoutContext c, BlockBox block) {
+        block.ensureChildren(c);
+        for (int i = 0; i < block.getChildCount(); i++) {
+            Box child = block.getChild(i);
+            if (child instanceof BlockBox) {
+                ensureChildren(c, (BlockBox)child);
+            }
+        }
+    }
+}
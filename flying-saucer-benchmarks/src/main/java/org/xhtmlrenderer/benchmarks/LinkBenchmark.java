@@ -0,0 +1,95 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import com.lowagie.text.DocumentException;
+
+/**
+ * Writing a document which starts with a table of contents linking to each
+ * of its sections, followed by the sections themselves.  Each section ends
+ * with a long external link which wraps over several lines.  Most of the
+ * time not spent on the sections goes into creating link annotations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class LinkBenchmark {
+    @Param({ "5000" })
+    public int entries;
+
+    private String document;
+    private ITextRenderer renderer;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        StringBuffer result = new StringBuffer();
+        result.append("<html><head><style>.toc a { display: block } h2 { font-size: 12pt }</style></head><body>");
+        result.append("<div class='toc'>");
+        for (int i = 0; i < entries; i++) {
+            result.append("<a href='#s").append(i).append("'>Section ").append(i).append("</a>");
+        }
+        result.append("</div>");
+        for (int i = 0; i < entries; i++) {
+            result.append("<h2 id='s").append(i).append("'>Section ").append(i).append("</h2>");
+            result.append("<p><a href='http://www.example.com/reference/").append(i).append("'>");
+            for (int j = 0; j < 4; j++) {
+                result.append("the quick brown fox jumps over the lazy dog ");
+            }
+            result.append("</a></p>");
+        }
+        result.append("</body></html>");
+        document = result.toString();
+
+        renderer = new ITextRenderer();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        renderer.setDocumentFromString(document);
+        renderer.layout();
+    }
+
+    @Benchmark
+    public byte[] createPDF() throws DocumentException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 1024);
+        renderer.createPDF(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import com.lowagie.text.DocumentException;
+
+/**
+ * Writing a long statement-like document with a static page header and a
+ * footer containing page numbers, with and without shared margin area
+ * templates (see {@link org.xhtmlrenderer.pdf.ITextOutputDevice#setMarginAreaTemplates(boolean)}).
+ * The size of the resulting PDF is printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class MarginAreaBenchmark {
+    private static final String STYLE =
+            "@page { size: A4; margin: 3cm 2cm; " +
+            "@top-left { content: 'ACME Bank Ltd.'; font-weight: bold } " +
+            "@top-center { content: 'Account statement'; border-bottom: 1px solid gray } " +
+            "@top-right { content: 'Confidential' } " +
+            "@bottom-left { content: 'Please retain this statement for your records.'; font-size: 8pt } " +
+            "@bottom-right { content: 'Page ' counter(page) ' of ' counter(pages) } } " +
+            "td { padding: 2px 4px; border-bottom: 1px solid #ccc }";
+
+    @Param({ "1000" })
+    public int pages;
+
+    @Param({ "true", "false" })
+    public boolean templates;
+
+    private String document;
+    private ITextRenderer renderer;
+    private int size;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        StringBuffer result = new StringBuffer();
+        result.append("<html><head><style>").append(STYLE).append("</style></head><body><table>");
+        // About 30 rows fit on a page
+        for (int i = 0; i < pages * 30; i++) {
+            result.append("<tr><td>2016-01-").append(i % 28 + 1).append("</td>");
+            result.append("<td>Transfer ").append(i).append("</td>");
+            result.append("<td>").append(i * 7 % 1000).append(".00</td></tr>");
+        }
+        result.append("</table></body></html>");
+        document = result.toString();
+
+        renderer = new ITextRenderer();
+        renderer.getOutputDevice().setMarginAreaTemplates(templates);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        renderer.setDocumentFromString(document);
+        renderer.layout();
+    }
+
+    @Benchmark
+    public byte[] createPDF() throws DocumentException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 1024);
+        renderer.createPDF(out);
+        byte[] result = out.toByteArray();
+        size = result.length;
+        return result;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        System.out.println("PDF size with templates=" + templates + ": " + size + " bytes");
+    }
+}
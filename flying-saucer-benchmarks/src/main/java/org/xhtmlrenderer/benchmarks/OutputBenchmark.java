@@ -0,0 +1,93 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.xhtmlrenderer.swing.Java2DRenderer;
+
+import com.lowagie.text.DocumentException;
+
+/**
+ * Output of a corpus document: writing an already laid out document with
+ * {@link ITextRenderer#createPDF(java.io.OutputStream)} and rendering it
+ * with {@link Java2DRenderer#getImage()}.  The latter always includes
+ * (screen) layout as the renderer offers no way to separate the two.  The
+ * image is limited to the first few screens of the document; a full length
+ * image of the larger documents would not fit in a default sized heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class OutputBenchmark {
+    private static final int IMAGE_WIDTH = 1024;
+    private static final int IMAGE_HEIGHT = 4096;
+
+    @Param({ Corpus.HAMLET, Corpus.TABLES, Corpus.CATALOG, Corpus.CJK })
+    public String document;
+
+    private Document doc;
+    private String url;
+    private ITextRenderer renderer;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        doc = Corpus.loadDocument(document);
+        url = Corpus.getURL(document).toExternalForm();
+        renderer = new ITextRenderer();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        renderer.setDocument(doc, url);
+        renderer.layout();
+    }
+
+    @Benchmark
+    public byte[] createPDF() throws DocumentException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 1024);
+        renderer.createPDF(out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public BufferedImage getImage() {
+        return new Java2DRenderer(doc, url, IMAGE_WIDTH, IMAGE_HEIGHT).getImage();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.css.parser.CSSErrorHandler;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xml.sax.InputSource;
+
+/**
+ * Parsing of the corpus documents ({@link XMLResource#load(InputSource)}) and
+ * stylesheets ({@link CSSParser#parseStylesheet(String, int, java.io.Reader)}).
+ * Input is read into memory up front so no I/O is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+    @Param({ Corpus.HAMLET, Corpus.TABLES, Corpus.CATALOG, Corpus.CJK })
+    public String document;
+
+    private String documentURI;
+    private byte[] documentBytes;
+
+    private String stylesheetURI;
+    private String stylesheet;
+
+    private String userAgentStylesheetURI;
+    private String userAgentStylesheet;
+
+    private final CSSErrorHandler errorHandler = new CSSErrorHandler() {
+        public void error(String uri, String message) {
+        }
+    };
+
+    @Setup
+    public void setUp() throws IOException {
+        documentURI = Corpus.getURL(document).toExternalForm();
+        documentBytes = Corpus.readBytes(document);
+
+        String name = Corpus.getStylesheet(document);
+        stylesheetURI = Corpus.getURL(name).toExternalForm();
+        stylesheet = Corpus.readString(name);
+
+        userAgentStylesheetURI = Corpus.getURL(Corpus.USER_AGENT_STYLESHEET).toExternalForm();
+        userAgentStylesheet = Corpus.readString(Corpus.USER_AGENT_STYLESHEET);
+    }
+
+    @Benchmark
+    public Document loadXML() {
+        InputSource source = new InputSource(new ByteArrayInputStream(documentBytes));
+        source.setSystemId(documentURI);
+        return XMLResource.load(source).getDocument();
+    }
+
+    @Benchmark
+    public Stylesheet parseStylesheet() throws IOException {
+        return new CSSParser(errorHandler).parseStylesheet(
+                stylesheetURI, StylesheetInfo.AUTHOR, new StringReader(stylesheet));
+    }
+
+    @Benchmark
+    public Stylesheet parseUserAgentStylesheet() throws IOException {
+        return new CSSParser(errorHandler).parseStylesheet(
+                userAgentStylesheetURI, StylesheetInfo.USER_AGENT, new StringReader(userAgentStylesheet));
+    }
+}
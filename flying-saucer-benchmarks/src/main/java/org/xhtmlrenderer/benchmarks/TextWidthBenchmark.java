@@ -0,0 +1,95 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.render.TextWidthCache;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.swing.Java2DRenderer;
+import org.xhtmlrenderer.swing.Java2DTextRenderer;
+
+/**
+ * Rendering a long table of short, repetitive cells to an image with
+ * {@link Java2DRenderer}, with and without a {@link TextWidthCache}
+ * (<code>widthCacheSize</code> of zero disables it).  The hit ratio of the
+ * cache is printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class TextWidthBenchmark {
+    @Param({ "2000" })
+    public int rows;
+
+    @Param({ "8192", "0" })
+    public int widthCacheSize;
+
+    private String document;
+    private TextWidthCache cache;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        StringBuffer result = new StringBuffer();
+        result.append("<html><head><style>td { padding: 2px; }</style></head><body><table>");
+        for (int i = 0; i < rows; i++) {
+            result.append("<tr><td>").append(i % 28 + 1).append(".01.2016</td>");
+            result.append("<td>Payment received</td><td>USD</td>");
+            result.append("<td>").append((i * 37) % 1000).append(".00</td><td>Settled</td></tr>");
+        }
+        result.append("</table></body></html>");
+        document = result.toString();
+
+        cache = new TextWidthCache(widthCacheSize, 64);
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        Document doc = XMLResource.load(new StringReader(document)).getDocument();
+        Java2DRenderer renderer = new Java2DRenderer(doc, 1024, 768);
+        ((Java2DTextRenderer) renderer.getSharedContext().getTextRenderer()).setWidthCache(cache);
+        return renderer.getImage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        System.out.println("Width cache hit ratio with widthCacheSize=" + widthCacheSize + ": " +
+                cache.getHitRatio());
+    }
+}
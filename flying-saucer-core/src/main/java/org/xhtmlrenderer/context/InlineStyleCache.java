@@ -0,0 +1,152 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.context;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.util.Configuration;
+
+/**
+ * A concurrent cache of parsed <code>style</code> (and other inline styling)
+ * attribute values, shared by all {@link StylesheetFactoryImpl}s.  Generated
+ * documents often repeat the same few inline styles on thousands of
+ * elements; with this cache each distinct value is only parsed once and all
+ * elements with it share the same {@link Ruleset}.  Lookups do not lock.
+ * <p>
+ * Cached rulesets are shared between documents and threads and must not be
+ * modified.  Parse errors are only reported the first time a value is
+ * parsed.  When the cache is full it is cleared, so a stream of unique values
+ * cannot keep frequently used values out of it for long.
+ */
+public class InlineStyleCache {
+    private static final InlineStyleCache _shared = new InlineStyleCache(
+            Configuration.valueAsInt("xr.css.inline-style-cache-size", 2048));
+
+    private final int _capacity;
+    private final ConcurrentHashMap _entries;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    /**
+     * @param capacity the maximum number of values kept.  A capacity of zero
+     * or less disables the cache.
+     */
+    public InlineStyleCache(int capacity) {
+        _capacity = capacity;
+        _entries = new ConcurrentHashMap(Math.max(16, Math.min(capacity, 1024)));
+    }
+
+    /**
+     * Returns the cache shared by all stylesheet factories.  Its size is
+     * controlled by the <code>xr.css.inline-style-cache-size</code>
+     * configuration property.
+     */
+    public static InlineStyleCache getSharedInstance() {
+        return _shared;
+    }
+
+    /**
+     * Returns the ruleset for <code>style</code> or <code>null</code> if it
+     * has not been parsed (or has been evicted).
+     *
+     * @param supportCMYKColors whether the parser creating the ruleset
+     * supports CMYK colors
+     */
+    public Ruleset get(int origin, boolean supportCMYKColors, String style) {
+        if (_capacity <= 0) {
+            return null;
+        }
+        Ruleset result = (Ruleset)_entries.get(new Key(origin, supportCMYKColors, style));
+        if (result != null) {
+            _hits.incrementAndGet();
+        } else {
+            _misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Adds the ruleset parsed from <code>style</code>.  If another thread
+     * added one in the meantime, that one is returned and should be used
+     * instead, so that equal values always share a ruleset.
+     */
+    public Ruleset put(int origin, boolean supportCMYKColors, String style, Ruleset ruleset) {
+        if (_capacity <= 0) {
+            return ruleset;
+        }
+        if (_entries.size() >= _capacity) {
+            _entries.clear();
+        }
+        Ruleset existing = (Ruleset)_entries.putIfAbsent(new Key(origin, supportCMYKColors, style), ruleset);
+        return existing != null ? existing : ruleset;
+    }
+
+    public void clear() {
+        _entries.clear();
+        _hits.set(0);
+        _misses.set(0);
+    }
+
+    public int size() {
+        return _entries.size();
+    }
+
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * Returns the fraction of lookups that were answered from the cache,
+     * or <code>0</code> if there have been no lookups yet.
+     */
+    public double getHitRatio() {
+        long hits = _hits.get();
+        long total = hits + _misses.get();
+        return total == 0 ? 0.0d : (double)hits / total;
+    }
+
+    private static final class Key {
+        private final int origin;
+        private final boolean supportCMYKColors;
+        private final String style;
+
+        Key(int origin, boolean supportCMYKColors, String style) {
+            this.origin = origin;
+            this.supportCMYKColors = supportCMYKColors;
+            this.style = style;
+        }
+
+        public int hashCode() {
+            return (style.hashCode() * 31 + origin) * 2 + (supportCMYKColors ? 1 : 0);
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)o;
+            return origin == other.origin && supportCMYKColors == other.supportCMYKColors &&
+                    style.equals(other.style);
+        }
+    }
+}
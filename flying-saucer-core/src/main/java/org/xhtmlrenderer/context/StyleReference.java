@@ -27,13 +27,16 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.extend.AttributeResolver;
 import org.xhtmlrenderer.css.extend.lib.DOMTreeResolver;
 import org.xhtmlrenderer.css.newmatch.CascadedStyle;
+import org.xhtmlrenderer.css.newmatch.DocumentFeatures;
 import org.xhtmlrenderer.css.newmatch.PageInfo;
 import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
@@ -42,6 +45,7 @@ import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.extend.UserInterface;
 import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.XRLog;
 
 
@@ -78,6 +82,13 @@ public class StyleReference {
 
     /** */
     private UserAgentCallback _uac;
+
+    /**
+     * Whether rules which cannot match the document are dropped before
+     * matching (see {@link DocumentFeatures}).
+     */
+    private boolean _pruneUnmatchedRules =
+            Configuration.isTrue("xr.css.prune-unmatched-rules", false);
     
     /**
      * Default constructor for initializing members.
@@ -104,13 +115,73 @@ public class StyleReference {
         AttributeResolver attRes = new StandardAttributeResolver(_nsh, _uac, ui);
 
         List infos = getStylesheets();
-        XRLog.match("media = " + _context.getMedia());
+        XRLog.match(Level.INFO, "media = {0}", new Object[] { _context.getMedia() });
         _matcher = new org.xhtmlrenderer.css.newmatch.Matcher(
                 new DOMTreeResolver(), 
                 attRes, 
                 _stylesheetFactory, 
                 readAndParseAll(infos, _context.getMedia()), 
-                _context.getMedia());
+                _context.getMedia(),
+                _pruneUnmatchedRules && _doc != null ? collectDocumentFeatures(_doc) : null);
+    }
+
+    public boolean isPruneUnmatchedRules() {
+        return _pruneUnmatchedRules;
+    }
+
+    /**
+     * If set, rules which require an element name, class, id or attribute
+     * which does not occur in the document are dropped when the document is
+     * set.  This makes matching much faster when only a small part of large
+     * stylesheets applies to a document, but it must not be used if the
+     * document is going to be modified afterwards.
+     */
+    public void setPruneUnmatchedRules(boolean pruneUnmatchedRules) {
+        _pruneUnmatchedRules = pruneUnmatchedRules;
+    }
+
+    private DocumentFeatures collectDocumentFeatures(Document doc) {
+        DocumentFeatures result = new DocumentFeatures();
+        Node node = doc.getDocumentElement();
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Element e = (Element)node;
+                String name = e.getLocalName();
+                result.addElementName(name != null ? name : e.getNodeName());
+
+                String classes = _nsh.getClass(e);
+                if (classes != null) {
+                    result.addClasses(classes);
+                }
+                String id = _nsh.getID(e);
+                if (id != null) {
+                    result.addID(id);
+                }
+
+                NamedNodeMap attributes = e.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Attr attr = (Attr)attributes.item(i);
+                    if (attr.getLocalName() != null) {
+                        result.addAttributeName(attr.getLocalName());
+                    }
+                    result.addAttributeName(attr.getNodeName());
+                }
+            }
+
+            // depth first, without recursion
+            Node next = node.getFirstChild();
+            while (next == null && node != null) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                    if (node == doc) {
+                        node = null;
+                    }
+                }
+            }
+            node = next;
+        }
+        return result;
     }
     
     private List readAndParseAll(List infos, String medium) {
@@ -229,6 +300,20 @@ public class StyleReference {
         _stylesheetFactory.flushCachedStylesheets();
     }
 
+    public StylesheetCache getStylesheetCache() {
+        return _stylesheetFactory.getStylesheetCache();
+    }
+
+    /**
+     * Replaces the cache of parsed stylesheets. Several style references may
+     * share one cache; stylesheets are still loaded through each reference's
+     * own user agent. Takes effect with the next call to
+     * {@link #setDocumentContext}.
+     */
+    public void setStylesheetCache(StylesheetCache cache) {
+        _stylesheetFactory.setStylesheetCache(cache);
+    }
+
     /**
      * Gets StylesheetInfos for all stylesheets and inline styles associated
      * with the current document. Default (user agent) stylesheet and the inline
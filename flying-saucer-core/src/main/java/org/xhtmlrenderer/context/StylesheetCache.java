@@ -0,0 +1,77 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.context;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+
+/**
+ * An LRU cache of parsed stylesheets keyed by URI.  Each
+ * {@link StylesheetFactoryImpl} has its own cache, but several factories may
+ * share one (see {@link StylesheetFactoryImpl#setStylesheetCache}) so that a
+ * stylesheet used by documents rendered on different threads is parsed once.
+ * Each factory still loads stylesheets through its own
+ * {@link org.xhtmlrenderer.extend.UserAgentCallback} and parser; only the
+ * results are shared.  All methods are thread-safe.
+ * <p>
+ * A cached stylesheet may be <code>null</code> if it could not be loaded.
+ */
+public class StylesheetCache {
+    private final int _capacity;
+
+    private final LinkedHashMap _cache;
+
+    public StylesheetCache(int capacity) {
+        _capacity = capacity;
+        _cache = new LinkedHashMap(capacity, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    public synchronized void put(Object key, Stylesheet sheet) {
+        _cache.put(key, sheet);
+    }
+
+    public synchronized boolean contains(Object key) {
+        return _cache.containsKey(key);
+    }
+
+    public synchronized Stylesheet get(Object key) {
+        return (Stylesheet) _cache.get(key);
+    }
+
+    public synchronized Object remove(Object key) {
+        return _cache.remove(key);
+    }
+
+    public synchronized void clear() {
+        _cache.clear();
+    }
+
+    public synchronized int size() {
+        return _cache.size();
+    }
+}
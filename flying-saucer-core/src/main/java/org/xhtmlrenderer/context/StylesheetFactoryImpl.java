@@ -34,7 +34,10 @@ import org.xhtmlrenderer.css.sheet.Stylesheet;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.resource.CSSResource;
+import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.XRLog;
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
 import org.xml.sax.InputSource;
 
 /**
@@ -50,21 +53,15 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      */
     private UserAgentCallback _userAgentCallback;
 
-    private int _cacheCapacity = 16;
-
     /**
      * an LRU cache
      */
-    private java.util.LinkedHashMap _cache =
-            new java.util.LinkedHashMap(_cacheCapacity, 0.75f, true) {
-                private static final long serialVersionUID = 1L;
-
-                protected boolean removeEldestEntry(java.util.Map.Entry eldest) {
-                    return size() > _cacheCapacity;
-                }
-            };
+    private volatile StylesheetCache _cache = new StylesheetCache(16);
     private CSSParser _cssParser;
 
+    private InlineStyleCache _inlineStyleCache = InlineStyleCache.getSharedInstance();
+    private volatile boolean _supportCMYKColors;
+
     public StylesheetFactoryImpl(UserAgentCallback userAgentCallback) {
         _userAgentCallback = userAgentCallback;
         _cssParser = new CSSParser(new CSSErrorHandler() {
@@ -72,11 +69,43 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
                 XRLog.cssParse(Level.WARNING, "(" + uri + ") " + message);
             }
         });
+        _cssParser.setDeferDeclarations(
+                Configuration.isTrue("xr.css.defer-declarations", false));
     }
 
     public synchronized Stylesheet parse(Reader reader, StylesheetInfo info) {
+        return parse(reader, info, false);
+    }
+
+    /**
+     * @param buffered whether to read all of <code>reader</code> up front and
+     * let the parser scan it in place
+     */
+    private synchronized Stylesheet parse(Reader reader, StylesheetInfo info, boolean buffered) {
+        XRTraceEvent event = XRTrace.begin(XRTrace.STYLESHEET_PARSE);
         try {
-            return _cssParser.parseStylesheet(info.getUri(), info.getOrigin(), reader);
+            Stylesheet result;
+            if (buffered) {
+                char[] buffer = new char[8192];
+                int length = 0;
+                int count;
+                while ((count = reader.read(buffer, length, buffer.length - length)) != -1) {
+                    length += count;
+                    if (length == buffer.length) {
+                        char[] larger = new char[buffer.length * 2];
+                        System.arraycopy(buffer, 0, larger, 0, length);
+                        buffer = larger;
+                    }
+                }
+                result = _cssParser.parseStylesheet(
+                        info.getUri(), info.getOrigin(), buffer, 0, length);
+            } else {
+                result = _cssParser.parseStylesheet(info.getUri(), info.getOrigin(), reader);
+            }
+            if (event != null) {
+                event.end(info.getUri(), -1, result.getContents().size());
+            }
+            return result;
         } catch (IOException e) {
             XRLog.cssParse(Level.WARNING, "Couldn't parse stylesheet at URI " + info.getUri() + ": " + e.getMessage(), e);
             e.printStackTrace();
@@ -97,7 +126,7 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
         InputStream is = inputSource.getByteStream();
         if (is==null) return null;
         try {
-            return parse(new InputStreamReader(is, "UTF-8"), info);
+            return parse(new InputStreamReader(is, "UTF-8"), info, true);
         } catch (UnsupportedEncodingException e) {
             // Shouldn't happen
             throw new RuntimeException(e.getMessage(), e);
@@ -112,8 +141,24 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
         }
     }
 
-    public synchronized Ruleset parseStyleDeclaration(int origin, String styleDeclaration) {
-        return _cssParser.parseDeclaration(origin, styleDeclaration);
+    /**
+     * Parses an inline style.  Identical values are only parsed once (see
+     * {@link InlineStyleCache}) and the returned ruleset must not be modified.
+     */
+    public Ruleset parseStyleDeclaration(int origin, String styleDeclaration) {
+        boolean supportCMYKColors = _supportCMYKColors;
+        Ruleset result = _inlineStyleCache.get(origin, supportCMYKColors, styleDeclaration);
+        if (result == null) {
+            synchronized (this) {
+                result = _cssParser.parseDeclaration(origin, styleDeclaration);
+            }
+            result = _inlineStyleCache.put(origin, supportCMYKColors, styleDeclaration, result);
+        }
+        return result;
+    }
+
+    public void setInlineStyleCache(InlineStyleCache inlineStyleCache) {
+        _inlineStyleCache = inlineStyleCache;
     }
 
     /**
@@ -124,7 +169,7 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      *              factory.
      * @param sheet The sheet to cache.
      */
-    public synchronized void putStylesheet(Object key, Stylesheet sheet) {
+    public void putStylesheet(Object key, Stylesheet sheet) {
         _cache.put(key, sheet);
     }
 
@@ -134,8 +179,8 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      *         Note that the Stylesheet may be null.
      */
     //TODO: work out how to handle caching properly, with cache invalidation
-    public synchronized boolean containsStylesheet(Object key) {
-        return _cache.containsKey(key);
+    public boolean containsStylesheet(Object key) {
+        return _cache.contains(key);
     }
 
     /**
@@ -145,8 +190,8 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      *            putStylesheet();
      * @return The stylesheet
      */
-    public synchronized Stylesheet getCachedStylesheet(Object key) {
-        return (Stylesheet) _cache.get(key);
+    public Stylesheet getCachedStylesheet(Object key) {
+        return _cache.get(key);
     }
 
     /**
@@ -155,14 +200,27 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      * @param key The key for this sheet; same as key passed to
      *            putStylesheet();
      */
-    public synchronized Object removeCachedStylesheet(Object key) {
+    public Object removeCachedStylesheet(Object key) {
         return _cache.remove(key);
     }
     
-    public synchronized void flushCachedStylesheets() {
+    public void flushCachedStylesheets() {
         _cache.clear();
     }
 
+    public StylesheetCache getStylesheetCache() {
+        return _cache;
+    }
+
+    /**
+     * Replaces the cache of parsed stylesheets.  Factories sharing a cache
+     * still load and parse stylesheets themselves, through their own user
+     * agent.
+     */
+    public void setStylesheetCache(StylesheetCache cache) {
+        _cache = cache;
+    }
+
     /**
      * Returns a cached sheet by its key; loads and caches it if not in cache;
      * null if not able to load
@@ -186,7 +244,8 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
         _userAgentCallback = userAgent;
     }
     
-    public void setSupportCMYKColors(boolean b) {
+    public synchronized void setSupportCMYKColors(boolean b) {
         _cssParser.setSupportCMYKColors(b);
+        _supportCMYKColors = b;
     }
 }
@@ -38,6 +38,14 @@ abstract class Condition {
 
     abstract boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes);
 
+    /**
+     * Returns <code>false</code> if no element of a document with the given
+     * features can match this condition.
+     */
+    boolean canMatch(DocumentFeatures features) {
+        return true;
+    }
+
     /**
      * the CSS condition [attribute]
      *
@@ -216,6 +224,10 @@ abstract class Condition {
             
             return compare(val, _value);
         }
+
+        boolean canMatch(DocumentFeatures features) {
+            return features.hasAttributeName(_name);
+        }
     }
 
     private static class AttributeExistsCondition extends AttributeCompareCondition {
@@ -301,12 +313,18 @@ abstract class Condition {
 
     private static class ClassCondition extends Condition {
 
+        private String _className;
         private String _paddedClassName;
 
         ClassCondition(String className) {
+            _className = className;
             _paddedClassName = " " + className + " ";
         }
 
+        boolean canMatch(DocumentFeatures features) {
+            return features.hasClass(_className);
+        }
+
         boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
                 return false;
@@ -332,6 +350,10 @@ abstract class Condition {
             _id = id;
         }
 
+        boolean canMatch(DocumentFeatures features) {
+            return features.hasID(_id);
+        }
+
         boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
                 return false;
@@ -0,0 +1,84 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.newmatch;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The element names, classes, ids and attribute names which occur in a
+ * document.  If one is passed to a {@link Matcher}, selectors which require
+ * a name, class, id or attribute the document does not contain (anywhere in
+ * the selector, not only in its rightmost compound selector) are dropped
+ * before matching starts.  The document must not gain new names, classes,
+ * ids or attributes while the matcher is in use.
+ */
+public class DocumentFeatures {
+    private final Set _elementNames = new HashSet();
+    private final Set _classes = new HashSet();
+    private final Set _ids = new HashSet();
+    private final Set _attributeNames = new HashSet();
+
+    public void addElementName(String name) {
+        _elementNames.add(name);
+    }
+
+    /**
+     * Adds the classes of a (whitespace separated) class attribute value.
+     */
+    public void addClasses(String classes) {
+        int start = -1;
+        for (int i = 0; i <= classes.length(); i++) {
+            boolean separator = i == classes.length() || Character.isWhitespace(classes.charAt(i));
+            if (separator) {
+                if (start != -1) {
+                    _classes.add(classes.substring(start, i));
+                    start = -1;
+                }
+            } else if (start == -1) {
+                start = i;
+            }
+        }
+    }
+
+    public void addID(String id) {
+        _ids.add(id);
+    }
+
+    public void addAttributeName(String name) {
+        _attributeNames.add(name);
+    }
+
+    public boolean hasElementName(String name) {
+        return _elementNames.contains(name);
+    }
+
+    public boolean hasClass(String className) {
+        return _classes.contains(className);
+    }
+
+    public boolean hasID(String id) {
+        return _ids.contains(id);
+    }
+
+    public boolean hasAttributeName(String name) {
+        return _attributeNames.contains(name);
+    }
+}
@@ -30,15 +30,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.logging.Level;
 
 import org.xhtmlrenderer.css.extend.AttributeResolver;
 import org.xhtmlrenderer.css.extend.StylesheetFactory;
 import org.xhtmlrenderer.css.extend.TreeResolver;
-import org.xhtmlrenderer.css.sheet.MediaRule;
 import org.xhtmlrenderer.css.sheet.PageRule;
 import org.xhtmlrenderer.css.sheet.Ruleset;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
 import org.xhtmlrenderer.util.XRLog;
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
 import org.xhtmlrenderer.util.Util;
 
 
@@ -62,9 +64,22 @@ public class Matcher {
     
     private List _pageRules;
     private List _fontFaceRules;
+
+    // page name -> pseudo page -> PageInfo
+    private final Map _pageInfoCache = new HashMap();
     
     public Matcher(
             TreeResolver tr, AttributeResolver ar, StylesheetFactory factory, List stylesheets, String medium) {
+        this(tr, ar, factory, stylesheets, medium, null);
+    }
+
+    /**
+     * @param features if not <code>null</code>, selectors which cannot match
+     * any element of a document with these features are ignored
+     */
+    public Matcher(
+            TreeResolver tr, AttributeResolver ar, StylesheetFactory factory, List stylesheets, String medium,
+            DocumentFeatures features) {
         newMaps();
         _treeRes = tr;
         _attRes = ar;
@@ -72,7 +87,7 @@ public class Matcher {
         
         _pageRules = new ArrayList();
         _fontFaceRules = new ArrayList();
-        docMapper = createDocumentMapper(stylesheets, medium);
+        docMapper = createDocumentMapper(stylesheets, medium, features);
     }
     
     public void removeStyle(Object e) {
@@ -81,13 +96,18 @@ public class Matcher {
 
     public CascadedStyle getCascadedStyle(Object e, boolean restyle) {
         synchronized (e) {
+            XRTraceEvent event = XRTrace.begin(XRTrace.CASCADE);
             Mapper em;
             if (!restyle) {
                 em = getMapper(e);
             } else {
                 em = matchElement(e);
             }
-            return em.getCascadedStyle(e);
+            CascadedStyle result = em.getCascadedStyle(e);
+            if (event != null) {
+                event.end(null, -1, em.mappedSelectors == null ? 0 : em.mappedSelectors.size());
+            }
+            return result;
         }
     }
 
@@ -102,7 +122,28 @@ public class Matcher {
         }
     }
     
+    /**
+     * Returns the page master for the given page name and pseudo page.  The
+     * result is cached, so every page with the same name and pseudo page
+     * shares the same <code>PageInfo</code>.
+     */
     public PageInfo getPageCascadedStyle(String pageName, String pseudoPage) {
+        synchronized (_pageInfoCache) {
+            Map byPseudoPage = (Map)_pageInfoCache.get(pageName);
+            if (byPseudoPage == null) {
+                byPseudoPage = new HashMap();
+                _pageInfoCache.put(pageName, byPseudoPage);
+            }
+            PageInfo result = (PageInfo)byPseudoPage.get(pseudoPage);
+            if (result == null) {
+                result = createPageInfo(pageName, pseudoPage);
+                byPseudoPage.put(pseudoPage, result);
+            }
+            return result;
+        }
+    }
+
+    private PageInfo createPageInfo(String pageName, String pseudoPage) {
         List props = new ArrayList();
         Map marginBoxes = new HashMap();
 
@@ -160,40 +201,45 @@ public class Matcher {
     }
 
     Mapper createDocumentMapper(List stylesheets, String medium) {
+        return createDocumentMapper(stylesheets, medium, null);
+    }
+
+    Mapper createDocumentMapper(List stylesheets, String medium, DocumentFeatures features) {
         java.util.TreeMap sorter = new java.util.TreeMap();
-        addAllStylesheets(stylesheets, sorter, medium);
-        XRLog.match("Matcher created with " + sorter.size() + " selectors");
+        int pruned = addAllStylesheets(stylesheets, sorter, medium, features);
+        if (XRLog.isLoggable(XRLog.MATCH, Level.INFO)) {
+            XRLog.match("Matcher created with " + sorter.size() + " selectors" +
+                    (features != null ? " (" + pruned + " cannot match the document)" : ""));
+        }
         return new Mapper(sorter.values());
     }
     
-    private void addAllStylesheets(List stylesheets, TreeMap sorter, String medium) {
+    private int addAllStylesheets(List stylesheets, TreeMap sorter, String medium, DocumentFeatures features) {
         int count = 0;
         int pCount = 0;
+        int pruned = 0;
         for (Iterator i = stylesheets.iterator(); i.hasNext(); ) {
             Stylesheet stylesheet = (Stylesheet)i.next();
-            for (Iterator j = stylesheet.getContents().iterator(); j.hasNext(); ) {
-                Object obj = (Object)j.next();
-                if (obj instanceof Ruleset) {
-                    for (Iterator k = ((Ruleset)obj).getFSSelectors().iterator(); k.hasNext(); ) {
-                        Selector selector = (Selector)k.next();
-                        selector.setPos(++count);
+            for (Iterator j = stylesheet.getRulesets(medium).iterator(); j.hasNext(); ) {
+                Ruleset ruleset = (Ruleset)j.next();
+                for (Iterator k = ruleset.getFSSelectors().iterator(); k.hasNext(); ) {
+                    Selector selector = (Selector)k.next();
+                    // Selectors are shared by all matchers using the
+                    // stylesheet so number them the same way even if some
+                    // are dropped
+                    selector.setPos(++count);
+                    if (features == null || selector.canMatch(features)) {
                         sorter.put(selector.getOrder(), selector);
+                    } else {
+                        pruned++;
                     }
-                } else if (obj instanceof PageRule) {
+                }
+            }
+            for (Iterator j = stylesheet.getContents().iterator(); j.hasNext(); ) {
+                Object obj = j.next();
+                if (obj instanceof PageRule) {
                     ((PageRule)obj).setPos(++pCount);
                     _pageRules.add(obj);
-                } else if (obj instanceof MediaRule) {
-                    MediaRule mediaRule = (MediaRule)obj;
-                    if (mediaRule.matches(medium)) {
-                        for (Iterator k = mediaRule.getContents().iterator(); k.hasNext(); ) {
-                            Ruleset ruleset = (Ruleset)k.next();
-                            for (Iterator l = ruleset.getFSSelectors().iterator(); l.hasNext(); ) {
-                                Selector selector = (Selector)l.next();
-                                selector.setPos(++count);
-                                sorter.put(selector.getOrder(), selector);
-                            }
-                        }
-                    }
                 }
             }
             
@@ -214,6 +260,8 @@ public class Matcher {
                 }
             }
         });
+
+        return pruned;
     }
 
     private void link(Object e, Mapper m) {
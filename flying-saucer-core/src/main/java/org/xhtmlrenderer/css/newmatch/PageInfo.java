@@ -20,15 +20,19 @@
 package org.xhtmlrenderer.css.newmatch;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.constants.IdentValue;
 import org.xhtmlrenderer.css.constants.MarginBoxName;
+import org.xhtmlrenderer.css.parser.FSFunction;
 import org.xhtmlrenderer.css.parser.PropertyValue;
 import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.EmptyStyle;
 
 public class PageInfo {
     private final List _properties;
@@ -36,6 +40,8 @@ public class PageInfo {
     private final Map _marginBoxes;
     
     private final List _xmpPropertyList;
+
+    private CalculatedStyle _calculatedPageStyle;
     
     public PageInfo(List properties, CascadedStyle pageStyle, Map marginBoxes) {
         _properties = properties;
@@ -52,6 +58,17 @@ public class PageInfo {
     public CascadedStyle getPageStyle() {
         return _pageStyle;
     }
+
+    /**
+     * Returns the page style derived from an {@link EmptyStyle}, which is
+     * shared by all pages (and margin areas) using this page master.
+     */
+    public synchronized CalculatedStyle getCalculatedPageStyle() {
+        if (_calculatedPageStyle == null) {
+            _calculatedPageStyle = new EmptyStyle().deriveStyle(_pageStyle);
+        }
+        return _calculatedPageStyle;
+    }
     
     public List getProperties() {
         return _properties;
@@ -98,6 +115,61 @@ public class PageInfo {
         return false;
     }
     
+    /**
+     * Returns whether the content of the given margin boxes is the same on
+     * every page using this page master.  This is not the case for margin
+     * boxes containing running elements (<code>element()</code>) or any
+     * content function other than <code>counter(page)</code> and
+     * <code>counter(pages)</code>.  Those two are laid out with placeholder
+     * text and only updated when painted (see
+     * {@link org.xhtmlrenderer.render.InlineText#updateDynamicValue(org.xhtmlrenderer.render.RenderingContext)}).
+     */
+    public boolean isPageIndependent(MarginBoxName[] marginBoxes) {
+        for (int i = 0; i < marginBoxes.length; i++) {
+            List marginProps = (List)_marginBoxes.get(marginBoxes[i]);
+            if (marginProps == null) {
+                continue;
+            }
+            for (Iterator j = marginProps.iterator(); j.hasNext(); ) {
+                PropertyDeclaration decl = (PropertyDeclaration)j.next();
+                if (decl.getCSSName() == CSSName.CONTENT &&
+                        ! isPageIndependentContent((PropertyValue)decl.getValue())) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isPageIndependentContent(PropertyValue value) {
+        if (value.getPropertyValueType() == PropertyValue.VALUE_TYPE_FUNCTION) {
+            return isPageCounter(value.getFunction());
+        } else if (value.getPropertyValueType() != PropertyValue.VALUE_TYPE_LIST) {
+            return true;
+        }
+
+        for (Iterator i = value.getValues().iterator(); i.hasNext(); ) {
+            if (! isPageIndependentContent((PropertyValue)i.next())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isPageCounter(FSFunction function) {
+        if (! function.getName().equals("counter")) {
+            return false;
+        }
+        List params = function.getParameters();
+        if (params.size() < 1 || params.size() > 2) {
+            return false;
+        }
+        String name = ((PropertyValue)params.get(0)).getStringValue();
+        return "page".equals(name) || "pages".equals(name);
+    }
+
     public List getXMPPropertyList()
     {
         return _xmpPropertyList;
@@ -101,6 +101,29 @@ public class Selector {
         return false;
     }
 
+    /**
+     * Returns <code>false</code> if this selector cannot match any element of
+     * a document with the given features (because some part of it requires
+     * an element name, class, id or attribute which does not occur in the
+     * document).
+     */
+    boolean canMatch(DocumentFeatures features) {
+        if (_name != null && ! features.hasElementName(_name)) {
+            return false;
+        }
+        if (conditions != null) {
+            for (int i = 0; i < conditions.size(); i++) {
+                if (! ((Condition) conditions.get(i)).canMatch(features)) {
+                    return false;
+                }
+            }
+        }
+        if (siblingSelector != null && ! siblingSelector.canMatch(features)) {
+            return false;
+        }
+        return chainedSelector == null || chainedSelector.canMatch(features);
+    }
+
     /**
      * Check if the given Element matches this selector's dynamic properties.
      * Note: the parser should give all class
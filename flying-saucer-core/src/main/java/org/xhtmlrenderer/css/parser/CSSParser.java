@@ -26,6 +26,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -74,6 +78,14 @@ public class CSSParser {
 
     private Map _namespaces = new HashMap();
     private boolean _supportCMYKColors;
+    private boolean _deferDeclarations;
+
+    // The input when parsing directly from a buffer, null otherwise
+    private char[] _buffer;
+
+    private static final char[] NO_INPUT = new char[0];
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     public CSSParser(CSSErrorHandler errorHandler) {
         _lexer = new Lexer(new StringReader(""));
@@ -91,6 +103,61 @@ public class CSSParser {
         return result;
     }
 
+    /**
+     * Parses the <code>length</code> characters starting at
+     * <code>offset</code> in <code>buffer</code>.  Tokens are scanned in
+     * place, so strings are only created for the names and values which end
+     * up in the stylesheet.  The returned stylesheet doesn't refer to
+     * <code>buffer</code>.
+     */
+    public Stylesheet parseStylesheet(
+            String uri, int origin, char[] buffer, int offset, int length)
+            throws IOException {
+        _URI = uri;
+        reset(buffer, offset, length);
+        try {
+            Stylesheet result = new Stylesheet(uri, origin);
+            stylesheet(result);
+
+            return result;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Parses the remaining characters of <code>buffer</code>, in place if it
+     * is backed by an array.  The position of <code>buffer</code> is not
+     * changed.
+     */
+    public Stylesheet parseStylesheet(String uri, int origin, CharBuffer buffer)
+            throws IOException {
+        if (buffer.hasArray()) {
+            return parseStylesheet(uri, origin, buffer.array(),
+                    buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            char[] copy = new char[buffer.remaining()];
+            buffer.duplicate().get(copy);
+            return parseStylesheet(uri, origin, copy, 0, copy.length);
+        }
+    }
+
+    /**
+     * Parses a UTF-8 encoded stylesheet, e.g. a file mapped with
+     * {@link java.nio.channels.FileChannel#map}.  The bytes are decoded in
+     * one pass and the result is parsed in place.  Malformed input is
+     * replaced, as when reading through an <code>InputStreamReader</code>.
+     * The position of <code>utf8</code> is not changed.
+     */
+    public Stylesheet parseUTF8Stylesheet(String uri, int origin, ByteBuffer utf8)
+            throws IOException {
+        CharBuffer chars = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(utf8.duplicate());
+        return parseStylesheet(uri, origin, chars);
+    }
+
     public Ruleset parseDeclaration(int origin, String text) {
         try {
             // XXX Set this to something more reasonable
@@ -114,6 +181,36 @@ public class CSSParser {
         }
     }
 
+    /**
+     * Parses a declaration block recorded by {@link #deferred_declaration_list(Ruleset)}.
+     * <code>line</code> is the line the block started on in <code>uri</code>.
+     */
+    List parseDeclarationBlock(
+            String uri, int origin, char[] buffer, int offset, int length, int line) {
+        try {
+            _URI = uri;
+            reset(buffer, offset, length);
+            _lexer.setyyline(line);
+
+            skip_whitespace();
+
+            Ruleset result = new Ruleset(origin);
+
+            try {
+                declaration_list(result, false, false, false);
+            } catch (CSSParseException e) {
+                // ignore, already handled
+            }
+
+            return result.getPropertyDeclarations();
+        } catch (IOException e) {
+            // "Shouldn't" happen
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            release();
+        }
+    }
+
     public PropertyValue parsePropertyValue(CSSName cssName, int origin, String expr) {
         _URI = cssName + " property value";
         try {
@@ -777,14 +874,19 @@ public class CSSParser {
             }
             t = next();
             if (t == Token.TK_LBRACE) {
-                skip_whitespace();
-                declaration_list(ruleset, false, false, false);
-                t = next();
-                if (t == Token.TK_RBRACE) {
+                if (_deferDeclarations) {
+                    deferred_declaration_list(ruleset);
                     skip_whitespace();
                 } else {
-                    push(t);
-                    throw new CSSParseException(t, Token.TK_RBRACE, getCurrentLine());
+                    skip_whitespace();
+                    declaration_list(ruleset, false, false, false);
+                    t = next();
+                    if (t == Token.TK_RBRACE) {
+                        skip_whitespace();
+                    } else {
+                        push(t);
+                        throw new CSSParseException(t, Token.TK_RBRACE, getCurrentLine());
+                    }
                 }
             } else {
                 push(t);
@@ -792,7 +894,7 @@ public class CSSParser {
                         t, new Token[] { Token.TK_COMMA, Token.TK_LBRACE }, getCurrentLine());
             }
 
-            if (ruleset.getPropertyDeclarations().size() > 0) {
+            if (ruleset.isDeferred() || ruleset.getPropertyDeclarations().size() > 0) {
                 container.addContent(ruleset);
             }
         } catch (CSSParseException e) {
@@ -801,6 +903,91 @@ public class CSSParser {
         }
     }
 
+//  Records the tokens of a declaration block, up to and including the closing
+//  brace, without parsing the declarations.  The lexer does not return
+//  comments so line breaks in them are replaced to keep line numbers intact.
+    private void deferred_declaration_list(Ruleset ruleset) throws IOException {
+        // When parsing from a buffer the block is simply the span following
+        // the opening brace (the last token scanned)
+        int offset = _lexer.yyend();
+        StringBuffer text = _buffer == null ? new StringBuffer() : null;
+        int startLine = getCurrentLine();
+        int line = startLine;
+        int braces = 0;
+        boolean empty = true;
+        while (true) {
+            Token t = next();
+            if (t == Token.TK_EOF) {
+                push(t);
+                throw new CSSParseException(t, Token.TK_RBRACE, getCurrentLine());
+            }
+
+            if (text != null) {
+                for (int current = getCurrentLine(); line < current; line++) {
+                    text.append('\n');
+                }
+                String raw = getRawTokenValue();
+                text.append(raw);
+                line += countLineTerminators(raw);
+            }
+
+            if (t == Token.TK_LBRACE) {
+                braces++;
+            } else if (t == Token.TK_RBRACE) {
+                if (braces == 0) {
+                    break;
+                }
+                braces--;
+            }
+            if (! (t == Token.TK_S || t == Token.TK_SEMICOLON)) {
+                empty = false;
+            }
+        }
+
+        if (! empty) {
+            char[] buffer;
+            int length;
+            if (text == null) {
+                // Copy the span so that the block doesn't keep the whole
+                // stylesheet alive
+                length = _lexer.yyend() - offset;
+                buffer = new char[length];
+                System.arraycopy(_buffer, offset, buffer, 0, length);
+                offset = 0;
+            } else {
+                buffer = new char[text.length()];
+                text.getChars(0, buffer.length, buffer, 0);
+                offset = 0;
+                length = buffer.length;
+            }
+            ruleset.setDeferredDeclarations(new DeclarationBlock(
+                    _URI, buffer, offset, length, startLine,
+                    _errorHandler, _supportCMYKColors));
+        }
+    }
+
+    private static int countLineTerminators(String s) {
+        int result = 0;
+        for (int i = 0; i < s.length(); i++) {
+            switch (s.charAt(i)) {
+                case '\r':
+                    if (i + 1 < s.length() && s.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    // fall through
+                case '\n':
+                case '\u000B':
+                case '\u000C':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    result++;
+                    break;
+            }
+        }
+        return result;
+    }
+
 //  selector
 //    : simple_selector [ combinator simple_selector ]*
 //    ;
@@ -1894,10 +2081,29 @@ public class CSSParser {
     public void reset(Reader r) {
         _saved = null;
         _namespaces.clear();
-        _lexer.yyreset(r);
+        _buffer = null;
+        _lexer.setInput(r);
         _lexer.setyyline(0);
     }
 
+    private void reset(char[] buffer, int offset, int length) {
+        _saved = null;
+        _namespaces.clear();
+        _buffer = buffer;
+        _lexer.setInput(buffer, offset, length);
+        _lexer.setyyline(0);
+    }
+
+    /**
+     * Drops any reference to a buffer passed to {@link #reset(char[], int, int)}.
+     */
+    private void release() {
+        if (_buffer != null) {
+            reset(NO_INPUT, 0, 0);
+            _buffer = null;
+        }
+    }
+
     public CSSErrorHandler getErrorHandler() {
         return _errorHandler;
     }
@@ -1915,18 +2121,18 @@ public class CSSParser {
     }
 
     private String getTokenValue(Token t, boolean literal) {
-        int start;
-        int count;
+        // Work directly on the lexer's buffer instead of copying the token
+        // text first
+        char[] ch = _lexer.yybuffer();
+        int start = _lexer.yystart();
+        int end = _lexer.yyend();
         switch (t.getType()) {
             case Token.STRING:
-                count = _lexer.yylength();
-                return processEscapes(_lexer.yytext().toCharArray(), 1, count-1);
+                return processEscapes(ch, start+1, end-1);
             case Token.HASH:
-                count = _lexer.yylength();
-                return processEscapes(_lexer.yytext().toCharArray(), 1, count);
+                return processEscapes(ch, start+1, end);
             case Token.URI:
-                char[] ch = _lexer.yytext().toCharArray();
-                start = 4;
+                start += 4;
                 while (ch[start] == '\t' || ch[start] == '\r' ||
                         ch[start] == '\n' || ch[start] == '\f') {
                     start++;
@@ -1934,7 +2140,7 @@ public class CSSParser {
                 if (ch[start] == '\'' || ch[start] == '"') {
                     start++;
                 }
-                int end = ch.length-2;
+                end -= 2;
                 while (ch[end] == '\t' || ch[end] == '\r' ||
                         ch[end] == '\n' || ch[end] == '\f') {
                     end--;
@@ -1957,12 +2163,10 @@ public class CSSParser {
             case Token.AT_RULE:
             case Token.IDENT:
             case Token.FUNCTION:
-                start = 0;
-                count = _lexer.yylength();
                 if (t.getType() == Token.AT_RULE) {
                     start++;
                 }
-                String result = processEscapes(_lexer.yytext().toCharArray(), start, count);
+                String result = processEscapes(ch, start, end);
                 if (! literal) {
                     result = result.toLowerCase();
                 }
@@ -1989,7 +2193,15 @@ public class CSSParser {
     }
 
     private static String processEscapes(char[] ch, int start, int end) {
-        StringBuffer result = new StringBuffer(ch.length + 10);
+        int escape = start;
+        while (escape < end && ch[escape] != '\\') {
+            escape++;
+        }
+        if (escape == end) {
+            return new String(ch, start, end - start);
+        }
+
+        StringBuffer result = new StringBuffer(end - start + 10);
 
         for (int i = start; i < end; i++) {
             char c = ch[i];
@@ -2045,6 +2257,20 @@ public class CSSParser {
         _supportCMYKColors = b;
     }
 
+    public boolean isDeferDeclarations() {
+        return _deferDeclarations;
+    }
+
+    /**
+     * If set, the declarations of rulesets in stylesheets are not parsed
+     * until they are first used (typically when the ruleset matches an
+     * element).  This saves a lot of time and memory for large stylesheets
+     * of which only a few rules apply to any document.
+     */
+    public void setDeferDeclarations(boolean deferDeclarations) {
+        _deferDeclarations = deferDeclarations;
+    }
+
     private static class NamespacePair {
         private final String _namespaceURI;
         private final String _name;
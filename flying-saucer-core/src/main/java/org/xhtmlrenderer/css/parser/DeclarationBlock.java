@@ -0,0 +1,80 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.parser;
+
+import java.util.List;
+
+/**
+ * The unparsed text of a ruleset's declaration block, recorded by a
+ * {@link CSSParser} with {@link CSSParser#setDeferDeclarations(boolean)
+ * deferred declarations} enabled.  The text is only turned into
+ * {@link org.xhtmlrenderer.css.sheet.PropertyDeclaration}s when it is
+ * compiled, which {@link org.xhtmlrenderer.css.sheet.Ruleset} does the first
+ * time its declarations are needed.  Errors in the declarations are reported
+ * at that time, to the error handler and with the URI and line numbers of the
+ * original stylesheet.
+ * <p>
+ * Each block holds a copy of just its own text, which the ruleset drops once
+ * the block is compiled.
+ */
+public class DeclarationBlock {
+    private final String _uri;
+    private final char[] _buffer;
+    private final int _offset;
+    private final int _length;
+    private final int _line;
+    private final CSSErrorHandler _errorHandler;
+    private final boolean _supportCMYKColors;
+
+    DeclarationBlock(
+            String uri, char[] buffer, int offset, int length, int line,
+            CSSErrorHandler errorHandler, boolean supportCMYKColors) {
+        _uri = uri;
+        _buffer = buffer;
+        _offset = offset;
+        _length = length;
+        _line = line;
+        _errorHandler = errorHandler;
+        _supportCMYKColors = supportCMYKColors;
+    }
+
+    /**
+     * Parses the declarations.
+     *
+     * @return a list of <code>PropertyDeclaration</code>s
+     */
+    public List compile(int origin) {
+        // A parser which only scans a buffer is cheap to create (see
+        // Lexer.setInput(Reader)), and one per call can be used from any
+        // number of threads at once
+        CSSParser compiler = new CSSParser(_errorHandler);
+        compiler.setSupportCMYKColors(_supportCMYKColors);
+        return compiler.parseDeclarationBlock(
+                _uri, origin, _buffer, _offset, _length, _line);
+    }
+
+    /**
+     * Returns the text of the block, from just after the opening brace up to
+     * and including the closing brace.
+     */
+    public String getText() {
+        return new String(_buffer, _offset, _length);
+    }
+}
@@ -34,7 +34,7 @@ class Lexer {
   public static final int YYEOF = -1;
 
   /** initial size of the lookahead buffer */
-  private static final int ZZ_BUFFERSIZE = 16384;
+  private static final int ZZ_BUFFERSIZE = 16;
 
   /** lexical states */
   public static final int YYINITIAL = 0;
@@ -1558,6 +1558,74 @@ class Lexer {
     public void setyyline(int i) {
     	this.yyline = i;
 	}
+    
+    // The initial buffer (see %buffer) is tiny so that scanners which only
+    // read from char arrays are cheap to create.  The buffer used for
+    // readers is allocated on first use.
+    private static final int READER_BUFFER_SIZE = 16384;
+
+    private char[] readerBuffer;
+    
+    /**
+     * Resets the scanner to read from <code>reader</code>.  Unlike
+     * <code>yyreset(Reader)</code> this also stops the scanner using a buffer
+     * passed to {@link #setInput(char[], int, int)}.
+     */
+    public void setInput(java.io.Reader reader) {
+        if (readerBuffer != null) {
+            zzBuffer = readerBuffer;
+            readerBuffer = null;
+        }
+        if (zzBuffer.length < READER_BUFFER_SIZE) {
+            zzBuffer = new char[READER_BUFFER_SIZE];
+        }
+        yyreset(reader);
+    }
+    
+    /**
+     * Resets the scanner to read the <code>length</code> characters starting
+     * at <code>offset</code> in <code>buffer</code>.  The characters are not
+     * copied; token offsets returned by {@link #yystart()} and
+     * {@link #yyend()} are offsets into <code>buffer</code>, which must not
+     * be modified while it is being scanned.
+     */
+    public void setInput(char[] buffer, int offset, int length) {
+        if (readerBuffer == null) {
+            readerBuffer = zzBuffer;
+        }
+        yyreset((java.io.Reader)null);
+        zzBuffer = buffer;
+        zzStartRead = zzCurrentPos = zzMarkedPos = zzPushbackPos = offset;
+        zzEndRead = offset + length;
+        // The whole input is already in the buffer so it must never be
+        // refilled (which would also shift its contents)
+        zzAtEOF = true;
+    }
+    
+    /**
+     * Returns the buffer the current token is in.  Unless the scanner is
+     * reading from a buffer passed to {@link #setInput(char[], int, int)},
+     * its contents are only valid until the next call to {@link #yylex()}.
+     */
+    public char[] yybuffer() {
+        return zzBuffer;
+    }
+    
+    /**
+     * Returns the offset of the first character of the current token in
+     * {@link #yybuffer()}.
+     */
+    public int yystart() {
+        return zzStartRead;
+    }
+    
+    /**
+     * Returns the offset just past the last character of the current token
+     * in {@link #yybuffer()}.
+     */
+    public int yyend() {
+        return zzMarkedPos;
+    }
 
 
   /**
@@ -25,6 +25,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.xhtmlrenderer.css.newmatch.Selector;
+import org.xhtmlrenderer.css.parser.DeclarationBlock;
 
 
 /**
@@ -35,6 +36,9 @@ public class Ruleset {
     private int _origin;
     private java.util.List _props;
 
+    // Declarations which have not been parsed yet (see CSSParser.setDeferDeclarations())
+    private volatile DeclarationBlock _deferredDeclarations;
+
     private List _fsSelectors = new ArrayList();
 
     public Ruleset(int orig) {
@@ -50,16 +54,49 @@ public class Ruleset {
      * @return The propertyDeclarations value
      */
     public List getPropertyDeclarations() {
+        if (_deferredDeclarations != null) {
+            compileDeferredDeclarations();
+        }
         return Collections.unmodifiableList(_props);
     }
 
     public void addProperty(PropertyDeclaration decl) {
+        if (_deferredDeclarations != null) {
+            compileDeferredDeclarations();
+        }
         _props.add(decl);
     }
     
     public void addAllProperties(List props) {
+        if (_deferredDeclarations != null) {
+            compileDeferredDeclarations();
+        }
         _props.addAll(props);
     }
+
+    /**
+     * Sets the declaration block of this ruleset, which will be parsed the
+     * first time the declarations are requested.
+     */
+    public void setDeferredDeclarations(DeclarationBlock declarations) {
+        _deferredDeclarations = declarations;
+    }
+
+    /**
+     * Returns whether the declarations of this ruleset have not been parsed
+     * yet.
+     */
+    public boolean isDeferred() {
+        return _deferredDeclarations != null;
+    }
+
+    private synchronized void compileDeferredDeclarations() {
+        DeclarationBlock declarations = _deferredDeclarations;
+        if (declarations != null) {
+            _props.addAll(declarations.compile(_origin));
+            _deferredDeclarations = null;
+        }
+    }
     
     public void addFSSelector(Selector selector) {
         _fsSelectors.add(selector);
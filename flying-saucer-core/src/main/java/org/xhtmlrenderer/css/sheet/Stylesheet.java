@@ -20,7 +20,11 @@
 package org.xhtmlrenderer.css.sheet;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -48,6 +52,9 @@ public class Stylesheet implements RulesetContainer {
     private List _importRules = new ArrayList();
     private List _contents = new ArrayList();
 
+    // medium -> rulesets which apply to it, see getRulesets()
+    private Map _rulesetsByMedium;
+
     /**
      * Creates a new instance of Stylesheet
      *
@@ -77,12 +84,14 @@ public class Stylesheet implements RulesetContainer {
         return _uri;
     }
     
-    public void addContent(Ruleset ruleset) {
+    public synchronized void addContent(Ruleset ruleset) {
         _contents.add(ruleset);
+        _rulesetsByMedium = null;
     }
     
-    public void addContent(MediaRule rule) {
+    public synchronized void addContent(MediaRule rule) {
         _contents.add(rule);
+        _rulesetsByMedium = null;
     }
     
     public void addContent(PageRule rule) {
@@ -92,6 +101,36 @@ public class Stylesheet implements RulesetContainer {
     public List getContents() {
         return _contents;
     }
+
+    /**
+     * Returns the rulesets of this stylesheet which apply to
+     * <code>medium</code> (both top level rulesets and the rulesets of
+     * matching <code>@media</code> rules) in document order.  The result is
+     * computed once per medium and shared.
+     */
+    public synchronized List getRulesets(String medium) {
+        if (_rulesetsByMedium == null) {
+            _rulesetsByMedium = new HashMap();
+        }
+        List result = (List) _rulesetsByMedium.get(medium);
+        if (result == null) {
+            result = new ArrayList();
+            for (Iterator i = _contents.iterator(); i.hasNext(); ) {
+                Object obj = i.next();
+                if (obj instanceof Ruleset) {
+                    result.add(obj);
+                } else if (obj instanceof MediaRule) {
+                    MediaRule mediaRule = (MediaRule) obj;
+                    if (mediaRule.matches(medium)) {
+                        result.addAll(mediaRule.getContents());
+                    }
+                }
+            }
+            result = Collections.unmodifiableList(result);
+            _rulesetsByMedium.put(medium, result);
+        }
+        return result;
+    }
     
     public void addImportRule(StylesheetInfo info) {
         _importRules.add(info);
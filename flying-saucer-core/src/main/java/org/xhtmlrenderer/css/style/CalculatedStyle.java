@@ -24,6 +24,7 @@ import java.awt.Cursor;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 
 import org.xhtmlrenderer.css.constants.CSSName;
@@ -72,21 +73,27 @@ public class CalculatedStyle {
      */
     private CalculatedStyle _parent;
 
-    private BorderPropertySet _border;
-    private RectPropertySet _margin;
-    private RectPropertySet _padding;
+    /*
+     * The lazily computed values below may be filled in by several threads
+     * (see LayoutContext.copyForConcurrentLayout()).  Each is computed
+     * completely before it is published through a volatile field, so a
+     * thread either sees a finished value or computes it again.
+     */
+    private volatile BorderPropertySet _border;
+    private volatile RectPropertySet _margin;
+    private volatile RectPropertySet _padding;
 
     private float _lineHeight;
-    private boolean _lineHeightResolved;
+    private volatile boolean _lineHeightResolved;
 
-    private FSFont _FSFont;
-    private FSFontMetrics _FSFontMetrics;
+    private volatile FSFont _FSFont;
+    private volatile FSFontMetrics _FSFontMetrics;
 
     private boolean _marginsAllowed = true;
     private boolean _paddingAllowed = true;
     private boolean _bordersAllowed = true;
 
-    private BackgroundSize _backgroundSize;
+    private volatile BackgroundSize _backgroundSize;
 
     /**
      * Cache child styles of this style that have the same cascaded properties
@@ -104,12 +111,12 @@ public class CalculatedStyle {
      * Our main array of property values defined in this style, keyed
      * by the CSSName assigned ID.
      */
-    private final FSDerivedValue[] _derivedValuesById;
+    private final AtomicReferenceArray _derivedValuesById;
 
     /**
      * The derived Font for this style
      */
-    private FontSpecification _font;
+    private volatile FontSpecification _font;
 
 
     /**
@@ -117,7 +124,7 @@ public class CalculatedStyle {
      * this for class instantiation externally.
      */
     protected CalculatedStyle() {
-        _derivedValuesById = new FSDerivedValue[CSSName.countCSSPrimitiveNames()];
+        _derivedValuesById = new AtomicReferenceArray(CSSName.countCSSPrimitiveNames());
     }
 
 
@@ -187,8 +194,8 @@ public class CalculatedStyle {
 
     public int countAssigned() {
         int c = 0;
-        for (int i = 0; i < _derivedValuesById.length; i++) {
-            if (_derivedValuesById[i] != null) c++;
+        for (int i = 0; i < _derivedValuesById.length(); i++) {
+            if (_derivedValuesById.get(i) != null) c++;
         }
         return c;
     }
@@ -233,9 +240,7 @@ public class CalculatedStyle {
     }
 
     public void setDefaultValue(CSSName cssName, FSDerivedValue fsDerivedValue) {
-        if (_derivedValuesById[cssName.FS_ID] == null) {
-            _derivedValuesById[cssName.FS_ID] = fsDerivedValue;
-        }
+        _derivedValuesById.compareAndSet(cssName.FS_ID, null, fsDerivedValue);
     }
 
     // TODO: doc
@@ -244,9 +249,9 @@ public class CalculatedStyle {
         try {
             isAbs = valueByName(cssName).hasAbsoluteUnit();
         } catch (Exception e) {
-            XRLog.layout(Level.WARNING, "Property " + cssName + " has an assignment we don't understand, " +
-                    "and can't tell if it's an absolute unit or not. Assuming it is not. Exception was: " +
-                    e.getMessage());
+            XRLog.layout(Level.WARNING, "Property {0} has an assignment we don''t understand, " +
+                    "and can''t tell if it''s an absolute unit or not. Assuming it is not. Exception was: {1}",
+                    new Object[] { cssName, e.getMessage() });
             isAbs = false;
         }
         return isAbs;
@@ -301,11 +306,13 @@ public class CalculatedStyle {
     }
 
     public BackgroundSize getBackgroundSize() {
-        if (_backgroundSize == null) {
-            _backgroundSize = createBackgroundSize();
+        BackgroundSize result = _backgroundSize;
+        if (result == null) {
+            result = createBackgroundSize();
+            _backgroundSize = result;
         }
 
-        return _backgroundSize;
+        return result;
     }
 
     private BackgroundSize createBackgroundSize() {
@@ -371,33 +378,36 @@ public class CalculatedStyle {
     }
 
     public FontSpecification getFont(CssContext ctx) {
-        if (_font == null) {
-            _font = new FontSpecification();
+        FontSpecification font = _font;
+        if (font == null) {
+            font = new FontSpecification();
 
-            _font.families = valueByName(CSSName.FONT_FAMILY).asStringArray();
+            font.families = FontSpecification.internFamilies(valueByName(CSSName.FONT_FAMILY).asStringArray());
 
             FSDerivedValue fontSize = valueByName(CSSName.FONT_SIZE);
             if (fontSize instanceof IdentValue) {
                 PropertyValue replacement;
                 IdentValue resolved = resolveAbsoluteFontSize();
                 if (resolved != null) {
-                    replacement = FontSizeHelper.resolveAbsoluteFontSize(resolved, _font.families);
+                    replacement = FontSizeHelper.resolveAbsoluteFontSize(resolved, font.families);
                 } else {
                     replacement = FontSizeHelper.getDefaultRelativeFontSize((IdentValue) fontSize);
                 }
-                _font.size = LengthValue.calcFloatProportionalValue(
+                font.size = LengthValue.calcFloatProportionalValue(
                         this, CSSName.FONT_SIZE, replacement.getCssText(),
                         replacement.getFloatValue(), replacement.getPrimitiveType(), 0, ctx);
             } else {
-                _font.size = getFloatPropertyProportionalTo(CSSName.FONT_SIZE, 0, ctx);
+                font.size = getFloatPropertyProportionalTo(CSSName.FONT_SIZE, 0, ctx);
             }
 
-            _font.fontWeight = getIdent(CSSName.FONT_WEIGHT);
+            font.fontWeight = getIdent(CSSName.FONT_WEIGHT);
+
+            font.fontStyle = getIdent(CSSName.FONT_STYLE);
+            font.variant = getIdent(CSSName.FONT_VARIANT);
 
-            _font.fontStyle = getIdent(CSSName.FONT_STYLE);
-            _font.variant = getIdent(CSSName.FONT_VARIANT);
+            _font = font;
         }
-        return _font;
+        return font;
     }
 
     public FontSpecification getFontSpecification() {
@@ -543,7 +553,7 @@ public class CalculatedStyle {
      * @return See desc.
      */
     public FSDerivedValue valueByName(CSSName cssName) {
-        FSDerivedValue val = _derivedValuesById[cssName.FS_ID];
+        FSDerivedValue val = (FSDerivedValue) _derivedValuesById.get(cssName.FS_ID);
 
         boolean needInitialValue = val == IdentValue.FS_INITIAL_VALUE;
 
@@ -570,7 +580,7 @@ public class CalculatedStyle {
                     val = CSSName.initialDerivedValue(cssName);
                 }
             }
-            _derivedValuesById[cssName.FS_ID] = val;
+            _derivedValuesById.set(cssName.FS_ID, val);
         }
         return val;
     }
@@ -604,7 +614,7 @@ public class CalculatedStyle {
         while (mProps.hasNext()) {
             PropertyDeclaration pd = (PropertyDeclaration) mProps.next();
             FSDerivedValue val = deriveValue(pd.getCSSName(), pd.getValue());
-            _derivedValuesById[pd.getCSSName().FS_ID] = val;
+            _derivedValuesById.set(pd.getCSSName().FS_ID, val);
         }
     }
 
@@ -614,9 +624,9 @@ public class CalculatedStyle {
 
     private String genStyleKey() {
         StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < _derivedValuesById.length; i++) {
+        for (int i = 0; i < _derivedValuesById.length(); i++) {
             CSSName name = CSSName.getByID(i);
-            FSDerivedValue val = _derivedValuesById[i];
+            FSDerivedValue val = (FSDerivedValue) _derivedValuesById.get(i);
             if (val != null) {
                 sb.append(name.toString());
             } else {
@@ -629,18 +639,20 @@ public class CalculatedStyle {
     }
 
     public RectPropertySet getCachedPadding() {
-        if (_padding == null) {
+        RectPropertySet padding = _padding;
+        if (padding == null) {
             throw new XRRuntimeException("No padding property cached yet; should have called getPropertyRect() at least once before.");
         } else {
-            return _padding;
+            return padding;
         }
     }
 
     public RectPropertySet getCachedMargin() {
-        if (_margin == null) {
+        RectPropertySet margin = _margin;
+        if (margin == null) {
             throw new XRRuntimeException("No margin property cached yet; should have called getMarginRect() at least once before.");
         } else {
-            return _margin;
+            return margin;
         }
     }
 
@@ -653,22 +665,21 @@ public class CalculatedStyle {
         if (! useCache) {
             return newRectInstance(style, shorthandProp, sides, cbWidth, ctx);
         } else {
-            if (style._padding == null) {
-                RectPropertySet result = newRectInstance(style, shorthandProp, sides, cbWidth, ctx);
+            RectPropertySet result = style._padding;
+            if (result == null) {
+                result = newRectInstance(style, shorthandProp, sides, cbWidth, ctx);
                 boolean allZeros = result.isAllZeros();
 
                 if (allZeros) {
                     result = RectPropertySet.ALL_ZEROS;
+                } else if (result.hasNegativeValues()) {
+                    result.resetNegativeValues();
                 }
 
                 style._padding = result;
-
-                if (! allZeros && style._padding.hasNegativeValues()) {
-                    style._padding.resetNegativeValues();
-                }
             }
 
-            return style._padding;
+            return result;
         }
     }
 
@@ -681,15 +692,16 @@ public class CalculatedStyle {
         if (! useCache) {
             return newRectInstance(style, shorthandProp, sides, cbWidth, ctx);
         } else {
-            if (style._margin == null) {
-                RectPropertySet result = newRectInstance(style, shorthandProp, sides, cbWidth, ctx);
+            RectPropertySet result = style._margin;
+            if (result == null) {
+                result = newRectInstance(style, shorthandProp, sides, cbWidth, ctx);
                 if (result.isAllZeros()) {
                     result = RectPropertySet.ALL_ZEROS;
                 }
                 style._margin = result;
             }
 
-            return style._margin;
+            return result;
         }
     }
 
@@ -709,21 +721,20 @@ public class CalculatedStyle {
 
     private static BorderPropertySet getBorderProperty(CalculatedStyle style,
                                                        CssContext ctx) {
-        if (style._border == null) {
-            BorderPropertySet result = BorderPropertySet.newInstance(style, ctx);
+        BorderPropertySet result = style._border;
+        if (result == null) {
+            result = BorderPropertySet.newInstance(style, ctx);
 
             boolean allZeros = result.isAllZeros();
             if (allZeros && ! result.hasHidden() && !result.hasBorderRadius()) {
                 result = BorderPropertySet.EMPTY_BORDER;
+            } else if (! allZeros && result.hasNegativeValues()) {
+                result.resetNegativeValues();
             }
 
             style._border = result;
-
-            if (! allZeros && style._border.hasNegativeValues()) {
-                style._border.resetNegativeValues();
-            }
         }
-        return style._border;
+        return result;
     }
 
     public static final int LEFT = 1;
@@ -757,17 +768,21 @@ public class CalculatedStyle {
     }
 
     public FSFont getFSFont(CssContext cssContext) {
-        if (_FSFont == null) {
-            _FSFont = cssContext.getFont(getFont(cssContext));
+        FSFont result = _FSFont;
+        if (result == null) {
+            result = cssContext.getFont(getFont(cssContext));
+            _FSFont = result;
         }
-        return _FSFont;
+        return result;
     }
 
     public FSFontMetrics getFSFontMetrics(CssContext c) {
-        if (_FSFontMetrics == null) {
-            _FSFontMetrics = c.getFSFontMetrics(getFSFont(c));
+        FSFontMetrics result = _FSFontMetrics;
+        if (result == null) {
+            result = c.getFSFontMetrics(getFSFont(c));
+            _FSFontMetrics = result;
         }
-        return _FSFontMetrics;
+        return result;
     }
 
     public IdentValue getWordWrap() {
@@ -176,14 +176,13 @@ public class LengthValue extends DerivedValue {
             default:
                 // nothing to do, we only convert those listed above
                 XRLog.cascade(Level.SEVERE,
-                        "Asked to convert " + cssName + " from relative to absolute, " +
-                        " don't recognize the datatype " +
-                        "'" + ValueConstants.stringForSACPrimitiveType(primitiveType) + "' "
-                        + primitiveType + "(" + stringValue + ")");
+                        "Asked to convert {0} from relative to absolute,  don''t recognize the datatype ''{1}'' {2}({3})",
+                        new Object[] { cssName, ValueConstants.stringForSACPrimitiveType(primitiveType),
+                                String.valueOf(primitiveType), stringValue });
         }
         //assert (new Float(absVal).intValue() >= 0);
 
-        if (XRLog.isLoggingEnabled()) {
+        if (XRLog.isLoggable(XRLog.CASCADE, Level.FINEST)) {
             if (cssName == CSSName.FONT_SIZE) {
                 XRLog.cascade(Level.FINEST, cssName + ", relative= " +
                         relVal + " (" + stringValue + "), absolute= "
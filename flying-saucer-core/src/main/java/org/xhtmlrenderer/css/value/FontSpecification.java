@@ -3,6 +3,8 @@ package org.xhtmlrenderer.css.value;
 import org.xhtmlrenderer.css.constants.IdentValue;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -18,6 +20,73 @@ public class FontSpecification {
     public IdentValue fontStyle;
     public IdentValue variant;
 
+    private static final int MAX_INTERNED_FAMILIES = 1024;
+
+    private static final ConcurrentHashMap _families = new ConcurrentHashMap();
+
+    /**
+     * Returns a shared array equal to <code>families</code>, so that equal
+     * family lists are usually the same object and compare by identity.  The
+     * returned array must not be modified.
+     */
+    public static String[] internFamilies(String[] families) {
+        if (families == null) {
+            return null;
+        }
+        List key = Arrays.asList(families);
+        String[] result = (String[])_families.get(key);
+        if (result == null) {
+            if (_families.size() >= MAX_INTERNED_FAMILIES) {
+                _families.clear();
+            }
+            result = (String[])_families.putIfAbsent(key, families);
+            if (result == null) {
+                result = families;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of this specification which doesn't share any mutable
+     * state with it.  Font resolvers use such copies as keys of their
+     * resolved font caches, as the fields of a specification may be changed
+     * after it has been used to resolve a font.
+     */
+    public FontSpecification copyOf() {
+        FontSpecification result = new FontSpecification();
+        result.size = size;
+        result.fontWeight = fontWeight;
+        result.families = families == null ? null : internFamilies((String[])families.clone());
+        result.fontStyle = fontStyle;
+        result.variant = variant;
+        return result;
+    }
+
+    /**
+     * Two specifications are equal if they ask for the same font.
+     */
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (! (o instanceof FontSpecification)) {
+            return false;
+        }
+        FontSpecification other = (FontSpecification)o;
+        return size == other.size && fontWeight == other.fontWeight &&
+                fontStyle == other.fontStyle && variant == other.variant &&
+                (families == other.families || Arrays.equals(families, other.families));
+    }
+
+    public int hashCode() {
+        int result = Float.floatToIntBits(size);
+        result = result * 31 + (fontWeight == null ? 0 : fontWeight.hashCode());
+        result = result * 31 + (fontStyle == null ? 0 : fontStyle.hashCode());
+        result = result * 31 + (variant == null ? 0 : variant.hashCode());
+        return result * 31 + Arrays.hashCode(families);
+    }
+
     public String toString() {
         StringBuffer sb = new StringBuffer("Font specification: ");
         sb
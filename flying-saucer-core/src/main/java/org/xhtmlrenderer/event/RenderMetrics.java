@@ -0,0 +1,255 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.event;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counts collected while rendering a single document.  An
+ * instance is only created when a {@link RenderMetricsListener} is registered
+ * with the {@link org.xhtmlrenderer.layout.SharedContext}, so collecting
+ * metrics costs nothing otherwise.
+ * <p>
+ * For each phase the wall time and, where the VM supports it, the bytes
+ * allocated by the rendering thread are recorded.  {@link #CASCADE} is the
+ * exception: it is spread over the other phases (styles are computed as boxes
+ * are created) and its time is also included in theirs.  Its allocations are
+ * only included in the enclosing phase.
+ * <p>
+ * Counters may be updated from several threads (e.g. when table cells are
+ * laid out in parallel).  Phases must be started and ended on the rendering
+ * thread.
+ */
+public class RenderMetrics {
+    /** Parsing of the document (when done by the renderer) and its stylesheets */
+    public static final int LOAD = 0;
+    /** Selector matching and style derivation */
+    public static final int CASCADE = 1;
+    /** Box creation and layout */
+    public static final int LAYOUT = 2;
+    /** Page and margin box layout (paged media only) */
+    public static final int PAGINATION = 3;
+    /** PDF writing or painting */
+    public static final int OUTPUT = 4;
+
+    private static final String[] PHASE_NAMES = {
+        "load", "cascade", "layout", "pagination", "output"
+    };
+
+    public static final int ELEMENTS_STYLED = 0;
+    public static final int BOXES_CREATED = 1;
+    public static final int LINES = 2;
+    public static final int PAGES = 3;
+    public static final int IMAGES_LOADED = 4;
+    public static final int FONTS_LOADED = 5;
+    /** Lookups answered from a style, font or image cache */
+    public static final int CACHE_HITS = 6;
+    public static final int CACHE_MISSES = 7;
+
+    private static final String[] COUNTER_NAMES = {
+        "elements-styled", "boxes-created", "lines", "pages",
+        "images-loaded", "fonts-loaded", "cache-hits", "cache-misses"
+    };
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final Method GET_THREAD_ALLOCATED_BYTES = findThreadAllocatedBytesMethod();
+
+    private final String uri;
+    private final long start;
+    private long end;
+
+    private final AtomicLongArray phaseTimes = new AtomicLongArray(PHASE_NAMES.length);
+    private final long[] phaseAllocations = new long[PHASE_NAMES.length];
+    private final long[] phaseStarts = new long[PHASE_NAMES.length];
+    private final long[] phaseAllocationStarts = new long[PHASE_NAMES.length];
+    private final boolean[] phaseStarted = new boolean[PHASE_NAMES.length];
+
+    private final AtomicLongArray counts = new AtomicLongArray(COUNTER_NAMES.length);
+
+    public RenderMetrics(String uri) {
+        this.uri = uri;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * The URI of the document, if known.
+     */
+    public String getURI() {
+        return uri;
+    }
+
+    public void startPhase(int phase) {
+        phaseAllocationStarts[phase] = getThreadAllocatedBytes();
+        phaseStarts[phase] = System.nanoTime();
+        phaseStarted[phase] = true;
+    }
+
+    public void endPhase(int phase) {
+        if (! phaseStarted[phase]) {
+            return;
+        }
+        phaseTimes.addAndGet(phase, System.nanoTime() - phaseStarts[phase]);
+        long allocated = getThreadAllocatedBytes();
+        if (allocated != -1) {
+            phaseAllocations[phase] += allocated - phaseAllocationStarts[phase];
+        }
+        phaseStarted[phase] = false;
+    }
+
+    /**
+     * Adds time measured by the caller to <code>phase</code>.  Used for
+     * phases, like {@link #CASCADE}, which are made up of many short
+     * intervals.
+     */
+    public void addPhaseTime(int phase, long nanos) {
+        phaseTimes.addAndGet(phase, nanos);
+    }
+
+    public void increment(int counter) {
+        counts.incrementAndGet(counter);
+    }
+
+    public void add(int counter, long value) {
+        counts.addAndGet(counter, value);
+    }
+
+    public void setCount(int counter, long value) {
+        counts.set(counter, value);
+    }
+
+    /**
+     * Called by the renderer once the document has been written or painted.
+     */
+    public void finish() {
+        end = System.nanoTime();
+    }
+
+    /**
+     * Returns the total wall time in nanoseconds from the start of rendering
+     * until it finished.
+     */
+    public long getTotalTime() {
+        return (end == 0 ? System.nanoTime() : end) - start;
+    }
+
+    /**
+     * Returns the wall time spent in <code>phase</code> in nanoseconds.
+     */
+    public long getPhaseTime(int phase) {
+        return phaseTimes.get(phase);
+    }
+
+    /**
+     * Returns the number of bytes allocated by the rendering thread during
+     * <code>phase</code> or <code>-1</code> if the VM cannot measure thread
+     * allocation (or for {@link #CASCADE}).
+     */
+    public long getPhaseAllocatedBytes(int phase) {
+        if (GET_THREAD_ALLOCATED_BYTES == null || phase == CASCADE) {
+            return -1;
+        }
+        return phaseAllocations[phase];
+    }
+
+    public long getCount(int counter) {
+        return counts.get(counter);
+    }
+
+    public static int getPhaseCount() {
+        return PHASE_NAMES.length;
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    public static int getCounterCount() {
+        return COUNTER_NAMES.length;
+    }
+
+    public static String getCounterName(int counter) {
+        return COUNTER_NAMES[counter];
+    }
+
+    public String toString() {
+        StringBuffer result = new StringBuffer();
+        result.append("RenderMetrics[uri=").append(uri);
+        result.append(", total=").append(getTotalTime() / 1000000).append("ms");
+        for (int i = 0; i < PHASE_NAMES.length; i++) {
+            result.append(", ").append(PHASE_NAMES[i]).append('=');
+            result.append(getPhaseTime(i) / 1000000).append("ms");
+            long allocated = getPhaseAllocatedBytes(i);
+            if (allocated != -1) {
+                result.append('/').append(allocated / 1024).append("KB");
+            }
+        }
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            result.append(", ").append(COUNTER_NAMES[i]).append('=').append(getCount(i));
+        }
+        result.append(']');
+        return result.toString();
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far or
+     * <code>-1</code> if the JVM does not support measuring this.
+     */
+    public static long getThreadAllocatedBytes() {
+        if (GET_THREAD_ALLOCATED_BYTES == null) {
+            return -1;
+        }
+        try {
+            Long result = (Long)GET_THREAD_ALLOCATED_BYTES.invoke(
+                    THREAD_MX_BEAN, new Object[] { new Long(Thread.currentThread().getId()) });
+            return result.longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Thread allocation counters are a HotSpot extension
+     * (<code>com.sun.management.ThreadMXBean</code>) so look them up
+     * reflectively.
+     */
+    private static Method findThreadAllocatedBytesMethod() {
+        try {
+            Class clazz = Class.forName("com.sun.management.ThreadMXBean");
+            if (! clazz.isInstance(THREAD_MX_BEAN)) {
+                return null;
+            }
+            Boolean supported = (Boolean)clazz.getMethod(
+                    "isThreadAllocatedMemorySupported", new Class[0]).invoke(THREAD_MX_BEAN, new Object[0]);
+            if (! supported.booleanValue()) {
+                return null;
+            }
+            clazz.getMethod("setThreadAllocatedMemoryEnabled", new Class[] { boolean.class })
+                    .invoke(THREAD_MX_BEAN, new Object[] { Boolean.TRUE });
+            return clazz.getMethod("getThreadAllocatedBytes", new Class[] { long.class });
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+}
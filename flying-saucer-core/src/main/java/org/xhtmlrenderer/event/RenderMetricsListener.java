@@ -0,0 +1,32 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.event;
+
+/**
+ * Receives the {@link RenderMetrics} of every document rendered with a
+ * {@link org.xhtmlrenderer.layout.SharedContext} the listener is registered
+ * with (see
+ * {@link org.xhtmlrenderer.layout.SharedContext#setRenderMetricsListener(RenderMetricsListener)}).
+ * The listener is called on the rendering thread once the document has been
+ * written or painted; it should return quickly.
+ */
+public interface RenderMetricsListener {
+    void renderFinished(RenderMetrics metrics);
+}
@@ -27,6 +27,7 @@ import java.awt.RenderingHints.Key;
 import org.xhtmlrenderer.css.parser.FSColor;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.derived.BorderPropertySet;
+import org.xhtmlrenderer.newtable.TableBox;
 import org.xhtmlrenderer.render.BlockBox;
 import org.xhtmlrenderer.render.Box;
 import org.xhtmlrenderer.render.FSFont;
@@ -57,6 +58,17 @@ public interface OutputDevice {
             BorderPropertySet border);
     
     public void paintReplacedElement(RenderingContext c, BlockBox box);
+
+    /**
+     * Paints the (already laid out) content of a page margin area at the
+     * current origin.  If <code>invariant</code> is <code>true</code>, the
+     * same <code>table</code> is painted on other pages too and only lines
+     * containing dynamic content (i.e. page counters) differ between pages.
+     * An output device may then paint everything else once (see
+     * {@link org.xhtmlrenderer.layout.Layer#PAINT_STATIC}) and reuse the
+     * result.
+     */
+    public void paintMarginArea(RenderingContext c, TableBox table, boolean invariant);
     
     public void drawDebugOutline(RenderingContext c, Box box, FSColor color);
     
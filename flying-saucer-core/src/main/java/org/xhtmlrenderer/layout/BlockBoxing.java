@@ -21,6 +21,7 @@
 package org.xhtmlrenderer.layout;
 
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -63,12 +64,29 @@ public class BlockBoxing {
             relayoutDataList = new RelayoutDataList(localChildren.size());
         }
 
+        Rectangle lazyRegion = c.isPrint() ? null : c.getLazyLayoutRegion();
+        int laidOutCount = 0;
+        int laidOutHeight = 0;
+
         int pageCount = NO_PAGE_TRIM;
         BlockBox previousChildBox = null;
         for (Iterator i = localChildren.iterator(); i.hasNext();) {
             BlockBox child = (BlockBox) i.next();
             offset++;
 
+            if (lazyRegion != null && LazyLayout.isDeferrable(block, child)) {
+                int estimatedHeight = LazyLayout.estimateHeight(c, child, laidOutCount, laidOutHeight);
+                int top = block.getAbsY() + block.getTy() + childOffset;
+                if (top > lazyRegion.y + lazyRegion.height || top + estimatedHeight < lazyRegion.y) {
+                    deferBlockChild(c, block, child, childOffset, estimatedHeight);
+                    childOffset = child.getY() + child.getHeight();
+                    if (childOffset > block.getHeight()) {
+                        block.setHeight(childOffset);
+                    }
+                    continue;
+                }
+            }
+
             RelayoutData relayoutData = null;
 
             boolean mayCheckKeepTogether = false;
@@ -128,6 +146,11 @@ public class BlockBoxing {
                 block.setHeight(childOffset);
             }
 
+            if (lazyRegion != null) {
+                laidOutCount++;
+                laidOutHeight += child.getHeight();
+            }
+
             if (c.isPrint()) {
                 if (child.getStyle().isForcePageBreakAfter()) {
                     block.forcePageBreakAfter(c, child.getStyle().getIdent(CSSName.PAGE_BREAK_AFTER));
@@ -322,6 +345,14 @@ public class BlockBoxing {
         c.translate(-child.getX(), -child.getY());
     }
 
+    private static void deferBlockChild(LayoutContext c, BlockBox parent, BlockBox child,
+            int childOffset, int estimatedHeight) {
+        child.initStaticPos(c, parent, childOffset);
+        child.initContainingLayer(c);
+        child.calcCanvasLocation();
+        child.layoutDeferred(c, estimatedHeight);
+    }
+
     private static void repositionBox(LayoutContext c, BlockBox child, int trimmedPageCount) {
         boolean moved = false;
         if (child.getStyle().isRelative()) {
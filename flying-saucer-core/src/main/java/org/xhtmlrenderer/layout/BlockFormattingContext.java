@@ -46,6 +46,14 @@ public class BlockFormattingContext {
         _persistentBFC = new PersistentBFC(block, c);
     }
 
+    /**
+     * Re-enters the formatting context of an already laid out block.  Used
+     * when only part of a formatting context is laid out again.
+     */
+    BlockFormattingContext(PersistentBFC persistentBFC) {
+        _persistentBFC = persistentBFC;
+    }
+
     public Point getOffset() {
         return new Point(_x, _y);
     }
@@ -47,6 +47,7 @@ import org.xhtmlrenderer.css.sheet.StylesheetInfo;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.EmptyStyle;
 import org.xhtmlrenderer.css.style.FSDerivedValue;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.newtable.TableBox;
 import org.xhtmlrenderer.newtable.TableCellBox;
 import org.xhtmlrenderer.newtable.TableColumn;
@@ -93,6 +94,11 @@ public class BoxBuilder {
         result.setStyle(style);
         result.setElement(root);
 
+        RenderMetrics metrics = c.getSharedContext().getRenderMetrics();
+        if (metrics != null) {
+            metrics.increment(RenderMetrics.BOXES_CREATED);
+        }
+
         c.resolveCounters(style);
 
         c.pushLayer(result);
@@ -126,6 +132,13 @@ public class BoxBuilder {
                 resolveChildTableContent(c, parent, children, info, IdentValue.TABLE_CELL);
             }
         }
+
+        RenderMetrics metrics = c.getSharedContext().getRenderMetrics();
+        if (metrics != null) {
+            metrics.add(RenderMetrics.BOXES_CREATED,
+                    parent.getChildrenContentType() == BlockBox.CONTENT_INLINE ?
+                            parent.getInlineContent().size() : parent.getChildCount());
+        }
     }
 
     public static TableBox createMarginTable(
@@ -142,7 +155,7 @@ public class BoxBuilder {
         Element source = c.getRootLayer().getMaster().getElement(); // HACK
 
         ChildBoxInfo info = new ChildBoxInfo();
-        CalculatedStyle pageStyle = new EmptyStyle().deriveStyle(pageInfo.getPageStyle());
+        CalculatedStyle pageStyle = pageInfo.getCalculatedPageStyle();
 
         CalculatedStyle tableStyle = pageStyle.deriveStyle(
                 CascadedStyle.createLayoutStyle(new PropertyDeclaration[] {
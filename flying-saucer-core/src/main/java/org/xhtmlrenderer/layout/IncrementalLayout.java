@@ -0,0 +1,389 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.layout;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.derived.RectPropertySet;
+import org.xhtmlrenderer.render.AnonymousBlockBox;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
+
+/**
+ * Lays out part of an existing (screen) box tree again after elements of the
+ * document have changed, instead of laying out the whole document.
+ * <p>
+ * For each changed element, the nearest enclosing block whose vertical margins
+ * cannot collapse with those of its children is laid out again.  Its style is
+ * recomputed, its children are rebuilt and laid out and any following content
+ * is moved up or down if its height changed.  Only
+ * normal flow block content is handled.  If the document (or the change) uses
+ * floats, positioned content, tables, counters, generated content or anything
+ * else whose layout depends on more than the block itself, the change is
+ * rejected and the caller must lay out the document from scratch.
+ */
+public class IncrementalLayout {
+    private IncrementalLayout() {
+    }
+
+    /**
+     * Lays out the blocks containing <code>dirtyElements</code> again.
+     *
+     * @return The area (in document coordinates) which must be repainted or
+     * <code>null</code> if the change could not be handled incrementally.  In
+     * the latter case the box tree may have been partially updated and must be
+     * rebuilt.
+     */
+    public static Rectangle relayout(LayoutContext c, BlockBox root, Collection dirtyElements) {
+        if (c.isPrint() || root.getLayer() == null) {
+            return null;
+        }
+
+        if (dirtyElements.isEmpty()) {
+            return new Rectangle();
+        }
+
+        Layer rootLayer = root.getLayer();
+        if (rootLayer.containsFixedContent() || rootLayer.hasFloats() ||
+                rootLayer.getChildren().size() > 0) {
+            return null;
+        }
+
+        Map blocks = new HashMap();
+        collectBlocks(root, blocks);
+
+        List targets = new ArrayList();
+        for (Iterator i = dirtyElements.iterator(); i.hasNext(); ) {
+            BlockBox block = findBlock((Element)i.next(), blocks);
+            BlockBox target = block == null ? null : findTarget(c, block);
+            if (target == null) {
+                return null;
+            }
+            if (! targets.contains(target)) {
+                targets.add(target);
+            }
+        }
+
+        Rectangle result = null;
+        for (Iterator i = targets.iterator(); i.hasNext(); ) {
+            BlockBox target = (BlockBox)i.next();
+            if (isContainedIn(target, targets)) {
+                continue;
+            }
+
+            Rectangle region = relayoutBlock(c, root, target);
+            if (region == null) {
+                return null;
+            }
+            result = result == null ? region : result.union(region);
+        }
+
+        return result;
+    }
+
+    private static boolean isContainedIn(BlockBox target, List targets) {
+        for (Box box = target.getParent(); box != null; box = box.getParent()) {
+            if (targets.contains(box)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Rectangle relayoutBlock(LayoutContext c, BlockBox root, BlockBox target) {
+        Layer rootLayer = root.getLayer();
+        CalculatedStyle oldStyle = target.getStyle();
+        RectPropertySet oldMargin = target.getMargin(c);
+        int oldMarginTop = (int)oldMargin.top();
+        int oldMarginBottom = (int)oldMargin.bottom();
+        int oldHeight = target.getHeight();
+
+        Rectangle oldRootBounds = new Rectangle(
+                root.calcPaintingInfo(c, true).getAggregateBounds());
+        Rectangle result = new Rectangle(
+                target.calcPaintingInfo(c, true).getAggregateBounds());
+
+        Element element = target.getElement();
+        c.getSharedContext().removeElementReferences(element);
+        CalculatedStyle style = c.getSharedContext().getStyle(element, true);
+        if (! isCompatible(c, target, oldStyle, style)) {
+            return null;
+        }
+
+        target.reset(c);
+        target.removeAllChildren();
+        target.setChildrenContentType(BlockBox.CONTENT_UNKNOWN);
+        target.setInlineContent(null);
+        target.setStyle(style);
+
+        if (! isSimpleBlock(target) || ! isMarginsContained(c, target) ||
+                ! isSelfContained(c, target)) {
+            return null;
+        }
+
+        layoutInPlace(c, root, target);
+
+        RectPropertySet margin = target.getMargin(c);
+        if (rootLayer.hasFloats() || rootLayer.getChildren().size() > 0 ||
+                (int)margin.top() != oldMarginTop ||
+                (int)margin.bottom() != oldMarginBottom) {
+            return null;
+        }
+
+        int delta = target.getHeight() - oldHeight;
+        if (delta != 0) {
+            moveFollowingContent(target, delta);
+        }
+
+        Rectangle rootBounds = root.calcPaintingInfo(c, false).getAggregateBounds();
+        result.add(target.getPaintingInfo().getAggregateBounds());
+
+        if (delta != 0) {
+            // Everything below the block may have moved
+            rootBounds = rootBounds.union(oldRootBounds);
+            result = new Rectangle(
+                    rootBounds.x, result.y,
+                    rootBounds.width, rootBounds.y + rootBounds.height - result.y);
+        }
+
+        return result;
+    }
+
+    /**
+     * Lays out <code>target</code> at its current position in the (otherwise
+     * already laid out) box tree.
+     */
+    static void layoutInPlace(LayoutContext c, BlockBox root, BlockBox target) {
+        BlockBox bfcRoot = findBFCRoot(target);
+
+        c.setRootLayer(root.getLayer());
+        c.pushLayer(root.getLayer());
+        c.pushBFC(new BlockFormattingContext(bfcRoot.getPersistentBFC()));
+        c.translate(
+                target.getAbsX() - bfcRoot.getAbsX(),
+                target.getAbsY() - bfcRoot.getAbsY());
+
+        target.initContainingLayer(c);
+        target.calcCanvasLocation();
+        target.layout(c);
+
+        c.popBFC();
+        c.popLayer();
+    }
+
+    /**
+     * Moves everything following <code>target</code> in normal flow by
+     * <code>delta</code> and grows (or shrinks) its ancestors accordingly.
+     */
+    static void moveFollowingContent(BlockBox target, int delta) {
+        Box child = target;
+        Box parent = target.getParent();
+        while (parent != null) {
+            for (Box next = child.getNextSibling(); next != null; next = next.getNextSibling()) {
+                next.setY(next.getY() + delta);
+                next.calcCanvasLocation();
+                next.calcChildLocations();
+            }
+            parent.setHeight(parent.getHeight() + delta);
+
+            child = parent;
+            parent = parent.getParent();
+        }
+    }
+
+    private static void collectBlocks(BlockBox block, Map blocks) {
+        if (block.getElement() != null && ! (block instanceof AnonymousBlockBox) &&
+                ! blocks.containsKey(block.getElement())) {
+            blocks.put(block.getElement(), block);
+        }
+
+        if (block.getChildrenContentType() == BlockBox.CONTENT_BLOCK) {
+            for (Iterator i = block.getChildIterator(); i.hasNext(); ) {
+                collectBlocks((BlockBox)i.next(), blocks);
+            }
+        }
+    }
+
+    private static BlockBox findBlock(Element e, Map blocks) {
+        Node current = e;
+        while (current != null && current.getNodeType() == Node.ELEMENT_NODE) {
+            BlockBox result = (BlockBox)blocks.get(current);
+            if (result != null) {
+                return result;
+            }
+            current = current.getParentNode();
+        }
+        return null;
+    }
+
+    private static BlockBox findTarget(LayoutContext c, BlockBox block) {
+        BlockBox target = block;
+        while (target != null && ! target.isRoot() &&
+                ! (isSimpleBlock(target) && isMarginsContained(c, target))) {
+            target = (BlockBox)target.getParent();
+        }
+
+        if (target == null || target.isRoot()) {
+            return null;
+        }
+
+        return isFlowContent(target.getParent()) ? target : null;
+    }
+
+    /**
+     * Returns whether <code>box</code> and all of its ancestors are normal
+     * flow blocks whose height is determined by their content, i.e. whether
+     * a change in the height of one of <code>box</code>'s children can be
+     * handled with {@link #moveFollowingContent(BlockBox, int)}.
+     */
+    static boolean isFlowContent(Box box) {
+        for (; box != null; box = box.getParent()) {
+            if (! (box instanceof BlockBox)) {
+                return false;
+            }
+            BlockBox block = (BlockBox)box;
+            CalculatedStyle style = block.getStyle();
+            if (! isSimpleBlock(block) || ! style.isAutoHeight() ||
+                    ! style.isMaxHeightNone() || (int)style.asFloat(CSSName.MIN_HEIGHT) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static BlockBox findBFCRoot(BlockBox target) {
+        Box box = target.getParent();
+        while (((BlockBox)box).getPersistentBFC() == null) {
+            box = box.getParent();
+        }
+        return (BlockBox)box;
+    }
+
+    static boolean isSimpleBlock(BlockBox block) {
+        CalculatedStyle style = block.getStyle();
+        return ! (block instanceof AnonymousBlockBox) &&
+                ! block.isReplaced() &&
+                (block.isRoot() || style.isIdent(CSSName.DISPLAY, IdentValue.BLOCK)) &&
+                ! style.isPostionedOrFloated() &&
+                ! style.requiresLayer() &&
+                ! style.isRunning() &&
+                ! style.isFixedBackground() &&
+                block.getFirstLineStyle() == null &&
+                block.getFirstLetterStyle() == null;
+    }
+
+    /**
+     * Returns whether the margins of <code>block</code>'s children cannot
+     * collapse through it.  This ensures the block's own collapsed margins
+     * (and therefore the position of everything around it) do not depend on
+     * its content.
+     */
+    private static boolean isMarginsContained(LayoutContext c, BlockBox block) {
+        if (! block.getStyle().isMayCollapseMarginsWithChildren()) {
+            return true;
+        }
+
+        return (int)block.getBorder(c).top() + (int)block.getPadding(c).top() > 0 &&
+                (int)block.getBorder(c).bottom() + (int)block.getPadding(c).bottom() > 0;
+    }
+
+    private static boolean isCompatible(
+            LayoutContext c, BlockBox target, CalculatedStyle oldStyle, CalculatedStyle style) {
+        if (oldStyle.getIdent(CSSName.DISPLAY) != style.getIdent(CSSName.DISPLAY) ||
+                oldStyle.getIdent(CSSName.FLOAT) != style.getIdent(CSSName.FLOAT) ||
+                oldStyle.getIdent(CSSName.POSITION) != style.getIdent(CSSName.POSITION) ||
+                oldStyle.getIdent(CSSName.CLEAR) != style.getIdent(CSSName.CLEAR)) {
+            return false;
+        }
+
+        float cbWidth = target.getContainingBlock().getContentWidth();
+        RectPropertySet oldMargin = oldStyle.getMarginRect(cbWidth, c);
+        RectPropertySet margin = style.getMarginRect(cbWidth, c);
+
+        return (int)oldMargin.top() == (int)margin.top() &&
+                (int)oldMargin.bottom() == (int)margin.bottom();
+    }
+
+    /**
+     * Builds the content of <code>box</code> and checks that its layout does
+     * not depend on (or affect) anything outside of it.
+     */
+    private static boolean isSelfContained(LayoutContext c, Box box) {
+        if (! isSelfContained(box.getStyle()) || box.getPseudoElementOrClass() != null) {
+            return false;
+        }
+
+        if (box instanceof BlockBox) {
+            BlockBox block = (BlockBox)box;
+            block.ensureChildren(c);
+
+            if (block.getFirstLineStyle() != null || block.getFirstLetterStyle() != null) {
+                return false;
+            }
+
+            if (block.getChildrenContentType() == BlockBox.CONTENT_INLINE &&
+                    block.getInlineContent() != null) {
+                for (Iterator i = block.getInlineContent().iterator(); i.hasNext(); ) {
+                    Styleable child = (Styleable)i.next();
+                    if (child instanceof Box) {
+                        if (! isSelfContained(c, (Box)child)) {
+                            return false;
+                        }
+                    } else if (! isSelfContained(child.getStyle()) ||
+                            child.getPseudoElementOrClass() != null) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        for (Iterator i = box.getChildIterator(); i.hasNext(); ) {
+            if (! isSelfContained(c, (Box)i.next())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSelfContained(CalculatedStyle style) {
+        if (style == null) {
+            return true;
+        }
+        return ! style.isPostionedOrFloated() &&
+                ! style.requiresLayer() &&
+                ! style.isRunning() &&
+                ! style.isListItem() &&
+                ! style.isFixedBackground() &&
+                style.getCounterReset() == null &&
+                style.getCounterIncrement() == null;
+    }
+}
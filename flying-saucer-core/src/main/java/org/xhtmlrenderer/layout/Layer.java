@@ -35,16 +35,17 @@ import java.util.Set;
 import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.constants.PageElementPosition;
 import org.xhtmlrenderer.css.newmatch.PageInfo;
-import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CssContext;
-import org.xhtmlrenderer.css.style.EmptyStyle;
 import org.xhtmlrenderer.newtable.TableCellBox;
 import org.xhtmlrenderer.render.BlockBox;
 import org.xhtmlrenderer.render.Box;
 import org.xhtmlrenderer.render.InlineLayoutBox;
+import org.xhtmlrenderer.render.LineBox;
 import org.xhtmlrenderer.render.PageBox;
 import org.xhtmlrenderer.render.RenderingContext;
 import org.xhtmlrenderer.render.ViewportBox;
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
 
 /**
  * All positioned content as well as content with an overflow value other
@@ -60,6 +61,17 @@ import org.xhtmlrenderer.render.ViewportBox;
 public class Layer {
     public static final short PAGED_MODE_SCREEN = 1;
     public static final short PAGED_MODE_PRINT = 2;
+
+    /**
+     * Paint filters (see {@link RenderingContext#setPaintFilter(short)}).
+     * {@link #PAINT_STATIC} paints everything except lines containing dynamic
+     * content functions (e.g. <code>counter(page)</code>) and
+     * {@link #PAINT_DYNAMIC} paints only those lines.  Together they paint
+     * the same content as {@link #PAINT_ALL}.
+     */
+    public static final short PAINT_ALL = 0;
+    public static final short PAINT_STATIC = 1;
+    public static final short PAINT_DYNAMIC = 2;
     
     private Layer _parent;
     private boolean _stackingContext;
@@ -149,6 +161,10 @@ public class Layer {
         }
     }
 
+    boolean hasFloats() {
+        return _floats != null && _floats.size() > 0;
+    }
+
     private void paintFloats(RenderingContext c) {
         if (_floats != null) {
             for (int i = _floats.size() - 1; i >= 0; i--) {
@@ -270,12 +286,31 @@ public class Layer {
             helper.pushClipRegion(c, i);
             
             InlinePaintable paintable = (InlinePaintable)lines.get(i);
-            paintable.paintInline(c);
+            if (isPainted(c, paintable)) {
+                paintable.paintInline(c);
+            }
         }
         
         helper.popClipRegions(c, lines.size());
     }
     
+    private boolean isPainted(RenderingContext c, InlinePaintable paintable) {
+        short filter = c.getPaintFilter();
+        if (filter == PAINT_ALL) {
+            return true;
+        }
+
+        LineBox line = null;
+        if (paintable instanceof LineBox) {
+            line = (LineBox)paintable;
+        } else if (paintable instanceof InlineLayoutBox) {
+            line = ((InlineLayoutBox)paintable).getLineBox();
+        }
+        boolean dynamic = line != null && line.isContainsDynamicFunction();
+
+        return dynamic == (filter == PAINT_DYNAMIC);
+    }
+    
     private void paintSelection(RenderingContext c, List lines) {
         if (c.getOutputDevice().isSupportsSelection()) {
             for (Iterator i = lines.iterator(); i.hasNext();) {
@@ -296,6 +331,11 @@ public class Layer {
             positionFixedLayer(c);
         }
         
+        if (c.getPaintFilter() == PAINT_DYNAMIC) {
+            paintDynamicContent(c);
+            return;
+        }
+        
         if (isRootLayer()) {
             getMaster().paintRootElementBackground(c);
         }
@@ -450,6 +490,33 @@ public class Layer {
         }
     }
     
+    private void paintDynamicContent(RenderingContext c) {
+        if (! isInline() && ((BlockBox)getMaster()).isReplaced()) {
+            return;
+        }
+        
+        BoxRangeLists rangeLists = new BoxRangeLists();
+        
+        List blocks = new ArrayList();
+        List lines = new ArrayList();
+        
+        BoxCollector collector = new BoxCollector();
+        collector.collect(c, c.getOutputDevice().getClip(), this, blocks, lines, rangeLists);
+        
+        if (isRootLayer() || isStackingContext()) {
+            paintLayers(c, getSortedLayers(NEGATIVE));
+        }
+        
+        paintFloats(c);
+        paintInlineContent(c, lines, rangeLists);
+        
+        if (isRootLayer() || isStackingContext()) {
+            paintLayers(c, collectLayers(AUTO));
+            paintLayers(c, getSortedLayers(ZERO));
+            paintLayers(c, getSortedLayers(POSITIVE));
+        }
+    }
+    
     public void paintAsLayer(RenderingContext c, BlockBox startingPoint) {
         BoxRangeLists rangeLists = new BoxRangeLists();
         
@@ -459,6 +526,11 @@ public class Layer {
         BoxCollector collector = new BoxCollector();
         collector.collect(c, c.getOutputDevice().getClip(), 
                 this, startingPoint, blocks, lines, rangeLists);
+        
+        if (c.getPaintFilter() == PAINT_DYNAMIC) {
+            paintInlineContent(c, lines, rangeLists);
+            return;
+        }
     
         Map collapsedTableBorders = collectCollapsedTableBorders(c, blocks);
         
@@ -790,8 +862,7 @@ public class Layer {
         PageInfo pageInfo = c.getCss().getPageStyle(pageName, pseudoPage);
         result.setPageInfo(pageInfo);
         
-        CalculatedStyle cs = new EmptyStyle().deriveStyle(pageInfo.getPageStyle());
-        result.setStyle(cs);
+        result.setStyle(pageInfo.getCalculatedPageStyle());
         result.setOuterPageWidth(result.getWidth(c));
         
         return result;
@@ -1055,10 +1126,15 @@ public class Layer {
     }
     
     public void layoutPages(LayoutContext c) {
+        XRTraceEvent event = XRTrace.begin(XRTrace.PAGE_LAYOUT);
         c.setRootDocumentLayer(c.getRootLayer());
+        Map marginAreaCache = new HashMap();
         for (Iterator i = _pages.iterator(); i.hasNext(); ) {
             PageBox pageBox = (PageBox)i.next();
-            pageBox.layout(c);
+            pageBox.layout(c, marginAreaCache);
+        }
+        if (event != null) {
+            event.end(c.getSharedContext().getBaseURL(), -1, _pages.size());
         }
     }
     
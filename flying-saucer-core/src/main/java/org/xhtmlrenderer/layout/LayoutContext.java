@@ -27,6 +27,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import org.w3c.dom.Element;
 import org.xhtmlrenderer.context.ContentFunctionFactory;
 import org.xhtmlrenderer.context.StyleReference;
 import org.xhtmlrenderer.css.constants.CSSName;
@@ -38,14 +39,17 @@ import org.xhtmlrenderer.css.value.FontSpecification;
 import org.xhtmlrenderer.extend.FSCanvas;
 import org.xhtmlrenderer.extend.FontContext;
 import org.xhtmlrenderer.extend.NamespaceHandler;
+import org.xhtmlrenderer.extend.ReplacedElement;
 import org.xhtmlrenderer.extend.ReplacedElementFactory;
 import org.xhtmlrenderer.extend.TextRenderer;
 import org.xhtmlrenderer.extend.UserAgentCallback;
+import org.xhtmlrenderer.render.BlockBox;
 import org.xhtmlrenderer.render.Box;
 import org.xhtmlrenderer.render.FSFont;
 import org.xhtmlrenderer.render.FSFontMetrics;
 import org.xhtmlrenderer.render.MarkerData;
 import org.xhtmlrenderer.render.PageBox;
+import org.xhtmlrenderer.simple.extend.FormSubmissionListener;
 
 /**
  * This class tracks state which changes over the course of a layout run.
@@ -86,6 +90,22 @@ public class LayoutContext implements CssContext {
 
     private BreakAtLineContext _breakAtLineContext;
 
+    /**
+     * Non-null if this context was created by {@link #copyForConcurrentLayout(FontContext)}.
+     * Calls through to non thread-safe parts of the {@link SharedContext}
+     * are then serialized on this object.
+     */
+    private Object _sharedContextLock;
+
+    /**
+     * The replaced element factory of the {@link SharedContext}, wrapped so
+     * that calls are serialized on {@link #_sharedContextLock}.  Only set for
+     * copies made for concurrent layout.
+     */
+    private ReplacedElementFactory _synchronizedReplacedElementFactory;
+
+    private Rectangle _lazyLayoutRegion;
+
     public TextRenderer getTextRenderer() {
         return _sharedContext.getTextRenderer();
     }
@@ -116,6 +136,70 @@ public class LayoutContext implements CssContext {
         _firstLetters = new StyleTracker();
     }
 
+    /**
+     * Returns a copy of this context which may be used to lay out an
+     * independent subtree (e.g. a table cell whose width is already known) on
+     * another thread while this context is not in use.  The copy has its own
+     * font context, BFC and layer stacks, and counter state.  Calls to the
+     * font resolver, the replaced element factory and the id map of the
+     * {@link SharedContext} made through the copy are serialized.
+     *
+     * @param fontContext a font context which is not used by any other thread
+     */
+    public LayoutContext copyForConcurrentLayout(FontContext fontContext) {
+        LayoutContext result = new LayoutContext(_sharedContext);
+        result._sharedContextLock = _sharedContext;
+        result._synchronizedReplacedElementFactory = new SynchronizedReplacedElementFactory(
+                _sharedContext.getReplacedElementFactory(), _sharedContext);
+
+        result._fontContext = fontContext;
+
+        result._rootLayer = _rootLayer;
+        result._layers = new LinkedList(_layers);
+        result._bfcs = new LinkedList(_bfcs);
+
+        result._firstLines = _firstLines.copyOf();
+        result._firstLetters = _firstLetters.copyOf();
+        result._currentMarkerData = _currentMarkerData;
+
+        result._counterContextMap = new HashMap(_counterContextMap);
+
+        result._extraSpaceTop = _extraSpaceTop;
+        result._extraSpaceBottom = _extraSpaceBottom;
+        result._pendingPageName = _pendingPageName;
+        result._pageName = _pageName;
+        result._noPageBreak = _noPageBreak;
+        result._rootDocumentLayer = _rootDocumentLayer;
+        result._page = _page;
+        result._mayCheckKeepTogether = _mayCheckKeepTogether;
+        result._breakAtLineContext = _breakAtLineContext;
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if this context was created by
+     * {@link #copyForConcurrentLayout(FontContext)}.
+     */
+    public boolean isConcurrentLayout() {
+        return _sharedContextLock != null;
+    }
+
+    /**
+     * The area (in document coordinates) which must be laid out.  If set,
+     * block content outside of it may be given an estimated height instead
+     * of being laid out.  Ignored when printing.
+     *
+     * @see LazyLayout
+     */
+    public Rectangle getLazyLayoutRegion() {
+        return _lazyLayoutRegion;
+    }
+
+    public void setLazyLayoutRegion(Rectangle lazyLayoutRegion) {
+        _lazyLayoutRegion = lazyLayoutRegion;
+    }
+
     public void reInit(boolean keepLayers) {
         _firstLines = new StyleTracker();
         _firstLetters = new StyleTracker();
@@ -241,17 +325,33 @@ public class LayoutContext implements CssContext {
         return _rootLayer;
     }
 
+    void setRootLayer(Layer rootLayer) {
+        _rootLayer = rootLayer;
+    }
+
     public void translate(int x, int y) {
         getBlockFormattingContext().translate(x, y);
     }
 
     /* code to keep track of all of the id'd boxes */
     public void addBoxId(String id, Box box) {
-        _sharedContext.addBoxId(id, box);
+        if (_sharedContextLock != null) {
+            synchronized (_sharedContextLock) {
+                _sharedContext.addBoxId(id, box);
+            }
+        } else {
+            _sharedContext.addBoxId(id, box);
+        }
     }
 
     public void removeBoxId(String id) {
-        _sharedContext.removeBoxId(id);
+        if (_sharedContextLock != null) {
+            synchronized (_sharedContextLock) {
+                _sharedContext.removeBoxId(id);
+            }
+        } else {
+            _sharedContext.removeBoxId(id);
+        }
     }
 
     public boolean isInteractive() {
@@ -267,15 +367,27 @@ public class LayoutContext implements CssContext {
     }
 
     public float getFontSize2D(FontSpecification font) {
-        return _sharedContext.getFont(font).getSize2D();
+        return getFont(font).getSize2D();
     }
 
     public float getXHeight(FontSpecification parentFont) {
-        return _sharedContext.getXHeight(getFontContext(), parentFont);
+        if (_sharedContextLock != null) {
+            synchronized (_sharedContextLock) {
+                return _sharedContext.getXHeight(getFontContext(), parentFont);
+            }
+        } else {
+            return _sharedContext.getXHeight(getFontContext(), parentFont);
+        }
     }
 
     public FSFont getFont(FontSpecification font) {
-        return _sharedContext.getFont(font);
+        if (_sharedContextLock != null) {
+            synchronized (_sharedContextLock) {
+                return _sharedContext.getFont(font);
+            }
+        } else {
+            return _sharedContext.getFont(font);
+        }
     }
 
     public UserAgentCallback getUac() {
@@ -303,7 +415,11 @@ public class LayoutContext implements CssContext {
     }
 
     public ReplacedElementFactory getReplacedElementFactory() {
-        return _sharedContext.getReplacedElementFactory();
+        if (_synchronizedReplacedElementFactory != null) {
+            return _synchronizedReplacedElementFactory;
+        } else {
+            return _sharedContext.getReplacedElementFactory();
+        }
     }
 
     public FontContext getFontContext() {
@@ -536,4 +652,40 @@ public class LayoutContext implements CssContext {
     public void setBreakAtLineContext(BreakAtLineContext breakAtLineContext) {
         _breakAtLineContext = breakAtLineContext;
     }
+
+    private static class SynchronizedReplacedElementFactory implements ReplacedElementFactory {
+        private final ReplacedElementFactory _delegate;
+        private final Object _lock;
+
+        SynchronizedReplacedElementFactory(ReplacedElementFactory delegate, Object lock) {
+            _delegate = delegate;
+            _lock = lock;
+        }
+
+        public ReplacedElement createReplacedElement(
+                LayoutContext c, BlockBox box,
+                UserAgentCallback uac, int cssWidth, int cssHeight) {
+            synchronized (_lock) {
+                return _delegate.createReplacedElement(c, box, uac, cssWidth, cssHeight);
+            }
+        }
+
+        public void reset() {
+            synchronized (_lock) {
+                _delegate.reset();
+            }
+        }
+
+        public void remove(Element e) {
+            synchronized (_lock) {
+                _delegate.remove(e);
+            }
+        }
+
+        public void setFormSubmissionListener(FormSubmissionListener listener) {
+            synchronized (_lock) {
+                _delegate.setFormSubmissionListener(listener);
+            }
+        }
+    }
 }
@@ -0,0 +1,221 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.layout;
+
+import java.awt.Rectangle;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xhtmlrenderer.render.AnonymousBlockBox;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
+
+/**
+ * Support for laying out very large documents lazily on screen.  When a
+ * {@link LayoutContext} has a {@link LayoutContext#getLazyLayoutRegion() lazy
+ * layout region}, {@link BlockBoxing} only lays out those normal flow block
+ * children which fall within it.  The others are positioned with an estimated
+ * height (see {@link BlockBox#layoutDeferred(LayoutContext, int)}) and have
+ * no content.
+ * <p>
+ * Before an area of the document is painted, {@link #layoutDeferred(LayoutContext,
+ * BlockBox, Rectangle)} must be called to lay out any deferred blocks in it.
+ * Content following a deferred block moves when the block's real height
+ * turns out to differ from its estimate.  {@link #discard(LayoutContext,
+ * BlockBox, Rectangle)} does the opposite and throws away the content of
+ * blocks outside of a given area.
+ */
+public class LazyLayout {
+    private LazyLayout() {
+    }
+
+    /**
+     * Returns whether <code>child</code> may be deferred instead of being
+     * laid out.
+     */
+    static boolean isDeferrable(BlockBox parent, BlockBox child) {
+        return ! (child instanceof AnonymousBlockBox) &&
+                IncrementalLayout.isSimpleBlock(child) &&
+                IncrementalLayout.isFlowContent(parent);
+    }
+
+    /**
+     * Returns the height to use for a deferred child, given the number and
+     * total height of the children laid out before it.
+     */
+    static int estimateHeight(LayoutContext c, BlockBox child, int count, int totalHeight) {
+        if (count > 0) {
+            return totalHeight / count;
+        } else {
+            return (int)child.getStyle().getLineHeight(c);
+        }
+    }
+
+    /**
+     * Lays out all deferred blocks which intersect <code>region</code>.
+     *
+     * @return The area (in document coordinates) which must be repainted or
+     * <code>null</code> if there were no deferred blocks in
+     * <code>region</code>
+     */
+    public static Rectangle layoutDeferred(LayoutContext c, BlockBox root, Rectangle region) {
+        if (root.getLayer() == null) {
+            return null;
+        }
+
+        Rectangle result = null;
+        boolean moved = false;
+
+        BlockBox deferred;
+        while ((deferred = findDeferred(root, region)) != null) {
+            int estimatedHeight = deferred.getHeight();
+            Rectangle bounds = new Rectangle(
+                    deferred.getAbsX(), deferred.getAbsY(),
+                    deferred.getWidth(), estimatedHeight);
+
+            deferred.reset(c);
+            IncrementalLayout.layoutInPlace(c, root, deferred);
+
+            int delta = deferred.getHeight() - estimatedHeight;
+            if (delta != 0) {
+                IncrementalLayout.moveFollowingContent(deferred, delta);
+                moved = true;
+            }
+
+            bounds.add(deferred.calcPaintingInfo(c, false).getAggregateBounds());
+            result = result == null ? bounds : result.union(bounds);
+        }
+
+        if (result != null) {
+            Rectangle rootBounds = new Rectangle(root.calcPaintingInfo(c, true).getAggregateBounds());
+            rootBounds = rootBounds.union(root.calcPaintingInfo(c, false).getAggregateBounds());
+            if (moved) {
+                // Everything below the first block may have moved
+                result = new Rectangle(
+                        rootBounds.x, result.y,
+                        rootBounds.width, rootBounds.y + rootBounds.height - result.y);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Throws away the content of laid out blocks which could have been
+     * deferred and which do not intersect <code>keep</code>.  The blocks keep
+     * their current height so nothing moves.
+     *
+     * @return the number of blocks discarded
+     */
+    public static int discard(LayoutContext c, BlockBox root, Rectangle keep) {
+        int result = discard(c, root, keep, 0);
+        if (result > 0) {
+            root.calcPaintingInfo(c, false);
+        }
+        return result;
+    }
+
+    private static int discard(LayoutContext c, BlockBox block, Rectangle keep, int count) {
+        if (block.getChildrenContentType() != BlockBox.CONTENT_BLOCK) {
+            return count;
+        }
+
+        for (int i = 0; i < block.getChildCount(); i++) {
+            BlockBox child = (BlockBox)block.getChild(i);
+            if (child.isDeferred()) {
+                continue;
+            }
+
+            if (! intersects(child, keep) && isDeferrable(block, child)) {
+                int height = child.getHeight();
+
+                child.reset(c);
+                child.removeAllChildren();
+                child.setChildrenContentType(BlockBox.CONTENT_UNKNOWN);
+                child.setInlineContent(null);
+                removeChildReferences(c, child.getElement());
+
+                child.layoutDeferred(c, height);
+                count++;
+            } else {
+                count = discard(c, child, keep, count);
+            }
+        }
+
+        return count;
+    }
+
+    private static void removeChildReferences(LayoutContext c, Element e) {
+        NodeList children = e.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                c.getSharedContext().removeElementReferences((Element)child);
+            }
+        }
+    }
+
+    private static BlockBox findDeferred(BlockBox block, Rectangle region) {
+        if (block.isDeferred()) {
+            return block;
+        }
+
+        if (block.getChildrenContentType() != BlockBox.CONTENT_BLOCK) {
+            return null;
+        }
+
+        // Deferred blocks are always in normal flow so their (and their
+        // siblings') vertical positions only ever increase
+        int count = block.getChildCount();
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Box child = block.getChild(mid);
+            if (child.getAbsY() + child.getHeight() < region.y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int i = low; i < count; i++) {
+            BlockBox child = (BlockBox)block.getChild(i);
+            if (child.getAbsY() > region.y + region.height) {
+                break;
+            }
+            if (intersects(child, region)) {
+                BlockBox result = findDeferred(child, region);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean intersects(Box box, Rectangle region) {
+        int top = box.getAbsY();
+        int bottom = top + box.getHeight();
+        return bottom >= region.y && top <= region.y + region.height;
+    }
+}
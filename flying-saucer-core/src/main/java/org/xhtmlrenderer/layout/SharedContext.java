@@ -25,6 +25,7 @@ import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -35,6 +36,8 @@ import org.xhtmlrenderer.context.StyleReference;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.EmptyStyle;
 import org.xhtmlrenderer.css.value.FontSpecification;
+import org.xhtmlrenderer.event.RenderMetrics;
+import org.xhtmlrenderer.event.RenderMetricsListener;
 import org.xhtmlrenderer.extend.FSCanvas;
 import org.xhtmlrenderer.extend.FontContext;
 import org.xhtmlrenderer.extend.FontResolver;
@@ -49,6 +52,7 @@ import org.xhtmlrenderer.render.RenderingContext;
 import org.xhtmlrenderer.simple.extend.FormSubmissionListener;
 import org.xhtmlrenderer.swing.Java2DTextRenderer;
 import org.xhtmlrenderer.swing.SwingReplacedElementFactory;
+import org.xhtmlrenderer.util.RenderConfig;
 import org.xhtmlrenderer.util.XRLog;
 
 /**
@@ -95,6 +99,13 @@ public class SharedContext {
     private ReplacedElementFactory replacedElementFactory;
     private Rectangle temp_canvas;
 
+    private ExecutorService tableCellLayoutExecutor;
+
+    private RenderMetricsListener renderMetricsListener;
+    private volatile RenderMetrics renderMetrics;
+
+    private RenderConfig renderConfig = RenderConfig.getDefault();
+
     public SharedContext() {
     }
 
@@ -553,6 +564,8 @@ public class SharedContext {
             styleMap = new HashMap(1024, 0.75f);
         }
 
+        RenderMetrics metrics = renderMetrics;
+
         CalculatedStyle result = null;
         if (! restyle) {
             result = (CalculatedStyle)styleMap.get(e);
@@ -566,9 +579,19 @@ public class SharedContext {
                 parentCalculatedStyle = getStyle((Element)parent, false);
             }
 
+            long start = metrics == null ? 0 : System.nanoTime();
+
             result = parentCalculatedStyle.deriveStyle(getCss().getCascadedStyle(e, restyle));
 
             styleMap.put(e, result);
+
+            if (metrics != null) {
+                metrics.addPhaseTime(RenderMetrics.CASCADE, System.nanoTime() - start);
+                metrics.increment(RenderMetrics.ELEMENTS_STYLED);
+                metrics.increment(RenderMetrics.CACHE_MISSES);
+            }
+        } else if (metrics != null) {
+            metrics.increment(RenderMetrics.CACHE_HITS);
         }
 
         return result;
@@ -595,6 +618,106 @@ public class SharedContext {
         this.replacedElementFactory = ref;
     }
 
+    /**
+     * Returns the executor used to lay out the cells of a table row in
+     * parallel or <code>null</code> (the default) if table cells are
+     * laid out sequentially.
+     */
+    public ExecutorService getTableCellLayoutExecutor() {
+        return tableCellLayoutExecutor;
+    }
+
+    /**
+     * Enables parallel layout of table cells in non-paged, non-interactive
+     * rendering (e.g. {@link org.xhtmlrenderer.swing.Java2DRenderer}).  Once
+     * column widths are fixed, the cells of a row which contain only normal
+     * flow content (no floats, positioned elements or counters) are laid out
+     * concurrently on this executor.  The caller owns the executor and is
+     * responsible for shutting it down.  Pass <code>null</code> to go back to
+     * sequential layout.
+     *
+     * @param executor the executor to use or <code>null</code>
+     */
+    public void setTableCellLayoutExecutor(ExecutorService executor) {
+        this.tableCellLayoutExecutor = executor;
+    }
+
+    /**
+     * Returns the configuration snapshot this context renders with.  This is
+     * {@link RenderConfig#getDefault()} unless it has been replaced.
+     */
+    public RenderConfig getRenderConfig() {
+        return renderConfig;
+    }
+
+    /**
+     * Replaces the configuration this context renders with.  This should be
+     * done before laying out a document.
+     */
+    public void setRenderConfig(RenderConfig renderConfig) {
+        this.renderConfig = renderConfig;
+    }
+
+    public RenderMetricsListener getRenderMetricsListener() {
+        return renderMetricsListener;
+    }
+
+    /**
+     * Registers a listener which receives per phase timings, allocations and
+     * counts (see {@link RenderMetrics}) for every document rendered with
+     * this context.  Pass <code>null</code> to stop collecting metrics.
+     */
+    public void setRenderMetricsListener(RenderMetricsListener listener) {
+        this.renderMetricsListener = listener;
+        if (listener == null) {
+            renderMetrics = null;
+        }
+    }
+
+    /**
+     * Returns the metrics of the document currently being rendered or
+     * <code>null</code> if no {@link RenderMetricsListener} is registered.
+     */
+    public RenderMetrics getRenderMetrics() {
+        return renderMetrics;
+    }
+
+    /**
+     * Starts collecting metrics for a new document, discarding any which
+     * have not been reported.  Does nothing if no listener is registered.
+     */
+    public void startRenderMetrics(String uri) {
+        renderMetrics = renderMetricsListener == null ? null : new RenderMetrics(uri);
+    }
+
+    /**
+     * Reports the metrics collected since {@link #startRenderMetrics(String)}
+     * to the listener.
+     */
+    public void finishRenderMetrics() {
+        RenderMetrics metrics = renderMetrics;
+        RenderMetricsListener listener = renderMetricsListener;
+        renderMetrics = null;
+        if (metrics != null && listener != null) {
+            metrics.finish();
+            listener.renderFinished(metrics);
+        }
+    }
+
+    public void startRenderPhase(int phase) {
+        RenderMetrics metrics = renderMetrics;
+        if (metrics != null) {
+            metrics.startPhase(phase);
+        }
+    }
+
+    public void endRenderPhase(int phase) {
+        RenderMetrics metrics = renderMetrics;
+        if (metrics != null) {
+            metrics.endPhase(phase);
+        }
+    }
+
     public void removeElementReferences(Element e) {
         String id = namespaceHandler.getID(e);
         if (id != null && id.length() > 0) {
@@ -0,0 +1,194 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.newtable;
+
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.layout.Styleable;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.swing.Java2DFontContext;
+import org.xhtmlrenderer.util.XRRuntimeException;
+
+/**
+ * Lays out the cells of a table row concurrently using the executor from
+ * {@link org.xhtmlrenderer.layout.SharedContext#getTableCellLayoutExecutor()}.
+ * Once the column widths are fixed, the content layout of a cell only
+ * depends on its own subtree, provided that subtree contains nothing which
+ * reaches outside of the cell's block formatting context (floats and
+ * positioned elements register with the enclosing layer, counters and
+ * :first-line styles carry state between siblings).  Rows which don't meet
+ * these conditions, as well as paged and interactive layout, keep using the
+ * sequential path in {@link TableRowBox}.
+ */
+final class ParallelCellLayout {
+    private ParallelCellLayout() {
+    }
+
+    /**
+     * Returns <code>true</code> if the cells of <code>row</code> may be
+     * laid out with {@link #layoutCells(LayoutContext, TableRowBox)}.  As a
+     * side effect, the box trees of the cells are built (in document order)
+     * so that no box construction happens on a worker thread.
+     */
+    static boolean isApplicable(LayoutContext c, TableRowBox row) {
+        if (c.getSharedContext().getTableCellLayoutExecutor() == null ||
+                c.isPrint() || c.isInteractive() || c.isConcurrentLayout() ||
+                row.getChildCount() < 2 ||
+                ! (c.getFontContext() instanceof Java2DFontContext) ||
+                c.getFirstLinesTracker().hasStyles() ||
+                c.getFirstLettersTracker().hasStyles()) {
+            return false;
+        }
+
+        for (Iterator i = row.getChildIterator(); i.hasNext(); ) {
+            if (! isIndependent(c, (Box)i.next())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static void layoutCells(LayoutContext c, TableRowBox row) {
+        ExecutorService executor = c.getSharedContext().getTableCellLayoutExecutor();
+        Graphics2D graphics = ((Java2DFontContext)c.getFontContext()).getGraphics();
+
+        List tasks = new ArrayList(row.getChildCount());
+        for (Iterator i = row.getChildIterator(); i.hasNext(); ) {
+            TableCellBox cell = (TableCellBox)i.next();
+            cell.initContainingLayer(c);
+            cell.calcCanvasLocation();
+
+            Graphics2D copy = (Graphics2D)graphics.create();
+            LayoutContext fork = c.copyForConcurrentLayout(new Java2DFontContext(copy));
+            c.getTextRenderer().setup(fork.getFontContext());
+
+            tasks.add(new CellLayoutTask(fork, cell, copy));
+        }
+
+        List results;
+        try {
+            results = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XRRuntimeException("Interrupted while laying out table cells", e);
+        }
+
+        for (Iterator i = results.iterator(); i.hasNext(); ) {
+            Future result = (Future)i.next();
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new XRRuntimeException("Interrupted while laying out table cells", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                } else if (cause instanceof Error) {
+                    throw (Error)cause;
+                } else {
+                    throw new XRRuntimeException("Failed to lay out table cell", cause);
+                }
+            }
+        }
+    }
+
+    private static boolean isIndependent(LayoutContext c, Box box) {
+        if (! isIndependent(box.getStyle())) {
+            return false;
+        }
+
+        if (box instanceof BlockBox) {
+            BlockBox block = (BlockBox)box;
+            block.ensureChildren(c);
+
+            if (block.getFirstLineStyle() != null || block.getFirstLetterStyle() != null) {
+                return false;
+            }
+
+            if (block.getChildrenContentType() == BlockBox.CONTENT_INLINE &&
+                    block.getInlineContent() != null) {
+                for (Iterator i = block.getInlineContent().iterator(); i.hasNext(); ) {
+                    Styleable child = (Styleable)i.next();
+                    if (child instanceof Box) {
+                        if (! isIndependent(c, (Box)child)) {
+                            return false;
+                        }
+                    } else if (! isIndependent(child.getStyle())) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        for (Iterator i = box.getChildIterator(); i.hasNext(); ) {
+            if (! isIndependent(c, (Box)i.next())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isIndependent(CalculatedStyle style) {
+        if (style == null) {
+            return true;
+        }
+        return ! style.isPostionedOrFloated() &&
+                ! style.requiresLayer() &&
+                ! style.isRunning() &&
+                ! style.isListItem() &&
+                ! style.isFixedBackground() &&
+                style.getCounterReset() == null &&
+                style.getCounterIncrement() == null;
+    }
+
+    private static class CellLayoutTask implements Callable {
+        private final LayoutContext _context;
+        private final TableCellBox _cell;
+        private final Graphics2D _graphics;
+
+        CellLayoutTask(LayoutContext context, TableCellBox cell, Graphics2D graphics) {
+            _context = context;
+            _cell = cell;
+            _graphics = graphics;
+        }
+
+        public Object call() {
+            try {
+                _cell.layout(_context, 0);
+            } finally {
+                _graphics.dispose();
+            }
+            return null;
+        }
+    }
+}
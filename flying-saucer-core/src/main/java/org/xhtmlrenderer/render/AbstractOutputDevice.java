@@ -40,7 +40,7 @@ import org.xhtmlrenderer.css.style.derived.LengthValue;
 import org.xhtmlrenderer.css.value.FontSpecification;
 import org.xhtmlrenderer.extend.FSImage;
 import org.xhtmlrenderer.extend.OutputDevice;
-import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.newtable.TableBox;
 import org.xhtmlrenderer.util.Uu;
 
 /**
@@ -203,7 +203,7 @@ public abstract class AbstractOutputDevice implements OutputDevice {
             RenderingContext c, CalculatedStyle style,
             Rectangle backgroundBounds, Rectangle bgImageContainer,
             BorderPropertySet border) {
-        if (!Configuration.isTrue("xr.renderer.draw.backgrounds", true)) {
+        if (!c.getRenderConfig().isDrawBackgrounds()) {
             return;
         }
 
@@ -408,6 +408,10 @@ public abstract class AbstractOutputDevice implements OutputDevice {
         }
     }
 
+    public void paintMarginArea(RenderingContext c, TableBox table, boolean invariant) {
+        table.getLayer().paint(c);
+    }
+
     /**
      * Gets the FontSpecification for this AbstractOutputDevice.
      *
@@ -51,6 +51,8 @@ import org.xhtmlrenderer.layout.PaintingInfo;
 import org.xhtmlrenderer.layout.PersistentBFC;
 import org.xhtmlrenderer.layout.Styleable;
 import org.xhtmlrenderer.newtable.TableRowBox;
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
 
 /**
  * A block box as defined in the CSS spec.  It also provides a base class for
@@ -105,6 +107,8 @@ public class BlockBox extends Box implements InlinePaintable {
 
     private boolean _fromCaptionedTable;
 
+    private boolean _deferred;
+
     public BlockBox() {
         super();
     }
@@ -569,6 +573,8 @@ public class BlockBox extends Box implements InlinePaintable {
         if (getStyle().isRunning()) {
             c.getRootLayer().removeRunningBlock(this);
         }
+
+        _deferred = false;
     }
 
     private int calcPinnedContentWidth(CssContext c) {
@@ -772,11 +778,32 @@ public class BlockBox extends Box implements InlinePaintable {
         }
     }
 
+    /**
+     * Stands in for {@link #layout(LayoutContext)} when laying out lazily.
+     * The box is given an estimated height, but its content is neither built
+     * nor laid out.  It must be laid out normally before it is painted.
+     *
+     * @see org.xhtmlrenderer.layout.LazyLayout
+     */
+    public void layoutDeferred(LayoutContext c, int estimatedHeight) {
+        addBoxID(c);
+        calcDimensions(c);
+        setHeight(estimatedHeight);
+        setState(Box.DONE);
+        _deferred = true;
+    }
+
+    public boolean isDeferred() {
+        return _deferred;
+    }
+
     public void layout(LayoutContext c) {
         layout(c, 0);
     }
 
     public void layout(LayoutContext c, int contentStart) {
+        XRTraceEvent event = XRTrace.begin(XRTrace.BLOCK_LAYOUT);
+
         CalculatedStyle style = getStyle();
 
         boolean pushedLayer = false;
@@ -888,6 +915,17 @@ public class BlockBox extends Box implements InlinePaintable {
         if (pushedLayer) {
             c.popLayer();
         }
+
+        if (event != null) {
+            int pageNo = -1;
+            if (c.isPrint()) {
+                PageBox page = c.getRootLayer().getFirstPage(c, this);
+                if (page != null) {
+                    pageNo = page.getPageNo();
+                }
+            }
+            event.end(c.getSharedContext().getBaseURL(), pageNo, getHeight());
+        }
     }
 
     protected boolean isAllowHeightToShrink() {
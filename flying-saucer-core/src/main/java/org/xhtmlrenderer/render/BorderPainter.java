@@ -326,7 +326,8 @@ public class BorderPainter {
                 paintPatternedRect(outputDevice, bounds, border, border, new float[]{8.0f + thickness * 2, 4.0f + thickness}, sides, currentSide, xOffset);
                 //outputDevice.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             }
-            if (borderSideStyle == IdentValue.DOTTED) {
+            // a zero length dash pattern is illegal (and there is nothing to draw anyway)
+            if (borderSideStyle == IdentValue.DOTTED && thickness > 0) {
                 // turn off anti-aliasing or the dots will be all blurry
                 //outputDevice.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
                 paintPatternedRect(outputDevice, bounds, border, border, new float[]{thickness, thickness}, sides, currentSide, xOffset);
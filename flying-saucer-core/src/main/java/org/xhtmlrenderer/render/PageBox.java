@@ -27,6 +27,7 @@ import java.io.Writer;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.css.CSSPrimitiveValue;
@@ -324,7 +325,7 @@ public class PageBox {
                         c, this, additionalClearance, mode);
                 
                 c.getOutputDevice().translate(p.x, p.y);
-                table.getLayer().paint(c);
+                c.getOutputDevice().paintMarginArea(c, table, container.isInvariant());
                 c.getOutputDevice().translate(-p.x, -p.y);
             }
         }
@@ -364,9 +365,22 @@ public class PageBox {
     }
     
     public void layout(LayoutContext c) {
+        layout(c, null);
+    }
+
+    /**
+     * Lays out the page's margin areas.  Margin areas whose content is the
+     * same on every page (see {@link PageInfo#isPageIndependent(MarginBoxName[])})
+     * are stored in <code>marginAreaCache</code> and reused by later pages
+     * with the same page master instead of being laid out again.
+     *
+     * @param marginAreaCache a cache shared by all pages of a document or
+     * <code>null</code> to always lay out all margin areas
+     */
+    public void layout(LayoutContext c, Map marginAreaCache) {
         c.setPage(this);
         retrievePageMetadata(c);
-        layoutMarginAreas(c);
+        layoutMarginAreas(c, marginAreaCache);
     }
     
     // HACK Would much prefer to do this in ITextRenderer or ITextOutputDevice
@@ -398,12 +412,24 @@ public class PageBox {
         }
     }
 
-    private void layoutMarginAreas(LayoutContext c) {
+    private void layoutMarginAreas(LayoutContext c, Map marginAreaCache) {
         RectPropertySet margin = getMargin(c);
         for (int i = 0; i < MARGIN_AREA_DEFS.length; i++) {
             MarginArea area = MARGIN_AREA_DEFS[i];
             
             Dimension dim = area.getLayoutDimension(c, this, margin);
+
+            MarginAreaKey key = null;
+            if (marginAreaCache != null &&
+                    _pageInfo.isPageIndependent(area.getMarginBoxNames())) {
+                key = new MarginAreaKey(_pageInfo, i, dim);
+                TableBox cached = (TableBox)marginAreaCache.get(key);
+                if (cached != null) {
+                    _marginAreas[i] = new MarginAreaContainer(area, cached, true);
+                    continue;
+                }
+            }
+
             TableBox table = BoxBuilder.createMarginTable(
                     c, _pageInfo, 
                     area.getMarginBoxNames(),
@@ -424,7 +450,10 @@ public class PageBox {
                 } finally {
                     c.setNoPageBreak(0);
                 }
-                _marginAreas[i] = new MarginAreaContainer(area, table);
+                _marginAreas[i] = new MarginAreaContainer(area, table, key != null);
+                if (key != null) {
+                    marginAreaCache.put(key, table);
+                }
             }
         }
     }
@@ -479,10 +508,12 @@ public class PageBox {
     private static class MarginAreaContainer {
         private final MarginArea _area;
         private final TableBox _table;
+        private final boolean _invariant;
         
-        public MarginAreaContainer(MarginArea area, TableBox table) {
+        public MarginAreaContainer(MarginArea area, TableBox table, boolean invariant) {
             _area = area;
             _table = table;
+            _invariant = invariant;
         }
 
         public MarginArea getArea() {
@@ -492,6 +523,39 @@ public class PageBox {
         public TableBox getTable() {
             return _table;
         }
+
+        /**
+         * Whether the table is shared with other pages and, apart from lines
+         * containing page counters, is painted the same way on all of them.
+         */
+        public boolean isInvariant() {
+            return _invariant;
+        }
+    }
+    
+    private static final class MarginAreaKey {
+        private final PageInfo _pageInfo;
+        private final int _area;
+        private final Dimension _dimension;
+
+        public MarginAreaKey(PageInfo pageInfo, int area, Dimension dimension) {
+            _pageInfo = pageInfo;
+            _area = area;
+            _dimension = dimension;
+        }
+
+        public int hashCode() {
+            return (System.identityHashCode(_pageInfo) * 31 + _area) * 31 + _dimension.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof MarginAreaKey)) {
+                return false;
+            }
+            MarginAreaKey other = (MarginAreaKey)o;
+            return _pageInfo == other._pageInfo && _area == other._area &&
+                    _dimension.equals(other._dimension);
+        }
     }
     
     private static abstract class MarginArea {
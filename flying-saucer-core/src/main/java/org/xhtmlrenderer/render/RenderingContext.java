@@ -28,6 +28,7 @@ import org.xhtmlrenderer.extend.*;
 import org.xhtmlrenderer.layout.Layer;
 import org.xhtmlrenderer.layout.SharedContext;
 import org.xhtmlrenderer.swing.RootPanel;
+import org.xhtmlrenderer.util.RenderConfig;
 
 /**
  * Supplies information about the context in which rendering will take place
@@ -48,6 +49,8 @@ public class RenderingContext implements CssContext {
     private Layer rootLayer;
     
     private int initialPageNo;
+
+    private short paintFilter = Layer.PAINT_ALL;
     
     /**
      * <p/>
@@ -69,6 +72,10 @@ public class RenderingContext implements CssContext {
         return sharedContext.getUac();
     }
 
+    public RenderConfig getRenderConfig() {
+        return sharedContext.getRenderConfig();
+    }
+
     public String getBaseURL() {
         return sharedContext.getBaseURL();
     }
@@ -227,6 +234,19 @@ public class RenderingContext implements CssContext {
         this.initialPageNo = initialPageNo;
     }    
 
+    /**
+     * Returns which content {@link Layer#paint(RenderingContext)} paints:
+     * one of {@link Layer#PAINT_ALL}, {@link Layer#PAINT_STATIC} or
+     * {@link Layer#PAINT_DYNAMIC}.
+     */
+    public short getPaintFilter() {
+        return paintFilter;
+    }
+
+    public void setPaintFilter(short paintFilter) {
+        this.paintFilter = paintFilter;
+    }
+
     public Box getBoxById(String id) {
         return sharedContext.getBoxById(id);
     }
@@ -0,0 +1,186 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.render;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.xhtmlrenderer.util.Configuration;
+
+/**
+ * A bounded, lock-free memo table of measured text widths, keyed by
+ * {@link FSFont} identity, an optional measuring context and string
+ * content.  Documents such as large tables measure the same short tokens
+ * over and over again; the text renderers consult this cache before asking
+ * the underlying font machinery.
+ * <p>
+ * Entries refer to their fonts, so each text renderer has a cache of its
+ * own rather than sharing one for the life of the process.  Cached fonts
+ * are then released along with the renderer and the
+ * {@link org.xhtmlrenderer.layout.SharedContext} it belongs to.
+ * <p>
+ * The table is direct-mapped: each (font, context, string) key hashes to exactly one
+ * slot and a colliding insert simply replaces the previous entry. Entries are
+ * immutable, so readers never see a partially written entry and no locking is
+ * required. Hit and miss counts are kept so the effectiveness of the cache can
+ * be checked with {@link #getHitRatio()}.
+ * <p>
+ * A cached width must depend only on the font instance, the context and
+ * the string.  Renderers whose widths depend on more than the font (e.g.
+ * the Java2D renderer, whose widths depend on the
+ * {@link java.awt.font.FontRenderContext} of the graphics and on its
+ * fractional metrics setting) must pass that state as the context.  Contexts
+ * are compared with <code>equals</code>.
+ */
+public class TextWidthCache {
+    /** Returned by {@link #get(FSFont, String)} when no width is cached. */
+    public static final int MISS = -1;
+
+    private final AtomicReferenceArray _entries;
+    private final int _mask;
+    private final int _maxLength;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    /**
+     * Creates a cache sized by the <code>xr.text.width-cache-size</code> and
+     * <code>xr.text.width-cache-max-length</code> configuration properties.
+     */
+    public TextWidthCache() {
+        this(Configuration.valueAsInt("xr.text.width-cache-size", 8192),
+                Configuration.valueAsInt("xr.text.width-cache-max-length", 64));
+    }
+
+    /**
+     * @param size the number of slots; rounded up to the next power of two.
+     * A size of zero or less disables the cache.
+     * @param maxLength strings longer than this are never cached
+     */
+    public TextWidthCache(int size, int maxLength) {
+        int capacity = 0;
+        if (size > 0) {
+            capacity = 1;
+            while (capacity < size) {
+                capacity <<= 1;
+            }
+        }
+        _entries = new AtomicReferenceArray(capacity);
+        _mask = capacity - 1;
+        _maxLength = maxLength;
+    }
+
+    /**
+     * Returns the cached width of <code>string</code> in <code>font</code>
+     * or {@link #MISS} if it has not been measured (or has been evicted).
+     */
+    public int get(FSFont font, String string) {
+        return get(font, null, string);
+    }
+
+    /**
+     * Returns the cached width of <code>string</code> in <code>font</code>
+     * measured in <code>context</code>, or {@link #MISS} if it has not been
+     * measured (or has been evicted).
+     */
+    public int get(FSFont font, Object context, String string) {
+        if (! isCacheable(string)) {
+            return MISS;
+        }
+        Entry entry = (Entry)_entries.get(indexFor(font, context, string));
+        if (entry != null && entry.font == font && entry.string.equals(string) &&
+                (entry.context == context || (context != null && context.equals(entry.context)))) {
+            _hits.incrementAndGet();
+            return entry.width;
+        }
+        _misses.incrementAndGet();
+        return MISS;
+    }
+
+    public void put(FSFont font, String string, int width) {
+        put(font, null, string, width);
+    }
+
+    public void put(FSFont font, Object context, String string, int width) {
+        if (isCacheable(string)) {
+            _entries.lazySet(indexFor(font, context, string), new Entry(font, context, string, width));
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < _entries.length(); i++) {
+            _entries.set(i, null);
+        }
+        _hits.set(0);
+        _misses.set(0);
+    }
+
+    public long getHits() {
+        return _hits.get();
+    }
+
+    public long getMisses() {
+        return _misses.get();
+    }
+
+    /**
+     * Returns the fraction of lookups that were answered from the cache,
+     * or <code>0</code> if there have been no lookups yet.
+     */
+    public double getHitRatio() {
+        long hits = _hits.get();
+        long total = hits + _misses.get();
+        return total == 0 ? 0.0d : (double)hits / total;
+    }
+
+    public int getCapacity() {
+        return _entries.length();
+    }
+
+    private boolean isCacheable(String string) {
+        return _mask >= 0 && string.length() <= _maxLength;
+    }
+
+    private int indexFor(FSFont font, Object context, String string) {
+        // String caches its own hash code, so this is cheap after the first call
+        int h = System.identityHashCode(font) * 31 + string.hashCode();
+        if (context != null) {
+            h = h * 31 + context.hashCode();
+        }
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & _mask;
+    }
+
+    private static final class Entry {
+        final FSFont font;
+        final Object context;
+        final String string;
+        final int width;
+
+        Entry(FSFont font, Object context, String string, int width) {
+            this.font = font;
+            this.context = context;
+            this.string = string;
+            this.width = width;
+        }
+    }
+}
@@ -36,6 +36,8 @@ import org.w3c.dom.Document;
 import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.XRLog;
 import org.xhtmlrenderer.util.XRRuntimeException;
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -185,6 +187,8 @@ public class XMLResource extends AbstractResource {
                         "Failed on configuring SAX to DOM transformer.", ex);
             }
 
+            XRTraceEvent event = XRTrace.begin(XRTrace.DOCUMENT_LOAD);
+
             try {
                 idTransform.transform(input, output);
             } catch (Exception ex) {
@@ -192,6 +196,11 @@ public class XMLResource extends AbstractResource {
                         "Can't load the XML resource (using TRaX transformer). " + ex.getMessage(), ex);
             }
 
+            if (event != null) {
+                event.end(input.getSystemId(), -1,
+                        ((Document)output.getNode()).getElementsByTagName("*").getLength());
+            }
+
             long end = System.currentTimeMillis();
 
             target.setElapsedLoadTime(end - st);
@@ -21,6 +21,7 @@ package org.xhtmlrenderer.swing;
 
 import org.xhtmlrenderer.css.constants.IdentValue;
 import org.xhtmlrenderer.css.value.FontSpecification;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.FontResolver;
 import org.xhtmlrenderer.layout.SharedContext;
 import org.xhtmlrenderer.render.FSFont;
@@ -44,6 +45,12 @@ public class AWTFontResolver implements FontResolver {
      * Description of the Field
      */
     HashMap available_fonts_hash;
+    /**
+     * Resolved fonts by specification, valid for the font scale they were
+     * resolved at
+     */
+    private HashMap resolved_fonts;
+    private float resolved_fonts_scale;
 
     /**
      * Constructor for the FontResolverTest object
@@ -58,6 +65,7 @@ public class AWTFontResolver implements FontResolver {
         //Uu.p("available fonts =");
         //Uu.p(available_fonts);
         instance_hash = new HashMap();
+        resolved_fonts = new HashMap();
 
         // preload the font map with the font names as keys
         // don't add the actual font objects because that would be a waste of memory
@@ -124,6 +132,7 @@ public class AWTFontResolver implements FontResolver {
      */
     public void setFontMapping(String name, Font font) {
         available_fonts_hash.put(name, font.deriveFont(1f));
+        resolved_fonts.clear();
     }
 
     /**
@@ -204,13 +213,21 @@ public class AWTFontResolver implements FontResolver {
 
         // assemble a font instance hash name
         String font_instance_name = getFontInstanceHashName(ctx, font, size, weight, style, variant);
+        RenderMetrics metrics = ctx.getRenderMetrics();
         //Uu.p("looking for font: " + font_instance_name);
         // check if the font instance exists in the hash table
         if (instance_hash.containsKey(font_instance_name)) {
+            if (metrics != null) {
+                metrics.increment(RenderMetrics.CACHE_HITS);
+            }
             // if so then return it
             return (Font) instance_hash.get(font_instance_name);
         }
 
+        if (metrics != null) {
+            metrics.increment(RenderMetrics.CACHE_MISSES);
+        }
+
         //Uu.p("font lookup failed for: " + font_instance_name);
         //Uu.p("searching for : " + font + " " + size + " " + weight + " " + style + " " + variant);
 
@@ -255,8 +272,29 @@ public class AWTFontResolver implements FontResolver {
         return name + "-" + (size * ctx.getTextRenderer().getFontScale()) + "-" + weight + "-" + style + "-" + variant;
     }
 
+    /**
+     * Resolved fonts are cached by specification, so the same
+     * <code>FSFont</code> is returned for equal specifications until the
+     * font scale or font mappings change.
+     */
     public FSFont resolveFont(SharedContext renderingContext, FontSpecification spec) {
-        return resolveFont(renderingContext, spec.families, spec.size, spec.fontWeight, spec.fontStyle, spec.variant);
+        float scale = renderingContext.getTextRenderer().getFontScale();
+        if (scale != resolved_fonts_scale) {
+            resolved_fonts.clear();
+            resolved_fonts_scale = scale;
+        }
+
+        FSFont result = (FSFont) resolved_fonts.get(spec);
+        if (result != null) {
+            RenderMetrics metrics = renderingContext.getRenderMetrics();
+            if (metrics != null) {
+                metrics.increment(RenderMetrics.CACHE_HITS);
+            }
+            return result;
+        }
+        result = resolveFont(renderingContext, spec.families, spec.size, spec.fontWeight, spec.fontStyle, spec.variant);
+        resolved_fonts.put(spec.copyOf(), result);
+        return result;
     }
 }
 
@@ -44,6 +44,7 @@ import org.w3c.dom.Document;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.derived.RectPropertySet;
 import org.xhtmlrenderer.event.DocumentListener;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.layout.Layer;
@@ -139,16 +140,30 @@ public abstract class BasicPanel extends RootPanel implements FormSubmissionList
             root = getRootLayer();
         }
         setNeedRelayout(false);
+        if (root != null && isLazyLayout()) {
+            doLazyLayout();
+        }
         if (root == null) {
             //Uu.p("dispatching an initial resize event");
             //queue.dispatchLayoutEvent(new ReflowEvent(ReflowEvent.CANVAS_RESIZED, this.getSize()));
             XRLog.render(Level.FINE, "skipping the actual painting");
         } else {
+            // Only the first paint after a layout is included in its metrics
+            RenderMetrics metrics = getSharedContext().getRenderMetrics();
+            if (metrics != null) {
+                metrics.startPhase(RenderMetrics.OUTPUT);
+            }
+
             RenderingContext c = newRenderingContext((Graphics2D) g.create());
             long start = System.currentTimeMillis();
             doRender(c, root);
             long end = System.currentTimeMillis();
             XRLog.render(Level.FINE, "RENDERING TOOK " + (end - start) + " ms");
+
+            if (metrics != null) {
+                metrics.endPhase(RenderMetrics.OUTPUT);
+                getSharedContext().finishRenderMetrics();
+            }
         }
     }
 
@@ -321,7 +336,7 @@ public abstract class BasicPanel extends RootPanel implements FormSubmissionList
     }
 
     private void printTree(Box box, String tab) {
-        XRLog.layout(Level.FINEST, tab + "Box = " + box);
+        XRLog.layout(Level.FINEST, "{0}Box = {1}", new Object[] { tab, box });
         Iterator it = box.getChildIterator();
         while (it.hasNext()) {
             Box bx = (Box) it.next();
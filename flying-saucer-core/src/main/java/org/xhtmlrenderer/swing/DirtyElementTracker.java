@@ -0,0 +1,91 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.swing;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+
+/**
+ * Listens for DOM mutation events on a document and reports the elements
+ * whose layout may have changed to a {@link RootPanel}.  Documents which do
+ * not support DOM events are ignored; changes to those must be reported with
+ * {@link RootPanel#markDirty(Element)}.
+ */
+class DirtyElementTracker implements EventListener {
+    private static final String ATTR_MODIFIED = "DOMAttrModified";
+    private static final String[] EVENT_TYPES = {
+        "DOMSubtreeModified", ATTR_MODIFIED, "DOMCharacterDataModified"
+    };
+
+    private final RootPanel panel;
+    private EventTarget target;
+
+    public DirtyElementTracker(RootPanel panel) {
+        this.panel = panel;
+    }
+
+    public void attach(Document doc) {
+        detach();
+        if (doc instanceof EventTarget) {
+            target = (EventTarget) doc;
+            for (int i = 0; i < EVENT_TYPES.length; i++) {
+                target.addEventListener(EVENT_TYPES[i], this, false);
+            }
+        }
+    }
+
+    public void detach() {
+        if (target != null) {
+            for (int i = 0; i < EVENT_TYPES.length; i++) {
+                target.removeEventListener(EVENT_TYPES[i], this, false);
+            }
+            target = null;
+        }
+    }
+
+    public void handleEvent(Event evt) {
+        Node node = (Node) evt.getTarget();
+        if (node != null && node.getNodeType() == Node.ATTRIBUTE_NODE) {
+            node = ((Attr) node).getOwnerElement();
+        }
+        while (node != null && node.getNodeType() != Node.ELEMENT_NODE) {
+            node = node.getParentNode();
+        }
+        if (node == null) {
+            return;
+        }
+
+        // A changed attribute may affect the style of following siblings
+        // (adjacent sibling selectors) so mark the parent instead
+        if (ATTR_MODIFIED.equals(evt.getType())) {
+            Node parent = node.getParentNode();
+            if (parent != null && parent.getNodeType() == Node.ELEMENT_NODE) {
+                node = parent;
+            }
+        }
+
+        panel.markDirty((Element) node);
+    }
+}
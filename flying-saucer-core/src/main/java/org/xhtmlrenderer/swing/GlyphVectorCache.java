@@ -0,0 +1,191 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.swing;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xhtmlrenderer.util.Configuration;
+
+/**
+ * An LRU cache of shaped text used by {@link Java2DTextRenderer}.  Entries
+ * are keyed by AWT font, {@link FontRenderContext} (which captures the
+ * transform and the anti-aliasing and fractional metrics hints in effect) and
+ * string, so repainting a document, or rendering the same document to an
+ * image again, does not have to create a new {@link GlyphVector} for every
+ * run of text.
+ * <p>
+ * Only text which does not require complex layout (bidi reordering, shaping
+ * or combining marks) is cached; such text is drawn with
+ * {@link java.awt.Graphics2D#drawString(String, int, int)} as before.  Cached
+ * glyph vectors must never be modified.
+ */
+public class GlyphVectorCache {
+    private static final GlyphVectorCache _shared = new GlyphVectorCache(
+            Configuration.valueAsInt("xr.text.glyph-vector-cache-size", 2048),
+            Configuration.valueAsInt("xr.text.glyph-vector-cache-max-length", 128));
+
+    private final int _capacity;
+    private final int _maxLength;
+
+    private final LinkedHashMap _entries;
+
+    private long _hits;
+    private long _misses;
+
+    /**
+     * @param capacity the maximum number of glyph vectors kept.  A capacity
+     * of zero or less disables the cache.
+     * @param maxLength strings longer than this are never cached
+     */
+    public GlyphVectorCache(int capacity, int maxLength) {
+        _capacity = capacity;
+        _maxLength = maxLength;
+        _entries = new LinkedHashMap(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all {@link Java2DTextRenderer}s (and
+     * therefore all panels and image renderers).  Its size is controlled by
+     * the <code>xr.text.glyph-vector-cache-size</code> configuration property.
+     */
+    public static GlyphVectorCache getSharedInstance() {
+        return _shared;
+    }
+
+    /**
+     * Returns whether <code>string</code> may be drawn from (and stored in)
+     * this cache.
+     */
+    public boolean isCacheable(String string) {
+        if (_capacity <= 0 || string.length() > _maxLength) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            // Everything before Hebrew except combining diacritical marks,
+            // Hiragana and Katakana, CJK Unified Ideographs and Hangul
+            // Syllables are drawn glyph by glyph without any complex layout
+            if (! ((c < '\u0590' && (c < '\u0300' || c > '\u036f')) ||
+                    (c >= '\u3040' && c <= '\u30ff') ||
+                    (c >= '\u4e00' && c <= '\u9fff') ||
+                    (c >= '\uac00' && c <= '\ud7a3'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the glyph vector for <code>string</code>, creating (and caching)
+     * it if necessary.
+     */
+    public GlyphVector getGlyphVector(Font font, FontRenderContext frc, String string) {
+        if (! isCacheable(string)) {
+            return font.createGlyphVector(frc, string);
+        }
+
+        Key key = new Key(font, frc, string);
+        synchronized (_entries) {
+            GlyphVector result = (GlyphVector)_entries.get(key);
+            if (result != null) {
+                _hits++;
+                return result;
+            }
+            _misses++;
+        }
+
+        GlyphVector result = font.createGlyphVector(frc, string);
+        // Calculate positions up front so that later (possibly concurrent)
+        // readers do not have to
+        result.getGlyphPositions(0, result.getNumGlyphs(), null);
+
+        synchronized (_entries) {
+            _entries.put(key, result);
+        }
+
+        return result;
+    }
+
+    public void clear() {
+        synchronized (_entries) {
+            _entries.clear();
+            _hits = 0;
+            _misses = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (_entries) {
+            return _entries.size();
+        }
+    }
+
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * Returns the fraction of lookups that were answered from the cache,
+     * or <code>0</code> if there have been no lookups yet.
+     */
+    public double getHitRatio() {
+        synchronized (_entries) {
+            long total = _hits + _misses;
+            return total == 0 ? 0.0d : (double)_hits / total;
+        }
+    }
+
+    private static final class Key {
+        private final Font font;
+        private final FontRenderContext frc;
+        private final String string;
+        private final int hash;
+
+        Key(Font font, FontRenderContext frc, String string) {
+            this.font = font;
+            this.frc = frc;
+            this.string = string;
+            this.hash = (string.hashCode() * 31 + font.hashCode()) * 31 + frc.hashCode();
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)o;
+            return hash == other.hash && string.equals(other.string) &&
+                    font.equals(other.font) && frc.equals(other.frc);
+        }
+    }
+}
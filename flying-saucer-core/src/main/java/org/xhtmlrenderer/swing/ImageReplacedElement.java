@@ -24,7 +24,7 @@ import java.awt.image.BufferedImage;
 
 import org.xhtmlrenderer.extend.ReplacedElement;
 import org.xhtmlrenderer.layout.LayoutContext;
-import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.RenderConfig;
 import org.xhtmlrenderer.util.ImageUtil;
 
 /**
@@ -50,6 +50,16 @@ public class ImageReplacedElement implements ReplacedElement {
      * @param targetHeight The height we'd like the image to have, in pixels.
      */
     public ImageReplacedElement(Image image, int targetWidth, int targetHeight) {
+        this(image, targetWidth, targetHeight, RenderConfig.getDefault().getImageScaleHint());
+    }
+
+    /**
+     * As {@link #ImageReplacedElement(Image, int, int)}, but images which are
+     * not <code>BufferedImage</code>s are scaled with the given
+     * {@link Image#getScaledInstance(int, int, int)} hint (see
+     * {@link RenderConfig#getImageScaleHint()}).
+     */
+    public ImageReplacedElement(Image image, int targetWidth, int targetHeight, int scaleHint) {
 		if (targetWidth > 0 || targetHeight > 0) {
             int w = image.getWidth(null);
             int h = image.getHeight(null);
@@ -69,13 +79,7 @@ public class ImageReplacedElement implements ReplacedElement {
                 if (image instanceof BufferedImage) {
                     image = ImageUtil.getScaledInstance((BufferedImage) image, newW, newH);
                 } else {
-                   String scalingType = Configuration.valueFor("xr.image.scale", "HIGH").trim() ;
-
-                   if(scalingType.equalsIgnoreCase("HIGH") || scalingType.equalsIgnoreCase("MID") ){
-                       image = image.getScaledInstance(newW, newH, Image.SCALE_SMOOTH);
-                   } else{
-                    image = image.getScaledInstance(newW, newH, Image.SCALE_FAST);
-                }
+                    image = image.getScaledInstance(newW, newH, scaleHint);
             }
         }
         }
@@ -27,6 +27,7 @@ import java.util.Map;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.extend.UserInterface;
@@ -40,6 +41,7 @@ import org.xhtmlrenderer.render.ViewportBox;
 import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
 import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.ImageUtil;
+import org.xhtmlrenderer.util.RenderConfig;
 
 /**
  * <p>Renders an XML files, formatted with CSS, as an image. Input is a document in the form of file or URL,
@@ -266,6 +268,16 @@ public class Java2DRenderer {
 		return sharedContext;
 	}
 
+	/**
+	 * Overrides the configuration properties this renderer uses (see {@link RenderConfig}). Must be called
+	 * before {@link #getImage()}.
+	 *
+	 * @param renderConfig the configuration to render with
+	 */
+	public void setRenderConfig(RenderConfig renderConfig) {
+		sharedContext.setRenderConfig(renderConfig);
+	}
+
 	/**
 	 * Renders the XML document if necessary and returns the resulting image. If already rendered, same image
 	 * reference will be returned.
@@ -276,9 +288,16 @@ public class Java2DRenderer {
 	 */
 	public BufferedImage getImage() {
 		if (!rendered) {
+			sharedContext.startRenderMetrics(sourceDocument != null ? sourceDocument : sourceDocumentBase);
+			sharedContext.startRenderPhase(RenderMetrics.LOAD);
             setDocument((doc == null ? loadDocument(sourceDocument) : doc), sourceDocumentBase, new XhtmlNamespaceHandler());
+			sharedContext.endRenderPhase(RenderMetrics.LOAD);
 
+			sharedContext.startRenderPhase(RenderMetrics.LAYOUT);
 			layout(this.width);
+			sharedContext.endRenderPhase(RenderMetrics.LAYOUT);
+
+			sharedContext.startRenderPhase(RenderMetrics.OUTPUT);
 
 			height = this.height == -1 ? root.getHeight() : this.height;
 			outputImage = createBufferedImage(this.width, height);
@@ -297,6 +316,9 @@ public class Java2DRenderer {
 
 			newG.dispose();
 			rendered = true;
+
+			sharedContext.endRenderPhase(RenderMetrics.OUTPUT);
+			sharedContext.finishRenderMetrics();
 		}
 
 		return outputImage;
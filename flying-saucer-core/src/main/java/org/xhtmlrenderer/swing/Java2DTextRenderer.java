@@ -24,6 +24,7 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.Point2D;
 import java.util.Map;
@@ -36,6 +37,7 @@ import org.xhtmlrenderer.render.FSFont;
 import org.xhtmlrenderer.render.FSFontMetrics;
 import org.xhtmlrenderer.render.JustificationInfo;
 import org.xhtmlrenderer.render.LineMetricsAdapter;
+import org.xhtmlrenderer.render.TextWidthCache;
 import org.xhtmlrenderer.util.Configuration;
 
 
@@ -50,6 +52,8 @@ public class Java2DTextRenderer implements TextRenderer {
     protected float threshold;
     protected Object antiAliasRenderingHint;
     protected Object fractionalFontMetricsHint;
+    protected TextWidthCache widthCache = new TextWidthCache();
+    protected GlyphVectorCache glyphVectorCache = GlyphVectorCache.getSharedInstance();
 
     public Java2DTextRenderer() {
         scale = Configuration.valueAsFloat("xr.text.scale", 1.0f);
@@ -92,7 +96,13 @@ public class Java2DTextRenderer implements TextRenderer {
         }
         fracHint = graphics.getRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS);
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalFontMetricsHint);
-        graphics.drawString( string, (int)x, (int)y );
+        if (glyphVectorCache.isCacheable(string)) {
+            GlyphVector vector = glyphVectorCache.getGlyphVector(
+                    graphics.getFont(), graphics.getFontRenderContext(), string);
+            graphics.drawGlyphVector(vector, (int)x, (int)y);
+        } else {
+            graphics.drawString( string, (int)x, (int)y );
+        }
         if ( graphics.getFont().getSize() > threshold ) {
             graphics.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING, aaHint );
         }
@@ -196,6 +206,20 @@ public class Java2DTextRenderer implements TextRenderer {
         Graphics2D graphics = ((Java2DFontContext)fc).getGraphics();
         fracHint = graphics.getRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS);
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalFontMetricsHint);
+        // The render context covers the transform, antialiasing and our
+        // fractional metrics hint (which also picks the rounding below), so
+        // widths measured on differently set up graphics are kept apart
+        FontRenderContext frc = graphics.getFontRenderContext();
+        int width = widthCache.get(font, frc, string);
+        if (width == TextWidthCache.MISS) {
+            width = measureWidth(graphics, font, string);
+            widthCache.put(font, frc, string, width);
+        }
+        graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fracHint);
+        return width;
+    }
+
+    private int measureWidth(Graphics2D graphics, FSFont font, String string) {
         Font awtFont = ((AWTFSFont)font).getAWTFont();
         int width = 0;
         if(fractionalFontMetricsHint == RenderingHints.VALUE_FRACTIONALMETRICS_ON) {
@@ -205,7 +229,6 @@ public class Java2DTextRenderer implements TextRenderer {
             width = (int)Math.ceil(
                     graphics.getFontMetrics(awtFont).getStringBounds(string, graphics).getWidth());
         }
-        graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fracHint);
         return width;
     }
 
@@ -213,6 +236,35 @@ public class Java2DTextRenderer implements TextRenderer {
         return this.scale;
     }
 
+    public TextWidthCache getWidthCache() {
+        return widthCache;
+    }
+
+    /**
+     * Replaces the cache of measured text widths. Defaults to a cache of this
+     * renderer's own (see {@link TextWidthCache#TextWidthCache()}).
+     *
+     * @param widthCache the cache to use
+     */
+    public void setWidthCache(TextWidthCache widthCache) {
+        this.widthCache = widthCache;
+    }
+
+    public GlyphVectorCache getGlyphVectorCache() {
+        return glyphVectorCache;
+    }
+
+    /**
+     * Replaces the cache of shaped text used when painting. Defaults to
+     * {@link GlyphVectorCache#getSharedInstance()}; pass a cache with a
+     * capacity of zero to disable caching.
+     *
+     * @param glyphVectorCache the cache to use
+     */
+    public void setGlyphVectorCache(GlyphVectorCache glyphVectorCache) {
+        this.glyphVectorCache = glyphVectorCache;
+    }
+
     public int getSmoothingLevel() {
         return 0;
     }
@@ -251,9 +303,8 @@ public class Java2DTextRenderer implements TextRenderer {
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalFontMetricsHint);
 
         
-        GlyphVector vector = awtFont.createGlyphVector(
-                graphics.getFontRenderContext(),
-                text);
+        GlyphVector vector = glyphVectorCache.getGlyphVector(
+                awtFont, graphics.getFontRenderContext(), text);
         float[] result = vector.getGlyphPositions(0, text.length() + 1, null);
         
         if (awtFont.getSize() > threshold ) {
@@ -327,9 +378,8 @@ public class Java2DTextRenderer implements TextRenderer {
         fracHint = graphics.getRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS);
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalFontMetricsHint);
         
-        GlyphVector vector = awtFont.createGlyphVector(
-                graphics.getFontRenderContext(),
-                text);
+        GlyphVector vector = glyphVectorCache.getGlyphVector(
+                awtFont, graphics.getFontRenderContext(), text);
         
         if (awtFont.getSize() > threshold ) {
             graphics.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING, aaHint );
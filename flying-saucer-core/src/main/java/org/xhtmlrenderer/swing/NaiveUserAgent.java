@@ -42,6 +42,8 @@ import org.xhtmlrenderer.resource.ImageResource;
 import org.xhtmlrenderer.resource.XMLResource;
 import org.xhtmlrenderer.util.ImageUtil;
 import org.xhtmlrenderer.util.XRLog;
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
 
 /**
  * <p>NaiveUserAgent is a simple implementation of {@link UserAgentCallback} which places no restrictions on what
@@ -118,6 +120,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
      */
     //TOdO:implement this with nio.
     protected InputStream resolveAndOpenStream(String uri) {
+        XRTraceEvent event = XRTrace.begin(XRTrace.RESOURCE_FETCH);
         java.io.InputStream is = null;
         uri = resolveURI(uri);
         try {
@@ -129,6 +132,9 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
         } catch (java.io.IOException e) {
             XRLog.exception("IO problem for " + uri, e);
         }
+        if (event != null) {
+            event.end(uri, -1, -1);
+        }
         return is;
     }
 
@@ -25,12 +25,15 @@ import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Insets;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 
 import javax.swing.CellRendererPane;
@@ -52,12 +55,15 @@ import org.xhtmlrenderer.css.style.derived.ColorValue;
 import org.xhtmlrenderer.css.style.derived.LengthValue;
 import org.xhtmlrenderer.css.style.derived.StringValue;
 import org.xhtmlrenderer.event.DocumentListener;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.FSCanvas;
 import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserInterface;
 import org.xhtmlrenderer.layout.BoxBuilder;
+import org.xhtmlrenderer.layout.IncrementalLayout;
 import org.xhtmlrenderer.layout.Layer;
 import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.layout.LazyLayout;
 import org.xhtmlrenderer.layout.SharedContext;
 import org.xhtmlrenderer.render.BlockBox;
 import org.xhtmlrenderer.render.Box;
@@ -65,6 +71,7 @@ import org.xhtmlrenderer.render.PageBox;
 import org.xhtmlrenderer.render.RenderingContext;
 import org.xhtmlrenderer.render.ViewportBox;
 import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.LowMemoryDetector;
 import org.xhtmlrenderer.util.XRLog;
 
 
@@ -78,6 +85,15 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
 
     private boolean defaultFontFromComponent;
 
+    private boolean incrementalLayout;
+    private final DirtyElementTracker dirtyElementTracker = new DirtyElementTracker(this);
+    private final Set dirtyElements = new LinkedHashSet();
+    private boolean incrementalLayoutPending = false;
+
+    private boolean lazyLayout;
+    private GraphicsConfiguration layoutGraphicsConfiguration;
+    private final LowMemoryDetector lowMemoryDetector = new LowMemoryDetector(0.75f, 0.6f);
+
     public RootPanel() {
     }
 
@@ -99,6 +115,13 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
         setRootBox(null);
         this.doc = doc;
 
+        synchronized (dirtyElements) {
+            dirtyElements.clear();
+        }
+        if (isIncrementalLayout()) {
+            dirtyElementTracker.attach(doc);
+        }
+
         //have to do this first
         if (Configuration.isTrue("xr.cache.stylesheets", true)) {
             getSharedContext().getCss().flushStyleSheets();
@@ -106,11 +129,16 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
             getSharedContext().getCss().flushAllStyleSheets();
         }
 
+        getSharedContext().startRenderMetrics(url);
+        getSharedContext().startRenderPhase(RenderMetrics.LOAD);
+
         getSharedContext().reset();
         getSharedContext().setBaseURL(url);
         getSharedContext().setNamespaceHandler(nsh);
         getSharedContext().getCss().setDocumentContext(getSharedContext(), getSharedContext().getNamespaceHandler(), doc, this);
 
+        getSharedContext().endRenderPhase(RenderMetrics.LOAD);
+
         repaint();
     }
 
@@ -245,12 +273,58 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
 
         LayoutContext result = getSharedContext().newLayoutContextInstance();
 
+        layoutGraphicsConfiguration = g.getDeviceConfiguration();
+        Graphics2D layoutGraphics =
+            layoutGraphicsConfiguration.createCompatibleImage(1, 1).createGraphics();
+        result.setFontContext(new Java2DFontContext(layoutGraphics));
+
+        getSharedContext().getTextRenderer().setup(result.getFontContext());
+
+        if (isLazyLayout()) {
+            result.setLazyLayoutRegion(getLazyLayoutRegion());
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a context for laying out part of the current box tree again.
+     * Its font context uses new graphics for the device of the last full
+     * layout, which must be disposed with {@link #disposeLayoutContext}.
+     */
+    private LayoutContext newPartialLayoutContext() {
+        LayoutContext result = getSharedContext().newLayoutContextInstance();
         Graphics2D layoutGraphics =
-            g.getDeviceConfiguration().createCompatibleImage(1, 1).createGraphics();
+            layoutGraphicsConfiguration.createCompatibleImage(1, 1).createGraphics();
         result.setFontContext(new Java2DFontContext(layoutGraphics));
 
         getSharedContext().getTextRenderer().setup(result.getFontContext());
 
+        if (isLazyLayout()) {
+            result.setLazyLayoutRegion(getLazyLayoutRegion());
+        }
+
+        return result;
+    }
+
+    private void disposeLayoutContext(LayoutContext c) {
+        ((Java2DFontContext)c.getFontContext()).getGraphics().dispose();
+    }
+
+    /**
+     * Returns the area of the document which must be laid out when laying
+     * out lazily: the visible part of the panel plus a screenful above and
+     * below it.
+     */
+    private Rectangle getLazyLayoutRegion() {
+        Rectangle result = getVisibleRect();
+        if (result.isEmpty()) {
+            result = getScreenExtents();
+        } else {
+            Insets insets = getInsets();
+            result.translate(-insets.left, -insets.top);
+        }
+        result.grow(0, result.height);
         return result;
     }
 
@@ -301,6 +375,12 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
                 this.layoutContext = c;
             }
 
+            // Relayouts (e.g. after a resize) are reported as well
+            if (getSharedContext().getRenderMetrics() == null) {
+                getSharedContext().startRenderMetrics(getSharedContext().getBaseURL());
+            }
+            getSharedContext().startRenderPhase(RenderMetrics.LAYOUT);
+
             long start = System.currentTimeMillis();
 
             BlockBox root = (BlockBox)getRootBox();
@@ -318,9 +398,13 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
 
             root.layout(c);
 
+            getSharedContext().endRenderPhase(RenderMetrics.LAYOUT);
+
             long end = System.currentTimeMillis();
 
-            XRLog.layout(Level.INFO, "Layout took " + (end - start) + "ms");
+            if (XRLog.isLoggable(XRLog.LAYOUT, Level.INFO)) {
+                XRLog.layout(Level.INFO, "Layout took " + (end - start) + "ms");
+            }
 
             /*
             System.out.println(root.dump(c, "", BlockBox.DUMP_LAYOUT));
@@ -335,13 +419,20 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
                 super.setOpaque(true);
             }
 
-            XRLog.layout(Level.FINEST, "after layout: " + root);
+            XRLog.layout(Level.FINEST, "after layout: {0}", new Object[] { root });
 
             Dimension intrinsic_size = root.getLayer().getPaintingDimension(c);
 
             if (c.isPrint()) {
+                getSharedContext().startRenderPhase(RenderMetrics.PAGINATION);
                 root.getLayer().trimEmptyPages(c, intrinsic_size.height);
                 root.getLayer().layoutPages(c);
+                getSharedContext().endRenderPhase(RenderMetrics.PAGINATION);
+
+                RenderMetrics metrics = getSharedContext().getRenderMetrics();
+                if (metrics != null) {
+                    metrics.setCount(RenderMetrics.PAGES, root.getLayer().getPages().size());
+                }
             }
 
             // If the initial size we fed into the layout matches the width
@@ -517,6 +608,178 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
         }
     }
 
+    /**
+     * Returns whether changes to the document are laid out incrementally.
+     *
+     * @see #setIncrementalLayout(boolean)
+     */
+    public boolean isIncrementalLayout() {
+        return incrementalLayout;
+    }
+
+    /**
+     * If <code>true</code>, the panel listens for DOM mutation events on its
+     * document and lays out only the blocks affected by a change, repainting
+     * just the area which changed.  Changes which cannot be handled this way
+     * (e.g. those involving floats, positioned content or tables around the
+     * changed element) cause the document to be laid out from scratch.  Off
+     * by default.
+     */
+    public void setIncrementalLayout(boolean incrementalLayout) {
+        this.incrementalLayout = incrementalLayout;
+        if (incrementalLayout && doc != null) {
+            dirtyElementTracker.attach(doc);
+        } else {
+            dirtyElementTracker.detach();
+        }
+    }
+
+    /**
+     * Notes that <code>e</code> (or its content) has changed and must be
+     * laid out again.  Pending changes are laid out together on the event
+     * dispatch thread.  This is called automatically for documents which
+     * support DOM mutation events when incremental layout is enabled.
+     */
+    public void markDirty(Element e) {
+        synchronized (dirtyElements) {
+            dirtyElements.add(e);
+            if (incrementalLayoutPending) {
+                return;
+            }
+            incrementalLayoutPending = true;
+        }
+        EventQueue.invokeLater(new Runnable() {
+            public void run() {
+                doIncrementalLayout();
+            }
+        });
+    }
+
+    protected void doIncrementalLayout() {
+        Set dirty;
+        synchronized (dirtyElements) {
+            dirty = new LinkedHashSet(dirtyElements);
+            dirtyElements.clear();
+            incrementalLayoutPending = false;
+        }
+        if (dirty.isEmpty() || doc == null) {
+            return;
+        }
+
+        BlockBox root = (BlockBox)getRootBox();
+        LayoutContext previous = getLayoutContext();
+        if (root == null || previous == null || isNeedRelayout() || isExtentsHaveChanged()) {
+            rebuildDocumentLayout(dirty);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+
+        LayoutContext c = newPartialLayoutContext();
+        Rectangle region;
+        Dimension intrinsic_size;
+        try {
+            region = IncrementalLayout.relayout(c, root, dirty);
+            if (region == null) {
+                XRLog.layout(Level.FINE, "Change cannot be laid out incrementally, laying out document again");
+                rebuildDocumentLayout(dirty);
+                return;
+            }
+
+            long end = System.currentTimeMillis();
+
+            if (XRLog.isLoggable(XRLog.LAYOUT, Level.FINE)) {
+                XRLog.layout(Level.FINE, "Incremental layout took " + (end - start) + "ms");
+            }
+
+            intrinsic_size = root.getLayer().getPaintingDimension(c);
+        } finally {
+            disposeLayoutContext(c);
+        }
+
+        if (! intrinsic_size.equals(getPreferredSize())) {
+            setPreferredSize(intrinsic_size);
+            revalidate();
+        }
+
+        Insets insets = getInsets();
+        region.translate(insets.left, insets.top);
+        repaint(region);
+    }
+
+    /**
+     * Returns whether only the visible part of the document is laid out.
+     *
+     * @see #setLazyLayout(boolean)
+     */
+    public boolean isLazyLayout() {
+        return lazyLayout;
+    }
+
+    /**
+     * If <code>true</code>, only block content near the visible part of the
+     * panel is laid out.  The height of the rest of the document is
+     * estimated and its content is laid out as it scrolls into view, so the
+     * time to first paint of very large documents no longer depends on their
+     * size.  When memory runs low, the content of blocks far away from the
+     * visible area is thrown away again.  The scroll bars are only accurate
+     * once the whole document has been viewed.  Off by default.
+     */
+    public void setLazyLayout(boolean lazyLayout) {
+        if (this.lazyLayout != lazyLayout) {
+            this.lazyLayout = lazyLayout;
+            relayout();
+        }
+    }
+
+    /**
+     * Lays out any deferred content in the visible part of the document.
+     * Called before painting when laying out lazily.
+     */
+    protected void doLazyLayout() {
+        BlockBox root = (BlockBox)getRootBox();
+        LayoutContext previous = getLayoutContext();
+        if (root == null || previous == null) {
+            return;
+        }
+
+        LayoutContext c = newPartialLayoutContext();
+        try {
+            Rectangle visible = c.getLazyLayoutRegion();
+
+            Rectangle region = LazyLayout.layoutDeferred(c, root, visible);
+
+            if (lowMemoryDetector.isMemoryLow()) {
+                int discarded = LazyLayout.discard(c, root, visible);
+                if (XRLog.isLoggable(XRLog.LAYOUT, Level.FINE)) {
+                    XRLog.layout(Level.FINE, "Discarded the content of " + discarded + " blocks");
+                }
+            }
+
+            if (region != null) {
+                Dimension intrinsic_size = root.getLayer().getPaintingDimension(c);
+                if (! intrinsic_size.equals(getPreferredSize())) {
+                    setPreferredSize(intrinsic_size);
+                    revalidate();
+                }
+
+                Insets insets = getInsets();
+                region.translate(insets.left, insets.top);
+                repaint(region);
+            }
+        } finally {
+            disposeLayoutContext(c);
+        }
+    }
+
+    private void rebuildDocumentLayout(Set dirty) {
+        for (Iterator i = dirty.iterator(); i.hasNext(); ) {
+            getSharedContext().removeElementReferences((Element)i.next());
+        }
+        setRootBox(null);
+        relayout();
+    }
+
     public double getLayoutWidth() {
         if (enclosingScrollPane != null) {
             return enclosingScrollPane.getViewportBorderBounds().width;
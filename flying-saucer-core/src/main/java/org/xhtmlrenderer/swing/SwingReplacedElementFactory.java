@@ -21,6 +21,7 @@ package org.xhtmlrenderer.swing;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.ReplacedElement;
 import org.xhtmlrenderer.extend.ReplacedElementFactory;
 import org.xhtmlrenderer.extend.UserAgentCallback;
@@ -140,6 +141,7 @@ public class SwingReplacedElementFactory implements ReplacedElementFactory {
     protected ReplacedElement replaceImage(UserAgentCallback uac, LayoutContext context, Element elem, int cssWidth, int cssHeight) {
         ReplacedElement re = null;
         String imageSrc = context.getNamespaceHandler().getImageSourceURI(elem);
+        RenderMetrics metrics = context.getSharedContext().getRenderMetrics();
         
         if (imageSrc == null || imageSrc.length() == 0) {
             XRLog.layout(Level.WARNING, "No source provided for img element.");
@@ -149,15 +151,25 @@ public class SwingReplacedElementFactory implements ReplacedElementFactory {
             if (image != null) {
                 re = new ImageReplacedElement(image, cssWidth, cssHeight);
             }
+            if (metrics != null) {
+                metrics.increment(RenderMetrics.IMAGES_LOADED);
+            }
         } else {
             // lookup in cache, or instantiate
             String ruri = uac.resolveURI(imageSrc);
             re = lookupImageReplacedElement(elem, ruri, cssWidth, cssHeight);
+            if (metrics != null) {
+                metrics.increment(re != null ? RenderMetrics.CACHE_HITS : RenderMetrics.CACHE_MISSES);
+            }
             if (re == null) {
+                if (metrics != null) {
+                    metrics.increment(RenderMetrics.IMAGES_LOADED);
+                }
                 XRLog.load(Level.FINE, "Swing: Image " + ruri + " requested at "+ " to " + cssWidth + ", " + cssHeight);
                 ImageResource imageResource = imageResourceLoader.get(ruri, cssWidth, cssHeight);
                 if (imageResource.isLoaded()) {
-                    re = new ImageReplacedElement(((AWTFSImage) imageResource.getImage()).getImage(), cssWidth, cssHeight);
+                    re = new ImageReplacedElement(((AWTFSImage) imageResource.getImage()).getImage(), cssWidth, cssHeight,
+                            context.getSharedContext().getRenderConfig().getImageScaleHint());
                 } else {
                     re = new DeferredImageReplacedElement(imageResource, repaintListener, cssWidth, cssHeight);
                 }
@@ -1,32 +1,61 @@
 package org.xhtmlrenderer.test;
 
-import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.render.Box;
-import org.xhtmlrenderer.swing.BoxRenderer;
 import org.xhtmlrenderer.util.IOUtil;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
- * ReferenceComparison runs a comparison of rendering a set of source XHTML files against a 
+ * ReferenceComparison runs a comparison of rendering a set of source XHTML files against a set of reference files
+ * created by {@link Regress}. Files are rendered concurrently on a pool of worker threads, each file with its own
+ * renderer, and compared in order. Besides the layout and render dumps, the render time and the memory allocated
+ * while rendering each file are compared against the baseline stored by <code>Regress</code>; a file fails if
+ * either grew by more than the threshold.
+ * <p/>
+ * From the command line, pass the source, reference and failed directories. The number of worker threads, the
+ * number of timed runs per file and the threshold (in percent) can be set with the
+ * <code>xr.test.regress.threads</code>, <code>xr.test.regress.runs</code> and
+ * <code>xr.test.regress.threshold</code> system properties. The exit status is non-zero if any file failed.
  */
 public class ReferenceComparison {
     private int width;
     private boolean isVerbose;
+    private int threads;
+    private int runs;
+    private double threshold;
     private static final String LINE_SEPARATOR = "\n";
 
+    // differences below these are considered noise, whatever the threshold
+    private static final long MIN_TIME_DELTA = 10;
+    private static final long MIN_BYTES_DELTA = 256 * 1024;
+
     public static void main(String[] args) throws IOException {
-        // TODO: check args
-        ReferenceComparison rc = new ReferenceComparison(1024, false);
+        if (args.length < 3) {
+            System.err.println("Usage: ReferenceComparison <source dir> <reference dir> <failed dir>");
+            System.exit(-1);
+        }
+        int threads = Integer.getInteger("xr.test.regress.threads", Runtime.getRuntime().availableProcessors()).intValue();
+        int runs = Integer.getInteger("xr.test.regress.runs", 3).intValue();
+        int threshold = Integer.getInteger("xr.test.regress.threshold", 25).intValue();
+        ReferenceComparison rc = new ReferenceComparison(1024, false, threads, runs, threshold / 100.0d);
         File source = new File(args[0]);
         File reference = new File(args[1]);
         File failed = new File(args[2]);
-        rc.compareDirectory(source, reference, failed);
+        if (!rc.compareDirectory(source, reference, failed)) {
+            System.exit(1);
+        }
     }
 
     /**
@@ -36,33 +65,100 @@ public class ReferenceComparison {
      * @param verbose
      */
     public ReferenceComparison(int width, boolean verbose) {
+        this(width, verbose, 1, 1, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Initializes (does not launch) the reference comparison.
+     *
+     * @param width     width at which pages should be rendered
+     * @param verbose
+     * @param threads   number of files to render concurrently
+     * @param runs      number of times to lay out each file when measuring its render time
+     * @param threshold fraction by which the render time or allocated memory of a file may exceed the baseline
+     *                  before it fails, e.g. 0.25
+     */
+    public ReferenceComparison(int width, boolean verbose, int threads, int runs, double threshold) {
         this.width = width;
         this.isVerbose = verbose;
+        this.threads = Math.max(1, threads);
+        this.runs = runs;
+        this.threshold = threshold;
     }
 
-    public void compareDirectory(File sourceDirectory, File referenceDir, File failedDirectory) throws IOException {
+    /**
+     * Compares all files in <code>sourceDirectory</code> against their references.
+     *
+     * @return whether all files matched and none regressed in performance
+     */
+    public boolean compareDirectory(File sourceDirectory, File referenceDir, File failedDirectory) throws IOException {
         checkDirectories(sourceDirectory, referenceDir, failedDirectory);
-        log("Starting comparison using width " + width);
+        log("Starting comparison using width " + width + " and " + threads + " threads");
         IOUtil.deleteAllFiles(failedDirectory);
 
+        RenderTimings baseline = RenderTimings.load(referenceDir);
+        if (baseline.isEmpty()) {
+            System.out.println("No " + RenderTimings.FILE_NAME + " in " + referenceDir + ", skipping performance checks");
+        }
+
         boolean wasEnabled = enableLogging(false);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
+            List files = new ArrayList();
+            List futures = new ArrayList();
             Iterator fileIt = listSourceFiles(sourceDirectory);
-            CompareStatistics stats = new CompareStatistics();
             while (fileIt.hasNext()) {
-                File file = (File) fileIt.next();
+                final File file = (File) fileIt.next();
+                files.add(file);
+                futures.add(executor.submit(new Callable() {
+                    public Object call() throws IOException {
+                        return TimedRender.render(file, width, runs);
+                    }
+                }));
+            }
+
+            CompareStatistics stats = new CompareStatistics();
+            for (int i = 0; i < files.size(); i++) {
+                File file = (File) files.get(i);
+                log("Comparing " + file.getPath());
+                stats.checking(file);
+                TimedRender render;
                 try {
-                    compareFile(file, referenceDir, failedDirectory, stats);
+                    render = waitFor((Future) futures.get(i));
+                } catch (Exception e) {
+                    renderFailed(file, failedDirectory, stats, e);
+                    continue;
+                }
+                try {
+                    compareRender(file, render, referenceDir, failedDirectory, stats);
+                    compareTimings(file, render, baseline, stats);
                 } catch (IOException e) {
                     stats.failedIOException(e);
                 }
             }
             stats.report();
+            return !stats.anyFailed();
         } finally {
+            executor.shutdownNow();
             enableLogging(wasEnabled);
         }
     }
 
+    private TimedRender waitFor(Future future) throws Exception {
+        try {
+            return (TimedRender) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rendering to finish");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (Exception) cause;
+        }
+    }
+
     private boolean enableLogging(final boolean isEnabled) {
         final String prop = "xr.util-logging.loggingEnabled";
         final boolean orgVal = Boolean.valueOf(System.getProperty(prop)).booleanValue();
@@ -106,35 +202,62 @@ public class ReferenceComparison {
     public void compareFile(File source, File referenceDir, File failedDirectory, CompareStatistics stat) throws IOException {
         log("Comparing " + source.getPath());
         stat.checking(source);
-        // TODO: reuse code from Regress
-        BoxRenderer renderer = new BoxRenderer(source, width);
-        Box box;
+        TimedRender render;
         try {
             log("rendering");
-            box = renderer.render();
+            render = TimedRender.render(source, width, 1);
             log("rendered");
         } catch (Exception e) {
-            e.printStackTrace();
-            stat.failedToRender(e);
-            storeFailed(failedDirectory, source);
-            log("Could not render input file, skipping: " + source + " err: " + e.getMessage());
+            renderFailed(source, failedDirectory, stat, e);
             return;
         }
-        LayoutContext layoutContext = renderer.getLayoutContext();
+        compareRender(source, render, referenceDir, failedDirectory, stat);
+    }
+
+    private void renderFailed(File source, File failedDirectory, CompareStatistics stat, Exception e) {
+        e.printStackTrace();
+        stat.failedToRender(e);
+        storeFailed(failedDirectory, source);
+        log("Could not render input file, skipping: " + source + " err: " + e.getMessage());
+    }
+
+    private void compareRender(File source, TimedRender render, File referenceDir, File failedDirectory, CompareStatistics stat) throws IOException {
         String inputFileName = source.getName();
         String refRendered = trimTrailingLS(readReference(referenceDir, inputFileName, Regress.RENDER_SFX));
-        String rendered = trimTrailingLS(box.dump(layoutContext, "", Box.DUMP_RENDER));
+        String rendered = trimTrailingLS(render.dump(Box.DUMP_RENDER));
         if (!compareLines(refRendered, rendered, stat)) {
             storeFailed(failedDirectory, new File(referenceDir, inputFileName), Regress.RENDER_SFX, rendered);
         }
 
         final String refLaidOut = trimTrailingLS(readReference(referenceDir, inputFileName, Regress.LAYOUT_SFX));
-        final String laidOut = trimTrailingLS(box.dump(layoutContext, "", Box.DUMP_LAYOUT));
+        final String laidOut = trimTrailingLS(render.dump(Box.DUMP_LAYOUT));
         if (!compareLines(refLaidOut, laidOut, stat)) {
             storeFailed(failedDirectory, new File(referenceDir, inputFileName), Regress.LAYOUT_SFX, laidOut);
         }
     }
 
+    private void compareTimings(File source, TimedRender render, RenderTimings baseline, CompareStatistics stat) {
+        String inputFileName = source.getName();
+        long refTime = baseline.getTime(inputFileName);
+        long refBytes = baseline.getAllocatedBytes(inputFileName);
+        stat.timed(render.getTime(), refTime, render.getAllocatedBytes(), refBytes);
+
+        // a layout difference is the more interesting failure
+        if (!stat.succeeded()) {
+            return;
+        }
+        if (isRegression(render.getTime(), refTime, MIN_TIME_DELTA)) {
+            stat.failedSlower(render.getTime(), refTime);
+        } else if (isRegression(render.getAllocatedBytes(), refBytes, MIN_BYTES_DELTA)) {
+            stat.failedAllocatesMore(render.getAllocatedBytes(), refBytes);
+        }
+    }
+
+    private boolean isRegression(long value, long reference, long minimumDelta) {
+        return value >= 0 && reference >= 0 &&
+                value - reference > minimumDelta && value > reference * (1 + threshold);
+    }
+
     private String trimTrailingLS(String s) {
         if (s.endsWith(LINE_SEPARATOR)) {
             s = s.substring(0, s.length() - LINE_SEPARATOR.length());
@@ -253,9 +376,11 @@ public class ReferenceComparison {
         private File currentFile;
         private static final Result OK = new ResultOK();
         private Map files;
+        private Map timings;
 
         public CompareStatistics() {
-            files = new HashMap();
+            files = new LinkedHashMap();
+            timings = new LinkedHashMap();
         }
 
         public void failedToRender(Exception e) {
@@ -278,6 +403,27 @@ public class ReferenceComparison {
             files.put(currentFile, new FailedIO(e));
         }
 
+        public void failedSlower(long time, long refTime) {
+            files.put(currentFile, new TooSlow(time, refTime));
+        }
+
+        public void failedAllocatesMore(long bytes, long refBytes) {
+            files.put(currentFile, new AllocatesMore(bytes, refBytes));
+        }
+
+        public void timed(long time, long refTime, long bytes, long refBytes) {
+            timings.put(currentFile, new long[] {time, refTime, bytes, refBytes});
+        }
+
+        public boolean anyFailed() {
+            for (Iterator it = files.values().iterator(); it.hasNext();) {
+                if (it.next() instanceof FailedResult) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         public boolean failed() {
             return files.get(currentFile) instanceof FailedResult;
         }
@@ -292,6 +438,13 @@ public class ReferenceComparison {
         }
 
         public void report() {
+            for (Iterator it = timings.keySet().iterator(); it.hasNext();) {
+                File file = (File) it.next();
+                long[] timing = (long[]) timings.get(file);
+                System.out.println("TIME: " + file.getName() + " " + timing[0] + " ms (baseline " + timing[1] + " ms), " +
+                        (timing[2] / 1024) + " KB allocated (baseline " + (timing[3] / 1024) + " KB)");
+            }
+
             int failed = 0;
             for (Iterator it = files.keySet().iterator(); it.hasNext();) {
                 File file = (File) it.next();
@@ -305,7 +458,7 @@ public class ReferenceComparison {
             System.out.println("Checked " + files.keySet().size() + " files, " + (failed > 0 ? failed + " failed." : "all OK."));
         }
 
-        private static class RenderFailed implements Result {
+        private static class RenderFailed implements FailedResult {
             private final Exception exception;
 
             public RenderFailed(Exception exception) {
@@ -355,6 +508,34 @@ public class ReferenceComparison {
             }
         }
 
+        private static class TooSlow implements FailedResult {
+            private final long time;
+            private final long refTime;
+
+            public TooSlow(long time, long refTime) {
+                this.time = time;
+                this.refTime = refTime;
+            }
+
+            public String describe(File file) {
+                return "FAIL: render time regressed for " + file.getName() + ": " + time + " ms, baseline " + refTime + " ms";
+            }
+        }
+
+        private static class AllocatesMore implements FailedResult {
+            private final long bytes;
+            private final long refBytes;
+
+            public AllocatesMore(long bytes, long refBytes) {
+                this.bytes = bytes;
+                this.refBytes = refBytes;
+            }
+
+            public String describe(File file) {
+                return "FAIL: allocated memory regressed for " + file.getName() + ": " + (bytes / 1024) + " KB, baseline " + (refBytes / 1024) + " KB";
+            }
+        }
+
         private interface Result {
             String describe(File file);
         }
@@ -18,9 +18,7 @@ package org.xhtmlrenderer.test;/*
  * }}}
  */
 
-import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.render.Box;
-import org.xhtmlrenderer.swing.BoxRenderer;
 import org.xhtmlrenderer.swing.Java2DRenderer;
 import org.xhtmlrenderer.util.FSImageWriter;
 import org.xhtmlrenderer.util.IOUtil;
@@ -28,9 +26,15 @@ import org.xhtmlrenderer.util.Zipper;
 
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -49,6 +53,10 @@ import java.util.List;
  * Regress will try to render all files in the source directory; a failure to render one file (e.g. if an exception
  * is thrown) will not stop the rendering process.
  * <p/>
+ * Files are rendered concurrently on a pool of worker threads, each file with its own renderer. The time and memory
+ * used to lay out each file (the best of a number of runs) are stored in {@link RenderTimings#FILE_NAME} in the
+ * output directory; {@link ReferenceComparison} uses these as the baseline for its performance checks.
+ * <p/>
  * Files in the source directory with the following extensions are included: htm, html, xht, xhtml, and xml.
  * <p/>
  * You can also run this from the command line, passing in the source directory as argument 1, and the output file
@@ -57,6 +65,8 @@ import java.util.List;
  * <pre>
  * org.xhtmlrenderer.test.Regress ./regress/input-html/ ./regress/output.zip
  * </pre>
+ * The number of worker threads and of timed runs per file can be set with the <code>xr.test.regress.threads</code>
+ * (default: number of processors) and <code>xr.test.regress.runs</code> (default: 3) system properties.
  */
 public class Regress {
     public static final List EXTENSIONS = Arrays.asList(new String[]{"htm", "html", "xht", "xhtml", "xml",});
@@ -74,6 +84,15 @@ public class Regress {
     // width, in points, used to constrain layout
     private final int width;
 
+    // number of worker threads
+    private final int threads;
+
+    // number of times each file is laid out to time it
+    private final int runs;
+
+    // render time and memory per file
+    private RenderTimings timings;
+
     // total files processed
     private int fileCount;
 
@@ -84,9 +103,11 @@ public class Regress {
         final File sourceDir = getArgSourceDir(args);
         final File outputDir = sourceDir;
         final int width = 1024;
+        final int threads = Integer.getInteger("xr.test.regress.threads", Runtime.getRuntime().availableProcessors()).intValue();
+        final int runs = Integer.getInteger("xr.test.regress.runs", 3).intValue();
 
-        System.out.println("Running regression against files in " + sourceDir);
-        Regress regress = new Regress(sourceDir, outputDir, width);
+        System.out.println("Running regression against files in " + sourceDir + " using " + threads + " threads");
+        Regress regress = new Regress(sourceDir, outputDir, width, threads, runs);
         regress.snapshot();
         System.out.println("Ran regressions against " + regress.getFileCount() + " files in source directory; " + regress.getFailedCount() + " failed to generate");
     }
@@ -99,19 +120,42 @@ public class Regress {
      * @param width     width to constrain layou to
      */
     public Regress(File sourceDir, File outputDir, int width) {
+        this(sourceDir, outputDir, width, 1, 1);
+    }
+
+    /**
+     * Initialize to read from sourceDir and generate files to outputDir, using width points to constrain layout.
+     *
+     * @param sourceDir directory to read from
+     * @param outputDir directory to write to
+     * @param width     width to constrain layou to
+     * @param threads   number of files to render concurrently
+     * @param runs      number of times to lay out each file when measuring its render time
+     */
+    public Regress(File sourceDir, File outputDir, int width, int threads, int runs) {
         this.sourceDir = sourceDir;
         this.outputDir = outputDir;
         this.width = width;
+        this.threads = Math.max(1, threads);
+        this.runs = runs;
     }
 
-    private int getFailedCount() {
+    private synchronized int getFailedCount() {
         return failedCount;
     }
 
-    private int getFileCount() {
+    private synchronized int getFileCount() {
         return fileCount;
     }
 
+    private synchronized void fileFailed() {
+        failedCount++;
+    }
+
+    private synchronized void fileSaved() {
+        fileCount++;
+    }
+
     /**
      * For all files in the input directory, attempts to render and output a textual box model and a PNG file in the
      * output directory. Does not zip the contents of the output directory. Any single file that fails to render
@@ -122,21 +166,55 @@ public class Regress {
      * @throws IOException on reading contents or writing output
      */
     public void snapshot() throws IOException {
-        fileCount = 0;
-        failedCount = 0;
+        synchronized (this) {
+            fileCount = 0;
+            failedCount = 0;
+        }
+        timings = new RenderTimings();
         final boolean wasLogging = enableLogging(false);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
+            List futures = new ArrayList();
             Iterator iter = listInputFiles(sourceDir);
             while (iter.hasNext()) {
-                File file = (File) iter.next();
-                saveBoxModel(file, outputDir, width);
-                saveImage(file, outputDir, width);
+                final File file = (File) iter.next();
+                futures.add(executor.submit(new Callable() {
+                    public Object call() throws IOException {
+                        saveBoxModel(file, outputDir, width);
+                        saveImage(file, outputDir, width);
+                        return null;
+                    }
+                }));
+            }
+            for (Iterator it = futures.iterator(); it.hasNext();) {
+                waitFor((Future) it.next());
             }
+            timings.store(outputDir);
         } finally {
+            executor.shutdownNow();
             enableLogging(wasLogging);
         }
     }
 
+    private void waitFor(Future future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rendering to finish");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
     private void saveImage(File page, File outputDir, int width) throws IOException {
         try {
             Java2DRenderer j2d = new Java2DRenderer(page, width);
@@ -164,20 +242,19 @@ public class Regress {
     }
 
     private void saveBoxModel(File page, File outputDir, int width) throws IOException {
-        BoxRenderer renderer = new BoxRenderer(page, width);
-        Box box;
+        TimedRender render;
         try {
-            box = renderer.render();
+            render = TimedRender.render(page, width, runs);
         } catch (Exception e) {
             System.err.println("Could not render input file, skipping: " + page + " err: " + e.getMessage());
-            failedCount++;
+            fileFailed();
             return;
         }
-        LayoutContext layoutContext = renderer.getLayoutContext();
         String inputFileName = page.getName();
-        writeToFile(outputDir, inputFileName + RENDER_SFX, box.dump(layoutContext, "", Box.DUMP_RENDER));
-        writeToFile(outputDir, inputFileName + LAYOUT_SFX, box.dump(layoutContext, "", Box.DUMP_LAYOUT));
-        fileCount++;
+        writeToFile(outputDir, inputFileName + RENDER_SFX, render.dump(Box.DUMP_RENDER));
+        writeToFile(outputDir, inputFileName + LAYOUT_SFX, render.dump(Box.DUMP_LAYOUT));
+        timings.put(inputFileName, render);
+        fileSaved();
     }
 
     private void writeToFile(File outputDir, String fileName, String output) throws IOException {
@@ -0,0 +1,115 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * The render time and allocated memory of each file of a regression run,
+ * stored next to the reference <code>.layout.txt</code> and
+ * <code>.render.txt</code> files so that {@link ReferenceComparison} can
+ * report files which became slower.  Thread-safe.
+ */
+class RenderTimings {
+    public static final String FILE_NAME = "timings.properties";
+
+    private static final String TIME_SFX = ".time";
+    private static final String BYTES_SFX = ".allocated-bytes";
+
+    private final Properties properties = new Properties();
+
+    /**
+     * Reads the timings stored in <code>directory</code>.  If there are none,
+     * the result is empty.
+     */
+    public static RenderTimings load(File directory) throws IOException {
+        RenderTimings result = new RenderTimings();
+        File file = new File(directory, FILE_NAME);
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                result.properties.load(in);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // swallow
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized void store(File directory) throws IOException {
+        OutputStream out = new FileOutputStream(new File(directory, FILE_NAME));
+        try {
+            properties.store(out, "Render time (ms) and allocated bytes per file");
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // swallow
+            }
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return properties.isEmpty();
+    }
+
+    public synchronized void put(String fileName, TimedRender render) {
+        properties.setProperty(fileName + TIME_SFX, Long.toString(render.getTime()));
+        properties.setProperty(fileName + BYTES_SFX, Long.toString(render.getAllocatedBytes()));
+    }
+
+    /**
+     * Returns the render time of <code>fileName</code> in milliseconds or
+     * <code>-1</code> if it is unknown.
+     */
+    public synchronized long getTime(String fileName) {
+        return getLong(fileName + TIME_SFX);
+    }
+
+    /**
+     * Returns the number of bytes allocated while rendering
+     * <code>fileName</code> or <code>-1</code> if it is unknown.
+     */
+    public synchronized long getAllocatedBytes(String fileName) {
+        return getLong(fileName + BYTES_SFX);
+    }
+
+    private long getLong(String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.xhtmlrenderer.event.RenderMetrics;
+import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.swing.BoxRenderer;
+
+/**
+ * The box tree of a file rendered by {@link BoxRenderer} together with the
+ * time and memory it took.  Every run uses a new <code>BoxRenderer</code>
+ * (and therefore a new {@link org.xhtmlrenderer.layout.SharedContext}), so
+ * files may be rendered concurrently on different threads.
+ */
+class TimedRender {
+    private final Box box;
+    private final LayoutContext layoutContext;
+    private final long time;
+    private final long allocatedBytes;
+
+    private TimedRender(Box box, LayoutContext layoutContext, long time, long allocatedBytes) {
+        this.box = box;
+        this.layoutContext = layoutContext;
+        this.time = time;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Loads and lays out <code>source</code> <code>runs</code> times.  The
+     * fastest time and the smallest number of allocated bytes of all runs
+     * are kept, which filters out most of the noise caused by class loading,
+     * JIT compilation and other threads.
+     */
+    public static TimedRender render(File source, int width, int runs) throws IOException {
+        Box box = null;
+        LayoutContext layoutContext = null;
+        long time = Long.MAX_VALUE;
+        long allocatedBytes = Long.MAX_VALUE;
+
+        for (int i = 0; i < Math.max(1, runs); i++) {
+            BoxRenderer renderer = new BoxRenderer(source, width);
+
+            long startBytes = RenderMetrics.getThreadAllocatedBytes();
+            long start = System.nanoTime();
+            box = renderer.render();
+            time = Math.min(time, (System.nanoTime() - start) / 1000000);
+            if (startBytes == -1) {
+                allocatedBytes = -1;
+            } else {
+                allocatedBytes = Math.min(allocatedBytes, RenderMetrics.getThreadAllocatedBytes() - startBytes);
+            }
+
+            layoutContext = renderer.getLayoutContext();
+        }
+
+        return new TimedRender(box, layoutContext, time, allocatedBytes);
+    }
+
+    public String dump(int which) {
+        return box.dump(layoutContext, "", which);
+    }
+
+    /**
+     * Returns the render time in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the number of bytes allocated while rendering or
+     * <code>-1</code> if this could not be measured.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
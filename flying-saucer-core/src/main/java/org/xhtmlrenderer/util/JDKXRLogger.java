@@ -38,12 +38,17 @@ import java.util.Enumeration;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An {@link XRLogger} interface that uses <code>java.util.logging</code>.
  */
-public class JDKXRLogger implements XRLogger {
-    private static boolean initPending = true;
+public class JDKXRLogger implements ParameterizedXRLogger {
+    private static volatile boolean initPending = true;
+
+    // Logger.getLogger() is relatively expensive and isLoggable() is called
+    // for every parameterized message
+    private static final ConcurrentHashMap _loggers = new ConcurrentHashMap();
     
     /** {@inheritdoc} */
     public void log(String where, Level level, String msg) {
@@ -63,6 +68,27 @@ public class JDKXRLogger implements XRLogger {
         getLogger(where).log(level, msg, th);
     }
 
+    /**
+     * {@inheritdoc}  The message is formatted by the handler's
+     * <code>Formatter</code>, so only if it is published.
+     */
+    public void log(String where, Level level, String pattern, Object[] params) {
+        if (initPending) {
+            init();
+        }
+
+        getLogger(where).log(level, pattern, params);
+    }
+
+    /** {@inheritdoc} */
+    public boolean isLoggable(String where, Level level) {
+        if (initPending) {
+            init();
+        }
+
+        return getLogger(where).isLoggable(level);
+    }
+
     /** {@inheritdoc} */
     public void setLevel(String logger, Level level) {
         getLogger(logger).setLevel(level);
@@ -77,7 +103,12 @@ public class JDKXRLogger implements XRLogger {
      * @return The logger value
      */
     private static Logger getLogger(String log) {
-        return Logger.getLogger(log);
+        Logger result = (Logger) _loggers.get(log);
+        if (result == null) {
+            result = Logger.getLogger(log);
+            _loggers.put(log, result);
+        }
+        return result;
     }
 
     private static void init() {
@@ -0,0 +1,100 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Iterator;
+
+/**
+ * Tells whether the heap is running low, based on how full the heap memory
+ * pools were right after the last garbage collection (see
+ * {@link MemoryPoolMXBean#getCollectionUsage()}).  Unlike the used heap
+ * reported by {@link Runtime}, this does not count garbage, so it does not
+ * rise and fall with the normal allocation pattern between collections.
+ * <p/>
+ * Memory is considered low once some pool is fuller than the low
+ * threshold after a collection, and is considered low until every pool has
+ * dropped below the (smaller) recovered threshold.  Instances are not
+ * thread-safe.
+ */
+public class LowMemoryDetector {
+    private final float _lowThreshold;
+    private final float _recoveredThreshold;
+
+    private boolean _low;
+
+    /**
+     * @param lowThreshold the fraction of the maximum size of a pool at which
+     * memory becomes low
+     * @param recoveredThreshold the fraction of the maximum size of a pool
+     * below which memory is no longer low.  Must not be larger than
+     * <code>lowThreshold</code>.
+     */
+    public LowMemoryDetector(float lowThreshold, float recoveredThreshold) {
+        if (recoveredThreshold > lowThreshold) {
+            throw new IllegalArgumentException(
+                    "recoveredThreshold must not be larger than lowThreshold");
+        }
+        _lowThreshold = lowThreshold;
+        _recoveredThreshold = recoveredThreshold;
+    }
+
+    public boolean isMemoryLow() {
+        return update(getCollectionUsage());
+    }
+
+    /**
+     * Updates the state with the fraction of the fullest heap pool after the
+     * last collection and returns whether memory is low.
+     */
+    boolean update(float usage) {
+        if (_low) {
+            if (usage < _recoveredThreshold) {
+                _low = false;
+            }
+        } else if (usage >= _lowThreshold) {
+            _low = true;
+        }
+        return _low;
+    }
+
+    /**
+     * Returns the largest fraction of its maximum size a heap pool used after
+     * the last collection, or 0 if this isn't known.
+     */
+    private static float getCollectionUsage() {
+        float result = 0;
+        for (Iterator i = ManagementFactory.getMemoryPoolMXBeans().iterator(); i.hasNext(); ) {
+            MemoryPoolMXBean pool = (MemoryPoolMXBean) i.next();
+            if (pool.getType() != MemoryType.HEAP || ! pool.isCollectionUsageThresholdSupported()) {
+                continue;
+            }
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null || usage.getMax() <= 0) {
+                continue;
+            }
+            result = Math.max(result, (float) usage.getUsed() / usage.getMax());
+        }
+        return result;
+    }
+}
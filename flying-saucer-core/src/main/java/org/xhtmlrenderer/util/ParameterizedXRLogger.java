@@ -0,0 +1,44 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.util;
+
+import java.util.logging.Level;
+
+/**
+ * An optional extension of {@link XRLogger} for loggers that can tell
+ * whether a message would be output and can format messages themselves.
+ * {@link XRLog} uses it when the installed logger implements it; for plain
+ * <code>XRLogger</code>s it formats parameterized messages itself.
+ */
+public interface ParameterizedXRLogger extends XRLogger {
+    /**
+     * Logs a message with <code>java.text.MessageFormat</code> style
+     * parameters.  The message should only be formatted if it is actually
+     * output.
+     */
+    public void log(String where, Level level, String pattern, Object[] params);
+
+    /**
+     * Returns whether messages logged to <code>where</code> at
+     * <code>level</code> are output.  This is checked before building
+     * parameterized and supplied messages so it must be cheap.
+     */
+    public boolean isLoggable(String where, Level level);
+}
@@ -0,0 +1,232 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.util;
+
+import java.awt.Image;
+import java.util.Properties;
+
+/**
+ * An immutable snapshot of the {@link Configuration} properties consulted
+ * while laying out and painting a document.  Each
+ * {@link org.xhtmlrenderer.layout.SharedContext} has one, so these
+ * properties are looked up once instead of on every paint and can be set
+ * differently for each renderer (e.g. for each tenant of a server), while
+ * the global configuration supplies the defaults.
+ * <p>
+ * To override properties for one renderer:
+ * <pre>
+ * Properties overrides = new Properties();
+ * overrides.setProperty("xr.renderer.replace-missing-characters", "true");
+ * renderer.getSharedContext().setRenderConfig(new RenderConfig(overrides));
+ * </pre>
+ */
+public class RenderConfig {
+    public static final String DRAW_BACKGROUNDS = "xr.renderer.draw.backgrounds";
+    public static final String REPLACE_MISSING_CHARACTERS = "xr.renderer.replace-missing-characters";
+    public static final String MISSING_CHARACTER_REPLACEMENT = "xr.renderer.missing-character-replacement";
+    public static final String IMAGE_SCALE = "xr.image.scale";
+    public static final String PDF_MARGIN_AREA_TEMPLATES = "xr.pdf.margin-area-templates";
+    public static final String PDF_FONT_PROGRAM_CACHE_BYTES = "xr.pdf.font-program-cache-bytes";
+    public static final String PDF_FONT_SUBSET_CACHE = "xr.pdf.font-subset-cache";
+    public static final String PDF_FONT_SUBSET_CACHE_MAX_GLYPHS = "xr.pdf.font-subset-cache.max-glyphs";
+    public static final String PDF_FONT_SUBSET_CACHE_MAX_FONTS = "xr.pdf.font-subset-cache.max-fonts";
+
+    private static RenderConfig _default;
+
+    private final boolean _drawBackgrounds;
+    private final boolean _replaceMissingCharacters;
+    private final char _missingCharacterReplacement;
+    private final int _imageScaleHint;
+    private final boolean _pdfMarginAreaTemplates;
+    private final long _pdfFontProgramCacheBytes;
+    private final boolean _pdfFontSubsetCache;
+    private final int _pdfFontSubsetCacheMaxGlyphs;
+    private final int _pdfFontSubsetCacheMaxFonts;
+
+    /**
+     * Creates a snapshot of the global configuration.
+     */
+    public RenderConfig() {
+        this(null);
+    }
+
+    /**
+     * Creates a snapshot of the global configuration in which the properties
+     * in <code>overrides</code> (which may be <code>null</code>) replace the
+     * configured values.
+     */
+    public RenderConfig(Properties overrides) {
+        _drawBackgrounds = isTrue(overrides, DRAW_BACKGROUNDS, true);
+        _replaceMissingCharacters = isTrue(overrides, REPLACE_MISSING_CHARACTERS, false);
+        _missingCharacterReplacement = valueAsChar(overrides, MISSING_CHARACTER_REPLACEMENT, '#');
+
+        String scale = valueFor(overrides, IMAGE_SCALE, "HIGH").trim();
+        if (scale.equalsIgnoreCase("HIGH") || scale.equalsIgnoreCase("MID")) {
+            _imageScaleHint = Image.SCALE_SMOOTH;
+        } else {
+            _imageScaleHint = Image.SCALE_FAST;
+        }
+
+        _pdfMarginAreaTemplates = isTrue(overrides, PDF_MARGIN_AREA_TEMPLATES, true);
+        _pdfFontProgramCacheBytes = valueAsLong(overrides, PDF_FONT_PROGRAM_CACHE_BYTES, 32L * 1024 * 1024);
+        _pdfFontSubsetCache = isTrue(overrides, PDF_FONT_SUBSET_CACHE, false);
+        _pdfFontSubsetCacheMaxGlyphs = valueAsInt(overrides, PDF_FONT_SUBSET_CACHE_MAX_GLYPHS, 4096);
+        _pdfFontSubsetCacheMaxFonts = valueAsInt(overrides, PDF_FONT_SUBSET_CACHE_MAX_FONTS, 64);
+    }
+
+    /**
+     * Returns the snapshot of the global configuration used by renderers
+     * which were not given their own.
+     */
+    public static synchronized RenderConfig getDefault() {
+        if (_default == null) {
+            _default = new RenderConfig();
+        }
+        return _default;
+    }
+
+    /**
+     * <code>xr.renderer.draw.backgrounds</code>
+     */
+    public boolean isDrawBackgrounds() {
+        return _drawBackgrounds;
+    }
+
+    /**
+     * <code>xr.renderer.replace-missing-characters</code>
+     */
+    public boolean isReplaceMissingCharacters() {
+        return _replaceMissingCharacters;
+    }
+
+    /**
+     * <code>xr.renderer.missing-character-replacement</code>
+     */
+    public char getMissingCharacterReplacement() {
+        return _missingCharacterReplacement;
+    }
+
+    /**
+     * The {@link Image#getScaledInstance(int, int, int)} hint corresponding
+     * to <code>xr.image.scale</code>.
+     */
+    public int getImageScaleHint() {
+        return _imageScaleHint;
+    }
+
+    /**
+     * <code>xr.pdf.margin-area-templates</code>
+     */
+    public boolean isPdfMarginAreaTemplates() {
+        return _pdfMarginAreaTemplates;
+    }
+
+    /**
+     * <code>xr.pdf.font-program-cache-bytes</code>.  The font program cache
+     * is shared by all renderers, so only the value of the default
+     * configuration is used.
+     */
+    public long getPdfFontProgramCacheBytes() {
+        return _pdfFontProgramCacheBytes;
+    }
+
+    /**
+     * <code>xr.pdf.font-subset-cache</code>
+     */
+    public boolean isPdfFontSubsetCache() {
+        return _pdfFontSubsetCache;
+    }
+
+    /**
+     * <code>xr.pdf.font-subset-cache.max-glyphs</code>.  The font subset
+     * cache is shared by all renderers, so only the value of the default
+     * configuration is used.
+     */
+    public int getPdfFontSubsetCacheMaxGlyphs() {
+        return _pdfFontSubsetCacheMaxGlyphs;
+    }
+
+    /**
+     * <code>xr.pdf.font-subset-cache.max-fonts</code>.  As with
+     * {@link #getPdfFontSubsetCacheMaxGlyphs()}, only the value of the
+     * default configuration is used.
+     */
+    public int getPdfFontSubsetCacheMaxFonts() {
+        return _pdfFontSubsetCacheMaxFonts;
+    }
+
+    private static String valueFor(Properties overrides, String key, String defaultVal) {
+        String result = overrides == null ? null : overrides.getProperty(key);
+        return result == null ? Configuration.valueFor(key, defaultVal) : result;
+    }
+
+    private static boolean isTrue(Properties overrides, String key, boolean defaultVal) {
+        String val = overrides == null ? null : overrides.getProperty(key);
+        if (val == null) {
+            return Configuration.isTrue(key, defaultVal);
+        }
+
+        if (! "true".equals(val) && ! "false".equals(val)) {
+            XRLog.exception("Property '" + key + "' was requested as a boolean, but " +
+                    "value of '" + val + "' is not a boolean. Check configuration.");
+            return defaultVal;
+        } else {
+            return Boolean.valueOf(val).booleanValue();
+        }
+    }
+
+    private static int valueAsInt(Properties overrides, String key, int defaultVal) {
+        String val = overrides == null ? null : overrides.getProperty(key);
+        if (val == null) {
+            return Configuration.valueAsInt(key, defaultVal);
+        }
+
+        try {
+            return Integer.parseInt(val.trim());
+        } catch (NumberFormatException e) {
+            XRLog.exception("Property '" + key + "' was requested as an integer, but " +
+                    "value of '" + val + "' is not an integer. Check configuration.");
+            return defaultVal;
+        }
+    }
+
+    private static long valueAsLong(Properties overrides, String key, long defaultVal) {
+        String val = overrides == null ? null : overrides.getProperty(key);
+        if (val == null) {
+            return Configuration.valueAsLong(key, defaultVal);
+        }
+
+        try {
+            return Long.parseLong(val.trim());
+        } catch (NumberFormatException e) {
+            XRLog.exception("Property '" + key + "' was requested as a long, but " +
+                    "value of '" + val + "' is not a long. Check configuration.");
+            return defaultVal;
+        }
+    }
+
+    private static char valueAsChar(Properties overrides, String key, char defaultVal) {
+        String val = overrides == null ? null : overrides.getProperty(key);
+        if (val == null || val.length() == 0) {
+            return Configuration.valueAsChar(key, defaultVal);
+        }
+        return val.charAt(0);
+    }
+}
@@ -20,6 +20,7 @@
  */
 package org.xhtmlrenderer.util;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
@@ -52,10 +53,13 @@ public class XRLog {
         return loggerName;
     }
 
-    private static boolean initPending = true;
-    private static XRLogger loggerImpl;
+    // volatile so that isLoggable() does not need to synchronize
+    private static volatile boolean initPending = true;
+    private static volatile XRLogger loggerImpl;
 
-    private static boolean loggingEnabled = true;
+    private static volatile boolean loggingEnabled = true;
+    // true once setLoggingEnabled() was called, so init() leaves it alone
+    private static volatile boolean loggingEnabledSet;
 
     /**
      * Returns a list of all loggers that will be accessed by XRLog. Each entry is a String with a logger
@@ -82,6 +86,14 @@ public class XRLog {
         log(CSS_PARSE, level, msg, th);
     }
 
+    public static void cssParse(Level level, String pattern, Object[] params) {
+        log(CSS_PARSE, level, pattern, params);
+    }
+
+    public static void cssParse(Level level, XRLogMessage message) {
+        log(CSS_PARSE, level, message);
+    }
+
     public static void xmlEntities(String msg) {
         xmlEntities(Level.INFO, msg);
     }
@@ -94,6 +106,14 @@ public class XRLog {
         log(XML_ENTITIES, level, msg, th);
     }
 
+    public static void xmlEntities(Level level, String pattern, Object[] params) {
+        log(XML_ENTITIES, level, pattern, params);
+    }
+
+    public static void xmlEntities(Level level, XRLogMessage message) {
+        log(XML_ENTITIES, level, message);
+    }
+
     public static void cascade(String msg) {
         cascade(Level.INFO, msg);
     }
@@ -106,6 +126,14 @@ public class XRLog {
         log(CASCADE, level, msg, th);
     }
 
+    public static void cascade(Level level, String pattern, Object[] params) {
+        log(CASCADE, level, pattern, params);
+    }
+
+    public static void cascade(Level level, XRLogMessage message) {
+        log(CASCADE, level, message);
+    }
+
     public static void exception(String msg) {
         exception(msg, null);
     }
@@ -126,6 +154,14 @@ public class XRLog {
         log(GENERAL, level, msg, th);
     }
 
+    public static void general(Level level, String pattern, Object[] params) {
+        log(GENERAL, level, pattern, params);
+    }
+
+    public static void general(Level level, XRLogMessage message) {
+        log(GENERAL, level, message);
+    }
+
     public static void init(String msg) {
         init(Level.INFO, msg);
     }
@@ -138,6 +174,14 @@ public class XRLog {
         log(INIT, level, msg, th);
     }
 
+    public static void init(Level level, String pattern, Object[] params) {
+        log(INIT, level, pattern, params);
+    }
+
+    public static void init(Level level, XRLogMessage message) {
+        log(INIT, level, message);
+    }
+
     public static void junit(String msg) {
         junit(Level.FINEST, msg);
     }
@@ -150,6 +194,14 @@ public class XRLog {
         log(JUNIT, level, msg, th);
     }
 
+    public static void junit(Level level, String pattern, Object[] params) {
+        log(JUNIT, level, pattern, params);
+    }
+
+    public static void junit(Level level, XRLogMessage message) {
+        log(JUNIT, level, message);
+    }
+
     public static void load(String msg) {
         load(Level.INFO, msg);
     }
@@ -162,6 +214,14 @@ public class XRLog {
         log(LOAD, level, msg, th);
     }
 
+    public static void load(Level level, String pattern, Object[] params) {
+        log(LOAD, level, pattern, params);
+    }
+
+    public static void load(Level level, XRLogMessage message) {
+        log(LOAD, level, message);
+    }
+
     public static void match(String msg) {
         match(Level.INFO, msg);
     }
@@ -174,6 +234,14 @@ public class XRLog {
         log(MATCH, level, msg, th);
     }
 
+    public static void match(Level level, String pattern, Object[] params) {
+        log(MATCH, level, pattern, params);
+    }
+
+    public static void match(Level level, XRLogMessage message) {
+        log(MATCH, level, message);
+    }
+
     public static void layout(String msg) {
         layout(Level.INFO, msg);
     }
@@ -186,6 +254,14 @@ public class XRLog {
         log(LAYOUT, level, msg, th);
     }
 
+    public static void layout(Level level, String pattern, Object[] params) {
+        log(LAYOUT, level, pattern, params);
+    }
+
+    public static void layout(Level level, XRLogMessage message) {
+        log(LAYOUT, level, message);
+    }
+
     public static void render(String msg) {
         render(Level.INFO, msg);
     }
@@ -198,6 +274,14 @@ public class XRLog {
         log(RENDER, level, msg, th);
     }
 
+    public static void render(Level level, String pattern, Object[] params) {
+        log(RENDER, level, pattern, params);
+    }
+
+    public static void render(Level level, XRLogMessage message) {
+        log(RENDER, level, message);
+    }
+
     public static synchronized void log(String where, Level level, String msg) {
         if (initPending) {
             init();
@@ -216,6 +300,54 @@ public class XRLog {
         }
     }
 
+    /**
+     * Logs a message with <code>java.text.MessageFormat</code> style
+     * parameters (e.g. <code>"Missing character {0}"</code>).  The message is
+     * only formatted if it is actually logged.  Note that single quotes in
+     * <code>pattern</code> must be doubled.
+     */
+    public static void log(String where, Level level, String pattern, Object[] params) {
+        if (isLoggable(where, level)) {
+            XRLogger logger = loggerImpl;
+            if (logger instanceof ParameterizedXRLogger) {
+                synchronized (XRLog.class) {
+                    ((ParameterizedXRLogger) logger).log(where, level, pattern, params);
+                }
+            } else {
+                log(where, level, MessageFormat.format(pattern, params));
+            }
+        }
+    }
+
+    /**
+     * Logs the message supplied by <code>message</code>, which is only asked
+     * for it if it will actually be logged.
+     */
+    public static void log(String where, Level level, XRLogMessage message) {
+        if (isLoggable(where, level)) {
+            log(where, level, message.get());
+        }
+    }
+
+    /**
+     * Returns whether a message logged to <code>where</code> at
+     * <code>level</code> would be output.  This is cheap and does not
+     * synchronize, so it can be used to guard building messages on hot paths.
+     * Loggers which do not implement {@link ParameterizedXRLogger} can't be
+     * asked, so for them only whether logging is enabled is checked.
+     */
+    public static boolean isLoggable(String where, Level level) {
+        if (initPending) {
+            init();
+        }
+        if (! loggingEnabled) {
+            return false;
+        }
+        XRLogger logger = loggerImpl;
+        return ! (logger instanceof ParameterizedXRLogger) ||
+                ((ParameterizedXRLogger) logger).isLoggable(where, level);
+    }
+
     public static void main(String args[]) {
         try {
             XRLog.cascade("Cascade msg");
@@ -245,7 +377,9 @@ public class XRLog {
                 return;
             }
 
-            XRLog.setLoggingEnabled(Configuration.isTrue("xr.util-logging.loggingEnabled", true));
+            if (! loggingEnabledSet) {
+                loggingEnabled = Configuration.isTrue("xr.util-logging.loggingEnabled", true);
+            }
 
             if (loggerImpl == null) {
                 loggerImpl = new JDKXRLogger();
@@ -281,6 +415,7 @@ public class XRLog {
      */
     public static synchronized void setLoggingEnabled(boolean loggingEnabled) {
         XRLog.loggingEnabled = loggingEnabled;
+        XRLog.loggingEnabledSet = true;
     }
 
     public static synchronized XRLogger getLoggerImpl() {
@@ -74,7 +74,7 @@ public class XRSimpleLogFormatter extends Formatter {
                 record.getLevel().toString(),
                 record.getSourceClassName(),
                 record.getSourceMethodName(),
-                record.getMessage(),
+                formatMessage( record ),
                 thName,
                 thMessage,
                 trace
@@ -0,0 +1,111 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.util;
+
+import java.util.logging.Level;
+
+/**
+ * Timed events for the hot paths of loading, layout and rendering, intended
+ * for profilers such as JDK Flight Recorder.  No events are created unless a
+ * {@link XRTracer} is installed, either with {@link #setTracerImpl(XRTracer)}
+ * or by naming its class in the <code>xr.trace.tracer-impl</code>
+ * configuration property.  Call sites follow the pattern
+ * <pre>
+ * XRTraceEvent event = XRTrace.begin(XRTrace.PAGE_LAYOUT);
+ * ...
+ * if (event != null) {
+ *     event.end(uri, -1, pageCount);
+ * }
+ * </pre>
+ * Events are not ended if the traced operation throws.
+ */
+public class XRTrace {
+    /** Parsing of an XML document.  Size: elements in the document */
+    public static final int DOCUMENT_LOAD = 0;
+    /** Parsing of a stylesheet.  Size: rulesets in the stylesheet */
+    public static final int STYLESHEET_PARSE = 1;
+    /** Matching and cascading of one element.  Size: matched selectors */
+    public static final int CASCADE = 2;
+    /** Layout of a block (including its descendants).  Size: height in dots */
+    public static final int BLOCK_LAYOUT = 3;
+    /** Layout of page and margin boxes.  Size: pages */
+    public static final int PAGE_LAYOUT = 4;
+    /** Painting of one page.  Size: not used */
+    public static final int PAGE_PAINT = 5;
+    /** Opening of a resource by the user agent.  Size: not used */
+    public static final int RESOURCE_FETCH = 6;
+    /** Loading of a font.  Size: font families it provides */
+    public static final int FONT_LOAD = 7;
+
+    public static final int EVENT_TYPE_COUNT = 8;
+
+    private static XRTracer tracerImpl = createConfiguredTracer();
+
+    private XRTrace() {
+    }
+
+    /**
+     * Returns whether a tracer is installed.  Call sites which need to
+     * compute event data up front can use this to skip the work.
+     */
+    public static boolean isEnabled() {
+        return tracerImpl != null;
+    }
+
+    /**
+     * Starts an event of <code>type</code>.
+     *
+     * @return the event or <code>null</code> if no tracer is installed or
+     * the tracer is not recording this type of event
+     */
+    public static XRTraceEvent begin(int type) {
+        XRTracer tracer = tracerImpl;
+        return tracer == null ? null : tracer.begin(type);
+    }
+
+    public static XRTracer getTracerImpl() {
+        return tracerImpl;
+    }
+
+    /**
+     * Installs <code>tracer</code>.  This should be done before rendering
+     * starts.  Pass <code>null</code> to turn tracing off.
+     */
+    public static void setTracerImpl(XRTracer tracer) {
+        tracerImpl = tracer;
+    }
+
+    private static XRTracer createConfiguredTracer() {
+        String className = Configuration.valueFor("xr.trace.tracer-impl");
+        if (className == null || className.trim().length() == 0) {
+            return null;
+        }
+        try {
+            return (XRTracer)Class.forName(className.trim()).newInstance();
+        } catch (Exception e) {
+            XRLog.general(Level.WARNING, "Could not instantiate tracer " + className + ": " + e.getMessage());
+            return null;
+        } catch (LinkageError e) {
+            // e.g. a JFR based tracer on a VM without JFR
+            XRLog.general(Level.WARNING, "Could not instantiate tracer " + className + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
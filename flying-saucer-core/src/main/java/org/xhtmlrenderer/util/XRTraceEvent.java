@@ -0,0 +1,35 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.util;
+
+/**
+ * An event started with {@link XRTrace#begin(int)}.
+ */
+public interface XRTraceEvent {
+    /**
+     * Ends the event and records it.
+     *
+     * @param uri the document, stylesheet, resource or font involved, if any
+     * @param pageNumber the (zero based) page involved or <code>-1</code>
+     * @param size a measure of the work done (see the {@link XRTrace}
+     * constants) or <code>-1</code> if unknown
+     */
+    void end(String uri, int pageNumber, long size);
+}
@@ -0,0 +1,49 @@
+package org.xhtmlrenderer.context;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+
+
+public class InlineStyleCacheTest extends TestCase {
+
+    public void testEqualValuesShareRuleset() throws Exception {
+        StylesheetFactoryImpl factory = new StylesheetFactoryImpl(new NaiveUserAgent());
+        InlineStyleCache cache = new InlineStyleCache(16);
+        factory.setInlineStyleCache(cache);
+
+        Ruleset first = factory.parseStyleDeclaration(StylesheetInfo.AUTHOR, "color: red; margin: 2px");
+        Ruleset second = factory.parseStyleDeclaration(StylesheetInfo.AUTHOR, new String("color: red; margin: 2px"));
+        assertSame(first, second);
+        assertEquals(5, second.getPropertyDeclarations().size());
+        assertEquals(0.5d, cache.getHitRatio(), 0.0001d);
+    }
+
+
+    public void testPut_ReturnsExistingRuleset() throws Exception {
+        InlineStyleCache cache = new InlineStyleCache(16);
+        Ruleset first = new Ruleset(StylesheetInfo.AUTHOR);
+        assertSame(first, cache.put(StylesheetInfo.AUTHOR, false, "color: red", first));
+        assertSame(first, cache.put(StylesheetInfo.AUTHOR, false, "color: red", new Ruleset(StylesheetInfo.AUTHOR)));
+        assertNull(cache.get(StylesheetInfo.AUTHOR, true, "color: red"));
+    }
+
+
+    public void testClearedWhenFull() throws Exception {
+        InlineStyleCache cache = new InlineStyleCache(2);
+        cache.put(StylesheetInfo.AUTHOR, false, "a", new Ruleset(StylesheetInfo.AUTHOR));
+        cache.put(StylesheetInfo.AUTHOR, false, "b", new Ruleset(StylesheetInfo.AUTHOR));
+        cache.put(StylesheetInfo.AUTHOR, false, "c", new Ruleset(StylesheetInfo.AUTHOR));
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(StylesheetInfo.AUTHOR, false, "c"));
+    }
+
+
+    public void testDisabled() throws Exception {
+        InlineStyleCache cache = new InlineStyleCache(0);
+        cache.put(StylesheetInfo.AUTHOR, false, "a", new Ruleset(StylesheetInfo.AUTHOR));
+        assertNull(cache.get(StylesheetInfo.AUTHOR, false, "a"));
+    }
+}
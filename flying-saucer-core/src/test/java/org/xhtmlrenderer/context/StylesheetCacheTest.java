@@ -0,0 +1,38 @@
+package org.xhtmlrenderer.context;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+
+public class StylesheetCacheTest extends TestCase {
+    public void testDropsLeastRecentlyUsed() {
+        StylesheetCache cache = new StylesheetCache(2);
+        Stylesheet a = new Stylesheet("a.css", StylesheetInfo.AUTHOR);
+        Stylesheet b = new Stylesheet("b.css", StylesheetInfo.AUTHOR);
+        Stylesheet c = new Stylesheet("c.css", StylesheetInfo.AUTHOR);
+
+        cache.put("a.css", a);
+        cache.put("b.css", b);
+        assertSame(a, cache.get("a.css"));
+
+        // b was used least recently, so it makes room for c
+        cache.put("c.css", c);
+        assertEquals(2, cache.size());
+        assertFalse(cache.contains("b.css"));
+        assertSame(a, cache.get("a.css"));
+        assertSame(c, cache.get("c.css"));
+    }
+
+    public void testRemembersStylesheetsThatCouldNotBeLoaded() {
+        StylesheetCache cache = new StylesheetCache(2);
+
+        cache.put("missing.css", null);
+        assertTrue(cache.contains("missing.css"));
+        assertNull(cache.get("missing.css"));
+
+        cache.remove("missing.css");
+        assertFalse(cache.contains("missing.css"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,59 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import java.io.StringReader;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.css.parser.CSSErrorHandler;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+
+
+public class DocumentFeaturesTest extends TestCase {
+
+    public void testCanMatch() throws Exception {
+        DocumentFeatures features = new DocumentFeatures();
+        features.addElementName("div");
+        features.addElementName("p");
+        features.addClasses(" total\tamount ");
+        features.addID("header");
+        features.addAttributeName("href");
+
+        assertTrue(canMatch("p", features));
+        assertTrue(canMatch("*.amount", features));
+        assertTrue(canMatch("div#header > p.total[href]", features));
+        assertTrue(canMatch("div + p:first-child", features));
+
+        assertFalse(canMatch("table", features));
+        assertFalse(canMatch("p.missing", features));
+        assertFalse(canMatch("#footer p", features));
+        assertFalse(canMatch("span + p", features));
+        assertFalse(canMatch("p[title]", features));
+    }
+
+
+    public void testRulesetsByMedium() throws Exception {
+        Stylesheet sheet = parse("p { color: red } @media print { p { color: blue } } div { color: green }");
+        assertEquals(3, sheet.getRulesets("print").size());
+        assertEquals(2, sheet.getRulesets("screen").size());
+        assertSame(sheet.getRulesets("print"), sheet.getRulesets("print"));
+    }
+
+
+    private boolean canMatch(String selector, DocumentFeatures features) throws Exception {
+        Ruleset ruleset = (Ruleset) parse(selector + " { color: red }").getContents().get(0);
+        List selectors = ruleset.getFSSelectors();
+        return ((Selector) selectors.get(0)).canMatch(features);
+    }
+
+    private Stylesheet parse(String css) throws Exception {
+        CSSParser parser = new CSSParser(new CSSErrorHandler() {
+            public void error(String uri, String message) {
+                fail(message);
+            }
+        });
+        return parser.parseStylesheet("test.css", 0, new StringReader(css));
+    }
+}
@@ -0,0 +1,53 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.css.constants.MarginBoxName;
+import org.xhtmlrenderer.css.parser.CSSErrorHandler;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+
+
+public class PageInfoTest extends TestCase {
+
+    public void testPageMastersAreCached() throws Exception {
+        Matcher matcher = createMatcher("@page { margin: 1cm } @page :first { margin: 2cm }");
+
+        PageInfo first = matcher.getPageCascadedStyle(null, "first");
+        assertSame(first, matcher.getPageCascadedStyle(null, "first"));
+        assertNotSame(first, matcher.getPageCascadedStyle(null, "right"));
+        assertSame(first.getCalculatedPageStyle(), first.getCalculatedPageStyle());
+    }
+
+
+    public void testIsPageIndependent() throws Exception {
+        Matcher matcher = createMatcher(
+                "@page { @top-left { content: 'Title' } " +
+                "@top-center { content: 'Page ' counter(page) ' of ' counter(pages, upper-roman) } " +
+                "@top-right { content: element(header) } " +
+                "@bottom-left { content: counter(chapter) } }");
+        PageInfo info = matcher.getPageCascadedStyle(null, "right");
+
+        assertTrue(info.isPageIndependent(new MarginBoxName[] { MarginBoxName.TOP_LEFT }));
+        assertTrue(info.isPageIndependent(new MarginBoxName[] { MarginBoxName.TOP_CENTER }));
+        assertTrue(info.isPageIndependent(new MarginBoxName[] { MarginBoxName.BOTTOM_RIGHT }));
+        assertFalse(info.isPageIndependent(new MarginBoxName[] { MarginBoxName.TOP_RIGHT }));
+        assertFalse(info.isPageIndependent(new MarginBoxName[] { MarginBoxName.BOTTOM_LEFT }));
+        assertFalse(info.isPageIndependent(new MarginBoxName[] {
+                MarginBoxName.TOP_LEFT, MarginBoxName.TOP_CENTER, MarginBoxName.TOP_RIGHT }));
+    }
+
+
+    private Matcher createMatcher(String css) throws Exception {
+        CSSParser parser = new CSSParser(new CSSErrorHandler() {
+            public void error(String uri, String message) {
+                fail(message);
+            }
+        });
+        Stylesheet sheet = parser.parseStylesheet("test.css", 0, new StringReader(css));
+        return new Matcher(null, null, null, Collections.singletonList(sheet), "print");
+    }
+}
@@ -0,0 +1,229 @@
+package org.xhtmlrenderer.css.parser;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.css.newmatch.Selector;
+import org.xhtmlrenderer.css.sheet.FontFaceRule;
+import org.xhtmlrenderer.css.sheet.MediaRule;
+import org.xhtmlrenderer.css.sheet.PageRule;
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+
+/**
+ * Checks that parsing a stylesheet from a <code>char[]</code> (which scans
+ * tokens in place) gives the same result as parsing it from a reader.
+ */
+public class BufferedStylesheetTest extends TestCase {
+    private static final String ESCAPES =
+            "p.a\\:b { content: \"x\\\"y\\\\z\"; font-family: \"\\41 B\", serif }\n" +
+            "#\\31 23 { color: \\72 ed }\n" +
+            "s { content: 'a\\\nb' }\n";
+
+    private static final String CRLF =
+            "p {\r\n  color: red;\r\n  margin: 1px\r\n}\r\n" +
+            "a { color: blue }\r" +
+            "b { color: green }\r\n";
+
+    private static final String COMMENTS =
+            "/* leading */ p /* a */ { /* b */ color /* c */ : /* d */ red /* e */ }\n" +
+            "a { color: blue; /* unterminated } in a comment */ margin: 0 }\n" +
+            "/**/b{width:1px}/***/\n";
+
+    private static final String URLS =
+            "p { background: url( img/a.png ) }\n" +
+            "a { background: url(\"img/b.png\") no-repeat; list-style-image: url(  'img/c.png'  ) }\n" +
+            "b { background: url(\n img/d.png\t) }\n" +
+            "@import url( other.css ) print;\n";
+
+    private static final String TRUNCATED =
+            "p { color: red }\n" +
+            "a { background: url(img/x.png";
+
+    private static final String PAGE =
+            "@page { size: 8.5in 11in; margin: 1in }\n" +
+            "@page :first { margin-top: 2in; @top-center { content: \"Title\" } }\n" +
+            "@page wide :left { size: landscape; @bottom-left { content: counter(page) } }\n" +
+            "@media print { p { color: black } }\n" +
+            "@font-face { font-family: \"X\"; src: url(x.ttf) }\n";
+
+    public void testEscapes() throws Exception {
+        assertSameResult(ESCAPES);
+    }
+
+    public void testCrLf() throws Exception {
+        assertSameResult(CRLF);
+    }
+
+    public void testComments() throws Exception {
+        assertSameResult(COMMENTS);
+    }
+
+    public void testUrlWhitespace() throws Exception {
+        assertSameResult(URLS);
+    }
+
+    public void testTruncatedInput() throws Exception {
+        assertSameResult(TRUNCATED);
+    }
+
+    public void testPageRules() throws Exception {
+        assertSameResult(PAGE);
+    }
+
+    public void testCharBuffers() throws Exception {
+        String css = PAGE + ESCAPES + "q { content: \"\u00e9\u4e2d\" }\n";
+        List expected = describe(parseReader(css, false, new ArrayList()));
+
+        CharBuffer heap = CharBuffer.wrap(("} {" + css).toCharArray());
+        heap.position(3);
+        assertEquals(expected, describe(newParser(false, new ArrayList()).parseStylesheet(
+                "http://example.com/css/test.css", 0, heap)));
+        assertEquals(3, heap.position());
+
+        CharBuffer direct = ByteBuffer.allocateDirect(css.length() * 2).asCharBuffer();
+        direct.put(css);
+        direct.flip();
+        assertEquals(expected, describe(newParser(false, new ArrayList()).parseStylesheet(
+                "http://example.com/css/test.css", 0, direct)));
+        assertEquals(0, direct.position());
+
+        ByteBuffer utf8 = ByteBuffer.wrap(css.getBytes("UTF-8"));
+        assertEquals(expected, describe(newParser(false, new ArrayList()).parseUTF8Stylesheet(
+                "http://example.com/css/test.css", 0, utf8)));
+        assertEquals(0, utf8.position());
+    }
+
+    public void testDeferredBlocksDontReferToBuffer() throws Exception {
+        List expected = describe(parseReader(CRLF, false, new ArrayList()));
+
+        char[] buffer = CRLF.toCharArray();
+        Stylesheet sheet = newParser(true, new ArrayList()).parseStylesheet(
+                "http://example.com/css/test.css", 0, buffer, 0, buffer.length);
+        Arrays.fill(buffer, 'x');
+
+        assertEquals(expected, describe(sheet));
+    }
+
+    private void assertSameResult(String css) throws Exception {
+        for (int i = 0; i < 2; i++) {
+            boolean defer = i == 1;
+
+            List readerErrors = new ArrayList();
+            List fromReader = describe(parseReader(css, defer, readerErrors));
+
+            List bufferErrors = new ArrayList();
+            List fromBuffer = describe(parseBuffer(css, defer, bufferErrors));
+
+            assertEquals("defer=" + defer, fromReader, fromBuffer);
+            assertEquals("defer=" + defer, readerErrors, bufferErrors);
+            assertTrue(fromReader.size() > 0);
+        }
+    }
+
+    private Stylesheet parseReader(String css, boolean defer, List errors) throws Exception {
+        return newParser(defer, errors).parseStylesheet(
+                "http://example.com/css/test.css", 0, new StringReader(css));
+    }
+
+    private Stylesheet parseBuffer(String css, boolean defer, List errors) throws Exception {
+        // Surround the sheet with text which must not be read
+        String padded = "} x { color: red } /*" + css + "*/ y { }";
+        char[] buffer = padded.toCharArray();
+        int offset = padded.indexOf(css);
+        return newParser(defer, errors).parseStylesheet(
+                "http://example.com/css/test.css", 0, buffer, offset, css.length());
+    }
+
+    private CSSParser newParser(boolean defer, final List errors) {
+        CSSParser parser = new CSSParser(new CSSErrorHandler() {
+            public void error(String uri, String message) {
+                errors.add(uri + ": " + message);
+            }
+        });
+        parser.setDeferDeclarations(defer);
+        return parser;
+    }
+
+    private List describe(Stylesheet sheet) {
+        List result = new ArrayList();
+        for (Iterator i = sheet.getImportRules().iterator(); i.hasNext(); ) {
+            StylesheetInfo info = (StylesheetInfo) i.next();
+            result.add("@import " + info.getUri() + " " + info.getMedia());
+        }
+        for (Iterator i = sheet.getFontFaceRules().iterator(); i.hasNext(); ) {
+            FontFaceRule rule = (FontFaceRule) i.next();
+            result.add("@font-face " + rule.hasFontFamily() + " " + rule.hasFontWeight() +
+                    " " + rule.hasFontStyle());
+        }
+        describe(sheet.getContents(), result);
+        return result;
+    }
+
+    private void describe(List contents, List result) {
+        for (Iterator i = contents.iterator(); i.hasNext(); ) {
+            Object obj = i.next();
+            if (obj instanceof Ruleset) {
+                describe((Ruleset) obj, result);
+            } else if (obj instanceof MediaRule) {
+                MediaRule rule = (MediaRule) obj;
+                result.add("@media print=" + rule.matches("print") + " screen=" + rule.matches("screen"));
+                describe(rule.getContents(), result);
+            } else if (obj instanceof PageRule) {
+                PageRule rule = (PageRule) obj;
+                result.add("@page " + rule.getName() + " :" + rule.getPseudoPage());
+                describe(rule.getRuleset(), result);
+                Map boxes = new TreeMap();
+                for (Iterator j = rule.getMarginBoxes().entrySet().iterator(); j.hasNext(); ) {
+                    Map.Entry entry = (Map.Entry) j.next();
+                    boxes.put(entry.getKey().toString(), entry.getValue());
+                }
+                for (Iterator j = boxes.entrySet().iterator(); j.hasNext(); ) {
+                    Map.Entry entry = (Map.Entry) j.next();
+                    result.add("@" + entry.getKey());
+                    describeDeclarations((List) entry.getValue(), result);
+                }
+            } else {
+                result.add(obj.getClass().getName());
+            }
+        }
+    }
+
+    private void describe(Ruleset ruleset, List result) {
+        if (ruleset == null) {
+            result.add("null");
+            return;
+        }
+        for (Iterator i = ruleset.getFSSelectors().iterator(); i.hasNext(); ) {
+            StringBuffer buf = new StringBuffer();
+            for (Selector s = (Selector) i.next(); s != null; s = s.getChainedSelector()) {
+                buf.append(s.getAxis()).append(':').append(s.getSpecificityB())
+                        .append(s.getSpecificityC()).append(s.getSpecificityD())
+                        .append(':').append(s.getPseudoElement()).append(' ');
+            }
+            result.add(buf.toString());
+        }
+        result.add("{");
+        describeDeclarations(ruleset.getPropertyDeclarations(), result);
+        result.add("}");
+    }
+
+    private void describeDeclarations(List declarations, List result) {
+        for (Iterator i = declarations.iterator(); i.hasNext(); ) {
+            PropertyDeclaration decl = (PropertyDeclaration) i.next();
+            result.add(decl.getPropertyName() + ": " + decl.getValue().getCssText() +
+                    (decl.isImportant() ? " !important" : ""));
+        }
+    }
+}
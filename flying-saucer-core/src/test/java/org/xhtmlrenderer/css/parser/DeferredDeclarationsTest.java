@@ -0,0 +1,77 @@
+package org.xhtmlrenderer.css.parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+
+
+public class DeferredDeclarationsTest extends TestCase {
+    private static final String CSS =
+            "p { color: red; /* a\ncomment */ margin: 1px 2px }\n" +
+            "a { colr: blue; background: url(img/x.png); font-family: \"A}B\", serif }\r\n" +
+            "b { width: ; height: 3px !important }\n" +
+            "c { ; }\n" +
+            "d { x { y } ; color: green }\n";
+
+    public void testDeclarationsParsedOnFirstUse() throws Exception {
+        List errors = new ArrayList();
+        Stylesheet sheet = parse(true, errors);
+
+        Ruleset first = (Ruleset) sheet.getContents().get(0);
+        assertTrue(first.isDeferred());
+        assertEquals(0, errors.size());
+
+        assertEquals(5, first.getPropertyDeclarations().size());
+        assertFalse(first.isDeferred());
+    }
+
+
+    public void testEmptyRulesetsDropped() throws Exception {
+        assertEquals(4, parse(true, new ArrayList()).getContents().size());
+    }
+
+
+    public void testSameDeclarationsAndErrorsAsEagerParse() throws Exception {
+        List eagerErrors = new ArrayList();
+        List eager = describe(parse(false, eagerErrors));
+
+        List deferredErrors = new ArrayList();
+        List deferred = describe(parse(true, deferredErrors));
+
+        assertEquals(eager, deferred);
+        assertEquals(eagerErrors, deferredErrors);
+        assertEquals(4, deferredErrors.size());
+    }
+
+
+    private Stylesheet parse(boolean defer, final List errors) throws Exception {
+        CSSParser parser = new CSSParser(new CSSErrorHandler() {
+            public void error(String uri, String message) {
+                errors.add(uri + ": " + message);
+            }
+        });
+        parser.setDeferDeclarations(defer);
+        return parser.parseStylesheet("http://example.com/css/test.css", 0, new StringReader(CSS));
+    }
+
+    private List describe(Stylesheet sheet) {
+        List result = new ArrayList();
+        for (Iterator i = sheet.getContents().iterator(); i.hasNext(); ) {
+            Ruleset ruleset = (Ruleset) i.next();
+            for (Iterator j = ruleset.getPropertyDeclarations().iterator(); j.hasNext(); ) {
+                PropertyDeclaration decl = (PropertyDeclaration) j.next();
+                result.add(decl.getPropertyName() + ": " + decl.getValue().getCssText() +
+                        (decl.isImportant() ? " !important" : ""));
+            }
+            result.add("}");
+        }
+        return result;
+    }
+}
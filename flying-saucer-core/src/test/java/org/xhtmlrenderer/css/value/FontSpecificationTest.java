@@ -0,0 +1,58 @@
+package org.xhtmlrenderer.css.value;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.css.constants.IdentValue;
+
+
+public class FontSpecificationTest extends TestCase {
+
+    public void testInternFamilies_ReturnsSharedArray() throws Exception {
+        String[] first = FontSpecification.internFamilies(new String[] { "Arial", "sans-serif" });
+        String[] second = FontSpecification.internFamilies(new String[] { "Arial", "sans-serif" });
+        assertSame(first, second);
+        assertNull(FontSpecification.internFamilies(null));
+    }
+
+
+    public void testEqualSpecifications() throws Exception {
+        FontSpecification first = create(new String[] { "Arial", "sans-serif" }, 12f, IdentValue.BOLD);
+        FontSpecification second = create(new String[] { "Arial", "sans-serif" }, 12f, IdentValue.BOLD);
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+
+
+    public void testDifferentSpecifications() throws Exception {
+        FontSpecification spec = create(new String[] { "Arial" }, 12f, IdentValue.BOLD);
+        assertFalse(spec.equals(create(new String[] { "Arial" }, 13f, IdentValue.BOLD)));
+        assertFalse(spec.equals(create(new String[] { "Arial" }, 12f, IdentValue.NORMAL)));
+        assertFalse(spec.equals(create(new String[] { "Times" }, 12f, IdentValue.BOLD)));
+        assertFalse(spec.equals(create(null, 12f, IdentValue.BOLD)));
+    }
+
+    public void testCopyIsIndependent() throws Exception {
+        String[] families = new String[] { "Arial", "sans-serif" };
+        FontSpecification spec = create(families, 12f, IdentValue.BOLD);
+        FontSpecification copy = spec.copyOf();
+        assertEquals(spec, copy);
+        assertEquals(spec.hashCode(), copy.hashCode());
+
+        int hashCode = copy.hashCode();
+        families[0] = "Times";
+        spec.size = 13f;
+        assertEquals(hashCode, copy.hashCode());
+        assertEquals("Arial", copy.families[0]);
+        assertEquals(12f, copy.size, 0f);
+    }
+
+    private static FontSpecification create(String[] families, float size, IdentValue weight) {
+        FontSpecification result = new FontSpecification();
+        result.families = families;
+        result.size = size;
+        result.fontWeight = weight;
+        result.fontStyle = IdentValue.NORMAL;
+        result.variant = IdentValue.NORMAL;
+        return result;
+    }
+}
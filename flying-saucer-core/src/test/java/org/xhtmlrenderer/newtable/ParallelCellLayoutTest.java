@@ -0,0 +1,167 @@
+package org.xhtmlrenderer.newtable;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.extend.UserInterface;
+import org.xhtmlrenderer.layout.BoxBuilder;
+import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.render.InlineLayoutBox;
+import org.xhtmlrenderer.render.InlineText;
+import org.xhtmlrenderer.render.ViewportBox;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xhtmlrenderer.swing.AWTFontResolver;
+import org.xhtmlrenderer.swing.Java2DFontContext;
+import org.xhtmlrenderer.swing.Java2DTextRenderer;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+import org.xhtmlrenderer.swing.SwingReplacedElementFactory;
+import org.xml.sax.InputSource;
+
+public class ParallelCellLayoutTest extends TestCase {
+    private static final int WIDTH = 1000;
+
+    public void testParallelLayoutMatchesSerialLayout() {
+        String html = createTable(120, 8);
+
+        String serial = layout(html, null);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                4, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue());
+        try {
+            // Lay out twice so the second run picks up styles whose lazy
+            // values were filled in concurrently by the first one
+            for (int i = 0; i < 2; i++) {
+                assertEquals(serial, layout(html, executor));
+            }
+            assertTrue(executor.getCompletedTaskCount() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private String createTable(int rows, int columns) {
+        StringBuffer result = new StringBuffer();
+        result.append("<html xmlns='http://www.w3.org/1999/xhtml'><head><style>");
+        result.append("td { border: 1px solid black; padding: 2px }");
+        result.append("td.c1 { font-size: 150%; line-height: 2 }");
+        result.append("td.c2 { font-weight: bold; text-align: right }");
+        result.append("td.c3 { font-family: monospace; padding: 5% }");
+        result.append("</style></head><body><table>");
+        for (int i = 0; i < rows; i++) {
+            result.append("<tr>");
+            for (int j = 0; j < columns; j++) {
+                result.append("<td class='c").append(j % 4).append("'>");
+                result.append("Cell ").append(i).append('.').append(j);
+                if ((i + j) % 3 == 0) {
+                    result.append(" with <b>some</b> <i>longer text which wraps</i> onto more lines");
+                }
+                if ((i + j) % 7 == 0) {
+                    result.append("<table><tr><td>nested</td><td>table ").append(i).append("</td></tr></table>");
+                }
+                result.append("</td>");
+            }
+            result.append("</tr>");
+        }
+        result.append("</table></body></html>");
+        return result.toString();
+    }
+
+    private String layout(String html, ThreadPoolExecutor executor) {
+        Document doc = XMLResource.load(new InputSource(new StringReader(html))).getDocument();
+
+        SharedContext sharedContext = new SharedContext(new NaiveUserAgent());
+        sharedContext.setFontResolver(new AWTFontResolver());
+        sharedContext.setReplacedElementFactory(new SwingReplacedElementFactory());
+        sharedContext.setTextRenderer(new Java2DTextRenderer());
+        sharedContext.setDPI(72);
+        sharedContext.setDotsPerPixel(1);
+        sharedContext.setPrint(false);
+        sharedContext.setInteractive(false);
+        sharedContext.setTableCellLayoutExecutor(executor);
+
+        sharedContext.setNamespaceHandler(new XhtmlNamespaceHandler());
+        sharedContext.getCss().setDocumentContext(
+                sharedContext, sharedContext.getNamespaceHandler(), doc, new NullUserInterface());
+
+        Rectangle rect = new Rectangle(0, 0, WIDTH, 1000);
+        sharedContext.set_TempCanvas(rect);
+
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            LayoutContext c = sharedContext.newLayoutContextInstance();
+            c.setFontContext(new Java2DFontContext(graphics));
+            sharedContext.getTextRenderer().setup(c.getFontContext());
+
+            BlockBox root = BoxBuilder.createRootBox(c, doc);
+            root.setContainingBlock(new ViewportBox(rect));
+            root.layout(c);
+
+            List lines = new ArrayList();
+            describe(root, "", lines);
+
+            StringBuffer result = new StringBuffer();
+            for (Iterator i = lines.iterator(); i.hasNext(); ) {
+                result.append(i.next()).append('\n');
+            }
+            return result.toString();
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    private void describe(Box box, String indent, List result) {
+        String name = box.getClass().getName();
+        result.add(indent + name.substring(name.lastIndexOf('.') + 1) +
+                " (" + box.getAbsX() + "," + box.getAbsY() + ") " +
+                box.getWidth() + "x" + box.getHeight());
+
+        if (box instanceof InlineLayoutBox) {
+            InlineLayoutBox inline = (InlineLayoutBox) box;
+            for (int i = 0; i < inline.getInlineChildCount(); i++) {
+                Object child = inline.getInlineChild(i);
+                if (child instanceof Box) {
+                    describe((Box) child, indent + "  ", result);
+                } else if (child instanceof InlineText) {
+                    InlineText text = (InlineText) child;
+                    result.add(indent + "  \"" + text.getSubstring() + "\" " +
+                            text.getX() + " " + text.getWidth());
+                }
+            }
+        } else {
+            for (Iterator i = box.getChildIterator(); i.hasNext(); ) {
+                describe((Box) i.next(), indent + "  ", result);
+            }
+        }
+    }
+
+    private static final class NullUserInterface implements UserInterface {
+        public boolean isHover(Element e) {
+            return false;
+        }
+
+        public boolean isActive(Element e) {
+            return false;
+        }
+
+        public boolean isFocus(Element e) {
+            return false;
+        }
+    }
+}
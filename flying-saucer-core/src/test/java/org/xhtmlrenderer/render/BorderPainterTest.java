@@ -0,0 +1,32 @@
+package org.xhtmlrenderer.render;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.swing.Java2DRenderer;
+import org.xml.sax.InputSource;
+
+public class BorderPainterTest extends TestCase {
+    public void testZeroWidthDottedSide() {
+        // Only the bottom side has a width, the other dotted sides have a
+        // zero length dash pattern, which Java2D rejects
+        render("<p><a style='border: 0px dotted red; border-bottom-width: 2px'>link text</a></p>");
+    }
+
+    public void testThinDottedBorder() {
+        render("<p><span style='border: 0.5px dotted black'>x</span></p>");
+    }
+
+    public void testDottedBorder() {
+        render("<p><span style='border: 3px dotted black'>x</span></p>");
+    }
+
+    private void render(String body) {
+        Document doc = XMLResource.load(new InputSource(new StringReader(
+                "<html xmlns='http://www.w3.org/1999/xhtml'><body>" + body + "</body></html>"))).getDocument();
+        assertNotNull(new Java2DRenderer(doc, 100, 100).getImage());
+    }
+}
@@ -0,0 +1,97 @@
+package org.xhtmlrenderer.render;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.swing.AWTFSFont;
+import org.xhtmlrenderer.swing.Java2DFontContext;
+import org.xhtmlrenderer.swing.Java2DTextRenderer;
+
+
+public class TextWidthCacheTest extends TestCase {
+
+    public void testGet_MissThenHit() throws Exception {
+        TextWidthCache cache = new TextWidthCache(16, 64);
+        FSFont font = new TestFont();
+
+        assertEquals(TextWidthCache.MISS, cache.get(font, "USD"));
+        cache.put(font, "USD", 21);
+        assertEquals(21, cache.get(font, new String("USD")));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5d, cache.getHitRatio(), 0.0001d);
+    }
+
+
+    public void testGet_KeyedOnFontIdentity() throws Exception {
+        TextWidthCache cache = new TextWidthCache(16, 64);
+        cache.put(new TestFont(), "USD", 21);
+        assertEquals(TextWidthCache.MISS, cache.get(new TestFont(), "USD"));
+    }
+
+
+    public void testGet_KeyedOnContext() throws Exception {
+        TextWidthCache cache = new TextWidthCache(16, 64);
+        FSFont font = new TestFont();
+        cache.put(font, "fractional", "USD", 20);
+        assertEquals(20, cache.get(font, new String("fractional"), "USD"));
+        assertEquals(TextWidthCache.MISS, cache.get(font, "integer", "USD"));
+        assertEquals(TextWidthCache.MISS, cache.get(font, "USD"));
+    }
+
+
+    public void testPut_IgnoresLongStrings() throws Exception {
+        TextWidthCache cache = new TextWidthCache(16, 4);
+        FSFont font = new TestFont();
+        cache.put(font, "Settled", 40);
+        assertEquals(TextWidthCache.MISS, cache.get(font, "Settled"));
+    }
+
+
+    public void testDisabled() throws Exception {
+        TextWidthCache cache = new TextWidthCache(0, 64);
+        FSFont font = new TestFont();
+        cache.put(font, "USD", 21);
+        assertEquals(TextWidthCache.MISS, cache.get(font, "USD"));
+        assertEquals(0, cache.getCapacity());
+    }
+
+
+    public void testCapacity_RoundedToPowerOfTwo() throws Exception {
+        assertEquals(1024, new TextWidthCache(1000, 64).getCapacity());
+    }
+
+
+    public void testTextRenderersDoNotKeepFontsAlive() throws Exception {
+        Java2DTextRenderer first = new Java2DTextRenderer();
+        Java2DTextRenderer second = new Java2DTextRenderer();
+        assertNotSame(first.getWidthCache(), second.getWidthCache());
+
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        FSFont font = new AWTFSFont(new Font("Serif", Font.PLAIN, 12));
+        first.getWidth(new Java2DFontContext(g), font, "USD");
+        g.dispose();
+        assertEquals(1, first.getWidthCache().getMisses());
+
+        // Once the renderer is gone, nothing else refers to the font
+        WeakReference ref = new WeakReference(font);
+        font = null;
+        first = null;
+        for (int i = 0; i < 10 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+    }
+
+
+    private static class TestFont implements FSFont {
+        public float getSize2D() {
+            return 12.0f;
+        }
+    }
+}
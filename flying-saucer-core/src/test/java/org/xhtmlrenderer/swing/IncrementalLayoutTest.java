@@ -0,0 +1,118 @@
+package org.xhtmlrenderer.swing;
+
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.render.InlineLayoutBox;
+import org.xhtmlrenderer.render.InlineText;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.simple.XHTMLPanel;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xml.sax.InputSource;
+
+public class IncrementalLayoutTest extends TestCase {
+    private static final String DOCUMENT =
+            "<html xmlns='http://www.w3.org/1999/xhtml'><body>" +
+            "<h1>Title</h1>" +
+            "<div style='margin: 10px; padding: 5px; border: 1px solid black'>" +
+            "<p>Short text</p>" +
+            "<p>A paragraph after the changed one</p>" +
+            "</div>" +
+            "<p>Last paragraph of the <b>document</b></p>" +
+            "</body></html>";
+
+    private static final String LONGER =
+            "Much longer text which doesn't fit on one line any more, so the " +
+            "paragraph gets taller and the content after it has to move down " +
+            "by the height of the extra lines.";
+
+    public void testIncrementalLayoutMatchesFullLayout() throws Exception {
+        final String[] result = new String[2];
+        EventQueue.invokeAndWait(new Runnable() {
+            public void run() {
+                Document doc = XMLResource.load(new InputSource(new StringReader(DOCUMENT))).getDocument();
+
+                XHTMLPanel incremental = createPanel(doc);
+                Box root = incremental.getRootBox();
+                assertNotNull(root);
+                String before = describe(root);
+
+                Element changed = (Element) doc.getElementsByTagName("p").item(0);
+                changed.getFirstChild().setNodeValue(LONGER);
+                incremental.markDirty(changed);
+                incremental.doIncrementalLayout();
+
+                // The change was laid out without rebuilding the box tree
+                assertSame(root, incremental.getRootBox());
+                assertFalse(before.equals(describe(root)));
+
+                result[0] = describe(incremental.getRootBox());
+                result[1] = describe(createPanel(doc).getRootBox());
+            }
+        });
+
+        assertEquals(result[1], result[0]);
+    }
+
+    private XHTMLPanel createPanel(Document doc) {
+        XHTMLPanel panel = new XHTMLPanel();
+        panel.setSize(400, 600);
+        panel.setIncrementalLayout(true);
+        panel.setDocument(doc, null, new XhtmlNamespaceHandler());
+
+        BufferedImage image = new BufferedImage(400, 600, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            panel.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return panel;
+    }
+
+    private String describe(Box box) {
+        List lines = new ArrayList();
+        describe(box, "", lines);
+
+        StringBuffer result = new StringBuffer();
+        for (Iterator i = lines.iterator(); i.hasNext(); ) {
+            result.append(i.next()).append('\n');
+        }
+        return result.toString();
+    }
+
+    private void describe(Box box, String indent, List result) {
+        String name = box.getClass().getName();
+        result.add(indent + name.substring(name.lastIndexOf('.') + 1) +
+                " (" + box.getAbsX() + "," + box.getAbsY() + ") " +
+                box.getWidth() + "x" + box.getHeight());
+
+        if (box instanceof InlineLayoutBox) {
+            InlineLayoutBox inline = (InlineLayoutBox) box;
+            for (int i = 0; i < inline.getInlineChildCount(); i++) {
+                Object child = inline.getInlineChild(i);
+                if (child instanceof Box) {
+                    describe((Box) child, indent + "  ", result);
+                } else if (child instanceof InlineText) {
+                    InlineText text = (InlineText) child;
+                    result.add(indent + "  \"" + text.getSubstring() + "\" " +
+                            text.getX() + " " + text.getWidth());
+                }
+            }
+        } else {
+            for (Iterator i = box.getChildIterator(); i.hasNext(); ) {
+                describe((Box) i.next(), indent + "  ", result);
+            }
+        }
+    }
+}
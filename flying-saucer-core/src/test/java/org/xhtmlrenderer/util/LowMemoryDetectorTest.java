@@ -0,0 +1,48 @@
+package org.xhtmlrenderer.util;
+
+import junit.framework.TestCase;
+
+public class LowMemoryDetectorTest extends TestCase {
+    private static Object sink;
+
+    public void testHysteresis() {
+        LowMemoryDetector detector = new LowMemoryDetector(0.75f, 0.6f);
+
+        assertFalse(detector.update(0.1f));
+        assertFalse(detector.update(0.74f));
+        assertTrue(detector.update(0.75f));
+
+        // Stays low until usage drops below the recovered threshold
+        assertTrue(detector.update(0.7f));
+        assertTrue(detector.update(0.6f));
+        assertFalse(detector.update(0.59f));
+
+        // and doesn't become low again before reaching the low threshold
+        assertFalse(detector.update(0.7f));
+        assertTrue(detector.update(0.9f));
+    }
+
+    public void testGarbageIsNotLowMemory() {
+        LowMemoryDetector detector = new LowMemoryDetector(0.75f, 0.6f);
+
+        // Fill much of the heap with garbage, which Runtime counts as used
+        long max = Runtime.getRuntime().maxMemory();
+        int chunk = 1024 * 1024;
+        for (long allocated = 0; allocated < max * 2; allocated += chunk) {
+            sink = new byte[chunk];
+        }
+        sink = null;
+        System.gc();
+
+        assertFalse(detector.isMemoryLow());
+    }
+
+    public void testInvalidThresholds() {
+        try {
+            new LowMemoryDetector(0.5f, 0.6f);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
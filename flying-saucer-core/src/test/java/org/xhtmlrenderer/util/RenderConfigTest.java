@@ -0,0 +1,74 @@
+package org.xhtmlrenderer.util;
+
+import java.awt.Image;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.layout.SharedContext;
+
+
+public class RenderConfigTest extends TestCase {
+
+    public void testDefaultsFromConfiguration() throws Exception {
+        RenderConfig config = RenderConfig.getDefault();
+        assertSame(config, RenderConfig.getDefault());
+        assertTrue(config.isDrawBackgrounds());
+        assertFalse(config.isReplaceMissingCharacters());
+        assertEquals('#', config.getMissingCharacterReplacement());
+        assertEquals(Image.SCALE_FAST, config.getImageScaleHint());
+        assertSame(config, new SharedContext().getRenderConfig());
+
+        assertTrue(config.isPdfMarginAreaTemplates());
+        assertEquals(32L * 1024 * 1024, config.getPdfFontProgramCacheBytes());
+        assertFalse(config.isPdfFontSubsetCache());
+        assertEquals(4096, config.getPdfFontSubsetCacheMaxGlyphs());
+        assertEquals(64, config.getPdfFontSubsetCacheMaxFonts());
+    }
+
+
+    public void testOverrides() throws Exception {
+        Properties overrides = new Properties();
+        overrides.setProperty(RenderConfig.DRAW_BACKGROUNDS, "false");
+        overrides.setProperty(RenderConfig.REPLACE_MISSING_CHARACTERS, "true");
+        overrides.setProperty(RenderConfig.MISSING_CHARACTER_REPLACEMENT, "?");
+        overrides.setProperty(RenderConfig.IMAGE_SCALE, "HIGH");
+
+        RenderConfig config = new RenderConfig(overrides);
+        assertFalse(config.isDrawBackgrounds());
+        assertTrue(config.isReplaceMissingCharacters());
+        assertEquals('?', config.getMissingCharacterReplacement());
+        assertEquals(Image.SCALE_SMOOTH, config.getImageScaleHint());
+    }
+
+
+    public void testPdfOverrides() throws Exception {
+        Properties overrides = new Properties();
+        overrides.setProperty(RenderConfig.PDF_MARGIN_AREA_TEMPLATES, "false");
+        overrides.setProperty(RenderConfig.PDF_FONT_PROGRAM_CACHE_BYTES, "1000");
+        overrides.setProperty(RenderConfig.PDF_FONT_SUBSET_CACHE, "true");
+        overrides.setProperty(RenderConfig.PDF_FONT_SUBSET_CACHE_MAX_GLYPHS, "100");
+        overrides.setProperty(RenderConfig.PDF_FONT_SUBSET_CACHE_MAX_FONTS, " 10 ");
+
+        RenderConfig config = new RenderConfig(overrides);
+        assertFalse(config.isPdfMarginAreaTemplates());
+        assertEquals(1000, config.getPdfFontProgramCacheBytes());
+        assertTrue(config.isPdfFontSubsetCache());
+        assertEquals(100, config.getPdfFontSubsetCacheMaxGlyphs());
+        assertEquals(10, config.getPdfFontSubsetCacheMaxFonts());
+    }
+
+
+    public void testInvalidOverridesUseDefaults() throws Exception {
+        Properties overrides = new Properties();
+        // Parts of "true|false" aren't booleans
+        overrides.setProperty(RenderConfig.DRAW_BACKGROUNDS, "e");
+        overrides.setProperty(RenderConfig.PDF_MARGIN_AREA_TEMPLATES, "|");
+        overrides.setProperty(RenderConfig.PDF_FONT_SUBSET_CACHE_MAX_GLYPHS, "many");
+
+        RenderConfig config = new RenderConfig(overrides);
+        assertTrue(config.isDrawBackgrounds());
+        assertTrue(config.isPdfMarginAreaTemplates());
+        assertEquals(4096, config.getPdfFontSubsetCacheMaxGlyphs());
+    }
+}
@@ -0,0 +1,103 @@
+package org.xhtmlrenderer.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import junit.framework.TestCase;
+
+
+public class XRLogTest extends TestCase {
+    private XRLogger oldLogger;
+    private boolean oldEnabled;
+    private RecordingLogger logger;
+
+    protected void setUp() throws Exception {
+        oldLogger = XRLog.getLoggerImpl();
+        oldEnabled = XRLog.isLoggingEnabled();
+        logger = new RecordingLogger();
+        XRLog.setLoggerImpl(logger);
+        XRLog.setLoggingEnabled(true);
+    }
+
+    protected void tearDown() throws Exception {
+        XRLog.setLoggerImpl(oldLogger);
+        XRLog.setLoggingEnabled(oldEnabled);
+    }
+
+
+    public void testNothingBuiltBelowLevel() throws Exception {
+        XRLog.render(Level.FINE, new XRLogMessage() {
+            public String get() {
+                fail("message should not have been requested");
+                return null;
+            }
+        });
+        XRLog.render(Level.FINE, "Missing character [{0}]", new Object[] { "x" });
+        assertTrue(logger.messages.isEmpty());
+
+        XRLog.setLoggingEnabled(false);
+        assertFalse(XRLog.isLoggable(XRLog.RENDER, Level.SEVERE));
+    }
+
+
+    public void testLoggedAtLevel() throws Exception {
+        XRLog.render(Level.INFO, new XRLogMessage() {
+            public String get() {
+                return "supplied";
+            }
+        });
+        XRLog.render(Level.WARNING, "Missing character [{0}:{1,number,#}]",
+                new Object[] { Character.valueOf('\u4e00'), Integer.valueOf(0x4e00) });
+        assertEquals(2, logger.messages.size());
+        assertEquals("supplied", logger.messages.get(0));
+        assertEquals("Missing character [\u4e00:19968]", logger.messages.get(1));
+    }
+
+    public void testPlainLoggerGetsFormattedMessage() throws Exception {
+        PlainLogger plain = new PlainLogger();
+        XRLog.setLoggerImpl(plain);
+        assertTrue(XRLog.isLoggable(XRLog.RENDER, Level.FINE));
+        XRLog.render(Level.FINE, "Missing character [{0}]", new Object[] { "x" });
+        assertEquals(1, plain.messages.size());
+        assertEquals("Missing character [x]", plain.messages.get(0));
+    }
+
+    private static class PlainLogger implements XRLogger {
+        private final List messages = new ArrayList();
+
+        public void log(String where, Level level, String msg) {
+            messages.add(msg);
+        }
+
+        public void log(String where, Level level, String msg, Throwable th) {
+            messages.add(msg);
+        }
+
+        public void setLevel(String logger, Level level) {
+        }
+    }
+
+    private static class RecordingLogger implements ParameterizedXRLogger {
+        private final List messages = new ArrayList();
+
+        public void log(String where, Level level, String msg) {
+            messages.add(msg);
+        }
+
+        public void log(String where, Level level, String msg, Throwable th) {
+            messages.add(msg);
+        }
+
+        public void log(String where, Level level, String pattern, Object[] params) {
+            messages.add(java.text.MessageFormat.format(pattern, params));
+        }
+
+        public boolean isLoggable(String where, Level level) {
+            return level.intValue() >= Level.INFO.intValue();
+        }
+
+        public void setLevel(String logger, Level level) {
+        }
+    }
+}
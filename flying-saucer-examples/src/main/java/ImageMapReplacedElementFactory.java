@@ -137,7 +137,7 @@ public class ImageMapReplacedElementFactory extends SwingReplacedElementFactory
                      }
                   }
                   if (null == map) {
-                     XRLog.layout(Level.INFO, "No map named: '" + mapName + "'");
+                     XRLog.layout(Level.INFO, "No map named: ''{0}''", new Object[] { mapName });
                   }
                }
                re = new ImageMapReplacedElement(im, map, cssWidth, cssHeight, listener);
@@ -235,7 +235,7 @@ public class ImageMapReplacedElementFactory extends SwingReplacedElementFactory
                         }
                      } else {
                         if (XRLog.isLoggingEnabled()) {
-                           XRLog.layout(Level.INFO, "Unsupported shape: '" + shapeAttr + "'");
+                           XRLog.layout(Level.INFO, "Unsupported shape: ''{0}''", new Object[] { shapeAttr });
                         }
                      }
                   }
@@ -280,7 +280,7 @@ public class ImageMapReplacedElementFactory extends SwingReplacedElementFactory
                }
                return new Polygon(xpoints, ypoints, npoints);
             } else {
-               XRLog.layout(Level.INFO, "Unsupported shape: '" + length + "'");
+               XRLog.layout(Level.INFO, "Unsupported shape: ''{0}''", new Object[] { String.valueOf(length) });
                return null;
             }
          } else {
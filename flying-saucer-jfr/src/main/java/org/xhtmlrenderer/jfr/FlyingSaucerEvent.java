@@ -0,0 +1,102 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import org.xhtmlrenderer.util.XRTraceEvent;
+
+/**
+ * Base class of the Flight Recorder events recorded by {@link JFRTracer}.
+ * All events share the same fields; which of them are meaningful depends on
+ * the event type (see {@link org.xhtmlrenderer.util.XRTrace}).
+ */
+@Category("Flying Saucer")
+@StackTrace(false)
+public abstract class FlyingSaucerEvent extends Event implements XRTraceEvent {
+    @Label("URI")
+    String uri;
+
+    @Label("Page Number")
+    int pageNumber;
+
+    @Label("Size")
+    long size;
+
+    public void end(String uri, int pageNumber, long size) {
+        this.uri = uri;
+        this.pageNumber = pageNumber;
+        this.size = size;
+        commit();
+    }
+
+    @Name("org.xhtmlrenderer.DocumentLoad")
+    @Label("Document Load")
+    @Description("Parsing of an XML document; size is the number of elements")
+    public static class DocumentLoad extends FlyingSaucerEvent {
+    }
+
+    @Name("org.xhtmlrenderer.StylesheetParse")
+    @Label("Stylesheet Parse")
+    @Description("Parsing of a stylesheet; size is the number of rulesets")
+    public static class StylesheetParse extends FlyingSaucerEvent {
+    }
+
+    @Name("org.xhtmlrenderer.Cascade")
+    @Label("Element Cascade")
+    @Description("Selector matching and cascading of an element; size is the number of matched selectors")
+    public static class Cascade extends FlyingSaucerEvent {
+    }
+
+    @Name("org.xhtmlrenderer.BlockLayout")
+    @Label("Block Layout")
+    @Description("Layout of a block box and its descendants; size is the block's height")
+    public static class BlockLayout extends FlyingSaucerEvent {
+    }
+
+    @Name("org.xhtmlrenderer.PageLayout")
+    @Label("Page Layout")
+    @Description("Layout of the page and margin boxes of a document; size is the number of pages")
+    public static class PageLayout extends FlyingSaucerEvent {
+    }
+
+    @Name("org.xhtmlrenderer.PagePaint")
+    @Label("Page Paint")
+    @Description("Painting of a page to PDF")
+    public static class PagePaint extends FlyingSaucerEvent {
+    }
+
+    @Name("org.xhtmlrenderer.ResourceFetch")
+    @Label("Resource Fetch")
+    @Description("Opening of a document, stylesheet, image or other resource by the user agent")
+    public static class ResourceFetch extends FlyingSaucerEvent {
+    }
+
+    @Name("org.xhtmlrenderer.FontLoad")
+    @Label("Font Load")
+    @Description("Loading of a PDF font; size is the number of font families it provides")
+    public static class FontLoad extends FlyingSaucerEvent {
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.jfr;
+
+import jdk.jfr.EventType;
+
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
+import org.xhtmlrenderer.util.XRTracer;
+
+/**
+ * Records {@link XRTrace} events as JDK Flight Recorder events (category
+ * "Flying Saucer").  Install it with {@link #install()} or by setting the
+ * <code>xr.trace.tracer-impl</code> configuration property to
+ * <code>org.xhtmlrenderer.jfr.JFRTracer</code>.  Events are only created
+ * while a recording with the corresponding event type enabled is running, so
+ * the tracer may be left installed in production.
+ */
+public class JFRTracer implements XRTracer {
+    private final EventType[] _eventTypes = new EventType[XRTrace.EVENT_TYPE_COUNT];
+
+    public JFRTracer() {
+        _eventTypes[XRTrace.DOCUMENT_LOAD] = EventType.getEventType(FlyingSaucerEvent.DocumentLoad.class);
+        _eventTypes[XRTrace.STYLESHEET_PARSE] = EventType.getEventType(FlyingSaucerEvent.StylesheetParse.class);
+        _eventTypes[XRTrace.CASCADE] = EventType.getEventType(FlyingSaucerEvent.Cascade.class);
+        _eventTypes[XRTrace.BLOCK_LAYOUT] = EventType.getEventType(FlyingSaucerEvent.BlockLayout.class);
+        _eventTypes[XRTrace.PAGE_LAYOUT] = EventType.getEventType(FlyingSaucerEvent.PageLayout.class);
+        _eventTypes[XRTrace.PAGE_PAINT] = EventType.getEventType(FlyingSaucerEvent.PagePaint.class);
+        _eventTypes[XRTrace.RESOURCE_FETCH] = EventType.getEventType(FlyingSaucerEvent.ResourceFetch.class);
+        _eventTypes[XRTrace.FONT_LOAD] = EventType.getEventType(FlyingSaucerEvent.FontLoad.class);
+    }
+
+    public static void install() {
+        XRTrace.setTracerImpl(new JFRTracer());
+    }
+
+    public XRTraceEvent begin(int type) {
+        if (! _eventTypes[type].isEnabled()) {
+            return null;
+        }
+
+        FlyingSaucerEvent result = createEvent(type);
+        result.begin();
+        return result;
+    }
+
+    private FlyingSaucerEvent createEvent(int type) {
+        switch (type) {
+            case XRTrace.DOCUMENT_LOAD:
+                return new FlyingSaucerEvent.DocumentLoad();
+            case XRTrace.STYLESHEET_PARSE:
+                return new FlyingSaucerEvent.StylesheetParse();
+            case XRTrace.CASCADE:
+                return new FlyingSaucerEvent.Cascade();
+            case XRTrace.BLOCK_LAYOUT:
+                return new FlyingSaucerEvent.BlockLayout();
+            case XRTrace.PAGE_LAYOUT:
+                return new FlyingSaucerEvent.PageLayout();
+            case XRTrace.PAGE_PAINT:
+                return new FlyingSaucerEvent.PagePaint();
+            case XRTrace.RESOURCE_FETCH:
+                return new FlyingSaucerEvent.ResourceFetch();
+            case XRTrace.FONT_LOAD:
+                return new FlyingSaucerEvent.FontLoad();
+            default:
+                throw new IllegalArgumentException("Unknown event type " + type);
+        }
+    }
+}
@@ -19,15 +19,16 @@
  */
 package org.xhtmlrenderer.log4j;
 
+import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 
 import org.apache.log4j.Logger;
 import org.xhtmlrenderer.util.XRLog;
-import org.xhtmlrenderer.util.XRLogger;
+import org.xhtmlrenderer.util.ParameterizedXRLogger;
 
-public class Log4JXRLogger implements XRLogger {
+public class Log4JXRLogger implements ParameterizedXRLogger {
     private static final String DEFAULT_LOGGER_NAME = "org.xhtmlrenderer.other";
     
     private static final Map LOGGER_NAME_MAP;
@@ -58,6 +59,18 @@ public class Log4JXRLogger implements XRLogger {
     public void log(String where, Level level, String msg, Throwable th) {
         Logger.getLogger(getLoggerName(where)).log(toLog4JLevel(level), msg, th);
     }
+
+    public void log(String where, Level level, String pattern, Object[] params) {
+        Logger logger = Logger.getLogger(getLoggerName(where));
+        org.apache.log4j.Level log4jLevel = toLog4JLevel(level);
+        if (logger.isEnabledFor(log4jLevel)) {
+            logger.log(log4jLevel, MessageFormat.format(pattern, params));
+        }
+    }
+
+    public boolean isLoggable(String where, Level level) {
+        return Logger.getLogger(getLoggerName(where)).isEnabledFor(toLog4JLevel(level));
+    }
     
     private org.apache.log4j.Level toLog4JLevel(Level level) {
         if (level == Level.SEVERE) {
@@ -0,0 +1,288 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.pdf;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+import org.xhtmlrenderer.util.RenderConfig;
+
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.BaseFont;
+
+/**
+ * A cache of font programs shared by all {@link ITextFontResolver}s, so that
+ * a font used by many documents, or by many concurrent renders, is held in
+ * memory once.
+ * <p>
+ * Font files read in full (Type 1 PFB/PFA files) are read once and the
+ * resulting array is shared, keyed by canonical path, size and modification
+ * time.  Fonts loaded as bytes (the <code>@font-face</code> rule) are keyed
+ * by their content.  Every resolver loading the same bytes gets the same
+ * {@link BaseFont}, and the bytes fetched by later renders are dropped right
+ * away.  TrueType and OpenType fonts added by path are not kept here, since
+ * iText already maps and caches those itself.
+ * <p>
+ * The cache holds at most a given number of bytes of font programs.  When a
+ * new program would exceed that, the least recently used programs are
+ * dropped, and a program larger than the whole cache is not kept at all.
+ * <p>
+ * Cached arrays and fonts are shared between documents and threads and must
+ * not be modified.
+ */
+public class FontProgramCache {
+    private static final FontProgramCache _shared = new FontProgramCache(
+            RenderConfig.getDefault().getPdfFontProgramCacheBytes());
+
+    private final long _maxBytes;
+
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap _entries = new LinkedHashMap(16, 0.75f, true);
+    private long _bytes;
+
+    /**
+     * @param maxBytes the largest total size of the font programs kept.  A
+     * size of zero or less disables the cache.
+     */
+    public FontProgramCache(long maxBytes) {
+        _maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cache shared by all font resolvers.  Its size is taken from
+     * {@link RenderConfig#getPdfFontProgramCacheBytes()} of the default
+     * render configuration.
+     */
+    public static FontProgramCache getSharedInstance() {
+        return _shared;
+    }
+
+    /**
+     * Returns the contents of the file at <code>path</code>.  The returned
+     * array may be shared and must not be modified.
+     */
+    public byte[] readFile(String path) throws IOException {
+        File f = new File(path);
+        if (! f.exists()) {
+            throw new IOException("File " + path + " does not exist or is not accessible");
+        }
+
+        if (_maxBytes <= 0) {
+            return read(f);
+        }
+
+        FileKey key = new FileKey(f.getCanonicalPath(), f.length(), f.lastModified());
+        byte[] result = (byte[])get(key);
+        if (result == null) {
+            result = read(f);
+            result = (byte[])intern(key, result, result.length);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a font created from <code>afmttf</code> and <code>pfb</code>
+     * as {@link BaseFont#createFont(String, String, boolean, boolean, byte[], byte[])}
+     * would, reusing a previously created font if one was made from the same
+     * bytes with the same encoding and embedding.
+     */
+    public BaseFont createFont(String name, String encoding, boolean embedded, byte[] afmttf, byte[] pfb)
+            throws DocumentException, IOException {
+        if (_maxBytes <= 0) {
+            return BaseFont.createFont(name, encoding, embedded, false, afmttf, pfb);
+        }
+
+        ContentKey key = new ContentKey(getExtension(name), encoding, embedded, afmttf, pfb);
+        BaseFont result = (BaseFont)get(key);
+        if (result == null) {
+            result = BaseFont.createFont(name, encoding, embedded, false, afmttf, pfb);
+            // The font holds on to the bytes it was created from
+            long size = (afmttf == null ? 0 : afmttf.length) + (pfb == null ? 0 : pfb.length);
+            result = (BaseFont)intern(key, result, size);
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        _entries.clear();
+        _bytes = 0;
+    }
+
+    /**
+     * Returns the number of font programs in the cache.
+     */
+    public synchronized int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Returns the total size in bytes of the font programs in the cache.
+     */
+    public synchronized long getByteCount() {
+        return _bytes;
+    }
+
+    private synchronized Object get(Object key) {
+        Entry entry = (Entry)_entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Adds <code>value</code> to the cache unless another thread added a
+     * value for <code>key</code> first, and returns the value in the cache
+     * (or <code>value</code> if it is too large to be kept).
+     */
+    private synchronized Object intern(Object key, Object value, long size) {
+        Entry existing = (Entry)_entries.get(key);
+        if (existing != null) {
+            return existing.value;
+        }
+        if (size > _maxBytes) {
+            return value;
+        }
+
+        _entries.put(key, new Entry(value, size));
+        _bytes += size;
+
+        for (Iterator i = _entries.values().iterator(); _bytes > _maxBytes && i.hasNext(); ) {
+            Entry eldest = (Entry)i.next();
+            i.remove();
+            _bytes -= eldest.size;
+        }
+
+        return value;
+    }
+
+    private static byte[] read(File f) throws IOException {
+        FileInputStream is = new FileInputStream(f);
+        try {
+            byte[] result = new byte[(int)f.length()];
+            int offset = 0;
+            while (offset < result.length) {
+                int count = is.read(result, offset, result.length - offset);
+                if (count == -1) {
+                    throw new EOFException("Unexpected end of file " + f.getPath());
+                }
+                offset += count;
+            }
+            return result;
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static String getExtension(String name) {
+        int i = name.lastIndexOf('.');
+        return i == -1 ? "" : name.substring(i).toLowerCase();
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long size;
+
+        Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private static final class FileKey {
+        private final String _path;
+        private final long _length;
+        private final long _lastModified;
+
+        FileKey(String path, long length, long lastModified) {
+            _path = path;
+            _length = length;
+            _lastModified = lastModified;
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof FileKey)) {
+                return false;
+            }
+            FileKey other = (FileKey)o;
+            return _length == other._length && _lastModified == other._lastModified &&
+                    _path.equals(other._path);
+        }
+
+        public int hashCode() {
+            return _path.hashCode() * 31 + (int)(_lastModified ^ (_lastModified >>> 32));
+        }
+    }
+
+    /**
+     * Identifies a font by its bytes.  The hash only picks the bucket; keys
+     * are equal only if the bytes themselves are, so the arrays held here
+     * (which the font holds on to anyway) are compared in full.
+     */
+    private static final class ContentKey {
+        private final String _extension;
+        private final String _encoding;
+        private final boolean _embedded;
+        private final byte[] _afmttf;
+        private final byte[] _pfb;
+        private final int _hash;
+
+        ContentKey(String extension, String encoding, boolean embedded, byte[] afmttf, byte[] pfb) {
+            _extension = extension;
+            _encoding = encoding;
+            _embedded = embedded;
+            _afmttf = afmttf;
+            _pfb = pfb;
+
+            CRC32 crc = new CRC32();
+            if (afmttf != null) {
+                crc.update(afmttf, 0, afmttf.length);
+            }
+            if (pfb != null) {
+                crc.update(pfb, 0, pfb.length);
+            }
+            int h = (int)crc.getValue();
+            h = h * 31 + (encoding == null ? 0 : encoding.hashCode());
+            _hash = h * 31 + (embedded ? 1 : 0);
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof ContentKey)) {
+                return false;
+            }
+            ContentKey other = (ContentKey)o;
+            return _hash == other._hash && _embedded == other._embedded &&
+                    _extension.equals(other._extension) &&
+                    (_encoding == null ? other._encoding == null : _encoding.equals(other._encoding)) &&
+                    Arrays.equals(_afmttf, other._afmttf) && Arrays.equals(_pfb, other._pfb);
+        }
+
+        public int hashCode() {
+            return _hash;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.pdf;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.context.StyleReference;
+import org.xhtmlrenderer.context.StylesheetCache;
+import org.xhtmlrenderer.util.XRRuntimeException;
+
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Merges many documents into a single PDF (e.g. a run of letters), or
+ * renders them to separate PDFs. Documents are laid out concurrently on a
+ * fixed pool of {@link ITextRenderer}s and written strictly in input order on
+ * the calling thread.
+ * <p>
+ * A document is only handed to a layout thread together with a free
+ * renderer, and a renderer is only freed once its document has been written.
+ * At most one laid out document per renderer is therefore held in memory,
+ * however long the input is.
+ * <p>
+ * While a batch runs the renderers share the parsed stylesheet cache of the
+ * first renderer, so a stylesheet linked by every document is parsed once.
+ * Each renderer still loads stylesheets through its own user agent. Fonts
+ * added to each renderer's {@link ITextFontResolver} from the same file, or
+ * loaded from the same <code>@font-face</code> bytes, share one iText font
+ * program (see {@link FontProgramCache}).
+ * <p>
+ * Documents can either be pulled from an iterator
+ * ({@link #createPDF(Iterator, OutputStream)}) or pushed one at a time
+ * between {@link #start(OutputStream)} and {@link #finish()}.
+ */
+public class ITextBatchRenderer {
+    private final ITextRenderer[] _renderers;
+
+    private BlockingQueue _free;
+    private ExecutorService _executor;
+    private LinkedList _window;
+    private StylesheetCache[] _savedStylesheetCaches;
+
+    private OutputStream _os;
+    private com.itextpdf.text.Document _pdfDoc;
+    private PdfWriter _writer;
+    private int _count;
+
+    /**
+     * Creates a batch renderer with <code>poolSize</code> default
+     * renderers.
+     */
+    public ITextBatchRenderer(int poolSize) {
+        this(createRenderers(poolSize));
+    }
+
+    /**
+     * Creates a batch renderer using the given, already configured (fonts,
+     * listener, PDF version and encryption) renderers. The PDF settings of
+     * the first renderer to write are used for the whole PDF.
+     */
+    public ITextBatchRenderer(ITextRenderer[] renderers) {
+        if (renderers.length == 0) {
+            throw new IllegalArgumentException("At least one renderer is required");
+        }
+        _renderers = (ITextRenderer[]) renderers.clone();
+    }
+
+    private static ITextRenderer[] createRenderers(int poolSize) {
+        ITextRenderer[] result = new ITextRenderer[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            result[i] = new ITextRenderer();
+        }
+        return result;
+    }
+
+    public ITextRenderer[] getRenderers() {
+        return (ITextRenderer[]) _renderers.clone();
+    }
+
+    /**
+     * Lays out each {@link Input} returned by <code>inputs</code> and
+     * appends it to a PDF written to <code>os</code>. The PDF is finished
+     * unless there were no inputs, in which case nothing is written.
+     * <p>
+     * <B>NOTE:</B> Caller is responsible for cleaning up the OutputStream if
+     * something goes wrong.
+     *
+     * @return the number of documents written
+     */
+    public int createPDF(Iterator inputs, OutputStream os) throws DocumentException {
+        start(os);
+        try {
+            while (inputs.hasNext()) {
+                add((Input) inputs.next());
+            }
+            return finish();
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Starts a batch. Inputs without their own output stream are merged into
+     * one PDF written to <code>os</code>, which may be <code>null</code> if
+     * every input has one.
+     */
+    public void start(OutputStream os) {
+        if (_executor != null) {
+            throw new IllegalStateException("Batch already started");
+        }
+        _free = new ArrayBlockingQueue(_renderers.length);
+        for (int i = 0; i < _renderers.length; i++) {
+            _free.add(_renderers[i]);
+        }
+        shareStylesheetCache();
+        _executor = Executors.newFixedThreadPool(_renderers.length);
+        _window = new LinkedList();
+        _os = os;
+        _pdfDoc = null;
+        _writer = null;
+        _count = 0;
+    }
+
+    /**
+     * Queues <code>input</code> for layout. If every renderer is busy, the
+     * oldest document is written first (waiting for its layout if needed).
+     */
+    public void add(Input input) throws DocumentException {
+        if (_executor == null) {
+            throw new IllegalStateException("Batch not started");
+        }
+        if (_free.isEmpty()) {
+            writeNext();
+        }
+        ITextRenderer renderer = (ITextRenderer) _free.remove();
+        _window.add(new Entry(input, _executor.submit(new LayoutTask(renderer, input))));
+    }
+
+    /**
+     * Writes all remaining documents and finishes the merged PDF (if any
+     * document was written to it).
+     *
+     * @return the number of documents written since {@link #start}
+     */
+    public int finish() throws DocumentException {
+        try {
+            while (! _window.isEmpty()) {
+                writeNext();
+            }
+            if (_pdfDoc != null) {
+                _renderers[0].continuePDF(_pdfDoc, _writer);
+                _renderers[0].finishPDF();
+            }
+            return _count;
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops the layout threads. Documents not yet written are dropped.
+     */
+    void shutdown() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+            restoreStylesheetCaches();
+            _executor = null;
+            _window = null;
+            _free = null;
+            _os = null;
+            _pdfDoc = null;
+            _writer = null;
+        }
+    }
+
+    /**
+     * Lets all renderers use the parsed stylesheets cache of the first one
+     * for the duration of the batch, so a stylesheet linked by every
+     * document is parsed once. Each renderer still loads stylesheets through
+     * its own user agent.
+     */
+    private void shareStylesheetCache() {
+        _savedStylesheetCaches = new StylesheetCache[_renderers.length];
+        StylesheetCache shared = getStyleReference(_renderers[0]).getStylesheetCache();
+        for (int i = 1; i < _renderers.length; i++) {
+            StyleReference css = getStyleReference(_renderers[i]);
+            _savedStylesheetCaches[i] = css.getStylesheetCache();
+            css.setStylesheetCache(shared);
+        }
+    }
+
+    private void restoreStylesheetCaches() {
+        for (int i = 1; i < _renderers.length; i++) {
+            getStyleReference(_renderers[i]).setStylesheetCache(_savedStylesheetCaches[i]);
+        }
+        _savedStylesheetCaches = null;
+    }
+
+    private static StyleReference getStyleReference(ITextRenderer renderer) {
+        return renderer.getSharedContext().getCss();
+    }
+
+    private void writeNext() throws DocumentException {
+        Entry entry = (Entry) _window.removeFirst();
+        ITextRenderer renderer = getResult(entry.getLayout());
+        OutputStream os = entry.getInput().getOutputStream();
+        if (os != null) {
+            renderer.createPDF(os);
+        } else if (_pdfDoc == null) {
+            if (_os == null) {
+                throw new IllegalStateException("No output stream for merged documents");
+            }
+            renderer.createPDF(_os, false);
+            _pdfDoc = renderer.getPDFDocument();
+            _writer = renderer.getWriter();
+        } else {
+            renderer.continuePDF(_pdfDoc, _writer);
+            renderer.writeNextDocument();
+        }
+        _free.add(renderer);
+        _count++;
+    }
+
+    private static ITextRenderer getResult(Future future) {
+        try {
+            return (ITextRenderer) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XRRuntimeException("Interrupted while waiting for layout", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new XRRuntimeException(cause.getMessage(), cause);
+            }
+        }
+    }
+
+    /**
+     * A document to render and the base URL to resolve its relative URIs
+     * against. An input with its own output stream is rendered to a separate
+     * PDF, which closes the stream.
+     */
+    public static class Input {
+        private final Document _document;
+        private final String _baseUrl;
+        private final OutputStream _os;
+
+        public Input(Document document, String baseUrl) {
+            this(document, baseUrl, null);
+        }
+
+        public Input(Document document, String baseUrl, OutputStream os) {
+            _document = document;
+            _baseUrl = baseUrl;
+            _os = os;
+        }
+
+        public Document getDocument() {
+            return _document;
+        }
+
+        public String getBaseUrl() {
+            return _baseUrl;
+        }
+
+        public OutputStream getOutputStream() {
+            return _os;
+        }
+    }
+
+    private static class Entry {
+        private final Input _input;
+        private final Future _layout;
+
+        public Entry(Input input, Future layout) {
+            _input = input;
+            _layout = layout;
+        }
+
+        public Input getInput() {
+            return _input;
+        }
+
+        public Future getLayout() {
+            return _layout;
+        }
+    }
+
+    private static class LayoutTask implements Callable {
+        private final ITextRenderer _renderer;
+        private final Input _input;
+
+        public LayoutTask(ITextRenderer renderer, Input input) {
+            _renderer = renderer;
+            _input = input;
+        }
+
+        public Object call() {
+            _renderer.setDocument(_input.getDocument(), _input.getBaseUrl());
+            _renderer.layout();
+            return _renderer;
+        }
+    }
+}
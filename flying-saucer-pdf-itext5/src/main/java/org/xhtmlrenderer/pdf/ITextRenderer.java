@@ -30,6 +30,7 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -46,6 +47,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xhtmlrenderer.context.StyleReference;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserInterface;
 import org.xhtmlrenderer.layout.BoxBuilder;
@@ -59,6 +61,9 @@ import org.xhtmlrenderer.render.ViewportBox;
 import org.xhtmlrenderer.resource.XMLResource;
 import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
 import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.RenderConfig;
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
 import org.xml.sax.InputSource;
 
 import com.itextpdf.text.DocumentException;
@@ -94,6 +99,10 @@ public class ITextRenderer {
 
     private PDFCreationListener _listener;
 
+    // true while a document passed to setDocument(Document, ...) is being
+    // loaded by this renderer (so render metrics have already been started)
+    private boolean _loadStarted;
+
     public ITextRenderer() {
         this(DEFAULT_DOTS_PER_POINT, DEFAULT_DOTS_PER_PIXEL);
     }
@@ -132,9 +141,20 @@ public class ITextRenderer {
     }
 
     private Document loadDocument(final String uri) {
+        startLoad(uri);
         return _sharedContext.getUac().getXMLResource(uri).getDocument();
     }
 
+    /**
+     * Starts collecting metrics for a new document (if a listener is
+     * registered) with document parsing included in the load phase.
+     */
+    private void startLoad(String uri) {
+        _sharedContext.startRenderMetrics(uri);
+        _sharedContext.startRenderPhase(RenderMetrics.LOAD);
+        _loadStarted = true;
+    }
+
     public void setDocument(String uri) {
         setDocument(loadDocument(uri), uri);
     }
@@ -154,6 +174,7 @@ public class ITextRenderer {
     }
 
     public void setDocumentFromString(String content, String baseUrl) {
+        startLoad(baseUrl);
         InputSource is = new InputSource(new BufferedReader(new StringReader(content)));
         Document dom = XMLResource.load(is).getDocument();
 
@@ -161,7 +182,14 @@ public class ITextRenderer {
     }
 
     public void setDocument(Document doc, String url, NamespaceHandler nsh) {
+        if (! _loadStarted) {
+            startLoad(url);
+        }
+        _loadStarted = false;
+
         _doc = doc;
+        _root = null;
+        _outputDevice.setRoot(null);
 
         getFontResolver().flushFontFaceFonts();
 
@@ -175,6 +203,8 @@ public class ITextRenderer {
         _sharedContext.setNamespaceHandler(nsh);
         _sharedContext.getCss().setDocumentContext(_sharedContext, _sharedContext.getNamespaceHandler(), doc, new NullUserInterface());
         getFontResolver().importFontFaces(_sharedContext.getCss().getFontFaceRules());
+
+        _sharedContext.endRenderPhase(RenderMetrics.LOAD);
     }
 
     public PDFEncryption getPDFEncryption() {
@@ -201,14 +231,30 @@ public class ITextRenderer {
     }
 
     public void layout() {
+        _sharedContext.startRenderPhase(RenderMetrics.LAYOUT);
         LayoutContext c = newLayoutContext();
         BlockBox root = BoxBuilder.createRootBox(c, _doc);
         root.setContainingBlock(new ViewportBox(getInitialExtents(c)));
         root.layout(c);
+        _sharedContext.endRenderPhase(RenderMetrics.LAYOUT);
+
+        _sharedContext.startRenderPhase(RenderMetrics.PAGINATION);
         Dimension dim = root.getLayer().getPaintingDimension(c);
         root.getLayer().trimEmptyPages(c, dim.height);
         root.getLayer().layoutPages(c);
+        _sharedContext.endRenderPhase(RenderMetrics.PAGINATION);
+
+        RenderMetrics metrics = _sharedContext.getRenderMetrics();
+        if (metrics != null) {
+            metrics.setCount(RenderMetrics.PAGES, root.getLayer().getPages().size());
+        }
+
+        // Page positions (and so the page position index) need the painting
+        // positions of the pages
+        root.getLayer().assignPagePaintingPositions(c, Layer.PAGED_MODE_PRINT);
+
         _root = root;
+        _outputDevice.setRoot(root);
     }
 
     private Rectangle getInitialExtents(LayoutContext c) {
@@ -248,6 +294,7 @@ public class ITextRenderer {
     }
 
     public void writeNextDocument(int initialPageNo) throws DocumentException, IOException {
+        _sharedContext.startRenderPhase(RenderMetrics.OUTPUT);
         List pages = _root.getLayer().getPages();
 
         RenderingContext c = newRenderingContext();
@@ -262,6 +309,22 @@ public class ITextRenderer {
         _pdfDoc.newPage();
 
         writePDF(pages, c, firstPageSize, _pdfDoc, _writer);
+
+        _sharedContext.endRenderPhase(RenderMetrics.OUTPUT);
+        _sharedContext.finishRenderMetrics();
+    }
+
+    /**
+     * Makes subsequent calls to {@link #writeNextDocument()} and
+     * {@link #finishPDF()} use a PDF started by another renderer.
+     */
+    void continuePDF(com.itextpdf.text.Document pdfDoc, PdfWriter writer) {
+        _pdfDoc = pdfDoc;
+        _writer = writer;
+    }
+
+    com.itextpdf.text.Document getPDFDocument() {
+        return _pdfDoc;
     }
 
     public void finishPDF() {
@@ -282,6 +345,7 @@ public class ITextRenderer {
      * @throws IOException
      */
     public void createPDF(OutputStream os, boolean finish, int initialPageNo) throws DocumentException, IOException {
+        _sharedContext.startRenderPhase(RenderMetrics.OUTPUT);
         List pages = _root.getLayer().getPages();
 
         RenderingContext c = newRenderingContext();
@@ -311,6 +375,9 @@ public class ITextRenderer {
             fireOnClose();
             doc.close();
         }
+
+        _sharedContext.endRenderPhase(RenderMetrics.OUTPUT);
+        _sharedContext.finishRenderMetrics();
     }
 
     private void firePreOpen() {
@@ -384,6 +451,8 @@ public class ITextRenderer {
     }
 
     private void paintPage(RenderingContext c, PdfWriter writer, PageBox page) throws IOException {
+        XRTraceEvent event = XRTrace.begin(XRTrace.PAGE_PAINT);
+
         provideMetadataToPage(writer, page);
 
         page.paintBackground(c, 0, Layer.PAGED_MODE_PRINT);
@@ -404,6 +473,10 @@ public class ITextRenderer {
         _outputDevice.translate(-left, -top);
 
         _outputDevice.setClip(working);
+
+        if (event != null) {
+            event.end(_sharedContext.getBaseURL(), page.getPageNo(), -1);
+        }
     }
 
     private void provideMetadataToPage(PdfWriter writer, PageBox page) throws IOException {
@@ -476,6 +549,15 @@ public class ITextRenderer {
         return _sharedContext;
     }
 
+    /**
+     * Overrides the configuration properties this renderer uses (see
+     * {@link RenderConfig}).  Must be called before the document is laid
+     * out.
+     */
+    public void setRenderConfig(RenderConfig renderConfig) {
+        _sharedContext.setRenderConfig(renderConfig);
+    }
+
     public void exportText(Writer writer) throws IOException {
         RenderingContext c = newRenderingContext();
         c.setPageCount(_root.getLayer().getPages().size());
@@ -494,6 +576,27 @@ public class ITextRenderer {
         return _outputDevice.findPagePositionsByID(newLayoutContext(), pattern);
     }
 
+    /**
+     * Returns the positions of all elements whose id starts with
+     * <code>prefix</code>, sorted by page.
+     */
+    public List findPagePositionsByPrefix(String prefix) {
+        PagePositionIndex index = _outputDevice.getPagePositionIndex();
+        if (index == null) {
+            return Collections.EMPTY_LIST;
+        }
+        return index.findPagePositionsByPrefix(newLayoutContext(), prefix);
+    }
+
+    /**
+     * Returns the index of the element ids of the document laid out by
+     * {@link #layout()}, or <code>null</code> if the current document has
+     * not been laid out yet.
+     */
+    public PagePositionIndex getPagePositionIndex() {
+        return _outputDevice.getPagePositionIndex();
+    }
+
     private static final class NullUserInterface implements UserInterface {
         public boolean isHover(Element e) {
             return false;
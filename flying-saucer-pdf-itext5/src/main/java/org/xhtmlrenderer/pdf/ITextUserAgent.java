@@ -26,6 +26,7 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.FSImage;
 import org.xhtmlrenderer.layout.SharedContext;
 import org.xhtmlrenderer.resource.ImageResource;
@@ -62,12 +63,20 @@ public class ITextUserAgent extends NaiveUserAgent {
     }
 
     public ImageResource getImageResource(String uriStr) {
+        RenderMetrics metrics = _sharedContext == null ? null : _sharedContext.getRenderMetrics();
+
         ImageResource resource = null;
         if (ImageUtil.isEmbeddedBase64Image(uriStr)) {
             resource = loadEmbeddedBase64ImageResource(uriStr);
+            if (metrics != null) {
+                metrics.increment(RenderMetrics.IMAGES_LOADED);
+            }
         } else {
             uriStr = resolveURI(uriStr);
             resource = (ImageResource) _imageCache.get(uriStr);
+            if (metrics != null) {
+                metrics.increment(resource != null ? RenderMetrics.CACHE_HITS : RenderMetrics.CACHE_MISSES);
+            }
             if (resource == null) {
                 InputStream is = resolveAndOpenStream(uriStr);
                 if (is != null) {
@@ -86,6 +95,9 @@ public class ITextUserAgent extends NaiveUserAgent {
                             resource = new ImageResource(uriStr, new ITextFSImage(image));
                         }
                         _imageCache.put(uriStr, resource);
+                        if (metrics != null) {
+                            metrics.increment(RenderMetrics.IMAGES_LOADED);
+                        }
                     } catch (Exception e) {
                         XRLog.exception("Can't read image file; unexpected problem for URI '" + uriStr + "'", e);
                     } finally {
@@ -0,0 +1,136 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.resource.FSEntityResolver;
+import org.xhtmlrenderer.util.XRRuntimeException;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import com.itextpdf.text.DocumentException;
+
+/**
+ * Streams a large XHTML file through a {@link DocumentSplitter} into an
+ * {@link ITextBatchRenderer}. Each child of the root element (other than
+ * <code>head</code>) becomes its own document, which is laid out as soon as
+ * its end tag has been parsed. Parsing blocks while every renderer is busy,
+ * so memory use does not grow with the size of the input.
+ */
+public class SplitDocumentRenderer {
+    private final ITextBatchRenderer _batch;
+
+    public SplitDocumentRenderer(ITextBatchRenderer batch) {
+        _batch = batch;
+    }
+
+    /**
+     * Renders all split documents into one PDF written to <code>os</code>.
+     *
+     * @return the number of documents written
+     */
+    public int createPDF(InputSource source, String baseUrl, OutputStream os)
+            throws IOException, DocumentException {
+        return render(source, baseUrl, os, null);
+    }
+
+    /**
+     * Renders each split document to its own PDF, written to the stream
+     * returned by <code>factory</code>. Each stream is closed once its PDF is
+     * complete.
+     *
+     * @return the number of documents written
+     */
+    public int createPDFs(InputSource source, String baseUrl, OutputStreamFactory factory)
+            throws IOException, DocumentException {
+        return render(source, baseUrl, null, factory);
+    }
+
+    private int render(InputSource source, final String baseUrl, OutputStream os,
+            final OutputStreamFactory factory) throws IOException, DocumentException {
+        _batch.start(os);
+        try {
+            XMLReader reader = newXMLReader();
+            reader.setContentHandler(new DocumentSplitter(new DocumentConsumer() {
+                private int _index;
+
+                public void consume(Document document) throws SAXException {
+                    try {
+                        OutputStream out = null;
+                        if (factory != null) {
+                            out = factory.createOutputStream(_index);
+                        }
+                        _index++;
+                        _batch.add(new ITextBatchRenderer.Input(document, baseUrl, out));
+                    } catch (IOException e) {
+                        throw new SAXException(e);
+                    } catch (DocumentException e) {
+                        throw new SAXException(e);
+                    }
+                }
+            }));
+            reader.parse(source);
+
+            return _batch.finish();
+        } catch (SAXException e) {
+            Exception cause = e.getException();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof DocumentException) {
+                throw (DocumentException) cause;
+            } else {
+                throw new XRRuntimeException("Can't parse " + source.getSystemId(), e);
+            }
+        } finally {
+            _batch.shutdown();
+        }
+    }
+
+    private static XMLReader newXMLReader() {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(false);
+
+            XMLReader result = factory.newSAXParser().getXMLReader();
+            result.setEntityResolver(FSEntityResolver.instance());
+            return result;
+        } catch (ParserConfigurationException e) {
+            throw new XRRuntimeException(e.getMessage(), e);
+        } catch (SAXException e) {
+            throw new XRRuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Supplies the output stream for each split document, numbered from
+     * zero in document order.
+     */
+    public interface OutputStreamFactory {
+        public OutputStream createOutputStream(int index) throws IOException;
+    }
+}
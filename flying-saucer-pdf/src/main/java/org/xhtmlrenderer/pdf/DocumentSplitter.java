@@ -56,12 +56,30 @@ public class DocumentSplitter implements ContentHandler {
     private Locator _locator;
     
     private TransformerHandler _handler;
+    private Document _document;
     private boolean _inDocument = false;
     
     private List _documents = new LinkedList();
+    private final DocumentConsumer _consumer;
     
     private boolean _replayedHead = false;
 
+    /**
+     * Creates a splitter which collects all documents (see
+     * {@link #getDocuments()}).
+     */
+    public DocumentSplitter() {
+        this(null);
+    }
+
+    /**
+     * Creates a splitter which hands each document to <code>consumer</code>
+     * as soon as it is complete and does not keep a reference to it.
+     */
+    public DocumentSplitter(DocumentConsumer consumer) {
+        _consumer = consumer;
+    }
+
     public void characters(char[] ch, int start, int length) throws SAXException {
         if (_inHead) {
             _head.characters(ch, start, length);
@@ -150,7 +168,7 @@ public class DocumentSplitter implements ContentHandler {
                         factory.setValidating(false);
                         
                         Document doc = factory.newDocumentBuilder().newDocument();
-                        _documents.add(doc);
+                        _document = doc;
                         _handler = 
                             ((SAXTransformerFactory)SAXTransformerFactory.newInstance()).newTransformerHandler();
                         _handler.setResult(new DOMResult(doc));
@@ -197,6 +215,15 @@ public class DocumentSplitter implements ContentHandler {
                 _handler.endElement(uri, localName, qName);
                 _handler.endDocument();
                 _inDocument = false;
+
+                Document doc = _document;
+                _document = null;
+                _handler = null;
+                if (_consumer != null) {
+                    _consumer.consume(doc);
+                } else {
+                    _documents.add(doc);
+                }
             } else {
                 _handler.endElement(uri, localName, qName);
             }
@@ -214,6 +241,10 @@ public class DocumentSplitter implements ContentHandler {
         }
     }
     
+    /**
+     * Returns the documents split so far. Always empty if a
+     * {@link DocumentConsumer} was given.
+     */
     public List getDocuments() {
         return _documents;
     }
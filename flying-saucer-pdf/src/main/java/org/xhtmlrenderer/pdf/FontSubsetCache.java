@@ -0,0 +1,421 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.xhtmlrenderer.util.RenderConfig;
+import org.xhtmlrenderer.util.XRLog;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfIndirectReference;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfNumber;
+import com.lowagie.text.pdf.PdfStream;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+
+/**
+ * A cache of embedded font subsets shared by all documents.  Normally iText
+ * builds and compresses a new subset of every embedded TrueType font each
+ * time a PDF is closed.  With this cache, a compressed subset is kept per
+ * font, and a later document whose glyphs it already covers embeds it as
+ * is.  When a document needs glyphs the cached subset lacks, the subset is
+ * rebuilt with the union of both glyph sets (up to
+ * <code>xr.pdf.font-subset-cache.max-glyphs</code> glyphs), so after a few
+ * documents of a batch every font is only written, not subset.  A subset of
+ * commonly used characters can also be built up front with
+ * {@link #prebuild(BaseFont, String)}.
+ * <p>
+ * A document may therefore embed glyphs it does not use.  For this reason the
+ * cache is only used by renderers whose {@link RenderConfig} has
+ * <code>xr.pdf.font-subset-cache</code> set to <code>true</code>.  Only Unicode (<code>Identity-H</code>/<code>V</code>)
+ * TrueType fonts are handled; other fonts, and all fonts of PDF/A documents,
+ * are written by iText as usual.
+ * <p>
+ * Subsets are kept per {@link BaseFont} instance, and only as long as the
+ * font itself is in use; fonts dropped by their resolver or by the
+ * {@link FontProgramCache} take their subsets with them.  At most
+ * <code>xr.pdf.font-subset-cache.max-fonts</code> fonts are kept; when the
+ * cache is full it is cleared.
+ * <p>
+ * iText offers no hook for this, so the cache reaches into its font writing
+ * code by reflection.  If that code cannot be found, the cache does nothing.
+ */
+public class FontSubsetCache {
+    private static final String TRUE_TYPE_FONT = "com.lowagie.text.pdf.TrueTypeFont";
+    private static final String TRUE_TYPE_FONT_UNICODE = "com.lowagie.text.pdf.TrueTypeFontUnicode";
+
+    // HACK No accessors for any of these
+    private static Field _documentFonts;
+    private static Field _detailsBaseFont;
+    private static Field _detailsLongTag;
+    private static Field _detailsSubset;
+    private static Field _detailsIndirectReference;
+    private static Field _fontFileName;
+    private static Field _fontFile;
+    private static Field _fontCff;
+    private static Field _fontDirectoryOffset;
+    private static Method _getMetricsTT;
+    private static Method _addRangeUni;
+    private static Method _getFontDescriptor;
+    private static Method _getCIDFontType2;
+    private static Method _getToUnicode;
+    private static Method _getFontBaseType;
+    private static Constructor _subSetConstructor;
+    private static Method _subSetProcess;
+    private static boolean _supported;
+
+    static {
+        try {
+            Class trueTypeFont = Class.forName(TRUE_TYPE_FONT);
+            Class trueTypeFontUnicode = Class.forName(TRUE_TYPE_FONT_UNICODE);
+            Class fontDetails = Class.forName("com.lowagie.text.pdf.FontDetails");
+            Class subSet = Class.forName("com.lowagie.text.pdf.TrueTypeFontSubSet");
+
+            _documentFonts = accessible(PdfWriter.class.getDeclaredField("documentFonts"));
+            _detailsBaseFont = accessible(fontDetails.getDeclaredField("baseFont"));
+            _detailsLongTag = accessible(fontDetails.getDeclaredField("longTag"));
+            _detailsSubset = accessible(fontDetails.getDeclaredField("subset"));
+            _detailsIndirectReference = accessible(fontDetails.getDeclaredField("indirectReference"));
+            _fontFileName = accessible(trueTypeFont.getDeclaredField("fileName"));
+            _fontFile = accessible(trueTypeFont.getDeclaredField("rf"));
+            _fontCff = accessible(trueTypeFont.getDeclaredField("cff"));
+            _fontDirectoryOffset = accessible(trueTypeFont.getDeclaredField("directoryOffset"));
+            _getMetricsTT = accessible(trueTypeFont.getDeclaredMethod("getMetricsTT",
+                    new Class[] { int.class }));
+            _addRangeUni = accessible(trueTypeFont.getDeclaredMethod("addRangeUni",
+                    new Class[] { HashMap.class, boolean.class, boolean.class }));
+            _getFontDescriptor = accessible(trueTypeFont.getDeclaredMethod("getFontDescriptor",
+                    new Class[] { PdfIndirectReference.class, String.class, PdfIndirectReference.class }));
+            _getCIDFontType2 = accessible(trueTypeFontUnicode.getDeclaredMethod("getCIDFontType2",
+                    new Class[] { PdfIndirectReference.class, String.class, Object[].class }));
+            _getToUnicode = accessible(trueTypeFontUnicode.getDeclaredMethod("getToUnicode",
+                    new Class[] { Object[].class }));
+            _getFontBaseType = accessible(trueTypeFontUnicode.getDeclaredMethod("getFontBaseType",
+                    new Class[] { PdfIndirectReference.class, String.class, PdfIndirectReference.class }));
+            _subSetConstructor = subSet.getDeclaredConstructor(new Class[] {
+                    String.class, RandomAccessFileOrArray.class, HashMap.class, int.class, boolean.class, boolean.class });
+            _subSetConstructor.setAccessible(true);
+            _subSetProcess = accessible(subSet.getDeclaredMethod("process", new Class[0]));
+
+            _supported = true;
+        } catch (Exception e) {
+            XRLog.general(Level.WARNING,
+                    "Font subsets cannot be shared with this version of iText. Fonts will be subset per document.", e);
+        }
+    }
+
+    // Must come after the static initializer above, which sets _supported
+    private static final FontSubsetCache _shared = new FontSubsetCache(
+            true,
+            RenderConfig.getDefault().getPdfFontSubsetCacheMaxGlyphs(),
+            RenderConfig.getDefault().getPdfFontSubsetCacheMaxFonts());
+
+    private final boolean _enabled;
+    private final int _maxGlyphs;
+    private final int _maxFonts;
+    // Weak keys, so a font no longer used anywhere else (and its subset) can
+    // be collected
+    private final Map _entries = Collections.synchronizedMap(new WeakHashMap());
+
+    /**
+     * @param enabled whether {@link #writeFonts(PdfWriter)} uses the cache
+     * @param maxGlyphs the largest number of glyphs a shared subset may
+     * have.  Documents whose fonts would need a larger subset have their
+     * fonts subset on their own.
+     * @param maxFonts the largest number of fonts whose subsets are kept
+     */
+    public FontSubsetCache(boolean enabled, int maxGlyphs, int maxFonts) {
+        _enabled = enabled && _supported;
+        _maxGlyphs = maxGlyphs;
+        _maxFonts = maxFonts;
+    }
+
+    /**
+     * Returns the cache shared by all renderers.  Its limits are taken from
+     * the default render configuration.  It is enabled whenever iText
+     * supports it; each renderer uses it only if its own
+     * {@link RenderConfig#isPdfFontSubsetCache()} is <code>true</code>.
+     */
+    public static FontSubsetCache getSharedInstance() {
+        return _shared;
+    }
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    /**
+     * Builds the shared subset of <code>font</code> ahead of time so that
+     * documents using only <code>characters</code> never subset it.  Does
+     * nothing if the cache is disabled or the font cannot be cached.
+     */
+    public void prebuild(BaseFont font, String characters) throws DocumentException, IOException {
+        if (! _enabled || ! isCacheable(font)) {
+            return;
+        }
+        BitSet glyphs = new BitSet();
+        for (int i = 0; i < characters.length(); i++) {
+            int[] metrics = (int[])invoke(_getMetricsTT, font, new Object[] { Integer.valueOf(characters.charAt(i)) });
+            if (metrics != null) {
+                glyphs.set(metrics[0]);
+            }
+        }
+        getEntry(font, glyphs);
+    }
+
+    /**
+     * Writes every cacheable font used by the document of
+     * <code>writer</code>, using (and updating) the cached subsets.  Must be
+     * called when all content has been drawn, just before the document is
+     * closed.  Fonts written here are removed from the writer so iText does
+     * not write them again.
+     */
+    public void writeFonts(PdfWriter writer) throws DocumentException, IOException {
+        if (! _enabled ||
+                writer.getPDFXConformance() == PdfWriter.PDFA1A || writer.getPDFXConformance() == PdfWriter.PDFA1B) {
+            return;
+        }
+
+        Map fonts = (Map)get(_documentFonts, writer);
+        for (Iterator i = fonts.values().iterator(); i.hasNext(); ) {
+            Object details = i.next();
+            BaseFont font = (BaseFont)get(_detailsBaseFont, details);
+            HashMap longTag = (HashMap)get(_detailsLongTag, details);
+            if (longTag == null || ! isCacheable(font) || ! ((Boolean)get(_detailsSubset, details)).booleanValue()) {
+                continue;
+            }
+
+            writeFont(writer, font, longTag, (PdfIndirectReference)get(_detailsIndirectReference, details));
+            i.remove();
+        }
+    }
+
+    public void clear() {
+        _entries.clear();
+    }
+
+    public int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Does what <code>TrueTypeFontUnicode.writeFont()</code> does, except
+     * that the font program comes from the cache.
+     */
+    private void writeFont(PdfWriter writer, BaseFont font, HashMap longTag, PdfIndirectReference ref)
+            throws DocumentException, IOException {
+        invoke(_addRangeUni, font, new Object[] { longTag, Boolean.TRUE, Boolean.TRUE });
+        Object[] metrics = longTag.values().toArray();
+        Arrays.sort(metrics, (Comparator)font);
+
+        BitSet glyphs = new BitSet();
+        for (int i = 0; i < metrics.length; i++) {
+            glyphs.set(((int[])metrics[i])[0]);
+        }
+        Entry entry = getEntry(font, glyphs);
+
+        PdfIndirectReference program = writer.addToBody(entry.createStream()).getIndirectReference();
+        String subsetPrefix = BaseFont.createSubsetPrefix();
+        PdfDictionary dic = (PdfDictionary)invoke(_getFontDescriptor, font,
+                new Object[] { program, subsetPrefix, null });
+        PdfIndirectReference descriptor = writer.addToBody(dic).getIndirectReference();
+        dic = (PdfDictionary)invoke(_getCIDFontType2, font, new Object[] { descriptor, subsetPrefix, metrics });
+        PdfIndirectReference cidFont = writer.addToBody(dic).getIndirectReference();
+        PdfStream toUnicode = (PdfStream)invoke(_getToUnicode, font, new Object[] { metrics });
+        PdfIndirectReference toUnicodeRef = null;
+        if (toUnicode != null) {
+            toUnicodeRef = writer.addToBody(toUnicode).getIndirectReference();
+        }
+        dic = (PdfDictionary)invoke(_getFontBaseType, font, new Object[] { cidFont, subsetPrefix, toUnicodeRef });
+        writer.addToBody(dic, ref);
+    }
+
+    /**
+     * Returns a cached subset of <code>font</code> covering
+     * <code>glyphs</code>, building (and, size permitting, caching) a new one
+     * if the current one does not.
+     */
+    private Entry getEntry(BaseFont font, BitSet glyphs) throws DocumentException, IOException {
+        Entry entry = (Entry)_entries.get(font);
+        if (entry != null && entry.covers(glyphs)) {
+            return entry;
+        }
+
+        // Subsetting reads the font file, which is not safe to do from
+        // several threads at once for the same font
+        synchronized (font) {
+            entry = (Entry)_entries.get(font);
+            if (entry != null && entry.covers(glyphs)) {
+                return entry;
+            }
+
+            BitSet union = (BitSet)glyphs.clone();
+            if (entry != null) {
+                union.or(entry.glyphs);
+            }
+            if (union.cardinality() > _maxGlyphs) {
+                return createEntry(font, glyphs);
+            }
+
+            entry = createEntry(font, union);
+            if (_entries.size() >= _maxFonts && ! _entries.containsKey(font)) {
+                _entries.clear();
+            }
+            _entries.put(font, entry);
+            return entry;
+        }
+    }
+
+    private Entry createEntry(BaseFont font, BitSet glyphs) throws DocumentException, IOException {
+        HashMap glyphsUsed = new HashMap();
+        for (int i = glyphs.nextSetBit(0); i >= 0; i = glyphs.nextSetBit(i + 1)) {
+            glyphsUsed.put(Integer.valueOf(i), null);
+        }
+
+        byte[] program;
+        try {
+            Object subSet = _subSetConstructor.newInstance(new Object[] {
+                    get(_fontFileName, font),
+                    new RandomAccessFileOrArray((RandomAccessFileOrArray)get(_fontFile, font)),
+                    glyphsUsed,
+                    get(_fontDirectoryOffset, font),
+                    Boolean.FALSE,
+                    Boolean.FALSE });
+            program = (byte[])invoke(_subSetProcess, subSet, new Object[0]);
+        } catch (InstantiationException e) {
+            throw new DocumentException(e);
+        } catch (IllegalAccessException e) {
+            throw new DocumentException(e);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        }
+
+        if (! Document.compress) {
+            return new Entry(glyphs, program, program.length, false);
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(program.length / 2);
+        Deflater deflater = new Deflater(font.getCompressionLevel());
+        try {
+            DeflaterOutputStream zip = new DeflaterOutputStream(compressed, deflater);
+            zip.write(program);
+            zip.close();
+        } finally {
+            deflater.end();
+        }
+        return new Entry(glyphs, compressed.toByteArray(), program.length, true);
+    }
+
+    private static boolean isCacheable(BaseFont font) {
+        return font.getClass().getName().equals(TRUE_TYPE_FONT_UNICODE) &&
+                font.isEmbedded() && font.isSubset() && ! ((Boolean)get(_fontCff, font)).booleanValue();
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws DocumentException, IOException {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new DocumentException(e);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static DocumentException unwrap(InvocationTargetException e) throws IOException {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            throw (IOException)cause;
+        } else if (cause instanceof DocumentException) {
+            return (DocumentException)cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException)cause;
+        } else {
+            return new DocumentException(e);
+        }
+    }
+
+    private static Object get(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static Field accessible(Field field) {
+        field.setAccessible(true);
+        return field;
+    }
+
+    private static Method accessible(Method method) {
+        method.setAccessible(true);
+        return method;
+    }
+
+    private static final class Entry {
+        private final BitSet glyphs;
+        private final byte[] program;
+        private final int length1;
+        private final boolean compressed;
+
+        Entry(BitSet glyphs, byte[] program, int length1, boolean compressed) {
+            this.glyphs = glyphs;
+            this.program = program;
+            this.length1 = length1;
+            this.compressed = compressed;
+        }
+
+        boolean covers(BitSet used) {
+            BitSet missing = (BitSet)used.clone();
+            missing.andNot(glyphs);
+            return missing.isEmpty();
+        }
+
+        PdfStream createStream() {
+            PdfStream result = new PdfStream(program);
+            if (compressed) {
+                result.put(PdfName.FILTER, PdfName.FLATEDECODE);
+            }
+            result.put(PdfName.LENGTH1, new PdfNumber(length1));
+            return result;
+        }
+    }
+}
@@ -22,12 +22,26 @@ package org.xhtmlrenderer.pdf;
 import org.xhtmlrenderer.pdf.ITextFontResolver.FontDescription;
 import org.xhtmlrenderer.render.FSFont;
 
+/**
+ * A resolved PDF font.  Besides the primary font picked from the CSS
+ * <code>font-family</code> list, it carries the fonts of the remaining
+ * families in order.  Text is split into runs so that each character is drawn
+ * with the first of these fonts that has a glyph for it; both measuring
+ * ({@link ITextTextRenderer}) and painting ({@link ITextOutputDevice}) use the
+ * same runs.
+ */
 public class ITextFSFont implements FSFont {
-    private FontDescription _font;
-    private float _size;
+    private final FontDescription _font;
+    private final FontDescription[] _fallbacks;
+    private final float _size;
     
     public ITextFSFont(FontDescription font, float size) {
+        this(font, null, size);
+    }
+
+    public ITextFSFont(FontDescription font, FontDescription[] fallbacks, float size) {
         _font = font;
+        _fallbacks = fallbacks;
         _size = size;
     }
 
@@ -38,4 +52,53 @@ public class ITextFSFont implements FSFont {
     public FontDescription getFontDescription() {
         return _font;
     }
+
+    /**
+     * Returns <code>true</code> if any text may need more than one font.
+     */
+    public boolean hasFallbacks() {
+        return _fallbacks != null;
+    }
+
+    /**
+     * Returns the font to draw <code>c</code> with: the first font in the
+     * fallback chain that has a glyph for it, or the primary font if none do.
+     */
+    public FontDescription getFontDescription(char c) {
+        if (_fallbacks == null || isSpace(c) || _font.canDisplay(c)) {
+            return _font;
+        }
+        for (int i = 0; i < _fallbacks.length; i++) {
+            if (_fallbacks[i].canDisplay(c)) {
+                return _fallbacks[i];
+            }
+        }
+        return _font;
+    }
+
+    /**
+     * Returns the end (exclusive) of the run starting at <code>start</code>
+     * which is drawn with <code>font</code>, normally the result of
+     * {@link #getFontDescription(char)} for the first character of the run.
+     * Spaces never end a run.
+     */
+    public int findRunEnd(String s, int start, FontDescription font) {
+        int len = s.length();
+        if (_fallbacks == null) {
+            return len;
+        }
+        int i = start + 1;
+        while (i < len) {
+            char c = s.charAt(i);
+            if (! isSpace(c) && getFontDescription(c) != font) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\u00a0' || c == '\u3000';
+    }
 }
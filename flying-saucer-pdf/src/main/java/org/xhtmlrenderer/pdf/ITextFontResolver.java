@@ -27,18 +27,23 @@ import org.xhtmlrenderer.css.sheet.FontFaceRule;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.FSDerivedValue;
 import org.xhtmlrenderer.css.value.FontSpecification;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.FontResolver;
 import org.xhtmlrenderer.layout.SharedContext;
 import org.xhtmlrenderer.render.FSFont;
 import org.xhtmlrenderer.util.XRLog;
 import org.xhtmlrenderer.util.XRRuntimeException;
+import org.xhtmlrenderer.util.XRTrace;
+import org.xhtmlrenderer.util.XRTraceEvent;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class ITextFontResolver implements FontResolver {
     private Map _fontFamilies = createInitialFontMap();
     private Map _fontCache = new HashMap();
+    private Map _resolvedFonts = new HashMap();
 
     private final SharedContext _sharedContext;
 
@@ -75,17 +80,36 @@ public class ITextFontResolver implements FontResolver {
         }
     }
 
+    /**
+     * Resolved fonts are cached by specification, so the same
+     * <code>FSFont</code> is returned for equal specifications until fonts
+     * are added or flushed.
+     */
     public FSFont resolveFont(SharedContext renderingContext, FontSpecification spec) {
-        return resolveFont(renderingContext, spec.families, spec.size, spec.fontWeight, spec.fontStyle, spec.variant);
+        FSFont result = (FSFont)_resolvedFonts.get(spec);
+        if (result != null) {
+            RenderMetrics metrics = renderingContext.getRenderMetrics();
+            if (metrics != null) {
+                metrics.increment(RenderMetrics.CACHE_HITS);
+            }
+            return result;
+        }
+        result = resolveFont(renderingContext, spec.families, spec.size, spec.fontWeight, spec.fontStyle, spec.variant);
+        if (result != null) {
+            _resolvedFonts.put(spec.copyOf(), result);
+        }
+        return result;
     }
 
     public void flushCache() {
         _fontFamilies = createInitialFontMap();
         _fontCache = new HashMap();
+        _resolvedFonts = new HashMap();
     }
 
     public void flushFontFaceFonts() {
         _fontCache = new HashMap();
+        _resolvedFonts = new HashMap();
 
         for (Iterator i = _fontFamilies.values().iterator(); i.hasNext(); ) {
             FontFamily family = (FontFamily)i.next();
@@ -162,6 +186,29 @@ public class ITextFontResolver implements FontResolver {
         }
     }
 
+    /**
+     * Builds shared subsets of all embedded Unicode fonts added so far,
+     * covering <code>characters</code>, so that documents using only these
+     * characters write their fonts without subsetting them.  Does nothing
+     * unless the render configuration enables the font subset cache.
+     *
+     * @see FontSubsetCache
+     */
+    public void prebuildFontSubsets(String characters)
+            throws DocumentException, IOException {
+        FontSubsetCache cache = FontSubsetCache.getSharedInstance();
+        if (! _sharedContext.getRenderConfig().isPdfFontSubsetCache() || ! cache.isEnabled()) {
+            return;
+        }
+        for (Iterator i = _fontFamilies.values().iterator(); i.hasNext(); ) {
+            FontFamily family = (FontFamily)i.next();
+            for (Iterator j = family.getFontDescriptions().iterator(); j.hasNext(); ) {
+                FontDescription d = (FontDescription)j.next();
+                cache.prebuild(d.getFont(), characters);
+            }
+        }
+    }
+
     public void addFontDirectory(String dir, boolean embedded)
             throws DocumentException, IOException {
         File f = new File(dir);
@@ -196,6 +243,9 @@ public class ITextFontResolver implements FontResolver {
     public void addFont(String path, String fontFamilyNameOverride,
                         String encoding, boolean embedded, String pathToPFB)
             throws DocumentException, IOException {
+        XRTraceEvent event = XRTrace.begin(XRTrace.FONT_LOAD);
+        int families;
+
         String lower = path.toLowerCase();
         if (lower.endsWith(".otf") || lower.endsWith(".ttf") || lower.indexOf(".ttc,") != -1) {
             BaseFont font = BaseFont.createFont(path, encoding, embedded);
@@ -220,18 +270,20 @@ public class ITextFontResolver implements FontResolver {
 
                 fontFamily.addFontDescription(descr);
             }
+            families = fontFamilyNames.length;
         } else if (lower.endsWith(".ttc")) {
             String[] names = BaseFont.enumerateTTCNames(path);
             for (int i = 0; i < names.length; i++) {
                 addFont(path + "," + i, fontFamilyNameOverride, encoding, embedded, null);
             }
+            families = names.length;
         } else if (lower.endsWith(".afm") || lower.endsWith(".pfm")) {
             if (embedded && pathToPFB == null) {
                 throw new IOException("When embedding a font, path to PFB/PFA file must be specified");
             }
 
             BaseFont font = BaseFont.createFont(
-                    path, encoding, embedded, false, null, readFile(pathToPFB));
+                    path, encoding, embedded, false, null, FontProgramCache.getSharedInstance().readFile(pathToPFB));
 
             String fontFamilyName;
             if (fontFamilyNameOverride != null) {
@@ -247,17 +299,30 @@ public class ITextFontResolver implements FontResolver {
             // is contained in the AFM file (and even parsed by Type1Font), but
             // unfortunately it isn't exposed to the caller.
             fontFamily.addFontDescription(descr);
+            families = 1;
         } else {
             throw new IOException("Unsupported font type");
         }
+
+        // The new font may change how specifications resolve
+        _resolvedFonts.clear();
+
+        if (event != null) {
+            event.end(path, -1, families);
+        }
     }
 
     private void addFontFaceFont(
             String fontFamilyNameOverride, IdentValue fontWeightOverride, IdentValue fontStyleOverride, String uri, String encoding, boolean embedded, byte[] afmttf, byte[] pfb)
             throws DocumentException, IOException {
+        RenderMetrics metrics = _sharedContext.getRenderMetrics();
+        if (metrics != null) {
+            metrics.increment(RenderMetrics.FONTS_LOADED);
+        }
+
         String lower = uri.toLowerCase();
         if (lower.endsWith(".otf") || lower.endsWith(".ttf") || lower.indexOf(".ttc,") != -1) {
-            BaseFont font = BaseFont.createFont(uri, encoding, embedded, false, afmttf, pfb);
+            BaseFont font = FontProgramCache.getSharedInstance().createFont(uri, encoding, embedded, afmttf, pfb);
 
             String[] fontFamilyNames;
             if (fontFamilyNameOverride != null) {
@@ -294,8 +359,8 @@ public class ITextFontResolver implements FontResolver {
             }
 
             String name = uri.substring(0, uri.length()-4) + ".afm";
-            BaseFont font = BaseFont.createFont(
-                    name, encoding, embedded, false, afmttf, pfb);
+            BaseFont font = FontProgramCache.getSharedInstance().createFont(
+                    name, encoding, embedded, afmttf, pfb);
 
             String fontFamilyName = font.getFamilyFontName()[0][3];
             FontFamily fontFamily = getFontFamily(fontFamilyName);
@@ -309,36 +374,8 @@ public class ITextFontResolver implements FontResolver {
         } else {
             throw new IOException("Unsupported font type");
         }
-    }
 
-    private byte[] readFile(String path) throws IOException {
-        File f = new File(path);
-        if (f.exists()) {
-            ByteArrayOutputStream result = new ByteArrayOutputStream((int)f.length());
-            InputStream is = null;
-            try {
-                is = new FileInputStream(path);
-                byte[] buf = new byte[10240];
-                int i;
-                while ( (i = is.read(buf)) != -1) {
-                    result.write(buf, 0, i);
-                }
-                is.close();
-                is = null;
-
-                return result.toByteArray();
-            } finally {
-                if (is != null) {
-                    try {
-                        is.close();
-                    } catch (IOException e) {
-                        // ignore
-                    }
-                }
-            }
-        } else {
-            throw new IOException("File " + path + " does not exist or is not accessible");
-        }
+        _resolvedFonts.clear();
     }
 
     public FontFamily getFontFamily(String fontFamilyName) {
@@ -358,14 +395,37 @@ public class ITextFontResolver implements FontResolver {
         }
         if (families != null) {
             for (int i = 0; i < families.length; i++) {
-                FSFont font = resolveFont(ctx, families[i], size, weight, style, variant);
+                FontDescription font = resolveFontDescription(ctx, families[i], weight, style);
                 if (font != null) {
-                    return font;
+                    return new ITextFSFont(font, resolveFallbacks(ctx, families, i + 1, font, weight, style), size);
                 }
             }
         }
 
-        return resolveFont(ctx, "Serif", size, weight, style, variant);
+        FontDescription font = resolveFontDescription(ctx, "Serif", weight, style);
+        return font == null ? null : new ITextFSFont(font, size);
+    }
+
+    /**
+     * Resolves the families after the primary one so that characters the
+     * primary font has no glyph for can be drawn with the first family that
+     * does.  Returns <code>null</code> if there is nothing to fall back to.
+     */
+    private FontDescription[] resolveFallbacks(SharedContext ctx, String[] families, int start,
+            FontDescription primary, IdentValue weight, IdentValue style) {
+        List result = null;
+        for (int i = start; i < families.length; i++) {
+            FontDescription font = resolveFontDescription(ctx, families[i], weight, style);
+            if (font != null && font != primary) {
+                if (result == null) {
+                    result = new ArrayList(families.length - i);
+                } else if (result.contains(font)) {
+                    continue;
+                }
+                result.add(font);
+            }
+        }
+        return result == null ? null : (FontDescription[])result.toArray(new FontDescription[result.size()]);
     }
 
     private String normalizeFontFamily(String fontFamily) {
@@ -392,14 +452,19 @@ public class ITextFontResolver implements FontResolver {
         return result;
     }
 
-    private FSFont resolveFont(SharedContext ctx, String fontFamily, float size, IdentValue weight, IdentValue style, IdentValue variant) {
+    private FontDescription resolveFontDescription(SharedContext ctx, String fontFamily, IdentValue weight, IdentValue style) {
         String normalizedFontFamily = normalizeFontFamily(fontFamily);
 
         String cacheKey = getHashName(normalizedFontFamily, weight, style);
         FontDescription result = (FontDescription)_fontCache.get(cacheKey);
 
+        RenderMetrics metrics = ctx.getRenderMetrics();
+        if (metrics != null) {
+            metrics.increment(result != null ? RenderMetrics.CACHE_HITS : RenderMetrics.CACHE_MISSES);
+        }
+
         if (result != null) {
-            return new ITextFSFont(result, size);
+            return result;
         }
 
         FontFamily family = (FontFamily)_fontFamilies.get(normalizedFontFamily);
@@ -407,7 +472,7 @@ public class ITextFontResolver implements FontResolver {
             result = family.match(convertWeightToInt(weight), style);
             if (result != null) {
                 _fontCache.put(cacheKey, result);
-                return new ITextFSFont(result, size);
+                return result;
             }
         }
 
@@ -730,6 +795,8 @@ public class ITextFontResolver implements FontResolver {
     }
 
     public static class FontDescription {
+        private static final int COVERAGE_BLOCKS = 256;
+
         private IdentValue _style;
         private int _weight;
 
@@ -743,6 +810,8 @@ public class ITextFontResolver implements FontResolver {
 
         private boolean _isFromFontFace;
 
+        private AtomicReferenceArray _coverage = new AtomicReferenceArray(COVERAGE_BLOCKS);
+
         public FontDescription() {
         }
 
@@ -763,6 +832,34 @@ public class ITextFontResolver implements FontResolver {
 
         public void setFont(BaseFont font) {
             _font = font;
+            _coverage = new AtomicReferenceArray(COVERAGE_BLOCKS);
+        }
+
+        /**
+         * Returns whether this font has a glyph for <code>c</code>.  Coverage
+         * is worked out once per block of 256 characters and kept as a bitset,
+         * so checking every character of a string does not go back to
+         * {@link BaseFont#charExists(int)} each time.
+         */
+        public boolean canDisplay(char c) {
+            int block = c >>> 8;
+            long[] bits = (long[])_coverage.get(block);
+            if (bits == null) {
+                bits = computeCoverage(block);
+                _coverage.lazySet(block, bits);
+            }
+            return (bits[(c & 0xFF) >>> 6] & (1L << c)) != 0;
+        }
+
+        private long[] computeCoverage(int block) {
+            long[] bits = new long[4];
+            int first = block << 8;
+            for (int i = 0; i < 256; i++) {
+                if (_font.charExists(first + i)) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+            return bits;
         }
 
         public int getWeight() {
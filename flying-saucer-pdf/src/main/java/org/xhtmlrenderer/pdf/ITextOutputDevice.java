@@ -39,13 +39,12 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
@@ -63,19 +62,21 @@ import org.xhtmlrenderer.css.value.FontSpecification;
 import org.xhtmlrenderer.extend.FSImage;
 import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.OutputDevice;
+import org.xhtmlrenderer.layout.Layer;
 import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.newtable.TableBox;
 import org.xhtmlrenderer.pdf.ITextFontResolver.FontDescription;
 import org.xhtmlrenderer.render.AbstractOutputDevice;
 import org.xhtmlrenderer.render.BlockBox;
 import org.xhtmlrenderer.render.BorderPainter;
 import org.xhtmlrenderer.render.Box;
 import org.xhtmlrenderer.render.FSFont;
-import org.xhtmlrenderer.render.InlineLayoutBox;
 import org.xhtmlrenderer.render.InlineText;
 import org.xhtmlrenderer.render.JustificationInfo;
 import org.xhtmlrenderer.render.PageBox;
 import org.xhtmlrenderer.render.RenderingContext;
 import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.RenderConfig;
 import org.xhtmlrenderer.util.XRLog;
 import org.xhtmlrenderer.util.XRRuntimeException;
 
@@ -96,6 +97,7 @@ import com.lowagie.text.pdf.PdfName;
 import com.lowagie.text.pdf.PdfOutline;
 import com.lowagie.text.pdf.PdfReader;
 import com.lowagie.text.pdf.PdfString;
+import com.lowagie.text.pdf.PdfTemplate;
 import com.lowagie.text.pdf.PdfTextArray;
 import com.lowagie.text.pdf.PdfWriter;
 
@@ -147,12 +149,19 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
     private List _metadata = new ArrayList();
 
     private Box _root;
+    private PagePositionIndex _pagePositionIndex;
 
     private int _startPageNo;
 
     private int _nextFormFieldIndex;
 
     private Set _linkTargetAreas;
+    private Map _linkAreaBoxes;
+    private final Map _destinations = new IdentityHashMap();
+
+    // null until set, to use the render configuration
+    private Boolean _marginAreaTemplates;
+    private final Map _marginAreaTemplateCache = new IdentityHashMap();
 
     public ITextOutputDevice(float dotsPerPoint) {
         _dotsPerPoint = dotsPerPoint;
@@ -160,6 +169,10 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
 
     public void setWriter(PdfWriter writer) {
         _writer = writer;
+        // Templates and destinations belong to the writer they were created with
+        _marginAreaTemplateCache.clear();
+        _destinations.clear();
+        _defaultDestination = null;
     }
 
     public PdfWriter getWriter() {
@@ -191,17 +204,134 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         }
 
         _linkTargetAreas = new HashSet();
+        _linkAreaBoxes = new IdentityHashMap();
     }
 
     public void finishPage() {
         _currentPage.restoreState();
     }
 
+    /**
+     * Writes out the margin area templates of the document just painted.
+     * Until released, iText keeps every template in memory until the PDF is
+     * closed, which for merged documents is only at the very end.
+     */
+    private void releaseMarginAreaTemplates() {
+        try {
+            for (Iterator i = _marginAreaTemplateCache.values().iterator(); i.hasNext(); ) {
+                _writer.releaseTemplate((PdfTemplate) i.next());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        _marginAreaTemplateCache.clear();
+    }
+
     public void paintReplacedElement(RenderingContext c, BlockBox box) {
         ITextReplacedElement element = (ITextReplacedElement) box.getReplacedElement();
         element.paint(c, this, box);
     }
 
+    /**
+     * Paints invariant margin areas (e.g. static page headers and footers)
+     * into a {@link PdfTemplate} the first time they are painted and then
+     * only references that template from each page.  Lines containing page
+     * numbers are still painted into each page.  Margin areas which are laid
+     * out for each page (e.g. those containing running elements) are painted
+     * into the page as usual.
+     */
+    public void paintMarginArea(RenderingContext c, TableBox table, boolean invariant) {
+        if (! invariant || ! isMarginAreaTemplates()) {
+            super.paintMarginArea(c, table, invariant);
+            return;
+        }
+
+        PdfTemplate template = (PdfTemplate) _marginAreaTemplateCache.get(table);
+        if (template == null) {
+            template = createMarginAreaTemplate(c, table);
+            _marginAreaTemplateCache.put(table, template);
+        }
+
+        // Maps template space (points, y up, origin at the current origin)
+        // to page space
+        AffineTransform at = normalizeMatrix(_transform);
+        at.scale(_dotsPerPoint, _dotsPerPoint);
+        at.concatenate(AffineTransform.getScaleInstance(1, -1));
+
+        double[] mx = new double[6];
+        at.getMatrix(mx);
+        _currentPage.addTemplate(template,
+                (float) mx[0], (float) mx[1], (float) mx[2], (float) mx[3], (float) mx[4], (float) mx[5]);
+
+        short filter = c.getPaintFilter();
+        c.setPaintFilter(Layer.PAINT_DYNAMIC);
+        try {
+            super.paintMarginArea(c, table, invariant);
+        } finally {
+            c.setPaintFilter(filter);
+        }
+    }
+
+    private PdfTemplate createMarginAreaTemplate(RenderingContext c, TableBox table) {
+        PdfContentByte page = _currentPage;
+        float pageHeight = _pageHeight;
+        AffineTransform transform = _transform;
+        Area clip = _clip;
+        Color fillColor = _fillColor;
+        Color strokeColor = _strokeColor;
+        Stroke stroke = _stroke;
+        Stroke originalStroke = _originalStroke;
+        Stroke oldStroke = _oldStroke;
+        short filter = c.getPaintFilter();
+
+        float width = _writer.getPageSize().getWidth();
+        PdfTemplate result = page.createTemplate(width, pageHeight);
+        // Content is drawn below and to the right of the origin, but may
+        // overflow anywhere on the page
+        result.setBoundingBox(new com.lowagie.text.Rectangle(-width, -pageHeight, width, pageHeight));
+
+        _currentPage = result;
+        _pageHeight = 0;
+        _transform = AffineTransform.getScaleInstance(1.0d / _dotsPerPoint, 1.0d / _dotsPerPoint);
+        _clip = null;
+        _fillColor = null;
+        _strokeColor = null;
+        _oldStroke = null;
+        c.setPaintFilter(Layer.PAINT_STATIC);
+        try {
+            result.saveState();
+            super.paintMarginArea(c, table, true);
+            result.restoreState();
+        } finally {
+            _currentPage = page;
+            _pageHeight = pageHeight;
+            _transform = transform;
+            _clip = clip;
+            _fillColor = fillColor;
+            _strokeColor = strokeColor;
+            _stroke = stroke;
+            _originalStroke = originalStroke;
+            _oldStroke = oldStroke;
+            c.setPaintFilter(filter);
+        }
+
+        return result;
+    }
+
+    /**
+     * Whether invariant margin areas are written once as a shared
+     * {@link PdfTemplate} instead of into every page.  Defaults to
+     * {@link RenderConfig#isPdfMarginAreaTemplates()}.
+     */
+    public void setMarginAreaTemplates(boolean marginAreaTemplates) {
+        _marginAreaTemplates = Boolean.valueOf(marginAreaTemplates);
+    }
+
+    public boolean isMarginAreaTemplates() {
+        return _marginAreaTemplates == null ?
+                getRenderConfig().isPdfMarginAreaTemplates() : _marginAreaTemplates.booleanValue();
+    }
+
     public void paintBackground(RenderingContext c, Box box) {
         super.paintBackground(c, box);
 
@@ -220,10 +350,12 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         }
 
         com.lowagie.text.Rectangle result = createLocalTargetArea(c, current, true);
+        _linkAreaBoxes.put(current, Boolean.TRUE);
 
         current = current.getNextSibling();
         while (current != null && current.getElement() == box.getElement()) {
             result = add(result, createLocalTargetArea(c, current, true));
+            _linkAreaBoxes.put(current, Boolean.TRUE);
 
             current = current.getNextSibling();
         }
@@ -240,17 +372,20 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         return new com.lowagie.text.Rectangle(llx, lly, urx, ury);
     }
 
-    private String createRectKey(com.lowagie.text.Rectangle rect) {
-        return rect.getLeft() + ":" + rect.getBottom() + ":" + rect.getRight() + ":" + rect.getTop();
-    }
-
+    /**
+     * Returns the area of the link annotation for <code>box</code> (and its
+     * siblings belonging to the same element) or <code>null</code> if an
+     * annotation for this area has already been created on the current page.
+     */
     private com.lowagie.text.Rectangle checkLinkArea(RenderingContext c, Box box) {
+        // Each run of siblings is only measured once per page
+        if (_linkAreaBoxes.containsKey(box)) {
+            return null;
+        }
         com.lowagie.text.Rectangle targetArea = calcTotalLinkArea(c, box);
-        String key = createRectKey(targetArea);
-        if (_linkTargetAreas.contains(key)) {
+        if (! _linkTargetAreas.add(new LinkArea(targetArea))) {
             return null;
         }
-        _linkTargetAreas.add(key);
         return targetArea;
     }
 
@@ -262,34 +397,30 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
             if (uri != null) {
                 if (uri.length() > 1 && uri.charAt(0) == '#') {
                     String anchor = uri.substring(1);
-                    Box target = _sharedContext.getBoxById(anchor);
-                    if (target != null) {
-                        PdfDestination dest = createDestination(c, target);
+                    PdfDestination dest = createDestination(c, anchor);
+                    if (dest != null) {
+                        PdfAction action = new PdfAction();
+                        if (!"".equals(handler.getAttributeValue(elem, "onclick"))) {
+                            action = PdfAction.javaScript(handler.getAttributeValue(elem, "onclick"), _writer);
+                        } else {
+                            action.put(PdfName.S, PdfName.GOTO);
+                            action.put(PdfName.D, dest);
+                        }
 
-                        if (dest != null) {
-                            PdfAction action = new PdfAction();
-                            if (!"".equals(handler.getAttributeValue(elem, "onclick"))) {
-                                action = PdfAction.javaScript(handler.getAttributeValue(elem, "onclick"), _writer);
-                            } else {
-                                action.put(PdfName.S, PdfName.GOTO);
-                                action.put(PdfName.D, dest);
-                            }
-
-                            com.lowagie.text.Rectangle targetArea = checkLinkArea(c, box);
-                            if (targetArea == null) {
-                                return;
-                            }
-
-                            targetArea.setBorder(0);
-                            targetArea.setBorderWidth(0);
-
-                            PdfAnnotation annot = new PdfAnnotation(_writer, targetArea.getLeft(), targetArea.getBottom(),
-                                    targetArea.getRight(), targetArea.getTop(), action);
-                            annot.put(PdfName.SUBTYPE, PdfName.LINK);
-                            annot.setBorderStyle(new PdfBorderDictionary(0.0f, 0));
-                            annot.setBorder(new PdfBorderArray(0.0f, 0.0f, 0));
-                            _writer.addAnnotation(annot);
+                        com.lowagie.text.Rectangle targetArea = checkLinkArea(c, box);
+                        if (targetArea == null) {
+                            return;
                         }
+
+                        targetArea.setBorder(0);
+                        targetArea.setBorderWidth(0);
+
+                        PdfAnnotation annot = new PdfAnnotation(_writer, targetArea.getLeft(), targetArea.getBottom(),
+                                targetArea.getRight(), targetArea.getTop(), action);
+                        annot.put(PdfName.SUBTYPE, PdfName.LINK);
+                        annot.setBorderStyle(new PdfBorderDictionary(0.0f, 0));
+                        annot.setBorder(new PdfBorderArray(0.0f, 0.0f, 0));
+                        _writer.addAnnotation(annot);
                     }
                 } else if (uri.indexOf("://") != -1) {
                     PdfAction action = new PdfAction(uri);
@@ -356,10 +487,25 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         return length / _dotsPerPoint;
     }
 
-    private PdfDestination createDestination(RenderingContext c, Box box) {
+    /**
+     * Returns the destination for the element with the given id, or
+     * <code>null</code> if there is no such element.  Destinations are cached
+     * so documents with many links to the same target (e.g. a table of
+     * contents or an index) only create one per target.
+     */
+    private PdfDestination createDestination(RenderingContext c, String id) {
+        PagePositionIndex index = getPagePositionIndex();
+        Box box = index.getBox(id);
+        if (box == null) {
+            return null;
+        }
+        if (_destinations.containsKey(box)) {
+            return (PdfDestination) _destinations.get(box);
+        }
+
         PdfDestination result = null;
 
-        PageBox page = _root.getLayer().getPage(c, getPageRefY(box));
+        PageBox page = index.getTargetPage(c, id);
         if (page != null) {
             int distanceFromTop = page.getMarginBorderPadding(c, CalculatedStyle.TOP);
             distanceFromTop += box.getAbsY() + box.getMargin(c).top() - page.getTop();
@@ -367,9 +513,40 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
             result.addPage(_writer.getPageReference(_startPageNo + page.getPageNo() + 1));
         }
 
+        _destinations.put(box, result);
         return result;
     }
 
+    private static final class LinkArea {
+        private final float _left;
+        private final float _bottom;
+        private final float _right;
+        private final float _top;
+
+        public LinkArea(com.lowagie.text.Rectangle rect) {
+            _left = rect.getLeft();
+            _bottom = rect.getBottom();
+            _right = rect.getRight();
+            _top = rect.getTop();
+        }
+
+        public int hashCode() {
+            int result = Float.floatToIntBits(_left);
+            result = result * 31 + Float.floatToIntBits(_bottom);
+            result = result * 31 + Float.floatToIntBits(_right);
+            return result * 31 + Float.floatToIntBits(_top);
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof LinkArea)) {
+                return false;
+            }
+            LinkArea other = (LinkArea) o;
+            return _left == other._left && _bottom == other._bottom &&
+                    _right == other._right && _top == other._top;
+        }
+    }
+
     public void drawBorderLine(Shape bounds, int side, int lineWidth, boolean solid) {
        /*( float x = bounds.x;
         float y = bounds.y;
@@ -478,8 +655,33 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
     }
 
     public void drawString(String s, float x, float y, JustificationInfo info) {
-        if (Configuration.isTrue("xr.renderer.replace-missing-characters", false)) {
-            s = replaceMissingCharacters(s);
+        if (! _font.hasFallbacks()) {
+            drawRun(s, _font.getFontDescription(), x, y, info);
+            return;
+        }
+
+        // Draw each run with its own font, advancing by the same widths
+        // ITextTextRenderer measured during layout
+        int len = s.length();
+        int start = 0;
+        while (start < len) {
+            FontDescription desc = _font.getFontDescription(s.charAt(start));
+            int end = _font.findRunEnd(s, start, desc);
+            String run = s.substring(start, end);
+            drawRun(run, desc, x, y, info);
+            if (end < len) {
+                x += desc.getFont().getWidthPoint(run, _font.getSize2D());
+                if (info != null) {
+                    x += getJustificationAdvance(run, info);
+                }
+            }
+            start = end;
+        }
+    }
+
+    private void drawRun(String s, FontDescription desc, float x, float y, JustificationInfo info) {
+        if (getRenderConfig().isReplaceMissingCharacters()) {
+            s = replaceMissingCharacters(s, desc);
         }
         if (s.length() == 0)
             return;
@@ -496,7 +698,6 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         cb.beginText();
         // Check if bold or italic need to be emulated
         boolean resetMode = false;
-        FontDescription desc = _font.getFontDescription();
         float fontSize = _font.getSize2D() / _dotsPerPoint;
         cb.setFontAndSize(desc.getFont(), fontSize);
         float b = (float) mx[1];
@@ -532,32 +733,55 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         cb.endText();
     }
 
-    private String replaceMissingCharacters(String string) {
-        char[] charArr = string.toCharArray();
-        char replacementCharacter = Configuration.valueAsChar("xr.renderer.missing-character-replacement", '#');
+    private String replaceMissingCharacters(String string, FontDescription desc) {
+        char replacementCharacter = getRenderConfig().getMissingCharacterReplacement();
 
         // first check to see if the replacement character even exists in the
         // given font. If not, then do nothing.
-        if (!_font.getFontDescription().getFont().charExists(replacementCharacter)) {
-            XRLog.render(Level.INFO, "Missing replacement character [" + replacementCharacter + ":" + (int) replacementCharacter
-                    + "]. No replacement will occur.");
+        if (!desc.canDisplay(replacementCharacter)) {
+            if (XRLog.isLoggable(XRLog.RENDER, Level.INFO)) {
+                XRLog.render(Level.INFO, "Missing replacement character [{0}:{1,number,#}]. No replacement will occur.",
+                        new Object[] { Character.valueOf(replacementCharacter), Integer.valueOf(replacementCharacter) });
+            }
             return string;
         }
 
         // iterate through each character in the string and make an appropriate
-        // replacement
-        for (int i = 0; i < charArr.length; i++) {
-            if (!(charArr[i] == ' ' || charArr[i] == '\u00a0' || charArr[i] == '\u3000' || _font.getFontDescription().getFont()
-                    .charExists(charArr[i]))) {
-                XRLog.render(Level.INFO, "Missing character [" + charArr[i] + ":" + (int) charArr[i] + "] in string [" + string
-                        + "]. Replacing with '" + replacementCharacter + "'");
+        // replacement (only copying the string if there is one to make)
+        char[] charArr = null;
+        int missing = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (!(c == ' ' || c == '\u00a0' || c == '\u3000' || desc.canDisplay(c))) {
+                if (charArr == null) {
+                    charArr = string.toCharArray();
+                }
                 charArr[i] = replacementCharacter;
+                missing++;
             }
         }
 
+        if (charArr == null) {
+            return string;
+        }
+        XRLog.render(Level.INFO, "Replaced {0} missing character(s) in string [{1}] with ''{2}''",
+                new Object[] { Integer.valueOf(missing), string, Character.valueOf(replacementCharacter) });
         return String.valueOf(charArr);
     }
 
+    private float getJustificationAdvance(String s, JustificationInfo info) {
+        float result = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ' ' || c == '\u00a0' || c == '\u3000') {
+                result += info.getSpaceAdjust();
+            } else {
+                result += info.getNonSpaceAdjust();
+            }
+        }
+        return result;
+    }
+
     private PdfTextArray makeJustificationArray(String s, JustificationInfo info) {
         PdfTextArray array = new PdfTextArray();
         int len = s.length();
@@ -905,6 +1129,7 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
     }
 
     public void finish(RenderingContext c, Box root) {
+        releaseMarginAreaTemplates();
         writeOutline(c, root);
         writeNamedDestinations(c);
     }
@@ -924,21 +1149,21 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
     }
 
     private void writeNamedDestinations(RenderingContext c) {
-        Map idMap = getSharedContext().getIdMap();
-        if ((idMap != null) && (!idMap.isEmpty())) {
+        PagePositionIndex index = getPagePositionIndex();
+        if (index.size() > 0) {
             PdfArray dests = new PdfArray();
             try {
-                Iterator it = idMap.entrySet().iterator();
+                // The index is sorted by id, as the name tree requires
+                Iterator it = index.getIds().iterator();
                 while (it.hasNext()) {
-                    Entry entry = (Entry) it.next();
+                    String anchorName = (String) it.next();
 
-                    Box targetBox = (Box) entry.getValue();
+                    Box targetBox = index.getBox(anchorName);
 
                     if (targetBox.getStyle().isIdent(CSSName.FS_NAMED_DESTINATION, IdentValue.CREATE)) {
-                        String anchorName = (String) entry.getKey();
                         dests.add(new PdfString(anchorName, PdfString.TEXT_UNICODE));
 
-                        PdfDestination dest = createDestination(c, targetBox);
+                        PdfDestination dest = createDestination(c, anchorName);
                         if (dest != null) {
                             PdfIndirectReference ref = _writer.addToBody(dest).getIndirectReference();
                             dests.add(ref);
@@ -963,22 +1188,15 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         }
     }
 
-    private int getPageRefY(Box box) {
-        if (box instanceof InlineLayoutBox) {
-            InlineLayoutBox iB = (InlineLayoutBox) box;
-            return iB.getAbsY() + iB.getBaseline();
-        } else {
-            return box.getAbsY();
-        }
-    }
-
     private void writeBookmark(RenderingContext c, Box root, PdfOutline parent, Bookmark bookmark) {
         String href = bookmark.getHRef();
         PdfDestination target = null;
         if (href.length() > 0 && href.charAt(0) == '#') {
-            Box box = _sharedContext.getBoxById(href.substring(1));
+            PagePositionIndex index = getPagePositionIndex();
+            String id = href.substring(1);
+            Box box = index.getBox(id);
             if (box != null) {
-                PageBox page = root.getLayer().getPage(c, getPageRefY(box));
+                PageBox page = index.getTargetPage(c, id);
                 int distanceFromTop = page.getMarginBorderPadding(c, CalculatedStyle.TOP);
                 distanceFromTop += box.getAbsY() - page.getTop();
                 target = new PdfDestination(PdfDestination.XYZ, 0, normalizeY(distanceFromTop / _dotsPerPoint), 0);
@@ -1241,13 +1459,36 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         return _sharedContext;
     }
 
+    private RenderConfig getRenderConfig() {
+        return _sharedContext == null ? RenderConfig.getDefault() : _sharedContext.getRenderConfig();
+    }
+
     public void setSharedContext(SharedContext sharedContext) {
         _sharedContext = sharedContext;
         sharedContext.getCss().setSupportCMYKColors(true);
     }
 
+    /**
+     * Sets the root box of the current document.  The root box must be laid
+     * out and have its page painting positions assigned.  The page position
+     * index is rebuilt when the root box changes, and dropped if
+     * <code>root</code> is <code>null</code>.
+     */
     public void setRoot(Box root) {
+        if (root != _root) {
+            _pagePositionIndex = root == null ? null : new PagePositionIndex(
+                    root.getLayer(), _sharedContext.getIdMap(), _dotsPerPoint);
+        }
         _root = root;
+        _destinations.clear();
+    }
+
+    /**
+     * Returns the index of the element ids of the current document, or
+     * <code>null</code> if the current document has not been laid out yet.
+     */
+    public PagePositionIndex getPagePositionIndex() {
+        return _pagePositionIndex;
     }
 
     public int getStartPageNo() {
@@ -1256,6 +1497,7 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
 
     public void setStartPageNo(int startPageNo) {
         _startPageNo = startPageNo;
+        _destinations.clear();
     }
 
     public void drawSelection(RenderingContext c, InlineText inlineText) {
@@ -1271,54 +1513,10 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
     }
 
     public List findPagePositionsByID(CssContext c, Pattern pattern) {
-        Map idMap = _sharedContext.getIdMap();
-        if (idMap == null) {
+        PagePositionIndex index = getPagePositionIndex();
+        if (index == null) {
             return Collections.EMPTY_LIST;
         }
-
-        List result = new ArrayList();
-        for (Iterator i = idMap.entrySet().iterator(); i.hasNext();) {
-            Map.Entry entry = (Entry) i.next();
-            String id = (String) entry.getKey();
-            if (pattern.matcher(id).find()) {
-                Box box = (Box) entry.getValue();
-                PagePosition pos = calcPDFPagePosition(c, id, box);
-                if (pos != null) {
-                    result.add(pos);
-                }
-            }
-        }
-
-        Collections.sort(result, new Comparator() {
-            public int compare(Object arg0, Object arg1) {
-                PagePosition p1 = (PagePosition) arg0;
-                PagePosition p2 = (PagePosition) arg1;
-                return p1.getPageNo() - p2.getPageNo();
-            }
-        });
-
-        return result;
-    }
-
-    private PagePosition calcPDFPagePosition(CssContext c, String id, Box box) {
-        PageBox page = _root.getLayer().getLastPage(c, box);
-        if (page == null) {
-            return null;
-        }
-
-        float x = box.getAbsX() + page.getMarginBorderPadding(c, CalculatedStyle.LEFT);
-        float y = (page.getBottom() - (box.getAbsY() + box.getHeight())) + page.getMarginBorderPadding(c, CalculatedStyle.BOTTOM);
-        x /= _dotsPerPoint;
-        y /= _dotsPerPoint;
-
-        PagePosition result = new PagePosition();
-        result.setId(id);
-        result.setPageNo(page.getPageNo());
-        result.setX(x);
-        result.setY(y);
-        result.setWidth(box.getEffectiveWidth() / _dotsPerPoint);
-        result.setHeight(box.getHeight() / _dotsPerPoint);
-
-        return result;
+        return index.findPagePositions(c, pattern);
     }
 }
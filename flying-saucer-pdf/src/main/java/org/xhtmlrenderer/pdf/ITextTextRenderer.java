@@ -29,11 +29,14 @@ import org.xhtmlrenderer.pdf.ITextFontResolver.FontDescription;
 import org.xhtmlrenderer.render.FSFont;
 import org.xhtmlrenderer.render.FSFontMetrics;
 import org.xhtmlrenderer.render.JustificationInfo;
+import org.xhtmlrenderer.render.TextWidthCache;
 
 import com.lowagie.text.pdf.BaseFont;
 
 public class ITextTextRenderer implements TextRenderer {
     private static float TEXT_MEASURING_DELTA = 0.01f;
+
+    private TextWidthCache _widthCache = new TextWidthCache();
     
     public void setup(FontContext context) {
     }
@@ -69,8 +72,31 @@ public class ITextTextRenderer implements TextRenderer {
     }
 
     public int getWidth(FontContext context, FSFont font, String string) {
-        BaseFont bf = ((ITextFSFont)font).getFontDescription().getFont();
-        float result = bf.getWidthPoint(string, font.getSize2D());
+        int width = _widthCache.get(font, string);
+        if (width == TextWidthCache.MISS) {
+            width = measureWidth(font, string);
+            _widthCache.put(font, string, width);
+        }
+        return width;
+    }
+
+    private int measureWidth(FSFont font, String string) {
+        ITextFSFont itextFont = (ITextFSFont)font;
+        float result;
+        if (itextFont.hasFallbacks()) {
+            result = 0;
+            int len = string.length();
+            int start = 0;
+            while (start < len) {
+                FontDescription descr = itextFont.getFontDescription(string.charAt(start));
+                int end = itextFont.findRunEnd(string, start, descr);
+                result += descr.getFont().getWidthPoint(string.substring(start, end), font.getSize2D());
+                start = end;
+            }
+        } else {
+            BaseFont bf = itextFont.getFontDescription().getFont();
+            result = bf.getWidthPoint(string, font.getSize2D());
+        }
         if (result - Math.floor(result) < TEXT_MEASURING_DELTA) {
             return (int)result;
         } else {
@@ -78,6 +104,14 @@ public class ITextTextRenderer implements TextRenderer {
         }
     }
 
+    public TextWidthCache getWidthCache() {
+        return _widthCache;
+    }
+
+    public void setWidthCache(TextWidthCache widthCache) {
+        _widthCache = widthCache;
+    }
+
     public void setFontScale(float scale) {
     }
 
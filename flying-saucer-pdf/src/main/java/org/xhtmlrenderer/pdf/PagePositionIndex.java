@@ -0,0 +1,233 @@
+/*
+ * {{{ header & license
+ * Copyright (c) 2016 Flying Saucer contributors
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.pdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.CssContext;
+import org.xhtmlrenderer.layout.Layer;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.render.InlineLayoutBox;
+import org.xhtmlrenderer.render.PageBox;
+
+/**
+ * An index of the element ids of a laid out document, sorted by id, giving
+ * the page and PDF position of each element.  The index is created once per
+ * document and is shared by bookmarks, named destinations, links and
+ * {@link ITextRenderer#findPagePositionsByID(Pattern)}.
+ * <p>
+ * Pages and positions are looked up the first time an id is asked for and
+ * are then kept, so repeated queries (e.g. for an index or cross references)
+ * don't search the page list again.  Ids never asked for cost nothing.
+ */
+public class PagePositionIndex {
+    private static final Comparator PAGE_ORDER = new Comparator() {
+        public int compare(Object arg0, Object arg1) {
+            PagePosition p1 = (PagePosition) arg0;
+            PagePosition p2 = (PagePosition) arg1;
+            return p1.getPageNo() - p2.getPageNo();
+        }
+    };
+
+    private final Layer _rootLayer;
+    private final float _dotsPerPoint;
+    private final TreeMap _entries = new TreeMap();
+
+    /**
+     * @param rootLayer the root layer of the laid out document
+     * @param idMap the id map of the document, see
+     * {@link org.xhtmlrenderer.layout.SharedContext#getIdMap()}.  It may be
+     * <code>null</code>.
+     * @param dotsPerPoint the dots per point of the output device
+     */
+    public PagePositionIndex(Layer rootLayer, Map idMap, float dotsPerPoint) {
+        _rootLayer = rootLayer;
+        _dotsPerPoint = dotsPerPoint;
+        if (idMap != null) {
+            for (Iterator i = idMap.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry entry = (Map.Entry) i.next();
+                String id = (String) entry.getKey();
+                _entries.put(id, new IndexEntry(id, (Box) entry.getValue()));
+            }
+        }
+    }
+
+    public int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Returns the ids in the index in ascending order.
+     */
+    public List getIds() {
+        return new ArrayList(_entries.keySet());
+    }
+
+    public Box getBox(String id) {
+        IndexEntry entry = (IndexEntry) _entries.get(id);
+        return entry == null ? null : entry.box;
+    }
+
+    /**
+     * Returns the page a link to <code>id</code> should jump to, that is
+     * the page holding the top of the element (or the baseline of an inline
+     * element), or <code>null</code> if there is no such id.
+     */
+    public PageBox getTargetPage(CssContext c, String id) {
+        IndexEntry entry = (IndexEntry) _entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (! entry.targetPageResolved) {
+            entry.targetPage = _rootLayer.getPage(c, getPageRefY(entry.box));
+            entry.targetPageResolved = true;
+        }
+        return entry.targetPage;
+    }
+
+    /**
+     * Returns the position of the element with the given id on the page
+     * where it ends, in PDF units from the bottom left corner of the page, or
+     * <code>null</code> if there is no such id.
+     */
+    public PagePosition getPagePosition(CssContext c, String id) {
+        IndexEntry entry = (IndexEntry) _entries.get(id);
+        return entry == null ? null : copy(getPagePosition(c, entry));
+    }
+
+    /**
+     * Returns the positions of all elements whose id contains a match for
+     * <code>pattern</code>, sorted by page.
+     */
+    public List findPagePositions(CssContext c, Pattern pattern) {
+        List result = new ArrayList();
+        for (Iterator i = _entries.values().iterator(); i.hasNext(); ) {
+            IndexEntry entry = (IndexEntry) i.next();
+            if (pattern.matcher(entry.id).find()) {
+                addPagePosition(c, entry, result);
+            }
+        }
+        Collections.sort(result, PAGE_ORDER);
+        return result;
+    }
+
+    /**
+     * Returns the positions of all elements whose id starts with
+     * <code>prefix</code>, sorted by page.  Only the matching ids are visited.
+     */
+    public List findPagePositionsByPrefix(CssContext c, String prefix) {
+        List result = new ArrayList();
+        SortedMap matches = _entries.tailMap(prefix);
+        for (Iterator i = matches.values().iterator(); i.hasNext(); ) {
+            IndexEntry entry = (IndexEntry) i.next();
+            if (! entry.id.startsWith(prefix)) {
+                break;
+            }
+            addPagePosition(c, entry, result);
+        }
+        Collections.sort(result, PAGE_ORDER);
+        return result;
+    }
+
+    private void addPagePosition(CssContext c, IndexEntry entry, List result) {
+        PagePosition pos = getPagePosition(c, entry);
+        if (pos != null) {
+            result.add(copy(pos));
+        }
+    }
+
+    private static PagePosition copy(PagePosition pos) {
+        if (pos == null) {
+            return null;
+        }
+        PagePosition result = new PagePosition();
+        result.setId(pos.getId());
+        result.setPageNo(pos.getPageNo());
+        result.setX(pos.getX());
+        result.setY(pos.getY());
+        result.setWidth(pos.getWidth());
+        result.setHeight(pos.getHeight());
+        return result;
+    }
+
+    private PagePosition getPagePosition(CssContext c, IndexEntry entry) {
+        if (! entry.positionResolved) {
+            entry.position = calcPDFPagePosition(c, entry.id, entry.box);
+            entry.positionResolved = true;
+        }
+        return entry.position;
+    }
+
+    private PagePosition calcPDFPagePosition(CssContext c, String id, Box box) {
+        PageBox page = _rootLayer.getLastPage(c, box);
+        if (page == null) {
+            return null;
+        }
+
+        float x = box.getAbsX() + page.getMarginBorderPadding(c, CalculatedStyle.LEFT);
+        float y = (page.getBottom() - (box.getAbsY() + box.getHeight())) + page.getMarginBorderPadding(c, CalculatedStyle.BOTTOM);
+        x /= _dotsPerPoint;
+        y /= _dotsPerPoint;
+
+        PagePosition result = new PagePosition();
+        result.setId(id);
+        result.setPageNo(page.getPageNo());
+        result.setX(x);
+        result.setY(y);
+        result.setWidth(box.getEffectiveWidth() / _dotsPerPoint);
+        result.setHeight(box.getHeight() / _dotsPerPoint);
+
+        return result;
+    }
+
+    private static int getPageRefY(Box box) {
+        if (box instanceof InlineLayoutBox) {
+            InlineLayoutBox iB = (InlineLayoutBox) box;
+            return iB.getAbsY() + iB.getBaseline();
+        } else {
+            return box.getAbsY();
+        }
+    }
+
+    private static final class IndexEntry {
+        final String id;
+        final Box box;
+
+        boolean targetPageResolved;
+        PageBox targetPage;
+
+        boolean positionResolved;
+        PagePosition position;
+
+        IndexEntry(String id, Box box) {
+            this.id = id;
+            this.box = box;
+        }
+    }
+}
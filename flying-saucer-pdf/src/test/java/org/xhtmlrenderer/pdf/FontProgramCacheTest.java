@@ -0,0 +1,90 @@
+package org.xhtmlrenderer.pdf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class FontProgramCacheTest extends TestCase {
+    private File _dir;
+
+    protected void setUp() throws Exception {
+        _dir = File.createTempFile("fonts", "");
+        _dir.delete();
+        _dir.mkdir();
+    }
+
+    protected void tearDown() throws Exception {
+        File[] files = _dir.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        _dir.delete();
+    }
+
+    public void testSharesFileContents() throws Exception {
+        FontProgramCache cache = new FontProgramCache(1000);
+        String a = createFile("a.pfb", 400);
+
+        byte[] first = cache.readFile(a);
+        assertEquals(400, first.length);
+        assertSame(first, cache.readFile(a));
+        assertEquals(1, cache.size());
+        assertEquals(400, cache.getByteCount());
+    }
+
+    public void testDropsLeastRecentlyUsed() throws Exception {
+        FontProgramCache cache = new FontProgramCache(1000);
+        String a = createFile("a.pfb", 400);
+        String b = createFile("b.pfb", 400);
+        String c = createFile("c.pfb", 400);
+
+        byte[] fromA = cache.readFile(a);
+        byte[] fromB = cache.readFile(b);
+        assertSame(fromA, cache.readFile(a));
+
+        // Doesn't fit with both a and b, so b (used least recently) goes
+        byte[] fromC = cache.readFile(c);
+        assertEquals(2, cache.size());
+        assertEquals(800, cache.getByteCount());
+
+        assertSame(fromA, cache.readFile(a));
+        assertSame(fromC, cache.readFile(c));
+        assertNotSame(fromB, cache.readFile(b));
+    }
+
+    public void testDoesNotKeepProgramsLargerThanCache() throws Exception {
+        FontProgramCache cache = new FontProgramCache(1000);
+        String a = createFile("a.pfb", 400);
+        String large = createFile("large.pfb", 2000);
+
+        byte[] fromA = cache.readFile(a);
+        assertEquals(2000, cache.readFile(large).length);
+        assertEquals(1, cache.size());
+        assertSame(fromA, cache.readFile(a));
+    }
+
+    public void testDisabled() throws Exception {
+        FontProgramCache cache = new FontProgramCache(0);
+        String a = createFile("a.pfb", 400);
+
+        assertNotSame(cache.readFile(a), cache.readFile(a));
+        assertEquals(0, cache.size());
+    }
+
+    private String createFile(String name, int length) throws IOException {
+        File f = new File(_dir, name);
+        FileOutputStream os = new FileOutputStream(f);
+        try {
+            byte[] content = new byte[length];
+            for (int i = 0; i < length; i++) {
+                content[i] = (byte)(i + name.charAt(0));
+            }
+            os.write(content);
+        } finally {
+            os.close();
+        }
+        return f.getPath();
+    }
+}
@@ -0,0 +1,217 @@
+package org.xhtmlrenderer.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.context.StylesheetCache;
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.value.FontSpecification;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xml.sax.InputSource;
+
+public class ITextBatchRendererTest extends TestCase {
+    private static final int DOCUMENTS = 5;
+
+    private File _dir;
+    private String _baseUrl;
+
+    protected void setUp() throws Exception {
+        _dir = File.createTempFile("batch", "");
+        _dir.delete();
+        _dir.mkdir();
+        _baseUrl = _dir.toURI().toString();
+
+        write(new File(_dir, "style.css"),
+                "p { color: #336699; margin: 20px } h1 { font-size: 30px }".getBytes("US-ASCII"));
+    }
+
+    protected void tearDown() throws Exception {
+        File[] files = _dir.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        _dir.delete();
+    }
+
+    public void testSeparatePdfsMatchSingleRenders() throws Exception {
+        ITextBatchRenderer batch = new ITextBatchRenderer(2);
+        ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[DOCUMENTS];
+
+        batch.start(null);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            outputs[i] = new ByteArrayOutputStream();
+            batch.add(new ITextBatchRenderer.Input(createDocument(i), _baseUrl, outputs[i]));
+        }
+        assertEquals(DOCUMENTS, batch.finish());
+
+        for (int i = 0; i < DOCUMENTS; i++) {
+            ITextRenderer renderer = new ITextRenderer();
+            renderer.setDocument(createDocument(i), _baseUrl);
+            renderer.layout();
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            renderer.createPDF(expected);
+
+            assertEquals("document " + i, normalize(expected.toByteArray()),
+                    normalize(outputs[i].toByteArray()));
+        }
+    }
+
+    public void testMergedPdfMatchesSingleRenderer() throws Exception {
+        List inputs = new ArrayList();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            inputs.add(new ITextBatchRenderer.Input(createDocument(i), _baseUrl));
+        }
+        ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        assertEquals(DOCUMENTS, new ITextBatchRenderer(3).createPDF(inputs.iterator(), merged));
+
+        ITextRenderer renderer = new ITextRenderer();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            renderer.setDocument(createDocument(i), _baseUrl);
+            renderer.layout();
+            if (i == 0) {
+                renderer.createPDF(expected, false);
+            } else {
+                renderer.writeNextDocument();
+            }
+        }
+        renderer.finishPDF();
+
+        assertEquals(normalize(expected.toByteArray()), normalize(merged.toByteArray()));
+    }
+
+    public void testStylesheetCacheIsShared() throws Exception {
+        ITextBatchRenderer batch = new ITextBatchRenderer(2);
+        ITextRenderer[] renderers = batch.getRenderers();
+        StylesheetCache first = getStylesheetCache(renderers[0]);
+        StylesheetCache second = getStylesheetCache(renderers[1]);
+        assertNotSame(first, second);
+
+        batch.start(null);
+        assertSame(first, getStylesheetCache(renderers[1]));
+        for (int i = 0; i < DOCUMENTS; i++) {
+            batch.add(new ITextBatchRenderer.Input(
+                    createDocument(i), _baseUrl, new ByteArrayOutputStream()));
+        }
+        batch.finish();
+
+        // Both renderers were used, but the linked stylesheet was only
+        // cached once, in the cache of the first renderer
+        assertTrue(first.contains(_baseUrl + "style.css"));
+        assertEquals(0, second.size());
+        assertSame(second, getStylesheetCache(renderers[1]));
+    }
+
+    public void testFontProgramsAreShared() throws Exception {
+        File font = new File(_dir, "ahem.ttf");
+        write(font, readAhem());
+
+        ITextBatchRenderer batch = new ITextBatchRenderer(2);
+        ITextRenderer[] renderers = batch.getRenderers();
+        for (int i = 0; i < renderers.length; i++) {
+            renderers[i].getFontResolver().addFont(font.getPath(), "AhemFile", "Cp1252", false, null);
+        }
+
+        batch.start(null);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            batch.add(new ITextBatchRenderer.Input(
+                    createFontFaceDocument(i), _baseUrl, new ByteArrayOutputStream()));
+        }
+        batch.finish();
+
+        assertSame(resolveFont(renderers[0], "AhemFile"), resolveFont(renderers[1], "AhemFile"));
+        assertSame(resolveFont(renderers[0], "AhemFace"), resolveFont(renderers[1], "AhemFace"));
+    }
+
+    private StylesheetCache getStylesheetCache(ITextRenderer renderer) {
+        return renderer.getSharedContext().getCss().getStylesheetCache();
+    }
+
+    private Object resolveFont(ITextRenderer renderer, String family) {
+        FontSpecification spec = new FontSpecification();
+        spec.families = new String[] { family };
+        spec.size = 12;
+        spec.fontWeight = IdentValue.NORMAL;
+        spec.fontStyle = IdentValue.NORMAL;
+        spec.variant = IdentValue.NORMAL;
+
+        ITextFSFont result = (ITextFSFont) renderer.getFontResolver().resolveFont(
+                renderer.getSharedContext(), spec);
+        assertNotNull(result);
+        return result.getFontDescription().getFont();
+    }
+
+    private Document createDocument(int index) {
+        StringBuffer html = new StringBuffer();
+        html.append("<html xmlns='http://www.w3.org/1999/xhtml'><head>");
+        html.append("<link rel='stylesheet' type='text/css' href='style.css'/>");
+        html.append("</head><body><h1>Document ").append(index).append("</h1>");
+        for (int i = 0; i <= index * 10; i++) {
+            html.append("<p>Paragraph ").append(i).append(" of document ").append(index).append("</p>");
+        }
+        html.append("</body></html>");
+        return parse(html.toString());
+    }
+
+    private Document createFontFaceDocument(int index) {
+        return parse("<html xmlns='http://www.w3.org/1999/xhtml'><head><style>" +
+                "@font-face { font-family: AhemFace; src: url(ahem.ttf) }" +
+                "p { font-family: AhemFace }" +
+                "</style></head><body><p>Document " + index + "</p></body></html>");
+    }
+
+    static Document parse(String html) {
+        return XMLResource.load(new InputSource(new StringReader(html))).getDocument();
+    }
+
+    /**
+     * Returns the PDF as a string with the creation and modification dates
+     * and the file ID, which differ from one write to the next, blanked out.
+     */
+    static String normalize(byte[] pdf) throws IOException {
+        String result = new String(pdf, "ISO-8859-1");
+        result = result.replaceAll("/CreationDate\\s*\\([^)]*\\)", "/CreationDate()");
+        result = result.replaceAll("/ModDate\\s*\\([^)]*\\)", "/ModDate()");
+        result = result.replaceAll("/ID\\s*\\[\\s*<[0-9a-fA-F]*>\\s*<[0-9a-fA-F]*>\\s*\\]", "/ID[]");
+        return result;
+    }
+
+    private static byte[] readAhem() throws IOException {
+        File f = new File("tests/regress/xhtml/support/AHEM____.TTF");
+        if (! f.exists()) {
+            f = new File("../tests/regress/xhtml/support/AHEM____.TTF");
+        }
+        InputStream is = new FileInputStream(f);
+        try {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int count;
+            while ((count = is.read(buf)) != -1) {
+                result.write(buf, 0, count);
+            }
+            return result.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void write(File f, byte[] content) throws IOException {
+        OutputStream os = new FileOutputStream(f);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.xhtmlrenderer.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+public class PagePositionIndexTest extends TestCase {
+    private static final String FIRST =
+            "<html><body>" +
+            "<p id='first-a'>a</p>" +
+            "<p id='first-b' style='page-break-before: always'>b</p>" +
+            "</body></html>";
+
+    private static final String SECOND =
+            "<html><body>" +
+            "<p id='second-a'>a</p>" +
+            "<p id='second-b'>b</p>" +
+            "<p id='second-c' style='page-break-before: always'>c</p>" +
+            "</body></html>";
+
+    public void testNoIndexBeforeLayout() {
+        ITextRenderer renderer = new ITextRenderer();
+        assertNull(renderer.getPagePositionIndex());
+        assertTrue(renderer.findPagePositionsByPrefix("first").isEmpty());
+
+        renderer.setDocumentFromString(FIRST);
+        assertNull(renderer.getPagePositionIndex());
+        assertTrue(renderer.findPagePositionsByID(Pattern.compile(".*")).isEmpty());
+    }
+
+    public void testLookupsAfterLayout() {
+        ITextRenderer renderer = new ITextRenderer();
+
+        renderer.setDocumentFromString(FIRST);
+        renderer.layout();
+        assertFirst(renderer);
+
+        renderer.setDocumentFromString(SECOND);
+        assertNull(renderer.getPagePositionIndex());
+        renderer.layout();
+        assertSecond(renderer);
+    }
+
+    public void testLookupsAfterWrite() throws Exception {
+        ITextRenderer renderer = new ITextRenderer();
+
+        renderer.setDocumentFromString(FIRST);
+        renderer.layout();
+        PagePositionIndex index = renderer.getPagePositionIndex();
+        renderer.createPDF(new ByteArrayOutputStream());
+        assertSame(index, renderer.getPagePositionIndex());
+        assertFirst(renderer);
+
+        renderer.setDocumentFromString(SECOND);
+        renderer.layout();
+        renderer.createPDF(new ByteArrayOutputStream());
+        assertSecond(renderer);
+    }
+
+    private void assertFirst(ITextRenderer renderer) {
+        PagePositionIndex index = renderer.getPagePositionIndex();
+        assertNotNull(index);
+        assertEquals(2, index.size());
+        assertNull(index.getBox("second-a"));
+
+        List positions = renderer.findPagePositionsByPrefix("first-");
+        assertEquals(2, positions.size());
+        assertPosition((PagePosition) positions.get(0), "first-a", 0);
+        assertPosition((PagePosition) positions.get(1), "first-b", 1);
+
+        assertTrue(renderer.findPagePositionsByPrefix("second-").isEmpty());
+        assertEquals(1, renderer.findPagePositionsByID(Pattern.compile("first-b")).size());
+    }
+
+    private void assertSecond(ITextRenderer renderer) {
+        PagePositionIndex index = renderer.getPagePositionIndex();
+        assertNotNull(index);
+        assertEquals(3, index.size());
+        assertNull(index.getBox("first-a"));
+
+        List positions = renderer.findPagePositionsByPrefix("second-");
+        assertEquals(3, positions.size());
+        assertPosition((PagePosition) positions.get(0), "second-a", 0);
+        assertPosition((PagePosition) positions.get(1), "second-b", 0);
+        assertPosition((PagePosition) positions.get(2), "second-c", 1);
+
+        assertTrue(renderer.findPagePositionsByPrefix("first-").isEmpty());
+        assertEquals(3, renderer.findPagePositionsByID(Pattern.compile("second-.*")).size());
+    }
+
+    private void assertPosition(PagePosition position, String id, int pageNo) {
+        assertEquals(id, position.getId());
+        assertEquals(pageNo, position.getPageNo());
+    }
+}
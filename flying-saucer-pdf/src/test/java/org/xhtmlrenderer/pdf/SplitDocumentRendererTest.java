@@ -0,0 +1,56 @@
+package org.xhtmlrenderer.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.InputSource;
+
+public class SplitDocumentRendererTest extends TestCase {
+    private static final String XHTML_NS = "http://www.w3.org/1999/xhtml";
+
+    private static final String HEAD =
+            "<head><style>p { color: #993333; margin: 30px } h1 { font-size: 24px }</style></head>";
+
+    private static final String[] BODIES = {
+        "<body><h1>First</h1><p>Only paragraph</p></body>",
+        "<body><h1>Second</h1><p>One</p><p>Two</p><p>Three</p></body>",
+        "<body><h1>Third</h1><p style='page-break-before: always'>Next page</p></body>",
+    };
+
+    public void testSplitPdfsMatchStandaloneDocuments() throws Exception {
+        StringBuffer source = new StringBuffer();
+        source.append("<documents xmlns='").append(XHTML_NS).append("'>").append(HEAD);
+        for (int i = 0; i < BODIES.length; i++) {
+            source.append("<html>").append(BODIES[i]).append("</html>");
+        }
+        source.append("</documents>");
+
+        final ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[BODIES.length];
+        SplitDocumentRenderer renderer = new SplitDocumentRenderer(new ITextBatchRenderer(2));
+        int count = renderer.createPDFs(
+                new InputSource(new StringReader(source.toString())), null,
+                new SplitDocumentRenderer.OutputStreamFactory() {
+                    public OutputStream createOutputStream(int index) throws IOException {
+                        outputs[index] = new ByteArrayOutputStream();
+                        return outputs[index];
+                    }
+                });
+        assertEquals(BODIES.length, count);
+
+        for (int i = 0; i < BODIES.length; i++) {
+            ITextRenderer single = new ITextRenderer();
+            single.setDocument(ITextBatchRendererTest.parse(
+                    "<html xmlns='" + XHTML_NS + "'>" + HEAD + BODIES[i] + "</html>"), null);
+            single.layout();
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            single.createPDF(expected);
+
+            assertEquals("document " + i, ITextBatchRendererTest.normalize(expected.toByteArray()),
+                    ITextBatchRendererTest.normalize(outputs[i].toByteArray()));
+        }
+    }
+}
@@ -620,7 +620,9 @@ public class BasicRenderer extends Canvas implements PaintListener, UserInterfac
             _rootBox.layout(_layout_context);
 
             long end = System.currentTimeMillis();
-            XRLog.layout(Level.INFO, "Layout took " + (end - start) + "ms");
+            if (XRLog.isLoggable(XRLog.LAYOUT, Level.INFO)) {
+                XRLog.layout(Level.INFO, "Layout took " + (end - start) + "ms");
+            }
         } catch (Throwable e) {
             XRLog.exception(e.getMessage(), e);
             e.printStackTrace();
@@ -629,7 +631,7 @@ public class BasicRenderer extends Canvas implements PaintListener, UserInterfac
         Layer rootLayer = _rootBox.getLayer();
         _hasFixedContent = rootLayer.containsFixedContent();
 
-        XRLog.layout(Level.FINEST, "after layout: " + _rootBox);
+        XRLog.layout(Level.FINEST, "after layout: {0}", new Object[] { _rootBox });
 
         // update scrollbars
         Dimension intrinsic_size = rootLayer.getPaintingDimension(_layout_context);
@@ -154,7 +154,9 @@ public class PrinterRenderer implements UserInterface {
                 rootBox.layout(layout);
 
                 long end = System.currentTimeMillis();
-                XRLog.layout(Level.INFO, "Layout took " + (end - start) + "ms");
+                if (XRLog.isLoggable(XRLog.LAYOUT, Level.INFO)) {
+                    XRLog.layout(Level.INFO, "Layout took " + (end - start) + "ms");
+                }
             } catch (Throwable e) {
                 XRLog.exception(e.getMessage(), e);
                 return;
@@ -26,6 +26,7 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.*;
 import org.xhtmlrenderer.css.constants.IdentValue;
 import org.xhtmlrenderer.css.value.FontSpecification;
+import org.xhtmlrenderer.event.RenderMetrics;
 import org.xhtmlrenderer.extend.FontResolver;
 import org.xhtmlrenderer.layout.SharedContext;
 import org.xhtmlrenderer.render.FSFont;
@@ -44,6 +45,10 @@ public class SWTFontResolver implements FontResolver {
 
     private Map _instance_hash;
 
+    private Map _resolved_fonts = new HashMap();
+
+    private float _resolved_fonts_scale;
+
     private Map _default_fonts;
 
     private SWTFSFont _system_font;
@@ -99,9 +104,34 @@ public class SWTFontResolver implements FontResolver {
             ((SWTFSFont) iter.next()).dispose();
         }
         _instance_hash.clear();
+        _resolved_fonts.clear();
     }
 
+    /**
+     * Resolved fonts are cached by specification, so resolving an equal
+     * specification again returns the same font without any lookups.
+     */
     public FSFont resolveFont(SharedContext renderingContext, FontSpecification spec) {
+        float scale = renderingContext.getTextRenderer().getFontScale();
+        if (scale != _resolved_fonts_scale) {
+            _resolved_fonts.clear();
+            _resolved_fonts_scale = scale;
+        }
+
+        FSFont result = (FSFont) _resolved_fonts.get(spec);
+        if (result != null) {
+            RenderMetrics metrics = renderingContext.getRenderMetrics();
+            if (metrics != null) {
+                metrics.increment(RenderMetrics.CACHE_HITS);
+            }
+            return result;
+        }
+        result = resolveFontUncached(renderingContext, spec);
+        _resolved_fonts.put(spec.copyOf(), result);
+        return result;
+    }
+
+    private FSFont resolveFontUncached(SharedContext renderingContext, FontSpecification spec) {
         if (spec.families != null) {
             for (int i = 0; i < spec.families.length; i++) {
                 FSFont font = resolveFont(renderingContext, spec.families[i], spec.size,
@@ -119,7 +149,7 @@ public class SWTFontResolver implements FontResolver {
             return font;
         }
 
-        XRLog.cascade(Level.WARNING, "Falling back to default system font. " + spec.toString());
+        XRLog.cascade(Level.WARNING, "Falling back to default system font. {0}", new Object[] { spec });
 
         // last resort: use system font
         return _system_font;
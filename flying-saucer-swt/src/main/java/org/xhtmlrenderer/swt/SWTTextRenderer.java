@@ -39,6 +39,7 @@ public class SWTTextRenderer implements TextRenderer {
 
     private float _scale;
     private boolean _antialiasing;
+    private TextWidthCache _widthCache = new TextWidthCache();
 
     public SWTTextRenderer() {
         _scale = Configuration.valueAsFloat("xr.text.scale", 1.0f);
@@ -66,6 +67,15 @@ public class SWTTextRenderer implements TextRenderer {
     }
 
     public int getWidth(FontContext context, FSFont font, String string) {
+        int width = _widthCache.get(font, string);
+        if (width == TextWidthCache.MISS) {
+            width = measureWidth(context, font, string);
+            _widthCache.put(font, string, width);
+        }
+        return width;
+    }
+
+    private int measureWidth(FontContext context, FSFont font, String string) {
         GC gc = ((SWTFontContext) context).getGC();
         Font previous = gc.getFont();
         gc.setFont(((SWTFSFont) font).getSWTFont());
@@ -78,6 +88,14 @@ public class SWTTextRenderer implements TextRenderer {
         return _scale;
     }
 
+    public TextWidthCache getWidthCache() {
+        return _widthCache;
+    }
+
+    public void setWidthCache(TextWidthCache widthCache) {
+        _widthCache = widthCache;
+    }
+
     public int getSmoothingLevel() {
         return 0;
     }